@@ -8,15 +8,19 @@ import java.time.LocalTime;
 import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.sagacity.sqltoy.model.SqlExecuteLog;
 import org.sagacity.sqltoy.model.SqlExecuteTrace;
+import org.sagacity.sqltoy.plugins.metrics.SqlMetricsRegistry;
 import org.sagacity.sqltoy.utils.DateUtil;
 import org.sagacity.sqltoy.utils.StringUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * @project sagacity-sqltoy4.0
@@ -25,6 +29,8 @@ import org.slf4j.LoggerFactory;
  * @version v1.0,Date:2015年6月12日
  * @modify {Date:2020-06-15,改进sql日志输出,将条件参数带入到sql中输出，便于开发调试}
  * @modify {Date:2020-08-12,为日志输出增加统一uid,便于辨别同一组执行语句}
+ * @modify {Date:2021-05-18,执行结束时将耗时、记录数等登记到SqlMetricsRegistry,提供按sqlId的p99等统计}
+ * @modify {Date:2021-05-20,登记最近一次修改操作的时间,供读写分离在写之后短时间内读主库,范围由请求或事务界定}
  */
 public class SqlExecuteStat {
 	/**
@@ -45,9 +51,17 @@ public class SqlExecuteStat {
 	// 用于拟合sql中的条件值表达式(前后都以非字符和数字为依据目的是最大幅度的避免参数值里面存在问号,实际执行过程中这个问题已经被规避,但调试打印参数带入无法规避)
 	private final static Pattern ARG_PATTERN = Pattern.compile("\\W\\?\\W");
 
+	/**
+	 * 执行指标登记中心(为null表示关闭指标统计)
+	 */
+	private static SqlMetricsRegistry metricsRegistry;
+
 	// 通过ThreadLocal 来保存进程数据
 	private static ThreadLocal<SqlExecuteTrace> threadLocal = new ThreadLocal<SqlExecuteTrace>();
 
+	// 写操作范围(请求或事务),记录范围内最近一次修改操作的时间,范围结束时清理
+	private static ThreadLocal<AtomicLong> writeScope = new ThreadLocal<AtomicLong>();
+
 	/**
 	 * @todo 登记开始执行
 	 * @param sqlId
@@ -101,6 +115,150 @@ public class SqlExecuteStat {
 		}
 	}
 
+	/**
+	 * @TODO 登记查询获得的记录数
+	 * @param rows
+	 */
+	public static void fetchRows(long rows) {
+		SqlExecuteTrace sqlTrace = threadLocal.get();
+		if (sqlTrace != null) {
+			sqlTrace.addRowsFetched(rows);
+		}
+	}
+
+	/**
+	 * @TODO 登记修改影响的记录数
+	 * @param rows
+	 */
+	public static void affectRows(Long rows) {
+		SqlExecuteTrace sqlTrace = threadLocal.get();
+		if (sqlTrace != null && rows != null) {
+			sqlTrace.addRowsAffected(rows);
+		}
+		if (rows != null && rows > 0) {
+			AtomicLong scope = getWriteScope(true);
+			if (scope != null) {
+				scope.set(System.currentTimeMillis());
+			}
+		}
+	}
+
+	/**
+	 * @TODO 最近一次修改操作(影响记录数大于0)的时间
+	 * @return 毫秒,当前范围内未发生修改返回0
+	 */
+	public static long getLastWriteTime() {
+		AtomicLong scope = writeScope.get();
+		return (scope == null) ? 0L : scope.get();
+	}
+
+	/**
+	 * @TODO 开启请求级别的写操作范围(如在过滤器、拦截器中调用),范围内写之后的读取在粘滞时间内走主库,
+	 *       请求结束时必须调用closeWriteScope清理
+	 * @return
+	 */
+	public static AtomicLong openWriteScope() {
+		AtomicLong scope = new AtomicLong(0);
+		writeScope.set(scope);
+		return scope;
+	}
+
+	/**
+	 * @TODO 结束写操作范围
+	 */
+	public static void closeWriteScope() {
+		writeScope.remove();
+	}
+
+	/**
+	 * @TODO 获取当前写操作范围
+	 * @param createInTransaction 没有请求范围而存在事务时,是否创建随事务结束清理的范围
+	 * @return
+	 */
+	public static AtomicLong getWriteScope(boolean createInTransaction) {
+		AtomicLong scope = writeScope.get();
+		if (scope == null && createInTransaction && TransactionSynchronizationManager.isSynchronizationActive()) {
+			final AtomicLong txScope = new AtomicLong(0);
+			writeScope.set(txScope);
+			TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+				@Override
+				public void afterCompletion(int status) {
+					if (writeScope.get() == txScope) {
+						writeScope.remove();
+					}
+				}
+			});
+			scope = txScope;
+		}
+		return scope;
+	}
+
+	/**
+	 * @TODO 将调用线程的写操作范围绑定到线程池执行线程上,使异步、并行中的写操作同样作用于调用者
+	 * @param scope
+	 * @return 执行线程原有的范围,执行结束后通过本方法还原
+	 */
+	public static AtomicLong bindWriteScope(AtomicLong scope) {
+		AtomicLong result = writeScope.get();
+		if (scope == null) {
+			writeScope.remove();
+		} else {
+			writeScope.set(scope);
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 执行结束时登记执行指标
+	 * @param sqlTrace
+	 */
+	private static void recordMetrics(SqlExecuteTrace sqlTrace) {
+		SqlMetricsRegistry registry = metricsRegistry;
+		if (registry == null || sqlTrace == null || sqlTrace.getType() == null) {
+			return;
+		}
+		try {
+			long micros = sqlTrace.getExecuteMicros();
+			String type = sqlTrace.getType();
+			// saveAll:[100]条记录! 形式,操作类型取冒号前部分,批量记录数取中括号内数字
+			int batchSize = -1;
+			int typeEnd = type.indexOf(':');
+			if (typeEnd > 0) {
+				batchSize = parseBatchSize(type, typeEnd);
+				type = type.substring(0, typeEnd);
+			}
+			registry.getSqlMetric(sqlTrace.getId(), type).record(micros, sqlTrace.isError(),
+					micros >= printSqlTimeoutMillis * 1000L, sqlTrace.getRowsFetched(), sqlTrace.getRowsAffected(),
+					batchSize);
+		} catch (Exception e) {
+			// 指标登记异常不影响sql执行
+			logger.warn("登记sql:{} 执行指标异常:{}", sqlTrace.getId(), e.getMessage(), e);
+		}
+	}
+
+	/**
+	 * @TODO 从执行类型中提取[]中的批量记录数
+	 * @param type
+	 * @param from
+	 * @return
+	 */
+	private static int parseBatchSize(String type, int from) {
+		int start = type.indexOf('[', from);
+		if (start == -1) {
+			return -1;
+		}
+		int result = 0;
+		char c;
+		for (int i = start + 1; i < type.length(); i++) {
+			c = type.charAt(i);
+			if (c < '0' || c > '9') {
+				break;
+			}
+			result = result * 10 + (c - '0');
+		}
+		return result;
+	}
+
 	/**
 	 * 在执行结尾时记录日志
 	 */
@@ -220,6 +378,8 @@ public class SqlExecuteStat {
 	 * 清理线程中的数据
 	 */
 	public static void destroy() {
+		// 登记执行指标
+		recordMetrics(threadLocal.get());
 		// 执行完成时打印日志
 		destroyLog();
 		threadLocal.remove();
@@ -238,6 +398,20 @@ public class SqlExecuteStat {
 		SqlExecuteStat.debug = debug;
 	}
 
+	/**
+	 * @param metricsRegistry the metricsRegistry to set
+	 */
+	public static void setMetricsRegistry(SqlMetricsRegistry metricsRegistry) {
+		SqlExecuteStat.metricsRegistry = metricsRegistry;
+	}
+
+	/**
+	 * @return the metricsRegistry
+	 */
+	public static SqlMetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
+	}
+
 	/**
 	 * @param printSqlTimeoutMillis the printSqlTimeoutMillis to set
 	 */
@@ -409,4 +409,110 @@ public class SqlToyConstants {
 	public static boolean openSqlSign() {
 		return Boolean.parseBoolean(getKeyValue("sqltoy.open.sqlsign", "true"));
 	}
+
+	/**
+	 * @TODO 获取sql预编译执行计划缓存的最大数量(0表示关闭执行计划)
+	 * @return
+	 */
+	public static int getSqlPlanCacheSize() {
+		return Integer.parseInt(getKeyValue("sqltoy.sql.plan.cache.size", "5000"));
+	}
+
+	/**
+	 * @TODO 流式查询未指定fetchSize时默认的单次提取记录数量
+	 * @return
+	 */
+	public static int getStreamFetchSize() {
+		return Integer.parseInt(getKeyValue("sqltoy.stream.fetch.size", "1000"));
+	}
+
+	/**
+	 * @TODO 获取指定用途线程池的最大线程数
+	 * @param poolName
+	 * @return
+	 */
+	public static int getExecutorThreads(String poolName) {
+		return Integer.parseInt(getKeyValue("sqltoy.executor." + poolName + ".threads",
+				getKeyValue("sqltoy.executor.threads", "20")));
+	}
+
+	/**
+	 * @TODO 线程池排队任务的最大数量
+	 * @return
+	 */
+	public static int getExecutorQueueSize() {
+		return Integer.parseInt(getKeyValue("sqltoy.executor.queue.size", "1000"));
+	}
+
+	/**
+	 * @TODO 线程池饱和时的处理策略:queue(调用线程等待排队)、callerRuns(调用线程执行)、abort(拒绝)
+	 * @return
+	 */
+	public static String getExecutorRejectPolicy() {
+		return getKeyValue("sqltoy.executor.reject.policy", "queue");
+	}
+
+	/**
+	 * @TODO 线程池是否使用虚拟线程(jdk21+)
+	 * @return
+	 */
+	public static boolean useVirtualThreads() {
+		return Boolean.parseBoolean(getKeyValue("sqltoy.executor.virtual.threads", "false"));
+	}
+
+	/**
+	 * @TODO 是否开启sql执行指标统计
+	 * @return
+	 */
+	public static boolean openMetrics() {
+		return Boolean.parseBoolean(getKeyValue("sqltoy.metrics.enabled", "true"));
+	}
+
+	/**
+	 * @TODO 执行指标单独统计的sqlId数量上限(超出的统一归集)
+	 * @return
+	 */
+	public static int getMetricsMaxSqlCount() {
+		return Integer.parseInt(getKeyValue("sqltoy.metrics.max.sqls", "2000"));
+	}
+
+	/**
+	 * @TODO redis主键每次预取的号段大小,0表示不预取(每次按需INCRBY,号码连续)
+	 * @return
+	 */
+	public static int getRedisIdSegmentSize() {
+		return Integer.parseInt(getKeyValue("sqltoy.id.redis.segment.size", "0"));
+	}
+
+	/**
+	 * @TODO 取随机记录的抽样策略:auto(按抽样比例自动选择)、dialect(沿用数据库order by random()方式)
+	 * @return
+	 */
+	public static String getRandomSampleStrategy() {
+		return getKeyValue("sqltoy.random.sample.strategy", "auto");
+	}
+
+	/**
+	 * @TODO 分页未开启parallel且count未命中缓存时,是否自适应并行查询count和单页数据(各用一个连接)
+	 * @return
+	 */
+	public static boolean pageParallelAdaptive() {
+		return Boolean.parseBoolean(getKeyValue("sqltoy.page.parallel.adaptive", "false"));
+	}
+
+	/**
+	 * @TODO 自适应并行的耗时阈值(毫秒):sql历史分页平均耗时低于此值时仍串行执行,避免为快查询多占用连接
+	 * @return
+	 */
+	public static int getPageParallelMinMillis() {
+		return Integer.parseInt(getKeyValue("sqltoy.page.parallel.min.millis", "200"));
+	}
+
+	/**
+	 * @TODO 推导出的count语句缓存数量(按数据库类型+裁剪条件后的sql),0表示不缓存
+	 * @return
+	 */
+	public static int getCountSqlCacheSize() {
+		return Integer.parseInt(getKeyValue("sqltoy.count.sql.cache.size", "2000"));
+	}
 }
@@ -13,20 +13,33 @@ import org.sagacity.sqltoy.config.model.ElasticEndpoint;
 import org.sagacity.sqltoy.config.model.EntityMeta;
 import org.sagacity.sqltoy.config.model.SqlToyConfig;
 import org.sagacity.sqltoy.config.model.SqlType;
+import org.sagacity.sqltoy.dialect.utils.PageOptimizeUtils;
 import org.sagacity.sqltoy.executor.QueryExecutor;
 import org.sagacity.sqltoy.plugins.IUnifyFieldsHandler;
 import org.sagacity.sqltoy.plugins.AbstractTypeHandler;
+import org.sagacity.sqltoy.plugins.cache.PageCountCache;
+import org.sagacity.sqltoy.plugins.cache.QueryResultCache;
+import org.sagacity.sqltoy.plugins.cache.ResultCacheRegistry;
+import org.sagacity.sqltoy.plugins.cache.impl.CaffeineQueryResultCache;
+import org.sagacity.sqltoy.plugins.cache.impl.DefaultPageCountCache;
+import org.sagacity.sqltoy.plugins.cache.impl.DefaultQueryResultCache;
 import org.sagacity.sqltoy.plugins.datasource.DataSourceSelector;
 import org.sagacity.sqltoy.plugins.datasource.ObtainDataSource;
 import org.sagacity.sqltoy.plugins.datasource.impl.DefaultDataSourceSelector;
 import org.sagacity.sqltoy.plugins.datasource.impl.DefaultObtainDataSource;
 import org.sagacity.sqltoy.plugins.function.FunctionUtils;
+import org.sagacity.sqltoy.plugins.metrics.SqlMetricsRegistry;
+import org.sagacity.sqltoy.plugins.sampling.RandomSampleStrategy;
+import org.sagacity.sqltoy.plugins.sampling.impl.DefaultRandomSampleStrategy;
 import org.sagacity.sqltoy.plugins.sharding.ShardingStrategy;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolManager;
+import org.sagacity.sqltoy.plugins.threadpool.impl.DefaultThreadPoolManager;
 import org.sagacity.sqltoy.translate.TranslateManager;
 import org.sagacity.sqltoy.translate.cache.AbstractTranslateCacheManager;
 import org.sagacity.sqltoy.translate.cache.impl.TranslateCaffeineManager;
 import org.sagacity.sqltoy.utils.BeanUtil;
 import org.sagacity.sqltoy.utils.DataSourceUtils.Dialect;
+import org.sagacity.sqltoy.utils.HttpClientUtils;
 import org.sagacity.sqltoy.utils.IdUtil;
 import org.sagacity.sqltoy.utils.ReservedWordsUtil;
 import org.sagacity.sqltoy.utils.SqlUtil;
@@ -213,6 +226,36 @@ public class SqlToyContext implements ApplicationContextAware {
 	 */
 	private AbstractTypeHandler typeHandler;
 
+	/**
+	 * 分页优化总记录数缓存(默认本地缓存,可设置为RedisPageCountCache实现多节点共享)
+	 */
+	private PageCountCache pageCountCache;
+
+	/**
+	 * 查询结果缓存(默认本地缓存,cacheType=caffeine时采用caffeine)
+	 */
+	private QueryResultCache queryResultCache;
+
+	/**
+	 * 查询结果缓存的运行状态(表与sql关系、失效版本等)
+	 */
+	private volatile ResultCacheRegistry resultCacheRegistry;
+
+	/**
+	 * 线程池管理(分库分表并行、并行查询、分页并行等共享有界线程池)
+	 */
+	private ThreadPoolManager threadPoolManager;
+
+	/**
+	 * sql执行指标登记中心(sqltoy.metrics.enabled=false 时不创建)
+	 */
+	private SqlMetricsRegistry metricsRegistry;
+
+	/**
+	 * 取随机记录的抽样策略
+	 */
+	private RandomSampleStrategy randomSampleStrategy;
+
 	/**
 	 * dataSource选择器，提供给开发者扩展窗口
 	 */
@@ -270,6 +313,32 @@ public class SqlToyContext implements ApplicationContextAware {
 			translateManager.initialize(this, translateCacheManager, delayCheckSeconds);
 		}
 
+		// 初始化分页优化总记录数缓存
+		if (pageCountCache == null) {
+			pageCountCache = new DefaultPageCountCache();
+		}
+		pageCountCache.initialize(this);
+		PageOptimizeUtils.setPageCountCache(pageCountCache);
+
+		// 初始化查询结果缓存
+		if (queryResultCache == null) {
+			queryResultCache = "caffeine".equalsIgnoreCase(this.cacheType) ? new CaffeineQueryResultCache()
+					: new DefaultQueryResultCache();
+		}
+		queryResultCache.initialize(this);
+		resultCacheRegistry = new ResultCacheRegistry(queryResultCache);
+
+		// 初始化线程池管理
+		if (threadPoolManager == null) {
+			threadPoolManager = new DefaultThreadPoolManager();
+		}
+		threadPoolManager.initialize(this);
+
+		// 取随机记录抽样策略
+		if (randomSampleStrategy == null) {
+			randomSampleStrategy = new DefaultRandomSampleStrategy();
+		}
+
 		// 初始化实体对象管理器(此功能已经无实际意义,已经改为即用即加载而非提前加载)
 		entityManager.initialize(this);
 
@@ -279,6 +348,11 @@ public class SqlToyContext implements ApplicationContextAware {
 		// 初始化sql执行统计的基本参数
 		SqlExecuteStat.setDebug(this.debug);
 		SqlExecuteStat.setPrintSqlTimeoutMillis(this.printSqlTimeoutMillis);
+		// 初始化执行指标统计
+		if (metricsRegistry == null && SqlToyConstants.openMetrics()) {
+			metricsRegistry = new SqlMetricsRegistry(SqlToyConstants.getMetricsMaxSqlCount());
+		}
+		SqlExecuteStat.setMetricsRegistry(metricsRegistry);
 		logger.debug("sqltoy init complete!");
 	}
 
@@ -849,6 +923,20 @@ public class SqlToyContext implements ApplicationContextAware {
 		try {
 			scriptLoader.destroy();
 			translateManager.destroy();
+			if (pageCountCache != null) {
+				pageCountCache.destroy();
+			}
+			if (queryResultCache != null) {
+				queryResultCache.destroy();
+			}
+			// 关闭es连接池
+			for (ElasticEndpoint endpoint : elasticEndpoints.values()) {
+				endpoint.destroy();
+			}
+			HttpClientUtils.destroy();
+			if (threadPoolManager != null) {
+				threadPoolManager.destroy();
+			}
 		} catch (Exception e) {
 
 		}
@@ -867,4 +955,93 @@ public class SqlToyContext implements ApplicationContextAware {
 	public void setDataSourceSelector(DataSourceSelector dataSourceSelector) {
 		this.dataSourceSelector = dataSourceSelector;
 	}
+
+	/**
+	 * @return the pageCountCache
+	 */
+	public PageCountCache getPageCountCache() {
+		return pageCountCache;
+	}
+
+	/**
+	 * @param pageCountCache the pageCountCache to set
+	 */
+	public void setPageCountCache(PageCountCache pageCountCache) {
+		this.pageCountCache = pageCountCache;
+	}
+
+	/**
+	 * @return the queryResultCache
+	 */
+	public QueryResultCache getQueryResultCache() {
+		return queryResultCache;
+	}
+
+	/**
+	 * @param queryResultCache the queryResultCache to set
+	 */
+	public void setQueryResultCache(QueryResultCache queryResultCache) {
+		this.queryResultCache = queryResultCache;
+	}
+
+	/**
+	 * @TODO 获取查询结果缓存的运行状态(未经initialize初始化时采用默认本地缓存)
+	 * @return
+	 */
+	public ResultCacheRegistry getResultCacheRegistry() {
+		if (resultCacheRegistry == null) {
+			synchronized (this) {
+				if (resultCacheRegistry == null) {
+					if (queryResultCache == null) {
+						queryResultCache = new DefaultQueryResultCache();
+						queryResultCache.initialize(this);
+					}
+					resultCacheRegistry = new ResultCacheRegistry(queryResultCache);
+				}
+			}
+		}
+		return resultCacheRegistry;
+	}
+
+	/**
+	 * @return the threadPoolManager
+	 */
+	public ThreadPoolManager getThreadPoolManager() {
+		return threadPoolManager;
+	}
+
+	/**
+	 * @param threadPoolManager the threadPoolManager to set
+	 */
+	public void setThreadPoolManager(ThreadPoolManager threadPoolManager) {
+		this.threadPoolManager = threadPoolManager;
+	}
+
+	/**
+	 * @return the metricsRegistry
+	 */
+	public SqlMetricsRegistry getMetricsRegistry() {
+		return metricsRegistry;
+	}
+
+	/**
+	 * @param metricsRegistry the metricsRegistry to set
+	 */
+	public void setMetricsRegistry(SqlMetricsRegistry metricsRegistry) {
+		this.metricsRegistry = metricsRegistry;
+	}
+
+	/**
+	 * @return the randomSampleStrategy
+	 */
+	public RandomSampleStrategy getRandomSampleStrategy() {
+		return randomSampleStrategy;
+	}
+
+	/**
+	 * @param randomSampleStrategy the randomSampleStrategy to set
+	 */
+	public void setRandomSampleStrategy(RandomSampleStrategy randomSampleStrategy) {
+		this.randomSampleStrategy = randomSampleStrategy;
+	}
 }
@@ -0,0 +1,22 @@
+/**
+ * 
+ */
+package org.sagacity.sqltoy.callback;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 分块(chunk)批量保存、修改时每完成一块的进度反调,便于大数据量导入时记录进度或断点
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+@FunctionalInterface
+public interface ChunkProgressHandler {
+	/**
+	 * @todo 单块执行完成
+	 * @param chunkNo     块序号(从1开始)
+	 * @param chunkRows   本块记录数
+	 * @param totalRows   累计已处理记录数
+	 * @param affectRows  累计影响记录数
+	 */
+	public void process(int chunkNo, int chunkRows, long totalRows, long affectRows);
+}
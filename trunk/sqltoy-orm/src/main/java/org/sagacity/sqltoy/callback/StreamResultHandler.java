@@ -0,0 +1,23 @@
+/**
+ * 
+ */
+package org.sagacity.sqltoy.callback;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 流式查询逐行结果反调,每读取一行就完成缓存翻译、脱敏、格式化并映射成结果类型后交由开发者处理,
+ *              结果不在内存中累积,适用于数据导出、对账等大数据量场景
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-10
+ * @param <T>
+ */
+@FunctionalInterface
+public interface StreamResultHandler<T> {
+	/**
+	 * @todo 单行数据处理
+	 * @param row   已经映射成结果类型的单行数据
+	 * @param index 行号(从0开始)
+	 * @throws Exception
+	 */
+	public void consume(T row, int index) throws Exception;
+}
@@ -47,6 +47,7 @@ import org.slf4j.LoggerFactory;
  * @modify {Date:2018-9-6,优化增强业务主键配置策略}
  * @modify {Date:2019-8-10,优化字段的解析,避免在子类中定义属性覆盖了父类导致数据库字段失效现象,同时优化部分代码}
  * @modify {Date:2020-07-29,修复OneToMany解析时编写错误,由智客软件反馈 }
+ * @modify {Date:2021-05-20,增加按表名获取已经解析的实体信息,供count语句剔除无效left join使用}
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class EntityManager {
@@ -172,6 +173,28 @@ public class EntityManager {
 		return entityMeta;
 	}
 
+	/**
+	 * @TODO 根据表名获取已经解析过的实体信息(忽略大小写和schema),未解析或不存在返回null
+	 * @param tableName
+	 * @return
+	 */
+	public EntityMeta getEntityMetaByTable(String tableName) {
+		if (tableName == null) {
+			return null;
+		}
+		String table = tableName;
+		int dotIndex = table.lastIndexOf(".");
+		if (dotIndex != -1) {
+			table = table.substring(dotIndex + 1);
+		}
+		for (EntityMeta entityMeta : entitysMetaMap.values()) {
+			if (table.equalsIgnoreCase(entityMeta.getTableName())) {
+				return entityMeta;
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * @todo 初始化加载扫描entity类，解析实体类跟数据库之间的关系，并生成相应的数据库操作信息
 	 * @param sqlToyContext
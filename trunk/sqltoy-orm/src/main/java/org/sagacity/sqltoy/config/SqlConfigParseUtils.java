@@ -1,15 +1,20 @@
 package org.sagacity.sqltoy.config;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.sagacity.sqltoy.SqlToyConstants;
+import org.sagacity.sqltoy.config.model.SqlExecutePlan;
+import org.sagacity.sqltoy.config.model.SqlExecutePlan.PlanShape;
+import org.sagacity.sqltoy.config.model.SqlExecutePlan.PseudoBlock;
 import org.sagacity.sqltoy.config.model.SqlParamsModel;
 import org.sagacity.sqltoy.config.model.SqlToyConfig;
 import org.sagacity.sqltoy.config.model.SqlToyResult;
@@ -22,6 +27,7 @@ import org.sagacity.sqltoy.plugins.id.macro.MacroUtils;
 import org.sagacity.sqltoy.plugins.id.macro.impl.SqlLoop;
 import org.sagacity.sqltoy.utils.CollectionUtil;
 import org.sagacity.sqltoy.utils.DataSourceUtils;
+import org.sagacity.sqltoy.utils.MacroIfExpression;
 import org.sagacity.sqltoy.utils.MacroIfLogic;
 import org.sagacity.sqltoy.utils.ReservedWordsUtil;
 import org.sagacity.sqltoy.utils.SqlUtil;
@@ -55,6 +61,8 @@ import org.slf4j.LoggerFactory;
  * @modify {Date:2019-10-11 修复@if(:name==null) 不参与逻辑判断bug }
  * @modify {Date:2020-04-14 修复三个以上 in(?) 查询，在中间的in 参数值为null时 processIn方法处理错误}
  * @modify {Date:2020-09-23 增加@loop()组织sql功能,完善极端场景下动态组织sql的能力}
+ * @modify {Date:2021-05-06 增加sql预编译执行计划,#[]块、参数位置等一次解析,执行时按参数值直接组合sql}
+ * @modify {Date:2021-05-20 执行计划中@if()表达式加载时编译为MacroIfExpression,执行时直接按参数位置判断}
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class SqlConfigParseUtils {
@@ -121,6 +129,25 @@ public class SqlConfigParseUtils {
 	public final static Pattern WHERE_CLOSE_PATTERN = Pattern
 			.compile("^((order|group)\\s+by|(inner|left|right|full)\\s+join|having|union)\\W");
 
+	// sql中的问号临时替换的特殊字符
+	private final static String QUESTION_MARK = "#sqltoy_qsmark_placeholder#";
+
+	private final static String LOOP_MARK = "@loop";
+
+	// 单个sql执行计划中#[]取舍组合的最大缓存数量
+	private final static int MAX_PLAN_SHAPES = 512;
+
+	// sql预编译执行计划(按访问顺序淘汰,动态拼接条件值的sql不会挤占常用sql)
+	private static final Map<String, SqlExecutePlan> sqlPlans = new LinkedHashMap<String, SqlExecutePlan>(256, 0.75f,
+			true) {
+		private static final long serialVersionUID = 3178545364307163458L;
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, SqlExecutePlan> eldest) {
+			return size() > SqlToyConstants.getSqlPlanCacheSize();
+		}
+	};
+
 	// 利用宏模式来完成@loop循环处理
 	private static Map<String, AbstractMacro> macros = new HashMap<String, AbstractMacro>();
 
@@ -199,14 +226,32 @@ public class SqlConfigParseUtils {
 		else if (null == paramsArg || paramsArg.length == 0) {
 			return new SqlToyResult(queryStr, paramsArg);
 		}
+		// update 2021-05-06 优先通过预编译的执行计划处理,避免每次执行都进行正则匹配和字符串重组
+		SqlExecutePlan plan = getExecutePlan(queryStr);
+		if (plan != null && plan.isCompiled()) {
+			SqlToyResult sqlToyResult = processSqlByPlan(plan, paramsNamed, paramsValue);
+			if (sqlToyResult != null) {
+				return sqlToyResult;
+			}
+		}
+		return processSqlByParse(queryStr, paramsNamed, paramsValue);
+	}
+
+	/**
+	 * @todo 通过逐步解析sql的方式处理sql和条件参数(执行计划无法覆盖的场景，如@loop)
+	 * @param queryStr
+	 * @param paramsNamed
+	 * @param paramsValue
+	 * @return
+	 */
+	static SqlToyResult processSqlByParse(String queryStr, String[] paramsNamed, Object[] paramsValue) {
 		SqlToyResult sqlToyResult = new SqlToyResult();
 		// 是否:paramName 形式的参数模式
 		boolean isNamedArgs = StringUtil.matches(queryStr, SqlToyConstants.SQL_NAMED_PATTERN);
 		SqlParamsModel sqlParam;
-		// 将sql中的问号临时先替换成特殊字符
-		String questionMark = "#sqltoy_qsmark_placeholder#";
 		if (isNamedArgs) {
-			String sql = queryStr.replaceAll(ARG_REGEX, questionMark);
+			// 将sql中的问号临时先替换成特殊字符
+			String sql = queryStr.replaceAll(ARG_REGEX, QUESTION_MARK);
 			// update 2020-09-23 处理sql中的循环(提前处理循环，避免循环中存在其它条件参数)
 			sql = processLoop(sql, paramsNamed, paramsValue);
 			sqlParam = processNamedParamsQuery(sql);
@@ -231,11 +276,386 @@ public class SqlConfigParseUtils {
 		replaceNull(sqlToyResult, 0);
 		// 将特殊字符替换回问号
 		if (isNamedArgs) {
-			sqlToyResult.setSql(sqlToyResult.getSql().replaceAll(questionMark, ARG_NAME));
+			sqlToyResult.setSql(sqlToyResult.getSql().replaceAll(QUESTION_MARK, ARG_NAME));
+		}
+		return sqlToyResult;
+	}
+
+	/**
+	 * @todo 获取sql对应的预编译执行计划(sql为具体方言下的sql,因此执行计划天然按方言区分)
+	 * @param queryStr
+	 * @return
+	 */
+	private static SqlExecutePlan getExecutePlan(String queryStr) {
+		int maxSize = SqlToyConstants.getSqlPlanCacheSize();
+		if (maxSize <= 0 || queryStr == null) {
+			return null;
+		}
+		SqlExecutePlan plan;
+		synchronized (sqlPlans) {
+			plan = sqlPlans.get(queryStr);
+		}
+		if (plan == null) {
+			// 编译在锁外进行,并发编译同一sql时保留先登记的执行计划
+			plan = compileExecutePlan(queryStr);
+			synchronized (sqlPlans) {
+				SqlExecutePlan registed = sqlPlans.putIfAbsent(queryStr, plan);
+				if (registed != null) {
+					plan = registed;
+				}
+			}
+		}
+		return plan;
+	}
+
+	/**
+	 * @todo 将sql预编译成执行计划:完成:named参数替换,定位#[]块、@if()表达式及参数位置
+	 * @param queryStr
+	 * @return
+	 */
+	public static SqlExecutePlan compileExecutePlan(String queryStr) {
+		SqlExecutePlan plan = new SqlExecutePlan();
+		boolean isNamedArgs = StringUtil.matches(queryStr, SqlToyConstants.SQL_NAMED_PATTERN);
+		plan.setNamedArgs(isNamedArgs);
+		String sql = queryStr;
+		if (isNamedArgs) {
+			plan.setHasQuestionMark(queryStr.indexOf(ARG_NAME) != -1);
+			sql = queryStr.replaceAll(ARG_REGEX, QUESTION_MARK);
+			// @loop 需依据参数值组织sql,无法预编译
+			if (sql.toLowerCase().indexOf(LOOP_MARK) != -1) {
+				plan.setCompiled(false);
+				return plan;
+			}
+		}
+		SqlParamsModel sqlParam = processNamedParamsQuery(sql);
+		sql = sqlParam.getSql();
+		plan.setSql(sql);
+		plan.setParamsName(sqlParam.getParamsName());
+		// 定位每个?的位置,并判断是否是is (not) ?条件
+		List<Integer> markIndexes = new ArrayList<Integer>();
+		int index = sql.indexOf(ARG_NAME);
+		while (index != -1) {
+			markIndexes.add(index);
+			index = sql.indexOf(ARG_NAME, index + 1);
+		}
+		int paramCnt = markIndexes.size();
+		boolean[] isParams = new boolean[paramCnt];
+		int preIndex = 0;
+		for (int i = 0; i < paramCnt; i++) {
+			isParams[i] = StringUtil.matches(sql.substring(preIndex, markIndexes.get(i) + 1).toLowerCase(),
+					IS_PATTERN);
+			preIndex = markIndexes.get(i) + 1;
+		}
+		plan.setParamCnt(paramCnt);
+		plan.setIsParams(isParams);
+		// 提取全部#[]块的起止位置
+		List<int[]> blockMarks = new ArrayList<int[]>();
+		int beginMarkIndex = sql.indexOf(SQL_PSEUDO_START_MARK);
+		int endMarkIndex;
+		while (beginMarkIndex != -1) {
+			endMarkIndex = StringUtil.getSymMarkIndex(SQL_PSEUDO_SYM_START_MARK, SQL_PSEUDO_END_MARK, sql,
+					beginMarkIndex);
+			if (endMarkIndex == -1) {
+				plan.setCompiled(false);
+				return plan;
+			}
+			blockMarks.add(new int[] { beginMarkIndex, endMarkIndex });
+			beginMarkIndex = sql.indexOf(SQL_PSEUDO_START_MARK, beginMarkIndex + 1);
+		}
+		// 同processNullConditions一致,从最后一个#[开始处理
+		PseudoBlock[] blocks = new PseudoBlock[blockMarks.size()];
+		int[] blockMark;
+		PseudoBlock block;
+		for (int i = blockMarks.size() - 1; i >= 0; i--) {
+			blockMark = blockMarks.get(i);
+			block = new PseudoBlock(countBefore(markIndexes, blockMark[0]), countBefore(markIndexes, blockMark[1]));
+			if (!compileIfLogic(sql, block, blockMark, blockMarks, markIndexes)) {
+				plan.setCompiled(false);
+				return plan;
+			}
+			blocks[blockMarks.size() - 1 - i] = block;
+		}
+		plan.setBlocks(blocks);
+		return plan;
+	}
+
+	/**
+	 * @todo 提取#[]块中本层级的@if()逻辑表达式,内嵌#[]中的@if()由内嵌块自身处理
+	 * @param sql
+	 * @param block
+	 * @param blockMark
+	 * @param blockMarks
+	 * @param markIndexes
+	 * @return false 表示存在执行计划无法精确模拟的写法
+	 */
+	private static boolean compileIfLogic(String sql, PseudoBlock block, int[] blockMark, List<int[]> blockMarks,
+			List<Integer> markIndexes) {
+		Matcher matcher = IF_PATTERN.matcher(sql);
+		int ifStart = -1;
+		int start = blockMark[0] + SQL_PSEUDO_START_MARK_LENGTH;
+		while (matcher.find(start) && matcher.start() < blockMark[1]) {
+			start = matcher.end();
+			if (isInnerBlock(matcher.start(), blockMark, blockMarks)) {
+				continue;
+			}
+			// 本层级存在多个@if()
+			if (ifStart != -1) {
+				return false;
+			}
+			ifStart = matcher.start();
+		}
+		if (ifStart == -1) {
+			return true;
+		}
+		// @if()前面存在参数
+		if (countBefore(markIndexes, ifStart) != block.getBeginParamIndex()) {
+			return false;
+		}
+		int ifEnd = StringUtil.getSymMarkIndex("(", ")", sql, ifStart);
+		if (ifEnd == -1 || ifEnd > blockMark[1]) {
+			return false;
+		}
+		String evalStr = sql.substring(sql.indexOf("(", ifStart) + 1, ifEnd);
+		if (evalStr.indexOf(SQL_PSEUDO_START_MARK) != -1) {
+			return false;
+		}
+		block.setIfExpress(evalStr);
+		block.setIfParamCnt(StringUtil.matchCnt(evalStr, ARG_NAME_PATTERN));
+		// 加载时一次编译,比较数量与参数数量不一致的沿用逐次解析
+		MacroIfExpression ifLogic = MacroIfExpression.compile(evalStr);
+		if (ifLogic != null && ifLogic.getCompareCount() == block.getIfParamCnt()) {
+			block.setIfLogic(ifLogic);
+		}
+		return true;
+	}
+
+	/**
+	 * @todo 判断位置是否在当前#[]块的内嵌#[]块中
+	 * @param index
+	 * @param blockMark
+	 * @param blockMarks
+	 * @return
+	 */
+	private static boolean isInnerBlock(int index, int[] blockMark, List<int[]> blockMarks) {
+		for (int[] mark : blockMarks) {
+			if (mark[0] > blockMark[0] && mark[1] < blockMark[1] && index > mark[0] && index < mark[1]) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @todo 统计位置之前的参数数量
+	 * @param markIndexes
+	 * @param index
+	 * @return
+	 */
+	private static int countBefore(List<Integer> markIndexes, int index) {
+		int count = 0;
+		for (Integer markIndex : markIndexes) {
+			if (markIndex >= index) {
+				break;
+			}
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * @todo 依据执行计划处理sql和条件参数,只需根据参数值判定#[]块的取舍,无需再对sql进行正则匹配和字符串重组
+	 * @param plan
+	 * @param paramsNamed
+	 * @param paramsValue
+	 * @return null 表示执行计划无法处理
+	 */
+	private static SqlToyResult processSqlByPlan(SqlExecutePlan plan, String[] paramsNamed, Object[] paramsValue) {
+		Object[] values = matchNamedParam(plan.getParamsName(), paramsNamed, paramsValue);
+		if (values == null || values.length != plan.getParamCnt()) {
+			return null;
+		}
+		int paramCnt = values.length;
+		boolean[] removed = new boolean[paramCnt];
+		BitSet keeps = new BitSet(plan.getBlocks().length);
+		int[] blockParams = new int[paramCnt];
+		PseudoBlock block;
+		int blockParamCnt;
+		int from;
+		Object paramValue;
+		boolean isNull;
+		for (int i = 0; i < plan.getBlocks().length; i++) {
+			block = plan.getBlocks()[i];
+			blockParamCnt = 0;
+			for (int j = block.getBeginParamIndex(); j < block.getEndParamIndex(); j++) {
+				if (!removed[j]) {
+					blockParams[blockParamCnt++] = j;
+				}
+			}
+			// #[]中无参数,整体剔除
+			if (blockParamCnt == 0) {
+				continue;
+			}
+			from = 0;
+			if (block.getIfLogic() != null) {
+				if (!MacroIfLogic.evalLogic(block.getIfLogic(), values, blockParams, block.getIfParamCnt())) {
+					for (int k = 0; k < blockParamCnt; k++) {
+						removed[blockParams[k]] = true;
+					}
+					continue;
+				}
+				for (int k = 0; k < block.getIfParamCnt(); k++) {
+					removed[blockParams[k]] = true;
+				}
+				from = block.getIfParamCnt();
+			} else if (block.getIfExpress() != null) {
+				List logicParams = new ArrayList(block.getIfParamCnt());
+				for (int k = 0; k < block.getIfParamCnt(); k++) {
+					logicParams.add(values[blockParams[k]]);
+				}
+				if (!MacroIfLogic.evalLogic(block.getIfExpress(), logicParams, 0, block.getIfParamCnt())) {
+					for (int k = 0; k < blockParamCnt; k++) {
+						removed[blockParams[k]] = true;
+					}
+					continue;
+				}
+				for (int k = 0; k < block.getIfParamCnt(); k++) {
+					removed[blockParams[k]] = true;
+				}
+				from = block.getIfParamCnt();
+			}
+			isNull = false;
+			for (int k = from; k < blockParamCnt; k++) {
+				paramValue = values[blockParams[k]];
+				if (isNullCondition(paramValue, plan.getIsParams()[blockParams[k]])) {
+					isNull = true;
+					break;
+				}
+			}
+			if (isNull) {
+				for (int k = from; k < blockParamCnt; k++) {
+					removed[blockParams[k]] = true;
+				}
+			} else {
+				keeps.set(i);
+			}
+		}
+		PlanShape shape = plan.getShapes().get(keeps);
+		if (shape == null) {
+			shape = createPlanShape(plan, values, removed);
+			if (shape == null) {
+				return null;
+			}
+			if (plan.getShapes().size() < MAX_PLAN_SHAPES) {
+				plan.getShapes().putIfAbsent(keeps, shape);
+			}
+		}
+		int[] paramIndexes = shape.getParamIndexes();
+		Object[] realValues = new Object[paramIndexes.length];
+		for (int i = 0; i < paramIndexes.length; i++) {
+			realValues[i] = values[paramIndexes[i]];
+		}
+		SqlToyResult sqlToyResult = new SqlToyResult(shape.getSql(), realValues);
+		if (shape.isHasValue()) {
+			processValue(sqlToyResult);
+			processLike(sqlToyResult);
+		} else if (shape.getLikeIndexes() != null) {
+			String likeParamValue;
+			for (int likeIndex : shape.getLikeIndexes()) {
+				likeParamValue = (String) realValues[likeIndex];
+				if (null != likeParamValue && likeParamValue.indexOf("%") == -1) {
+					realValues[likeIndex] = "%".concat(likeParamValue).concat("%");
+				}
+			}
+		}
+		if (shape.isHasIn()) {
+			processIn(sqlToyResult);
+		}
+		replaceNull(sqlToyResult, 0);
+		if (plan.isHasQuestionMark()) {
+			sqlToyResult.setSql(sqlToyResult.getSql().replace(QUESTION_MARK, ARG_NAME));
 		}
 		return sqlToyResult;
 	}
 
+	/**
+	 * @todo 构造一种#[]取舍组合下的sql和参数位置(首次出现时借助逐步解析完成sql剔除,后续直接复用)
+	 * @param plan
+	 * @param values
+	 * @param removed
+	 * @return
+	 */
+	private static PlanShape createPlanShape(SqlExecutePlan plan, Object[] values, boolean[] removed) {
+		List<Integer> paramIndexes = new ArrayList<Integer>();
+		for (int i = 0; i < removed.length; i++) {
+			if (!removed[i]) {
+				paramIndexes.add(i);
+			}
+		}
+		SqlToyResult sqlToyResult = new SqlToyResult(plan.getSql(), values.clone());
+		processNullConditions(sqlToyResult);
+		// 执行计划模拟结果与逐步解析结果不一致,放弃执行计划
+		if (sqlToyResult.getParamsValue().length != paramIndexes.size()) {
+			logger.warn("sql执行计划与解析结果参数数量不一致,改为逐步解析模式:{}", plan.getSql());
+			plan.setCompiled(false);
+			return null;
+		}
+		String sql = sqlToyResult.getSql();
+		// 剔除@blank(?)对应的参数
+		if (!paramIndexes.isEmpty()) {
+			String lowerSql = sql.toLowerCase();
+			Matcher m = BLANK_PATTERN.matcher(lowerSql);
+			int blankCnt = 0;
+			while (m.find()) {
+				paramIndexes.remove(StringUtil.matchCnt(lowerSql.substring(0, m.start()), ARG_NAME_PATTERN) - blankCnt);
+				blankCnt++;
+			}
+			if (blankCnt > 0) {
+				sql = sql.replaceAll(BLANK_REGEX, BLANK);
+			}
+		}
+		int[] realIndexes = new int[paramIndexes.size()];
+		for (int i = 0; i < realIndexes.length; i++) {
+			realIndexes[i] = paramIndexes.get(i);
+		}
+		PlanShape shape = new PlanShape(sql, realIndexes);
+		if (realIndexes.length > 0) {
+			String lowerSql = sql.toLowerCase();
+			shape.setHasValue(StringUtil.matches(lowerSql, VALUE_PATTERN));
+			shape.setHasIn(StringUtil.matches(sql, IN_PATTERN));
+			if (!shape.isHasValue()) {
+				Matcher m = LIKE_PATTERN.matcher(lowerSql);
+				List<Integer> likeIndexes = new ArrayList<Integer>();
+				while (m.find()) {
+					likeIndexes.add(StringUtil.matchCnt(lowerSql.substring(0, m.start()), ARG_NAME_PATTERN));
+				}
+				if (!likeIndexes.isEmpty()) {
+					int[] likes = new int[likeIndexes.size()];
+					for (int i = 0; i < likes.length; i++) {
+						likes[i] = likeIndexes.get(i);
+					}
+					shape.setLikeIndexes(likes);
+				}
+			}
+		}
+		return shape;
+	}
+
+	/**
+	 * @todo 判断#[]中的参数值是否导致#[]被剔除
+	 * @param paramValue
+	 * @param sqlhasIs
+	 * @return
+	 */
+	private static boolean isNullCondition(Object paramValue, boolean sqlhasIs) {
+		// 1、参数值为null且非is 条件sql语句
+		// 2、is 条件sql语句值非null、true、false 剔除#[]部分内容，同时将参数从数组中剔除
+		return (null == paramValue && !sqlhasIs)
+				|| (null != paramValue && paramValue.getClass().isArray()
+						&& CollectionUtil.convertArray(paramValue).length == 0)
+				|| (null != paramValue && (paramValue instanceof Collection) && ((Collection) paramValue).isEmpty())
+				|| (sqlhasIs && null != paramValue && !(paramValue instanceof java.lang.Boolean));
+	}
+
 	/**
 	 * @todo 通过xml文件中的sql named参数跟给定的参数名称和数值进行匹配，构造sql参数 对应的数据值数组
 	 * @param sqlParamsName
@@ -460,14 +880,7 @@ public class SqlConfigParseUtils {
 							sqlhasIs = true;
 						}
 						paramValue = paramValuesList.get(i);
-						// 1、参数值为null且非is 条件sql语句
-						// 2、is 条件sql语句值非null、true、false 剔除#[]部分内容，同时将参数从数组中剔除
-						if ((null == paramValue && !sqlhasIs)
-								|| (null != paramValue && paramValue.getClass().isArray()
-										&& CollectionUtil.convertArray(paramValue).length == 0)
-								|| (null != paramValue && (paramValue instanceof Collection)
-										&& ((Collection) paramValue).isEmpty())
-								|| (sqlhasIs && null != paramValue && !(paramValue instanceof java.lang.Boolean))) {
+						if (isNullCondition(paramValue, sqlhasIs)) {
 							// sql中剔除最后部分的#[]内容
 							markContentSql = BLANK;
 							for (int k = paramCnt; k > 0; k--) {
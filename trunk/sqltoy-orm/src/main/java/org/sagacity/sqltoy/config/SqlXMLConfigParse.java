@@ -25,6 +25,7 @@ import org.sagacity.sqltoy.config.model.GroupMeta;
 import org.sagacity.sqltoy.config.model.LinkModel;
 import org.sagacity.sqltoy.config.model.NoSqlConfigModel;
 import org.sagacity.sqltoy.config.model.PageOptimize;
+import org.sagacity.sqltoy.config.model.ResultCache;
 import org.sagacity.sqltoy.config.model.ParamFilterModel;
 import org.sagacity.sqltoy.config.model.PivotModel;
 import org.sagacity.sqltoy.config.model.ReverseModel;
@@ -37,6 +38,7 @@ import org.sagacity.sqltoy.config.model.SummaryModel;
 import org.sagacity.sqltoy.config.model.Translate;
 import org.sagacity.sqltoy.config.model.UnpivotModel;
 import org.sagacity.sqltoy.dialect.utils.PageOptimizeUtils;
+import org.sagacity.sqltoy.dialect.utils.ResultCacheUtils;
 import org.sagacity.sqltoy.plugins.function.FunctionUtils;
 import org.sagacity.sqltoy.utils.BeanUtil;
 import org.sagacity.sqltoy.utils.DataSourceUtils;
@@ -62,6 +64,8 @@ import org.w3c.dom.NodeList;
  * @modify Date:2020-3-27 {增加rows-chain-relative 和 cols-chain-relative
  *         环比计算功能,并优化unpivot解析改用XMLUtil类}
  * @modify Date:2020-7-2 {支持外部集成命名空间前缀适配解析,如报表集成定义了前缀s:filters等}
+ * @modify Date:2021-05-20 {增加<cache>查询结果缓存配置解析,sql增加approximate-count属性}
+ * @modify Date:2021-05-20 {sharding-datasource和sharding-table增加scatter属性解析}
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class SqlXMLConfigParse {
@@ -343,6 +347,10 @@ public class SqlXMLConfigParse {
 		if (sqlElt.hasAttribute("union-all-count")) {
 			sqlToyConfig.setUnionAllCount(Boolean.parseBoolean(sqlElt.getAttribute("union-all-count")));
 		}
+		// 无条件单表查询时count取数据库统计信息中的近似记录数
+		if (sqlElt.hasAttribute("approximate-count")) {
+			sqlToyConfig.setApproximateCount(Boolean.parseBoolean(sqlElt.getAttribute("approximate-count")));
+		}
 		// 解析sql对应dataSource的sharding配置
 		parseShardingDataSource(sqlToyConfig, sqlElt.getElementsByTagName(local.concat("sharding-datasource")));
 
@@ -391,6 +399,26 @@ public class SqlXMLConfigParse {
 			sqlToyConfig.setPageOptimize(optimize);
 		}
 
+		// 查询结果缓存<cache alive-seconds="60" alive-max="200" tables="t1,t2"/>
+		nodeList = sqlElt.getElementsByTagName(local.concat("cache"));
+		if (nodeList.getLength() > 0) {
+			ResultCache resultCache = new ResultCache();
+			Element cacheElt = (Element) nodeList.item(0);
+			if (cacheElt.hasAttribute("alive-seconds")) {
+				resultCache.aliveSeconds(Integer.parseInt(cacheElt.getAttribute("alive-seconds")));
+			}
+			if (cacheElt.hasAttribute("alive-max")) {
+				resultCache.aliveMax(Integer.parseInt(cacheElt.getAttribute("alive-max")));
+			}
+			if (cacheElt.hasAttribute("tables")) {
+				resultCache.tables(trimParams(cacheElt.getAttribute("tables").split("\\,")));
+			} else {
+				// 解析时即确定涉及的表
+				resultCache.tables(ResultCacheUtils.parseQueryTables(sqlToyConfig.getSql(null)));
+			}
+			sqlToyConfig.setResultCache(resultCache);
+		}
+
 		// 解析翻译器
 		parseTranslate(sqlToyConfig, sqlElt.getElementsByTagName(local.concat("translate")));
 		// 解析link
@@ -625,6 +653,9 @@ public class SqlXMLConfigParse {
 			shardingConfig.setAliasNames(paramsAlias);
 		}
 		shardingConfig.setStrategy(shardingDataSource.getAttribute("strategy"));
+		if (shardingDataSource.hasAttribute("scatter")) {
+			shardingConfig.setScatter(Boolean.parseBoolean(shardingDataSource.getAttribute("scatter")));
+		}
 		sqlToyConfig.setDataSourceSharding(shardingConfig);
 	}
 
@@ -675,6 +706,9 @@ public class SqlXMLConfigParse {
 					shardingModel.setDecisionType(elt.getAttribute("decision-type"));
 				}
 				shardingModel.setStrategy(elt.getAttribute("strategy"));
+				if (elt.hasAttribute("scatter")) {
+					shardingModel.setScatter(Boolean.parseBoolean(elt.getAttribute("scatter")));
+				}
 				tablesShardings.add(shardingModel);
 			}
 		}
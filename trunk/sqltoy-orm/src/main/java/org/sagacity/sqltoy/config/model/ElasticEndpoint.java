@@ -10,18 +10,31 @@ import java.nio.charset.Charset;
 import java.security.KeyStore;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import javax.net.ssl.SSLContext;
 
 import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.config.ConnectionConfig;
+import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.socket.ConnectionSocketFactory;
+import org.apache.http.conn.socket.PlainConnectionSocketFactory;
+import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.impl.nio.client.HttpAsyncClientBuilder;
+import org.apache.http.protocol.HttpContext;
 import org.apache.http.ssl.SSLContextBuilder;
 import org.apache.http.ssl.SSLContexts;
 import org.elasticsearch.client.RestClient;
@@ -34,6 +47,7 @@ import org.sagacity.sqltoy.utils.StringUtil;
  * @description es配置
  * @author zhongxuchen
  * @version v1.0,Date:2018年2月5日
+ * @modify Date:2021-05-16 {单一地址模式改为长连接池化的httpClient,restClient增加连接池大小、keep-alive配置,并提供destroy关闭}
  */
 public class ElasticEndpoint implements Serializable {
 
@@ -44,6 +58,11 @@ public class ElasticEndpoint implements Serializable {
 
 	private RestClient restClient;
 
+	/**
+	 * 单一地址时使用的长连接池化httpClient
+	 */
+	private CloseableHttpClient httpClient;
+
 	public ElasticEndpoint(String url) {
 		this.url = url;
 	}
@@ -144,6 +163,21 @@ public class ElasticEndpoint implements Serializable {
 	 */
 	private boolean nativeSql = true;
 
+	/**
+	 * 连接池最大连接数
+	 */
+	private int maxConnTotal = 30;
+
+	/**
+	 * 每个节点(route)最大连接数
+	 */
+	private int maxConnPerRoute = 10;
+
+	/**
+	 * 空闲连接保持时长(秒),服务端未指定keep-alive时使用
+	 */
+	private int keepAliveSeconds = 60;
+
 	public String getSqlPath() {
 		return sqlPath;
 	}
@@ -284,10 +318,41 @@ public class ElasticEndpoint implements Serializable {
 		return restClient;
 	}
 
+	/**
+	 * @return the httpClient
+	 */
+	public CloseableHttpClient getHttpClient() {
+		return httpClient;
+	}
+
 	public boolean isNativeSql() {
 		return nativeSql;
 	}
 
+	public int getMaxConnTotal() {
+		return maxConnTotal;
+	}
+
+	public void setMaxConnTotal(int maxConnTotal) {
+		this.maxConnTotal = maxConnTotal;
+	}
+
+	public int getMaxConnPerRoute() {
+		return maxConnPerRoute;
+	}
+
+	public void setMaxConnPerRoute(int maxConnPerRoute) {
+		this.maxConnPerRoute = maxConnPerRoute;
+	}
+
+	public int getKeepAliveSeconds() {
+		return keepAliveSeconds;
+	}
+
+	public void setKeepAliveSeconds(int keepAliveSeconds) {
+		this.keepAliveSeconds = keepAliveSeconds;
+	}
+
 	/**
 	 * @return the keyStoreType
 	 */
@@ -359,18 +424,75 @@ public class ElasticEndpoint implements Serializable {
 	}
 
 	/**
-	 * @param restClient the restClient to set
+	 * @todo 初始化es客户端:多个地址使用restClient,单一地址使用httpClient,均为长连接池化
 	 */
 	public void initRestClient() {
 		if (StringUtil.isBlank(this.getUrl())) {
 			return;
 		}
-		if (restClient == null) {
-			// 替换全角字符
-			String[] urls = this.getUrl().replaceAll("\\；", ";").replaceAll("\\，", ",").replaceAll("\\;", ",")
-					.split("\\,");
+		if (restClient != null || httpClient != null) {
+			return;
+		}
+		// 替换全角字符
+		String[] urls = this.getUrl().replaceAll("\\；", ";").replaceAll("\\，", ",").replaceAll("\\;", ",")
+				.split("\\,");
+		final ConnectionConfig connectionConfig = ConnectionConfig.custom()
+				.setCharset(Charset.forName(this.charset == null ? "UTF-8" : this.charset)).build();
+		final RequestConfig requestConfig = RequestConfig.custom().setConnectionRequestTimeout(this.requestTimeout)
+				.setConnectTimeout(this.connectTimeout).setSocketTimeout(this.socketTimeout).build();
+		final CredentialsProvider credsProvider = new BasicCredentialsProvider();
+		final boolean hasCrede = (StringUtil.isNotBlank(this.getUsername()) && StringUtil.isNotBlank(getPassword()))
+				? true
+				: false;
+		// 是否ssl证书模式
+		final boolean hasSsl = StringUtil.isNotBlank(this.keyStore);
+		// 凭据提供器
+		if (hasCrede) {
+			credsProvider.setCredentials(AuthScope.ANY,
+					// 认证用户名和密码
+					new UsernamePasswordCredentials(getUsername(), getPassword()));
+		}
+		final boolean disableAuthCaching = !authCaching;
+		// 服务端未返回keep-alive时长时,按设定时长保持空闲连接
+		final long keepAliveMillis = keepAliveSeconds * 1000L;
+		final ConnectionKeepAliveStrategy keepAliveStrategy = new ConnectionKeepAliveStrategy() {
+			@Override
+			public long getKeepAliveDuration(HttpResponse response, HttpContext context) {
+				long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+				return (duration > 0) ? duration : keepAliveMillis;
+			}
+		};
+		try {
+			SSLContextBuilder sslBuilder = null;
+			if (hasSsl) {
+				KeyStore truststore = KeyStore
+						.getInstance(StringUtil.isBlank(keyStoreType) ? KeyStore.getDefaultType() : keyStoreType);
+				truststore.load(FileUtil.getFileInputStream(keyStore),
+						(keyStorePass == null) ? null : keyStorePass.toCharArray());
+				sslBuilder = SSLContexts.custom().loadTrustMaterial(truststore,
+						keyStoreSelfSign ? new TrustSelfSignedStrategy() : null);
+			}
+			final SSLContext sslContext = (sslBuilder == null) ? null : sslBuilder.build();
 			// 当为单一地址时使用httpclient直接调用
 			if (urls.length < 2) {
+				PoolingHttpClientConnectionManager connManager = (sslContext == null)
+						? new PoolingHttpClientConnectionManager()
+						: new PoolingHttpClientConnectionManager(RegistryBuilder.<ConnectionSocketFactory>create()
+								.register("http", PlainConnectionSocketFactory.getSocketFactory())
+								.register("https", new SSLConnectionSocketFactory(sslContext)).build());
+				connManager.setMaxTotal(maxConnTotal);
+				connManager.setDefaultMaxPerRoute(maxConnPerRoute);
+				connManager.setDefaultConnectionConfig(connectionConfig);
+				HttpClientBuilder clientBuilder = HttpClients.custom().setConnectionManager(connManager)
+						.setDefaultRequestConfig(requestConfig).setKeepAliveStrategy(keepAliveStrategy)
+						.evictExpiredConnections().evictIdleConnections(keepAliveMillis, TimeUnit.MILLISECONDS);
+				if (disableAuthCaching) {
+					clientBuilder.disableAuthCaching();
+				}
+				if (hasCrede) {
+					clientBuilder.setDefaultCredentialsProvider(credsProvider);
+				}
+				httpClient = clientBuilder.build();
 				return;
 			}
 			List<HttpHost> hosts = new ArrayList<HttpHost>();
@@ -384,63 +506,54 @@ public class ElasticEndpoint implements Serializable {
 					e.printStackTrace();
 				}
 			}
-			if (!hosts.isEmpty()) {
-				HttpHost[] hostAry = new HttpHost[hosts.size()];
-				hosts.toArray(hostAry);
-				RestClientBuilder builder = RestClient.builder(hostAry);
-				final ConnectionConfig connectionConfig = ConnectionConfig.custom()
-						.setCharset(Charset.forName(this.charset == null ? "UTF-8" : this.charset)).build();
-				RequestConfig requestConfig = RequestConfig.custom().setConnectionRequestTimeout(this.requestTimeout)
-						.setConnectTimeout(this.connectTimeout).setSocketTimeout(this.socketTimeout).build();
-				final CredentialsProvider credsProvider = new BasicCredentialsProvider();
-				final boolean hasCrede = (StringUtil.isNotBlank(this.getUsername())
-						&& StringUtil.isNotBlank(getPassword())) ? true : false;
-				//是否ssl证书模式
-				final boolean hasSsl = StringUtil.isNotBlank(this.keyStore);
-				// 凭据提供器
-				if (hasCrede) {
-					credsProvider.setCredentials(AuthScope.ANY,
-							// 认证用户名和密码
-							new UsernamePasswordCredentials(getUsername(), getPassword()));
-				}
-
-				SSLContextBuilder sslBuilder = null;
-				try {
+			if (hosts.isEmpty()) {
+				return;
+			}
+			HttpHost[] hostAry = new HttpHost[hosts.size()];
+			hosts.toArray(hostAry);
+			RestClientBuilder builder = RestClient.builder(hostAry);
+			builder.setHttpClientConfigCallback(new RestClientBuilder.HttpClientConfigCallback() {
+				@Override
+				public HttpAsyncClientBuilder customizeHttpClient(HttpAsyncClientBuilder httpClientBuilder) {
+					httpClientBuilder.setDefaultConnectionConfig(connectionConfig).setDefaultRequestConfig(requestConfig)
+							.setMaxConnTotal(maxConnTotal).setMaxConnPerRoute(maxConnPerRoute)
+							.setKeepAliveStrategy(keepAliveStrategy);
+					// 禁用抢占式身份验证
+					if (disableAuthCaching) {
+						httpClientBuilder.disableAuthCaching();
+					}
+					// 用户名密码
+					if (hasCrede) {
+						httpClientBuilder.setDefaultCredentialsProvider(credsProvider);
+					}
+					// 证书
 					if (hasSsl) {
-						KeyStore truststore = KeyStore.getInstance(
-								StringUtil.isBlank(keyStoreType) ? KeyStore.getDefaultType() : keyStoreType);
-						truststore.load(FileUtil.getFileInputStream(keyStore),
-								(keyStorePass == null) ? null : keyStorePass.toCharArray());
-						sslBuilder = SSLContexts.custom().loadTrustMaterial(truststore,
-								keyStoreSelfSign ? new TrustSelfSignedStrategy() : null);
+						httpClientBuilder.setSSLContext(sslContext);
 					}
-					final SSLContext sslContext = (sslBuilder == null) ? null : sslBuilder.build();
-					final boolean disableAuthCaching = !authCaching;
-					builder.setHttpClientConfigCallback(new RestClientBuilder.HttpClientConfigCallback() {
-						@Override
-						public HttpAsyncClientBuilder customizeHttpClient(HttpAsyncClientBuilder httpClientBuilder) {
-							httpClientBuilder.setDefaultConnectionConfig(connectionConfig)
-									.setDefaultRequestConfig(requestConfig);
-							// 禁用抢占式身份验证
-							if (disableAuthCaching) {
-								httpClientBuilder.disableAuthCaching();
-							}
-							// 用户名密码
-							if (hasCrede) {
-								httpClientBuilder.setDefaultCredentialsProvider(credsProvider);
-							}
-							// 证书
-							if (hasSsl) {
-								httpClientBuilder.setSSLContext(sslContext);
-							}
-							return httpClientBuilder;
-						}
-					});
-					restClient = builder.build();
-				} catch (Exception e) {
-					e.printStackTrace();
+					return httpClientBuilder;
 				}
+			});
+			restClient = builder.build();
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+	}
+
+	/**
+	 * @todo 关闭连接池
+	 */
+	public void destroy() {
+		try {
+			if (restClient != null) {
+				restClient.close();
+				restClient = null;
+			}
+			if (httpClient != null) {
+				httpClient.close();
+				httpClient = null;
 			}
+		} catch (Exception e) {
+			e.printStackTrace();
 		}
 	}
 
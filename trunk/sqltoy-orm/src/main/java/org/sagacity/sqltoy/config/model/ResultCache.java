@@ -0,0 +1,98 @@
+/**
+ *
+ */
+package org.sagacity.sqltoy.config.model;
+
+import java.io.Serializable;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 查询结果缓存配置,xml中<cache alive-seconds="60" alive-max="500" tables="t1,t2"/>或QueryExecutor.resultCache()
+ * @author zhongxuchen
+ * @version v1.0, Date:2021-05-20
+ */
+public class ResultCache implements Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = 3419478265410935236L;
+
+	/**
+	 * 缓存有效时长(秒)
+	 */
+	private int aliveSeconds = 60;
+
+	/**
+	 * 单个sql最多缓存的不同查询条件结果数量
+	 */
+	private int aliveMax = 200;
+
+	/**
+	 * 查询涉及的表(为空时从sql中解析),这些表通过sqltoy写入时缓存失效
+	 */
+	private String[] tables;
+
+	/**
+	 * @return the aliveSeconds
+	 */
+	public int getAliveSeconds() {
+		return aliveSeconds;
+	}
+
+	/**
+	 * @param aliveSeconds the aliveSeconds to set
+	 */
+	public ResultCache aliveSeconds(int aliveSeconds) {
+		// 不超过24小时
+		if (aliveSeconds > 3600 * 24) {
+			this.aliveSeconds = 3600 * 24;
+		} else {
+			this.aliveSeconds = aliveSeconds;
+		}
+		return this;
+	}
+
+	/**
+	 * @return the aliveMax
+	 */
+	public int getAliveMax() {
+		return aliveMax;
+	}
+
+	/**
+	 * @param aliveMax the aliveMax to set
+	 */
+	public ResultCache aliveMax(int aliveMax) {
+		// 最大不超过10000
+		if (aliveMax > 10000) {
+			this.aliveMax = 10000;
+		} else {
+			this.aliveMax = aliveMax;
+		}
+		return this;
+	}
+
+	/**
+	 * @return the tables
+	 */
+	public String[] getTables() {
+		return tables;
+	}
+
+	/**
+	 * @param tables the tables to set
+	 */
+	public ResultCache tables(String... tables) {
+		this.tables = tables;
+		return this;
+	}
+
+	/**
+	 * @TODO 是否有效(alive-seconds和alive-max都大于0)
+	 * @return
+	 */
+	public boolean isEnabled() {
+		return aliveSeconds > 0 && aliveMax > 0;
+	}
+}
@@ -10,6 +10,7 @@ import java.io.Serializable;
  * @description 分库分表策略配置
  * @author zhongxuchen
  * @version v1.0,Date:2017年11月5日
+ * @modify Date:2021-05-20 {增加scatter属性,支持查询分散到全部分片并行执行后归并}
  */
 public class ShardingStrategyConfig implements Serializable {
 
@@ -52,6 +53,11 @@ public class ShardingStrategyConfig implements Serializable {
 	 */
 	private String decisionType;
 
+	/**
+	 * 查询时是否分散到策略对应的全部(或按参数裁剪后的)库、表并行执行后归并结果
+	 */
+	private boolean scatter = false;
+
 	/**
 	 * @return the fields
 	 */
@@ -110,6 +116,14 @@ public class ShardingStrategyConfig implements Serializable {
 		this.type = type;
 	}
 
+	public boolean isScatter() {
+		return scatter;
+	}
+
+	public void setScatter(boolean scatter) {
+		this.scatter = scatter;
+	}
+
 	public String[] getTables() {
 		return tables;
 	}
@@ -0,0 +1,276 @@
+/**
+ *
+ */
+package org.sagacity.sqltoy.config.model;
+
+import java.io.Serializable;
+import java.util.BitSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sagacity.sqltoy.utils.MacroIfExpression;
+
+/**
+ * @project sagacity-sqltoy
+ * @description sql预编译后的执行计划:将:named参数替换、#[]块位置、@if()表达式、is条件等与参数值无关的解析一次完成,
+ *              执行时只需根据参数值判定#[]块的取舍,并按取舍组合(shape)直接获取对应的sql和参数位置
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-06
+ */
+public class SqlExecutePlan implements Serializable {
+
+	/**
+	 *
+	 */
+	private static final long serialVersionUID = -5627095471430542364L;
+
+	/**
+	 * 是否可以通过执行计划处理(如存在@loop等依赖参数值组织sql的场景则为false)
+	 */
+	private volatile boolean compiled = true;
+
+	/**
+	 * 是否:named 参数模式
+	 */
+	private boolean namedArgs;
+
+	/**
+	 * 原始sql中是否存在?符号(named模式下已经替换为占位符)
+	 */
+	private boolean hasQuestionMark;
+
+	/**
+	 * 替换:name为?的sql
+	 */
+	private String sql;
+
+	/**
+	 * sql中的参数名称数组
+	 */
+	private String[] paramsName;
+
+	/**
+	 * sql中?参数数量
+	 */
+	private int paramCnt;
+
+	/**
+	 * 每个?参数是否是 is (not) ? 形式的条件
+	 */
+	private boolean[] isParams;
+
+	/**
+	 * #[]块,按照处理顺序(从最后一个#[开始)排列
+	 */
+	private PseudoBlock[] blocks;
+
+	/**
+	 * #[]块取舍组合对应的sql和参数位置
+	 */
+	private ConcurrentHashMap<BitSet, PlanShape> shapes = new ConcurrentHashMap<BitSet, PlanShape>();
+
+	public boolean isCompiled() {
+		return compiled;
+	}
+
+	public void setCompiled(boolean compiled) {
+		this.compiled = compiled;
+	}
+
+	public boolean isNamedArgs() {
+		return namedArgs;
+	}
+
+	public void setNamedArgs(boolean namedArgs) {
+		this.namedArgs = namedArgs;
+	}
+
+	public boolean isHasQuestionMark() {
+		return hasQuestionMark;
+	}
+
+	public void setHasQuestionMark(boolean hasQuestionMark) {
+		this.hasQuestionMark = hasQuestionMark;
+	}
+
+	public String getSql() {
+		return sql;
+	}
+
+	public void setSql(String sql) {
+		this.sql = sql;
+	}
+
+	public String[] getParamsName() {
+		return paramsName;
+	}
+
+	public void setParamsName(String[] paramsName) {
+		this.paramsName = paramsName;
+	}
+
+	public int getParamCnt() {
+		return paramCnt;
+	}
+
+	public void setParamCnt(int paramCnt) {
+		this.paramCnt = paramCnt;
+	}
+
+	public boolean[] getIsParams() {
+		return isParams;
+	}
+
+	public void setIsParams(boolean[] isParams) {
+		this.isParams = isParams;
+	}
+
+	public PseudoBlock[] getBlocks() {
+		return blocks;
+	}
+
+	public void setBlocks(PseudoBlock[] blocks) {
+		this.blocks = blocks;
+	}
+
+	public ConcurrentHashMap<BitSet, PlanShape> getShapes() {
+		return shapes;
+	}
+
+	/**
+	 * @description #[]块的预解析结果
+	 */
+	public static class PseudoBlock implements Serializable {
+		private static final long serialVersionUID = 4361260960567043652L;
+
+		/**
+		 * 块内第一个参数的位置
+		 */
+		private int beginParamIndex;
+
+		/**
+		 * 块结束后第一个参数的位置(不含)
+		 */
+		private int endParamIndex;
+
+		/**
+		 * @if()中的表达式
+		 */
+		private String ifExpress;
+
+		/**
+		 * @if()预编译的表达式(无法编译时为null,执行时按ifExpress解析)
+		 */
+		private MacroIfExpression ifLogic;
+
+		/**
+		 * @if()中的参数数量
+		 */
+		private int ifParamCnt = 0;
+
+		public PseudoBlock(int beginParamIndex, int endParamIndex) {
+			this.beginParamIndex = beginParamIndex;
+			this.endParamIndex = endParamIndex;
+		}
+
+		public int getBeginParamIndex() {
+			return beginParamIndex;
+		}
+
+		public int getEndParamIndex() {
+			return endParamIndex;
+		}
+
+		public String getIfExpress() {
+			return ifExpress;
+		}
+
+		public void setIfExpress(String ifExpress) {
+			this.ifExpress = ifExpress;
+		}
+
+		public MacroIfExpression getIfLogic() {
+			return ifLogic;
+		}
+
+		public void setIfLogic(MacroIfExpression ifLogic) {
+			this.ifLogic = ifLogic;
+		}
+
+		public int getIfParamCnt() {
+			return ifParamCnt;
+		}
+
+		public void setIfParamCnt(int ifParamCnt) {
+			this.ifParamCnt = ifParamCnt;
+		}
+	}
+
+	/**
+	 * @description 某种#[]块取舍组合下已经完成null条件剔除和@blank()处理的sql以及参数位置
+	 */
+	public static class PlanShape implements Serializable {
+		private static final long serialVersionUID = -1813458823937150214L;
+
+		/**
+		 * 已经剔除#[]和@blank()的sql
+		 */
+		private String sql;
+
+		/**
+		 * 保留下来的参数在原始参数数组中的位置
+		 */
+		private int[] paramIndexes;
+
+		/**
+		 * like ? 参数在保留参数中的位置
+		 */
+		private int[] likeIndexes;
+
+		/**
+		 * 存在@value(?)
+		 */
+		private boolean hasValue;
+
+		/**
+		 * 存在 in (?)
+		 */
+		private boolean hasIn;
+
+		public PlanShape(String sql, int[] paramIndexes) {
+			this.sql = sql;
+			this.paramIndexes = paramIndexes;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public int[] getParamIndexes() {
+			return paramIndexes;
+		}
+
+		public int[] getLikeIndexes() {
+			return likeIndexes;
+		}
+
+		public void setLikeIndexes(int[] likeIndexes) {
+			this.likeIndexes = likeIndexes;
+		}
+
+		public boolean isHasValue() {
+			return hasValue;
+		}
+
+		public void setHasValue(boolean hasValue) {
+			this.hasValue = hasValue;
+		}
+
+		public boolean isHasIn() {
+			return hasIn;
+		}
+
+		public void setHasIn(boolean hasIn) {
+			this.hasIn = hasIn;
+		}
+	}
+}
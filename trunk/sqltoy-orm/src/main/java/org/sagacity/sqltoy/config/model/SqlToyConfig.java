@@ -132,6 +132,11 @@ public class SqlToyConfig implements Serializable, java.lang.Cloneable {
 	 */
 	private boolean isUnionAllCount = false;
 
+	/**
+	 * 无条件单表查询时count取数据库统计信息中的近似记录数
+	 */
+	private boolean approximateCount = false;
+
 	/**
 	 * 参数名称,按照参数出现的顺序排列
 	 */
@@ -187,6 +192,12 @@ public class SqlToyConfig implements Serializable, java.lang.Cloneable {
 	 */
 	private PageOptimize pageOptimize;
 
+	// <cache alive-seconds="60" alive-max="200" tables="t1,t2"/>
+	/**
+	 * 查询结果缓存
+	 */
+	private ResultCache resultCache;
+
 	/**
 	 * debug模式下是否打印，通过sql注释中增加#not_print#或 #not_debug#进行关闭
 	 */
@@ -287,6 +298,20 @@ public class SqlToyConfig implements Serializable, java.lang.Cloneable {
 		this.isUnionAllCount = isUnionAllCount;
 	}
 
+	/**
+	 * @return the approximateCount
+	 */
+	public boolean isApproximateCount() {
+		return approximateCount;
+	}
+
+	/**
+	 * @param approximateCount the approximateCount to set
+	 */
+	public void setApproximateCount(boolean approximateCount) {
+		this.approximateCount = approximateCount;
+	}
+
 	/**
 	 * @return the paramsName
 	 */
@@ -320,6 +345,10 @@ public class SqlToyConfig implements Serializable, java.lang.Cloneable {
 		return this.filters;
 	}
 
+	public void setFilters(List<ParamFilterModel> filters) {
+		this.filters = filters;
+	}
+
 	/**
 	 * @return the translateMap
 	 */
@@ -671,6 +700,20 @@ public class SqlToyConfig implements Serializable, java.lang.Cloneable {
 		this.pageOptimize = pageOptimize;
 	}
 
+	/**
+	 * @return the resultCache
+	 */
+	public ResultCache getResultCache() {
+		return resultCache;
+	}
+
+	/**
+	 * @param resultCache the resultCache to set
+	 */
+	public void setResultCache(ResultCache resultCache) {
+		this.resultCache = resultCache;
+	}
+
 	public ShardingStrategyConfig getDataSourceSharding() {
 		return dataSourceSharding;
 	}
@@ -0,0 +1,174 @@
+package org.sagacity.sqltoy.dao;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Function;
+
+import org.sagacity.sqltoy.executor.QueryExecutor;
+import org.sagacity.sqltoy.model.PaginationModel;
+import org.sagacity.sqltoy.model.QueryResult;
+
+/**
+ * @project sagacity-sqltoy
+ * @description SqlToyLazyDao的异步调用门面,每个方法立即返回CompletableFuture,便于多个相互独立的查询组合执行
+ *              <p>
+ *              事务和数据源规则:
+ *              <li>1、异步任务在线程池线程中执行,不参与调用线程的spring事务,每次调用单独获取连接并在完成后归还</li>
+ *              <li>2、调用线程存在事务时查询看不到该事务中未提交的数据</li>
+ *              <li>3、调用线程存在事务时提交异步写操作直接抛出异常(写操作会独立提交,事务回滚时无法撤销)</li>
+ *              <li>4、数据源按sql配置、DataSourceSelector以及dao默认数据源在执行线程中确定,基于ThreadLocal的路由数据源不会传递,
+ *              需通过QueryExecutor.dataSource()显式指定</li>
+ *              </p>
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+@SuppressWarnings("rawtypes")
+public interface SqlToyAsyncDao {
+	/**
+	 * @TODO 设置执行异步任务的线程池,默认使用sqltoy的async线程池(sqltoy.executor.async.threads,可开启虚拟线程)
+	 * @param executor
+	 */
+	public void setExecutor(Executor executor);
+
+	/**
+	 * @TODO 异步执行任意查询操作
+	 * @param <T>
+	 * @param query
+	 * @return
+	 */
+	public <T> CompletableFuture<T> supplyAsync(Function<SqlToyLazyDao, T> query);
+
+	/**
+	 * @TODO 异步执行任意写操作(调用线程存在事务时抛出异常)
+	 * @param <T>
+	 * @param operation
+	 * @return
+	 */
+	public <T> CompletableFuture<T> executeAsync(Function<SqlToyLazyDao, T> operation);
+
+	/**
+	 * @TODO 异步查询
+	 * @param <T>
+	 * @param sqlOrSqlId
+	 * @param paramsMap
+	 * @param voClass
+	 * @return
+	 */
+	public <T> CompletableFuture<List<T>> findAsync(final String sqlOrSqlId, final Map<String, Object> paramsMap,
+			final Class<T> voClass);
+
+	/**
+	 * @TODO 异步查询
+	 * @param <T>
+	 * @param sqlOrSqlId
+	 * @param paramsNamed
+	 * @param paramsValue
+	 * @param voClass
+	 * @return
+	 */
+	public <T> CompletableFuture<List<T>> findAsync(final String sqlOrSqlId, final String[] paramsNamed,
+			final Object[] paramsValue, final Class<T> voClass);
+
+	/**
+	 * @TODO 异步查询
+	 * @param queryExecutor
+	 * @return
+	 */
+	public CompletableFuture<QueryResult> findAsync(final QueryExecutor queryExecutor);
+
+	/**
+	 * @TODO 异步分页查询
+	 * @param <T>
+	 * @param paginationModel
+	 * @param sqlOrSqlId
+	 * @param paramsMap
+	 * @param voClass
+	 * @return
+	 */
+	public <T> CompletableFuture<PaginationModel<T>> findPageAsync(final PaginationModel paginationModel,
+			final String sqlOrSqlId, final Map<String, Object> paramsMap, final Class<T> voClass);
+
+	/**
+	 * @TODO 异步分页查询
+	 * @param paginationModel
+	 * @param queryExecutor
+	 * @return
+	 */
+	public CompletableFuture<QueryResult> findPageAsync(final PaginationModel paginationModel,
+			final QueryExecutor queryExecutor);
+
+	/**
+	 * @TODO 异步取top记录
+	 * @param <T>
+	 * @param sqlOrSqlId
+	 * @param paramsMap
+	 * @param voClass
+	 * @param topSize
+	 * @return
+	 */
+	public <T> CompletableFuture<List<T>> findTopAsync(final String sqlOrSqlId, final Map<String, Object> paramsMap,
+			final Class<T> voClass, final double topSize);
+
+	/**
+	 * @TODO 异步获取记录数量
+	 * @param sqlOrSqlId
+	 * @param paramsMap
+	 * @return
+	 */
+	public CompletableFuture<Long> getCountAsync(final String sqlOrSqlId, final Map<String, Object> paramsMap);
+
+	/**
+	 * @TODO 异步根据主键加载对象
+	 * @param <T>
+	 * @param entity
+	 * @return
+	 */
+	public <T extends Serializable> CompletableFuture<T> loadAsync(final T entity);
+
+	/**
+	 * @TODO 异步通过sql加载单条记录
+	 * @param <T>
+	 * @param sqlOrSqlId
+	 * @param paramsMap
+	 * @param voClass
+	 * @return
+	 */
+	public <T> CompletableFuture<T> loadBySqlAsync(final String sqlOrSqlId, final Map<String, Object> paramsMap,
+			final Class<T> voClass);
+
+	/**
+	 * @TODO 异步保存对象(独立提交)
+	 * @param entity
+	 * @return
+	 */
+	public CompletableFuture<Object> saveAsync(final Serializable entity);
+
+	/**
+	 * @TODO 异步批量保存对象(独立提交)
+	 * @param <T>
+	 * @param entities
+	 * @return
+	 */
+	public <T extends Serializable> CompletableFuture<Long> saveAllAsync(final List<T> entities);
+
+	/**
+	 * @TODO 异步执行修改sql(独立提交)
+	 * @param sqlOrSqlId
+	 * @param paramsMap
+	 * @return
+	 */
+	public CompletableFuture<Long> executeSqlAsync(final String sqlOrSqlId, final Map<String, Object> paramsMap);
+
+	/**
+	 * @TODO 异步执行修改sql(独立提交)
+	 * @param sqlOrSqlId
+	 * @param paramsNamed
+	 * @param paramsValue
+	 * @return
+	 */
+	public CompletableFuture<Long> executeSqlAsync(final String sqlOrSqlId, final String[] paramsNamed,
+			final Object[] paramsValue);
+}
@@ -12,6 +12,7 @@ import javax.sql.DataSource;
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.callback.InsertRowCallbackHandler;
 import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
+import org.sagacity.sqltoy.callback.StreamResultHandler;
 import org.sagacity.sqltoy.callback.UpdateRowHandler;
 import org.sagacity.sqltoy.config.model.EntityMeta;
 import org.sagacity.sqltoy.config.model.SqlToyConfig;
@@ -49,6 +50,7 @@ import org.sagacity.sqltoy.translate.AbstractTranslateHandler;
  * @modify Date:2017-11-28 {增加link链式操作功能,开放全部DaoSupport中的功能}
  * @modify Date:2020-4-23 {对分页查询增加泛型支持}
  * @modify Date:2020-10-20 {增加loadAll(list,lock)}
+ * @modify Date:2021-05-20 {增加async()异步调用门面}
  */
 @SuppressWarnings({ "rawtypes" })
 public interface SqlToyLazyDao {
@@ -434,6 +436,15 @@ public interface SqlToyLazyDao {
 	 */
 	public QueryResult findByQuery(final QueryExecutor query);
 
+	/**
+	 * @TODO 流式查询,逐行完成缓存翻译、脱敏、格式化并映射成resultType后交给handler处理,适用于大数据量导出、对账等
+	 * @param <T>
+	 * @param query               可通过fetchSize设置每次从数据库提取的记录数量
+	 * @param streamResultHandler
+	 * @return 处理的记录数量
+	 */
+	public <T> Long streamByQuery(final QueryExecutor query, final StreamResultHandler<T> streamResultHandler);
+
 	/**
 	 * @todo 通过对象传参数,简化paramName[],paramValue[] 模式传参
 	 * @param <T>
@@ -915,4 +926,11 @@ public interface SqlToyLazyDao {
 	 * @return
 	 */
 	public Batch batch();
+
+	/**
+	 * @TODO 提供返回CompletableFuture的异步调用门面(不参与调用线程的事务)
+	 * 
+	 * @return
+	 */
+	public SqlToyAsyncDao async();
 }
@@ -0,0 +1,163 @@
+package org.sagacity.sqltoy.dao.impl;
+
+import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import org.sagacity.sqltoy.SqlExecuteStat;
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.dao.SqlToyAsyncDao;
+import org.sagacity.sqltoy.dao.SqlToyLazyDao;
+import org.sagacity.sqltoy.exception.DataAccessException;
+import org.sagacity.sqltoy.executor.QueryExecutor;
+import org.sagacity.sqltoy.model.PaginationModel;
+import org.sagacity.sqltoy.model.QueryResult;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @project sagacity-sqltoy
+ * @description SqlToyLazyDao异步调用门面的默认实现,任务提交到sqltoy共享的async有界线程池(或自定义线程池)执行
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+@SuppressWarnings("rawtypes")
+public class SqlToyAsyncDaoImpl implements SqlToyAsyncDao {
+	private final SqlToyLazyDao sqlToyLazyDao;
+
+	private final SqlToyContext sqlToyContext;
+
+	/**
+	 * 自定义线程池(可能在其他线程中设置,volatile保证提交任务时可见)
+	 */
+	private volatile Executor executor;
+
+	public SqlToyAsyncDaoImpl(SqlToyLazyDao sqlToyLazyDao, SqlToyContext sqlToyContext) {
+		this.sqlToyLazyDao = sqlToyLazyDao;
+		this.sqlToyContext = sqlToyContext;
+	}
+
+	@Override
+	public void setExecutor(Executor executor) {
+		this.executor = executor;
+	}
+
+	@Override
+	public <T> CompletableFuture<T> supplyAsync(Function<SqlToyLazyDao, T> query) {
+		return submit(query, false);
+	}
+
+	@Override
+	public <T> CompletableFuture<T> executeAsync(Function<SqlToyLazyDao, T> operation) {
+		return submit(operation, true);
+	}
+
+	@Override
+	public <T> CompletableFuture<List<T>> findAsync(String sqlOrSqlId, Map<String, Object> paramsMap,
+			Class<T> voClass) {
+		return submit((dao) -> dao.findBySql(sqlOrSqlId, paramsMap, voClass), false);
+	}
+
+	@Override
+	public <T> CompletableFuture<List<T>> findAsync(String sqlOrSqlId, String[] paramsNamed, Object[] paramsValue,
+			Class<T> voClass) {
+		return submit((dao) -> dao.findBySql(sqlOrSqlId, paramsNamed, paramsValue, voClass), false);
+	}
+
+	@Override
+	public CompletableFuture<QueryResult> findAsync(QueryExecutor queryExecutor) {
+		return submit((dao) -> dao.findByQuery(queryExecutor), false);
+	}
+
+	@Override
+	public <T> CompletableFuture<PaginationModel<T>> findPageAsync(PaginationModel paginationModel, String sqlOrSqlId,
+			Map<String, Object> paramsMap, Class<T> voClass) {
+		return submit((dao) -> dao.findPageBySql(paginationModel, sqlOrSqlId, paramsMap, voClass), false);
+	}
+
+	@Override
+	public CompletableFuture<QueryResult> findPageAsync(PaginationModel paginationModel, QueryExecutor queryExecutor) {
+		return submit((dao) -> dao.findPageByQuery(paginationModel, queryExecutor), false);
+	}
+
+	@Override
+	public <T> CompletableFuture<List<T>> findTopAsync(String sqlOrSqlId, Map<String, Object> paramsMap,
+			Class<T> voClass, double topSize) {
+		return submit((dao) -> dao.findTopBySql(sqlOrSqlId, paramsMap, voClass, topSize), false);
+	}
+
+	@Override
+	public CompletableFuture<Long> getCountAsync(String sqlOrSqlId, Map<String, Object> paramsMap) {
+		return submit((dao) -> dao.getCount(sqlOrSqlId, paramsMap), false);
+	}
+
+	@Override
+	public <T extends Serializable> CompletableFuture<T> loadAsync(T entity) {
+		return submit((dao) -> dao.load(entity), false);
+	}
+
+	@Override
+	public <T> CompletableFuture<T> loadBySqlAsync(String sqlOrSqlId, Map<String, Object> paramsMap,
+			Class<T> voClass) {
+		return submit((dao) -> dao.loadBySql(sqlOrSqlId, paramsMap, voClass), false);
+	}
+
+	@Override
+	public CompletableFuture<Object> saveAsync(Serializable entity) {
+		return submit((dao) -> dao.save(entity), true);
+	}
+
+	@Override
+	public <T extends Serializable> CompletableFuture<Long> saveAllAsync(List<T> entities) {
+		return submit((dao) -> dao.saveAll(entities), true);
+	}
+
+	@Override
+	public CompletableFuture<Long> executeSqlAsync(String sqlOrSqlId, Map<String, Object> paramsMap) {
+		return submit((dao) -> dao.executeSql(sqlOrSqlId, paramsMap), true);
+	}
+
+	@Override
+	public CompletableFuture<Long> executeSqlAsync(String sqlOrSqlId, String[] paramsNamed, Object[] paramsValue) {
+		return submit((dao) -> dao.executeSql(sqlOrSqlId, paramsNamed, paramsValue), true);
+	}
+
+	/**
+	 * @TODO 提交异步任务,线程池饱和拒绝时返回异常完成的CompletableFuture
+	 * @param <T>
+	 * @param operation
+	 * @param isWrite
+	 * @return
+	 */
+	private <T> CompletableFuture<T> submit(final Function<SqlToyLazyDao, T> operation, boolean isWrite) {
+		// 写操作在异步线程中独立提交,调用线程的事务回滚无法撤销,因此不允许在事务中提交
+		if (isWrite && TransactionSynchronizationManager.isActualTransactionActive()) {
+			throw new DataAccessException("当前线程存在事务,异步写操作不会参与该事务,请在事务外调用或改用同步方法!");
+		}
+		Executor realExecutor = executor;
+		if (realExecutor == null) {
+			realExecutor = sqlToyContext.getThreadPoolManager().getExecutor(ThreadPoolManager.ASYNC);
+		}
+		try {
+			// 异步线程沿用调用者的写操作范围(读写分离写后读主库)
+			final AtomicLong writeScope = SqlExecuteStat.getWriteScope(false);
+			return CompletableFuture.supplyAsync(() -> {
+				AtomicLong origScope = SqlExecuteStat.bindWriteScope(writeScope);
+				try {
+					return operation.apply(sqlToyLazyDao);
+				} finally {
+					SqlExecuteStat.bindWriteScope(origScope);
+				}
+			}, realExecutor);
+		} catch (RejectedExecutionException e) {
+			CompletableFuture<T> result = new CompletableFuture<T>();
+			result.completeExceptionally(e);
+			return result;
+		}
+	}
+}
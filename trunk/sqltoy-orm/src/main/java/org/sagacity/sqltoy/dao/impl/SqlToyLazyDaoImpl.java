@@ -12,10 +12,12 @@ import javax.sql.DataSource;
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.callback.InsertRowCallbackHandler;
 import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
+import org.sagacity.sqltoy.callback.StreamResultHandler;
 import org.sagacity.sqltoy.callback.UpdateRowHandler;
 import org.sagacity.sqltoy.config.model.EntityMeta;
 import org.sagacity.sqltoy.config.model.SqlToyConfig;
 import org.sagacity.sqltoy.config.model.SqlType;
+import org.sagacity.sqltoy.dao.SqlToyAsyncDao;
 import org.sagacity.sqltoy.dao.SqlToyLazyDao;
 import org.sagacity.sqltoy.executor.QueryExecutor;
 import org.sagacity.sqltoy.link.Batch;
@@ -53,6 +55,10 @@ import org.springframework.stereotype.Repository;
 @SuppressWarnings({ "rawtypes" })
 @Repository("sqlToyLazyDao")
 public class SqlToyLazyDaoImpl extends BaseDaoSupport implements SqlToyLazyDao {
+	/**
+	 * 异步调用门面
+	 */
+	private volatile SqlToyAsyncDao asyncDao;
 
 	/*
 	 * (non-Javadoc)
@@ -627,6 +633,17 @@ public class SqlToyLazyDaoImpl extends BaseDaoSupport implements SqlToyLazyDao {
 		return super.findByQuery(queryExecutor);
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.sagacity.sqltoy.dao.SqlToyLazyDao#streamByQuery(org.sagacity.sqltoy
+	 * .executor.QueryExecutor, org.sagacity.sqltoy.callback.StreamResultHandler)
+	 */
+	@Override
+	public <T> Long streamByQuery(QueryExecutor queryExecutor, StreamResultHandler<T> streamResultHandler) {
+		return super.streamByQuery(queryExecutor, streamResultHandler);
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -839,6 +856,19 @@ public class SqlToyLazyDaoImpl extends BaseDaoSupport implements SqlToyLazyDao {
 		return super.batch();
 	}
 
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.sagacity.sqltoy.dao.SqlToyLazyDao#async()
+	 */
+	@Override
+	public SqlToyAsyncDao async() {
+		if (asyncDao == null) {
+			asyncDao = new SqlToyAsyncDaoImpl(this, sqlToyContext);
+		}
+		return asyncDao;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
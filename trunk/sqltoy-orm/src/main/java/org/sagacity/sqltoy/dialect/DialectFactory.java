@@ -6,9 +6,14 @@ import java.sql.Connection;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 import java.util.regex.Pattern;
 
 import javax.sql.DataSource;
@@ -19,11 +24,14 @@ import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.callback.AbstractDataSourceCallbackHandler;
 import org.sagacity.sqltoy.callback.InsertRowCallbackHandler;
 import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
+import org.sagacity.sqltoy.callback.StreamResultHandler;
 import org.sagacity.sqltoy.callback.UpdateRowHandler;
 import org.sagacity.sqltoy.config.SqlConfigParseUtils;
 import org.sagacity.sqltoy.config.model.EntityMeta;
 import org.sagacity.sqltoy.config.model.FieldMeta;
 import org.sagacity.sqltoy.config.model.PageOptimize;
+import org.sagacity.sqltoy.config.model.ResultCache;
+import org.sagacity.sqltoy.config.model.ParamFilterModel;
 import org.sagacity.sqltoy.config.model.SqlParamsModel;
 import org.sagacity.sqltoy.config.model.SqlToyConfig;
 import org.sagacity.sqltoy.config.model.SqlToyResult;
@@ -43,25 +51,37 @@ import org.sagacity.sqltoy.dialect.impl.SqlServerDialect;
 import org.sagacity.sqltoy.dialect.impl.SqliteDialect;
 import org.sagacity.sqltoy.dialect.impl.SybaseIQDialect;
 import org.sagacity.sqltoy.dialect.impl.TidbDialect;
+import org.sagacity.sqltoy.dialect.utils.BulkLoadUtils;
 import org.sagacity.sqltoy.dialect.utils.DialectUtils;
+import org.sagacity.sqltoy.dialect.utils.KeysetPageUtils;
 import org.sagacity.sqltoy.dialect.utils.PageOptimizeUtils;
+import org.sagacity.sqltoy.dialect.utils.RandomSampleUtils;
+import org.sagacity.sqltoy.dialect.utils.ResultCacheUtils;
 import org.sagacity.sqltoy.exception.DataAccessException;
 import org.sagacity.sqltoy.executor.QueryExecutor;
 import org.sagacity.sqltoy.executor.UniqueExecutor;
 import org.sagacity.sqltoy.model.LockMode;
+import org.sagacity.sqltoy.model.NamedValuesModel;
+import org.sagacity.sqltoy.model.PaginationModel;
 import org.sagacity.sqltoy.model.QueryExecutorExtend;
 import org.sagacity.sqltoy.model.QueryResult;
 import org.sagacity.sqltoy.model.ShardingModel;
+import org.sagacity.sqltoy.model.ShardingTargetModel;
 import org.sagacity.sqltoy.model.SqlExecuteTrace;
 import org.sagacity.sqltoy.model.StoreResult;
 import org.sagacity.sqltoy.model.TreeTableModel;
+import org.sagacity.sqltoy.plugins.sampling.RandomSampleStrategy;
+import org.sagacity.sqltoy.plugins.sharding.ShardingQueryUtils;
+import org.sagacity.sqltoy.plugins.sharding.ShardingQueryUtils.MergeModel;
 import org.sagacity.sqltoy.plugins.sharding.ShardingUtils;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolManager;
 import org.sagacity.sqltoy.utils.BeanUtil;
 import org.sagacity.sqltoy.utils.CollectionUtil;
 import org.sagacity.sqltoy.utils.DataSourceUtils;
 import org.sagacity.sqltoy.utils.DataSourceUtils.DBType;
 import org.sagacity.sqltoy.utils.ParallelUtils;
 import org.sagacity.sqltoy.utils.ResultUtils;
+import org.sagacity.sqltoy.utils.ResultUtils.DirectBeanRowHandler;
 import org.sagacity.sqltoy.utils.SqlUtil;
 import org.sagacity.sqltoy.utils.SqlUtilsExt;
 import org.sagacity.sqltoy.utils.StringUtil;
@@ -76,6 +96,14 @@ import org.slf4j.LoggerFactory;
  * @update data:2020-06-05 增加dm(达梦)数据库支持
  * @update data:2020-06-10 增加tidb、guassdb、oceanbase支持,规整sqlserver的版本(默认仅支持2012+)
  * @update data:2021-01-25 分页支持并行查询
+ * @update data:2021-05-17 并行分页改为使用SqlToyContext共享的有界线程池
+ * @update data:2021-05-18 登记修改操作影响的记录数,用于执行指标统计
+ * @update data:2021-05-19 增加keyset(seek)分页
+ * @update data:2021-05-20 saveAll、batchUpdate增加bulkLoad大批量写入模式
+ * @update data:2021-05-20 getRandomResult增加抽样策略,避免对全部结果order by random()
+ * @update data:2021-05-20 findByQuery、findPage增加查询结果缓存,写操作按表使缓存失效
+ * @update data:2021-05-20 findPage未配置并行时可自适应并行查询count和单页数据(sqltoy.page.parallel.adaptive)
+ * @update data:2021-05-20 分库分表配置scatter时findByQuery、findPage、getCountBySql跨分片并行查询并归并结果
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class DialectFactory {
@@ -230,6 +258,27 @@ public class DialectFactory {
 	public Long batchUpdate(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig, final List dataSet,
 			final int batchSize, final AbstractReflectPropertyHandler reflectPropertyHandler,
 			final InsertRowCallbackHandler insertCallhandler, final Boolean autoCommit, final DataSource dataSource) {
+		return batchUpdate(sqlToyContext, sqlToyConfig, dataSet, batchSize, reflectPropertyHandler, insertCallhandler,
+				autoCommit, false, dataSource);
+	}
+
+	/**
+	 * @todo 批量执行sql修改或删除操作,bulkLoad=true时单行insert语句改写为多行values合并插入
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param dataSet
+	 * @param batchSize
+	 * @param reflectPropertyHandler
+	 * @param insertCallhandler
+	 * @param autoCommit
+	 * @param bulkLoad
+	 * @param dataSource
+	 * @return
+	 */
+	public Long batchUpdate(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig, final List dataSet,
+			final int batchSize, final AbstractReflectPropertyHandler reflectPropertyHandler,
+			final InsertRowCallbackHandler insertCallhandler, final Boolean autoCommit, final boolean bulkLoad,
+			final DataSource dataSource) {
 		// 首先合法性校验
 		if (dataSet == null || dataSet.isEmpty()) {
 			logger.warn("batchUpdate dataSet is null or empty,please check!");
@@ -258,6 +307,15 @@ public class DialectFactory {
 							}
 							// 做sql签名
 							realSql = SqlUtilsExt.signSql(realSql, dbType, sqlToyConfig);
+							// 多行values合并插入(不支持的数据库或sql返回null)
+							if (bulkLoad && insertCallhandler == null) {
+								Long updateCnt = BulkLoadUtils.batchInsert(sqlToyContext.getTypeHandler(), realSql,
+										values, fieldTypes, batchSize, autoCommit, conn, dbType);
+								if (updateCnt != null) {
+									this.setResult(updateCnt);
+									return;
+								}
+							}
 							SqlExecuteStat.showSql("批量sql执行", realSql, null);
 							this.setResult(SqlUtil.batchUpdateByJdbc(sqlToyContext.getTypeHandler(), realSql, values,
 									batchSize, insertCallhandler, fieldTypes, autoCommit, conn, dbType));
@@ -265,6 +323,9 @@ public class DialectFactory {
 					});
 			// 输出执行结果更新记录量日志
 			SqlExecuteStat.debug("执行结果", "批量更新记录数量:{} 条!", updateTotalCnt);
+			SqlExecuteStat.affectRows(updateTotalCnt);
+			// 使相关表的查询结果缓存失效
+			ResultCacheUtils.invalidateBySql(sqlToyContext, sqlToyConfig.getSql());
 			return updateTotalCnt;
 		} catch (Exception e) {
 			SqlExecuteStat.error(e);
@@ -308,6 +369,9 @@ public class DialectFactory {
 						}
 					});
 			SqlExecuteStat.debug("执行结果", "受影响记录数量:{} 条!", updateTotalCnt);
+			SqlExecuteStat.affectRows(updateTotalCnt);
+			// 使相关表的查询结果缓存失效
+			ResultCacheUtils.invalidateBySql(sqlToyContext, sqlToyConfig.getSql());
 			return updateTotalCnt;
 		} catch (Exception e) {
 			SqlExecuteStat.error(e);
@@ -386,8 +450,11 @@ public class DialectFactory {
 							// 处理sql中的?为统一的:named形式，并进行sharding table替换
 							SqlToyConfig realSqlToyConfig = DialectUtils.getUnifyParamsNamedConfig(sqlToyContext,
 									sqlToyConfig, queryExecutor, dialect, rewrapParams);
+							RandomSampleStrategy sampleStrategy = sqlToyContext.getRandomSampleStrategy();
+							// 启用抽样策略时需先获取总记录数
+							boolean sampling = sampleStrategy != null && sampleStrategy.isEnabled(dbType);
 							// 判断数据库是否支持取随机记录(只有informix和sybase不支持)
-							Long totalCount = SqlToyConstants.randomWithDialect(dbType) ? null
+							Long totalCount = (SqlToyConstants.randomWithDialect(dbType) && !sampling) ? null
 									: getCountBySql(sqlToyContext, realSqlToyConfig, queryExecutor, conn, dbType,
 											dialect);
 							Long randomCnt;
@@ -417,8 +484,16 @@ public class DialectFactory {
 										sqlToyConfig.getIdOrSql());
 								return;
 							}
-							QueryResult queryResult = getDialectSqlWrapper(dbType).getRandomResult(sqlToyContext,
-									realSqlToyConfig, queryExecutor, totalCount, randomCnt, conn, dbType, dialect);
+							QueryResult queryResult = null;
+							// 按抽样策略提取,返回null则沿用数据库方言的随机方式
+							if (sampling && randomCnt < totalCount) {
+								queryResult = RandomSampleUtils.getRandomResult(sqlToyContext, sampleStrategy,
+										realSqlToyConfig, queryExecutor, totalCount, randomCnt, conn, dbType, dialect);
+							}
+							if (queryResult == null) {
+								queryResult = getDialectSqlWrapper(dbType).getRandomResult(sqlToyContext,
+										realSqlToyConfig, queryExecutor, totalCount, randomCnt, conn, dbType, dialect);
+							}
 							if (queryResult.getRows() != null && !queryResult.getRows().isEmpty()) {
 								// 存在计算和旋转的数据不能映射到对象(数据类型不一致，如汇总平均以及数据旋转)
 								List pivotCategorySet = ResultUtils.getPivotCategory(sqlToyContext, realSqlToyConfig,
@@ -635,6 +710,142 @@ public class DialectFactory {
 		}
 	}
 
+	/**
+	 * @TODO keyset(seek)分页:以上一页最后一行的排序键值作为条件,取排序后的前pageSize条,不用offset跳过记录,
+	 *       深度翻页耗时不随页号增长;skipQueryCount=false时才查询总记录数;@fast()查询在外层再按子查询别名排序
+	 * @param sqlToyContext
+	 * @param queryExecutor
+	 * @param sqlToyConfig
+	 * @param pageModel     keysetColumns为排序键列,keysetValues为上一页最后一行的键值(null表示第一页)
+	 * @param dataSource
+	 * @return
+	 */
+	public QueryResult findKeysetPage(final SqlToyContext sqlToyContext, final QueryExecutor queryExecutor,
+			final SqlToyConfig sqlToyConfig, final PaginationModel pageModel, final DataSource dataSource) {
+		final QueryExecutorExtend extend = queryExecutor.getInnerModel();
+		if (StringUtil.isBlank(extend.sql)) {
+			throw new IllegalArgumentException("findKeysetPage operate sql is null!");
+		}
+		final String[] keysetColumns = pageModel.isKeyset() ? pageModel.getKeysetColumns() : extend.keysetColumns;
+		if (keysetColumns == null || keysetColumns.length == 0) {
+			throw new IllegalArgumentException("findKeysetPage operate keysetColumns is null!");
+		}
+		final Object[] keysetValues = pageModel.getKeysetValues();
+		if (keysetValues != null && keysetValues.length != keysetColumns.length) {
+			throw new IllegalArgumentException("findKeysetPage operate keysetValues length:" + keysetValues.length
+					+ " != keysetColumns length:" + keysetColumns.length + "!");
+		}
+		final Integer pageSize = pageModel.getPageSize();
+		int limitSize = sqlToyContext.getPageFetchSizeLimit();
+		// 分页查询不允许单页数据超过上限，避免大规模数据提取
+		if (limitSize != -1 && pageSize >= limitSize) {
+			throw new IllegalArgumentException(
+					"findKeysetPage operate args is Illegal,pageSize={" + pageSize + "}>= limit:{" + limitSize + "}!");
+		}
+		final boolean skipCount = (pageModel.getSkipQueryCount() != null && pageModel.getSkipQueryCount());
+		try {
+			Long startTime = System.currentTimeMillis();
+			extend.optimizeArgs(sqlToyConfig);
+			SqlExecuteStat.start(sqlToyConfig.getId(), "findKeysetPage", sqlToyConfig.isShowSql());
+			QueryResult result = (QueryResult) DataSourceUtils.processDataSource(sqlToyContext,
+					ShardingUtils.getShardingDataSource(sqlToyContext, sqlToyConfig, queryExecutor, dataSource),
+					new AbstractDataSourceCallbackHandler() {
+						@Override
+						public void doConnection(Connection conn, Integer dbType, String dialect) throws Exception {
+							// 处理sql中的?为统一的:named形式，并进行sharding table替换
+							SqlToyConfig realSqlToyConfig = DialectUtils.getUnifyParamsNamedConfig(sqlToyContext,
+									sqlToyConfig, queryExecutor, dialect, true);
+							Long recordCnt = null;
+							if (!skipCount) {
+								PageOptimize pageOptimize = extend.pageOptimize;
+								if (pageOptimize == null) {
+									pageOptimize = realSqlToyConfig.getPageOptimize();
+								}
+								// keyset键值不参与条件key,同一查询条件下各页共用总记录数
+								Long pageQueryKey = PageOptimizeUtils.generateOptimizeKey(sqlToyContext, sqlToyConfig,
+										queryExecutor, pageOptimize);
+								if (null != pageQueryKey) {
+									recordCnt = PageOptimizeUtils.getPageTotalCount(realSqlToyConfig, pageOptimize,
+											pageQueryKey);
+								}
+								if (recordCnt == null) {
+									recordCnt = getCountBySql(sqlToyContext, realSqlToyConfig, queryExecutor, conn,
+											dbType, dialect);
+									if (null != pageQueryKey) {
+										PageOptimizeUtils.registPageTotalCount(realSqlToyConfig, pageOptimize,
+												pageQueryKey, recordCnt);
+									}
+								}
+							}
+							QueryResult queryResult;
+							if (recordCnt != null && recordCnt == 0) {
+								queryResult = new QueryResult();
+								SqlExecuteStat.debug("过程提示", "提取count数为:0,sql={}", sqlToyConfig.getIdOrSql());
+							} else {
+								// 改写成按排序键定位的sql
+								SqlToyConfig keysetConfig = KeysetPageUtils.wrapKeysetSqlToyConfig(realSqlToyConfig,
+										keysetColumns, keysetValues != null, dbType, dialect);
+								String[] paramsName = extend.getParamsName(realSqlToyConfig);
+								Object[] paramsValue = extend.getParamsValue(sqlToyContext, realSqlToyConfig);
+								// 无:name模式的sql,参数置为空(同分页处理)
+								if (realSqlToyConfig.getParamsName() == null
+										|| realSqlToyConfig.getParamsName().length == 0) {
+									paramsName = null;
+									paramsValue = null;
+								}
+								NamedValuesModel params = KeysetPageUtils.mergeParams(paramsName, paramsValue,
+										keysetValues);
+								keysetConfig.setParamsName(params.getNames());
+								// 参数值已经过滤加工,避免重复过滤
+								keysetConfig.setFilters(new ArrayList<ParamFilterModel>());
+								QueryExecutor keysetExecutor = new QueryExecutor(extend.sql, params.getNames(),
+										params.getValues()).fetchSize(extend.fetchSize).maxRows(extend.maxRows);
+								keysetExecutor.getInnerModel().rowCallbackHandler = extend.rowCallbackHandler;
+								// 取排序后的前pageSize条由各方言实现
+								queryResult = getDialectSqlWrapper(dbType).findTopBySql(sqlToyContext, keysetConfig,
+										keysetExecutor, pageSize, conn, dbType, dialect);
+							}
+							Object[] lastKeyValues = null;
+							if (queryResult.getRows() != null && !queryResult.getRows().isEmpty()) {
+								// 在计算和映射对象之前提取本页最后一行的排序键值
+								if (extend.rowCallbackHandler == null) {
+									lastKeyValues = KeysetPageUtils.getLastKeyValues(queryResult.getRows(),
+											queryResult.getLabelNames(), keysetColumns);
+								}
+								List pivotCategorySet = ResultUtils.getPivotCategory(sqlToyContext, realSqlToyConfig,
+										queryExecutor, conn, dbType, dialect);
+								boolean changedCols = ResultUtils.calculate(realSqlToyConfig, queryResult,
+										pivotCategorySet, extend);
+								if (extend.resultType != null) {
+									queryResult.setRows(ResultUtils.wrapQueryResult(sqlToyContext,
+											queryResult.getRows(), queryResult.getLabelNames(),
+											(Class) extend.resultType, changedCols, extend.humpMapLabel));
+								}
+							}
+							queryResult.setPageNo(pageModel.getPageNo());
+							queryResult.setPageSize(pageSize);
+							if (recordCnt != null) {
+								queryResult.setRecordCount(recordCnt);
+							} else {
+								queryResult.setSkipQueryCount(true);
+							}
+							queryResult.setKeysetColumns(keysetColumns);
+							// 本页无记录则保留原定位键值
+							queryResult.setKeysetValues((lastKeyValues == null) ? keysetValues : lastKeyValues);
+							SqlExecuteStat.debug("查询结果", "keyset分页取得本页记录数:{}条!", queryResult.getRows().size());
+							this.setResult(queryResult);
+						}
+					});
+			result.setExecuteTime(System.currentTimeMillis() - startTime);
+			return result;
+		} catch (Exception e) {
+			SqlExecuteStat.error(e);
+			throw new DataAccessException(e);
+		} finally {
+			SqlExecuteStat.destroy();
+		}
+	}
+
 	/**
 	 * @todo 分页查询, pageNo为负一表示取全部记录
 	 * @param sqlToyContext
@@ -655,8 +866,31 @@ public class DialectFactory {
 			Long startTime = System.currentTimeMillis();
 			extend.optimizeArgs(sqlToyConfig);
 			SqlExecuteStat.start(sqlToyConfig.getId(), "findPage", sqlToyConfig.isShowSql());
-			QueryResult result = (QueryResult) DataSourceUtils.processDataSource(sqlToyContext,
-					ShardingUtils.getShardingDataSource(sqlToyContext, sqlToyConfig, queryExecutor, dataSource),
+			// 分散查询:跨全部分片并行查询并归并
+			if (ShardingUtils.isScatterQuery(sqlToyConfig, queryExecutor)) {
+				QueryResult result = (QueryResult) scatterQuery(sqlToyContext, queryExecutor, sqlToyConfig, "findPage",
+						null, pageNo, pageSize, dataSource);
+				result.setExecuteTime(System.currentTimeMillis() - startTime);
+				return result;
+			}
+			DataSource realDataSource = ShardingUtils.getShardingDataSource(sqlToyContext, sqlToyConfig, queryExecutor,
+					dataSource);
+			// 查询结果缓存
+			ResultCache resultCache = ResultCacheUtils.getResultCache(sqlToyContext, sqlToyConfig, extend, null);
+			String cacheKey = null;
+			long cacheVersion = 0;
+			if (resultCache != null) {
+				cacheVersion = ResultCacheUtils.getVersion(sqlToyContext);
+				cacheKey = ResultCacheUtils.generateKey(sqlToyContext, sqlToyConfig, queryExecutor, realDataSource,
+						"findPage", pageNo, pageSize);
+				QueryResult cacheResult = ResultCacheUtils.get(sqlToyContext, sqlToyConfig, cacheKey);
+				if (cacheResult != null) {
+					SqlExecuteStat.debug("过程提示", "分页查询结果缓存命中,总记录数:{}条!", cacheResult.getRecordCount());
+					cacheResult.setExecuteTime(System.currentTimeMillis() - startTime);
+					return cacheResult;
+				}
+			}
+			QueryResult result = (QueryResult) DataSourceUtils.processDataSource(sqlToyContext, realDataSource,
 					new AbstractDataSourceCallbackHandler() {
 						@Override
                         public void doConnection(Connection conn, Integer dbType, String dialect) throws Exception {
@@ -670,7 +904,7 @@ public class DialectFactory {
 							}
 							Long recordCnt = null;
 							// 通过查询条件构造唯一的key
-							String pageQueryKey = PageOptimizeUtils.generateOptimizeKey(sqlToyContext, sqlToyConfig,
+							Long pageQueryKey = PageOptimizeUtils.generateOptimizeKey(sqlToyContext, sqlToyConfig,
 									queryExecutor, pageOptimize);
 							// 需要进行分页查询优化
 							if (null != pageQueryKey) {
@@ -692,6 +926,15 @@ public class DialectFactory {
 									PageOptimizeUtils.registPageTotalCount(realSqlToyConfig, pageOptimize, pageQueryKey,
 											recordCnt);
 								}
+							} // 未配置并行且count未命中缓存,自适应并行查询count和单页数据
+							else if (pageNo != -1 && recordCnt == null
+									&& PageOptimizeUtils.isAdaptiveParallel(realSqlToyConfig)) {
+								queryResult = adaptiveParallelPage(sqlToyContext, queryExecutor, realSqlToyConfig,
+										pageNo, pageSize, pageOptimize, realDataSource, conn, dbType, dialect);
+								if (null != pageQueryKey) {
+									PageOptimizeUtils.registPageTotalCount(realSqlToyConfig, pageOptimize, pageQueryKey,
+											queryResult.getRecordCount());
+								}
 							} else {
 								// 非并行且分页缓存未命中，执行count查询
 								if (recordCnt == null) {
@@ -780,6 +1023,9 @@ public class DialectFactory {
 							this.setResult(queryResult);
 						}
 					});
+			if (cacheKey != null) {
+				ResultCacheUtils.put(sqlToyContext, sqlToyConfig, resultCache, cacheKey, result, cacheVersion);
+			}
 			result.setExecuteTime(System.currentTimeMillis() - startTime);
 			return result;
 		} catch (Exception e) {
@@ -813,13 +1059,12 @@ public class DialectFactory {
 		final QueryResult queryResult = new QueryResult();
 		queryResult.setPageNo(pageNo);
 		queryResult.setPageSize(pageSize);
-		ExecutorService pool = null;
 		try {
 			SqlExecuteStat.debug("过程提示", "分页查询开始并行查询count总记录数和单页记录数据!");
 			final SqlExecuteTrace sqlTrace = SqlExecuteStat.get();
-			pool = Executors.newFixedThreadPool(2);
+			List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
 			// 查询总记录数量
-			pool.submit(new Runnable() {
+			tasks.add(Executors.callable(new Runnable() {
 				@Override
 				public void run() {
 					try {
@@ -838,9 +1083,9 @@ public class DialectFactory {
 						SqlExecuteStat.destroyNotLog();
 					}
 				}
-			});
+			}));
 			// 获取记录
-			pool.submit(new Runnable() {
+			tasks.add(Executors.callable(new Runnable() {
 				@Override
 				public void run() {
 					try {
@@ -861,14 +1106,10 @@ public class DialectFactory {
 						SqlExecuteStat.destroyNotLog();
 					}
 				}
-			});
-			pool.shutdown();
-			// 设置最大等待时长(秒)
-			if (pageOptimize.getParallelMaxWaitSeconds() > 0) {
-				pool.awaitTermination(pageOptimize.getParallelMaxWaitSeconds(), TimeUnit.SECONDS);
-			} else {
-				pool.awaitTermination(SqlToyConstants.PARALLEL_MAXWAIT_SECONDS, TimeUnit.SECONDS);
-			}
+			}));
+			// 在共享线程池中执行,超过最大等待时长(秒)则取消
+			sqlToyContext.getThreadPoolManager().invokeAll(ThreadPoolManager.PAGE_COUNT, tasks, 2,
+					pageOptimize.getParallelMaxWaitSeconds());
 			// 发生异常
 			if (!queryResult.isSuccess()) {
 				throw new DataAccessException("并行查询执行错误:" + queryResult.getMessage());
@@ -890,14 +1131,398 @@ public class DialectFactory {
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new DataAccessException("并行查询执行错误:" + e.getMessage(), e);
+		}
+		return queryResult;
+	}
+
+	/**
+	 * @TODO 自适应并行分页:单页数据在分页线程池中用另一个连接查询,当前连接同时执行count,
+	 *       count为0或页号越界时取消(或丢弃)单页数据查询;单页数据不在当前事务中,事务中不启用(见PageOptimizeUtils.isAdaptiveParallel)
+	 * @param sqlToyContext
+	 * @param queryExecutor
+	 * @param sqlToyConfig
+	 * @param pageNo
+	 * @param pageSize
+	 * @param pageOptimize 提供单页数据查询的最大等待时长,可为null
+	 * @param dataSource
+	 * @param conn
+	 * @param dbType
+	 * @param dialect
+	 * @return
+	 * @throws Exception
+	 */
+	private QueryResult adaptiveParallelPage(final SqlToyContext sqlToyContext, final QueryExecutor queryExecutor,
+			final SqlToyConfig sqlToyConfig, final long pageNo, final Integer pageSize, final PageOptimize pageOptimize,
+			final DataSource dataSource, Connection conn, Integer dbType, String dialect) throws Exception {
+		SqlExecuteStat.debug("过程提示", "分页查询自适应并行查询count总记录数和单页记录数据!");
+		final SqlExecuteTrace sqlTrace = SqlExecuteStat.get();
+		Future<QueryResult> rowsFuture;
+		try {
+			rowsFuture = sqlToyContext.getThreadPoolManager().getExecutor(ThreadPoolManager.PAGE_COUNT)
+					.submit(new Callable<QueryResult>() {
+						@Override
+						public QueryResult call() throws Exception {
+							try {
+								// 规避新的线程日志无法采集
+								SqlExecuteStat.mergeTrace(sqlTrace);
+								Long startTime = System.currentTimeMillis();
+								QueryResult result = (QueryResult) DataSourceUtils.processDataSource(sqlToyContext,
+										dataSource, new AbstractDataSourceCallbackHandler() {
+											@Override
+											public void doConnection(Connection conn, Integer dbType, String dialect)
+													throws Exception {
+												this.setResult(getDialectSqlWrapper(dbType).findPageBySql(
+														sqlToyContext, sqlToyConfig, queryExecutor, pageNo,
+														pageSize, conn, dbType, dialect));
+											}
+										});
+								SqlExecuteStat.debug("查询分页记录耗时", (System.currentTimeMillis() - startTime) + "毫秒!");
+								sqlTrace.addLogs(SqlExecuteStat.get().getExecuteLogs());
+								return result;
+							} finally {
+								SqlExecuteStat.destroyNotLog();
+							}
+						}
+					});
+		} catch (RejectedExecutionException e) {
+			// 线程池饱和则退回串行
+			rowsFuture = null;
+		}
+		long recordCnt;
+		QueryResult queryResult;
+		try {
+			Long startTime = System.currentTimeMillis();
+			recordCnt = getCountBySql(sqlToyContext, sqlToyConfig, queryExecutor, conn, dbType, dialect);
+			SqlExecuteStat.debug("查询count执行耗时", (System.currentTimeMillis() - startTime) + "毫秒!");
+			boolean isOverPage = (pageNo * pageSize >= (recordCnt + pageSize));
+			// 无记录或页号越界,单页数据无意义
+			if (recordCnt == 0 || isOverPage) {
+				if (rowsFuture != null) {
+					rowsFuture.cancel(true);
+					PageOptimizeUtils.registAdaptiveParallel(sqlToyConfig, false);
+				}
+				if (recordCnt > 0 && sqlToyContext.isPageOverToFirst()) {
+					queryResult = getDialectSqlWrapper(dbType).findPageBySql(sqlToyContext, sqlToyConfig,
+							queryExecutor, 1L, pageSize, conn, dbType, dialect);
+					queryResult.setPageNo(1L);
+				} else {
+					queryResult = new QueryResult();
+					queryResult.setPageNo((recordCnt == 0 && sqlToyContext.isPageOverToFirst()) ? 1L : pageNo);
+				}
+				if (recordCnt == 0) {
+					SqlExecuteStat.debug("过程提示", "提取count数为:0,sql={}", sqlToyConfig.getIdOrSql());
+				}
+			} else if (rowsFuture == null) {
+				queryResult = getDialectSqlWrapper(dbType).findPageBySql(sqlToyContext, sqlToyConfig, queryExecutor,
+						pageNo, pageSize, conn, dbType, dialect);
+				queryResult.setPageNo(pageNo);
+			} else {
+				long maxWaitSeconds = (pageOptimize == null || pageOptimize.getParallelMaxWaitSeconds() <= 0)
+						? SqlToyConstants.PARALLEL_MAXWAIT_SECONDS
+						: pageOptimize.getParallelMaxWaitSeconds();
+				try {
+					queryResult = rowsFuture.get(maxWaitSeconds, TimeUnit.SECONDS);
+				} catch (ExecutionException e) {
+					throw new DataAccessException("并行查询单页记录数据异常:" + e.getCause().getMessage(), e.getCause());
+				} catch (TimeoutException e) {
+					throw new DataAccessException("并行查询单页记录数据超过最大等待时长:" + maxWaitSeconds + "秒!", e);
+				}
+				queryResult.setPageNo(pageNo);
+				PageOptimizeUtils.registAdaptiveParallel(sqlToyConfig, true);
+			}
 		} finally {
-			if (pool != null) {
-				pool.shutdownNow();
+			// count异常、等待超时或被中断时,单页数据查询不再需要,释放其占用的连接
+			if (rowsFuture != null && !rowsFuture.isDone()) {
+				rowsFuture.cancel(true);
 			}
 		}
+		queryResult.setPageSize(pageSize);
+		queryResult.setRecordCount(recordCnt);
 		return queryResult;
 	}
 
+	/**
+	 * @TODO 分散查询(scatter-gather):在分片线程池中并行查询每个分库分表,按order by归并各分片有序结果,
+	 *       分页时各分片只取前pageNo*pageSize条,group by、distinct以及count/sum/min/max/avg跨分片合并,
+	 *       字符串按数据库默认排序规则是否区分大小写归并(见ShardingQueryUtils)
+	 * @param sqlToyContext
+	 * @param queryExecutor
+	 * @param sqlToyConfig
+	 * @param queryType     findByQuery、findPage、getCountBySql
+	 * @param lockMode      分散查询不支持锁定,不为null时抛出异常
+	 * @param pageNo
+	 * @param pageSize
+	 * @param dataSource
+	 * @return findByQuery、findPage返回QueryResult,getCountBySql返回Long
+	 * @throws Exception
+	 */
+	private Object scatterQuery(final SqlToyContext sqlToyContext, final QueryExecutor queryExecutor,
+			final SqlToyConfig sqlToyConfig, final String queryType, final LockMode lockMode, final long pageNo,
+			final Integer pageSize, final DataSource dataSource) throws Exception {
+		final QueryExecutorExtend extend = queryExecutor.getInnerModel();
+		if (extend.rowCallbackHandler != null) {
+			throw new IllegalArgumentException("分散查询不支持自定义rowCallbackHandler,sql=" + sqlToyConfig.getIdOrSql());
+		}
+		// 各分片在各自连接上加锁,无法构成一个整体的锁定范围
+		if (lockMode != null) {
+			throw new IllegalArgumentException("分散查询不支持lockMode锁定查询,sql=" + sqlToyConfig.getIdOrSql());
+		}
+		final boolean isPage = "findPage".equals(queryType);
+		final boolean isCount = "getCountBySql".equals(queryType);
+		final MergeModel mergeModel = ShardingQueryUtils.parseMerge(sqlToyConfig.getSql(), sqlToyConfig.isHasWith());
+		if (mergeModel.getRewriteSql() != null && sqlToyConfig.isHasFast()) {
+			throw new IllegalArgumentException("分散查询avg函数不支持@fast()形式的sql,sql=" + sqlToyConfig.getIdOrSql());
+		}
+		// 分组、聚合需要各分片的完整结果
+		final boolean fullMerge = mergeModel.isFullMerge();
+		final List<ShardingTargetModel> targets = ShardingUtils.getScatterTargets(sqlToyContext, sqlToyConfig,
+				queryExecutor, dataSource);
+		SqlExecuteStat.debug("过程提示", "分散查询共{}个分片,归并方式:{}!", targets.size(),
+				fullMerge ? "分组合并" : (mergeModel.hasOrder() ? "排序归并" : "顺序拼接"));
+		final SqlExecuteTrace sqlTrace = SqlExecuteStat.get();
+		List<Callable<QueryResult>> tasks = new ArrayList<Callable<QueryResult>>();
+		for (final ShardingTargetModel target : targets) {
+			tasks.add(new Callable<QueryResult>() {
+				@Override
+				public QueryResult call() throws Exception {
+					try {
+						// 规避新的线程日志无法采集
+						SqlExecuteStat.mergeTrace(sqlTrace);
+						QueryResult result = (QueryResult) DataSourceUtils.processDataSource(sqlToyContext,
+								target.getDataSource(), new AbstractDataSourceCallbackHandler() {
+									@Override
+									public void doConnection(Connection conn, Integer dbType, String dialect)
+											throws Exception {
+										this.setResult(scatterShard(sqlToyContext, queryExecutor, sqlToyConfig,
+												target, isPage, isCount, fullMerge, lockMode, pageNo, pageSize, conn,
+												dbType, dialect));
+									}
+								});
+						sqlTrace.addLogs(SqlExecuteStat.get().getExecuteLogs());
+						return result;
+					} finally {
+						SqlExecuteStat.destroyNotLog();
+					}
+				}
+			});
+		}
+		List<QueryResult> shardResults = sqlToyContext.getThreadPoolManager().invokeAll(ThreadPoolManager.SHARDING,
+				tasks, tasks.size(), SqlToyConstants.PARALLEL_MAXWAIT_SECONDS);
+		int shardSize = shardResults.size();
+		final long[] shardCounts = new long[shardSize];
+		long recordCnt = 0;
+		final List<List> shardRows = new ArrayList<List>(shardSize);
+		String[] labelNames = null;
+		String[] labelTypes = null;
+		for (QueryResult shardResult : shardResults) {
+			shardCounts[shardRows.size()] = shardResult.getRecordCount();
+			recordCnt += shardResult.getRecordCount();
+			shardRows.add(shardResult.getRows());
+			if (labelNames == null && shardResult.getLabelNames() != null) {
+				labelNames = shardResult.getLabelNames();
+				labelTypes = shardResult.getLabelTypes();
+			}
+		}
+		if (isCount) {
+			if (fullMerge) {
+				recordCnt = ShardingQueryUtils.merge(mergeModel, shardRows, labelNames, false,
+						isIgnoreCase(DataSourceUtils.getDBType(targets.get(0).getDataSource()))).size();
+			}
+			return recordCnt;
+		}
+		final QueryResult queryResult = new QueryResult();
+		queryResult.setLabelNames(labelNames);
+		queryResult.setLabelTypes(labelTypes);
+		queryResult.setRecordCount(recordCnt);
+		// 在第一个分片上完成归并、计算(旋转、汇总等)以及结果类型映射
+		DataSourceUtils.processDataSource(sqlToyContext, targets.get(0).getDataSource(),
+				new AbstractDataSourceCallbackHandler() {
+					@Override
+					public void doConnection(Connection conn, Integer dbType, String dialect) throws Exception {
+						scatterMerge(sqlToyContext, mergeModel, queryResult, shardRows, shardCounts, isPage, pageNo,
+								pageSize, extend.maxRows, dbType);
+						SqlExecuteStat.debug("查询结果", "分散查询归并后总记录数:{}条,返回记录数:{}条!",
+								queryResult.getRecordCount(), queryResult.getRows().size());
+						if (queryResult.getRows().isEmpty()) {
+							return;
+						}
+						List pivotCategorySet = ResultUtils.getPivotCategory(sqlToyContext, sqlToyConfig,
+								queryExecutor, conn, dbType, dialect);
+						boolean changedCols = ResultUtils.calculate(sqlToyConfig, queryResult, pivotCategorySet,
+								extend);
+						if (extend.resultType != null) {
+							queryResult.setRows(ResultUtils.wrapQueryResult(sqlToyContext, queryResult.getRows(),
+									queryResult.getLabelNames(), (Class) extend.resultType, changedCols,
+									extend.humpMapLabel));
+						}
+					}
+				});
+		return queryResult;
+	}
+
+	/**
+	 * @TODO 归并各分片结果,并按分页截取
+	 * @param sqlToyContext
+	 * @param mergeModel
+	 * @param queryResult   recordCount为各分片记录数之和
+	 * @param shardRows
+	 * @param shardCounts
+	 * @param isPage
+	 * @param pageNo
+	 * @param pageSize
+	 * @param maxRows
+	 * @param dbType
+	 */
+	private void scatterMerge(final SqlToyContext sqlToyContext, MergeModel mergeModel, QueryResult queryResult,
+			List<List> shardRows, long[] shardCounts, boolean isPage, long pageNo, Integer pageSize, int maxRows,
+			Integer dbType) {
+		String[] labelNames = queryResult.getLabelNames();
+		// 数据库升序排序时null是否排在最后
+		boolean nullsLast = dbType.equals(DBType.ORACLE) || dbType.equals(DBType.ORACLE11)
+				|| dbType.equals(DBType.POSTGRESQL) || dbType.equals(DBType.GAUSSDB) || dbType.equals(DBType.DB2)
+				|| dbType.equals(DBType.DM) || dbType.equals(DBType.KINGBASE);
+		boolean ignoreCase = isIgnoreCase(dbType);
+		queryResult.setLabelNames(ShardingQueryUtils.trimLabels(mergeModel, labelNames));
+		queryResult.setLabelTypes(ShardingQueryUtils.trimLabels(mergeModel, queryResult.getLabelTypes()));
+		List rows = null;
+		long recordCnt = queryResult.getRecordCount();
+		if (mergeModel.isFullMerge() || !isPage || pageNo == -1) {
+			rows = ShardingQueryUtils.merge(mergeModel, shardRows, labelNames, nullsLast, ignoreCase);
+			recordCnt = rows.size();
+		}
+		if (!isPage || pageNo == -1) {
+			if (!isPage && maxRows > 0 && rows.size() > maxRows) {
+				rows = new ArrayList(rows.subList(0, maxRows));
+			}
+			queryResult.setRows(rows);
+			queryResult.setRecordCount(Long.valueOf(rows.size()));
+			if (isPage) {
+				queryResult.setPageNo(1L);
+				queryResult.setPageSize(rows.size());
+			}
+			return;
+		}
+		queryResult.setPageSize(pageSize);
+		queryResult.setRecordCount(recordCnt);
+		boolean isOverPage = (pageNo * pageSize >= (recordCnt + pageSize));
+		if (recordCnt == 0 || (isOverPage && !sqlToyContext.isPageOverToFirst())) {
+			queryResult.setPageNo((recordCnt == 0 && sqlToyContext.isPageOverToFirst()) ? 1L : pageNo);
+			queryResult.setRows(new ArrayList());
+			return;
+		}
+		long realStartPage = isOverPage ? 1 : pageNo;
+		long offset = (realStartPage - 1) * pageSize;
+		if (rows == null) {
+			rows = ShardingQueryUtils.mergePage(mergeModel, shardRows, shardCounts, labelNames, nullsLast,
+					ignoreCase, offset, pageSize);
+		} else {
+			rows = new ArrayList(rows.subList((int) offset, (int) Math.min(offset + pageSize, rows.size())));
+		}
+		queryResult.setPageNo(realStartPage);
+		queryResult.setRows(rows);
+	}
+
+	/**
+	 * @TODO 数据库默认的字符串排序规则是否不区分大小写(mysql、oceanbase默认*_ci,sqlserver默认*_CI_AS;tidb默认utf8mb4_bin)
+	 * @param dbType
+	 * @return
+	 */
+	private boolean isIgnoreCase(Integer dbType) {
+		return dbType.equals(DBType.MYSQL) || dbType.equals(DBType.MYSQL57) || dbType.equals(DBType.OCEANBASE)
+				|| dbType.equals(DBType.SQLSERVER);
+	}
+
+	/**
+	 * @TODO 分散查询中单个分片的查询:count、全部记录或前pageNo*pageSize条记录
+	 * @return recordCount为分片总记录数
+	 */
+	private QueryResult scatterShard(final SqlToyContext sqlToyContext, final QueryExecutor queryExecutor,
+			final SqlToyConfig sqlToyConfig, final ShardingTargetModel target, boolean isPage, boolean isCount,
+			boolean fullMerge, final LockMode lockMode, final long pageNo, final Integer pageSize, Connection conn,
+			Integer dbType, String dialect) throws Exception {
+		QueryExecutorExtend extend = queryExecutor.getInnerModel();
+		// 处理sql中的?为统一的:named形式，并替换成分片对应的表
+		SqlToyConfig realSqlToyConfig = DialectUtils.getUnifyParamsNamedConfig(sqlToyContext, sqlToyConfig,
+				queryExecutor, dialect, isPage, target);
+		QueryResult result;
+		Predicate<Object> ownerFilter = target.getOwnerFilter();
+		// 分片迁移窗口中节点上存在重复数据,需提取明细记录按分片字段过滤,分组、聚合结果无法过滤
+		if (ownerFilter != null && fullMerge) {
+			throw new IllegalStateException(
+					"分片迁移窗口中分散查询不支持分组、聚合、distinct,sql=" + sqlToyConfig.getIdOrSql());
+		}
+		if (ownerFilter == null && !fullMerge && (isCount || (isPage && pageNo != -1))) {
+			long count = getCountBySql(sqlToyContext, realSqlToyConfig, queryExecutor, conn, dbType, dialect);
+			if (isCount || count == 0) {
+				result = new QueryResult();
+			} else {
+				// limit下推:全局第pageNo页只可能来自各分片的前pageNo*pageSize条
+				long topSize = pageNo * pageSize.longValue();
+				if (topSize > Integer.MAX_VALUE) {
+					throw new IllegalArgumentException("分散查询分页深度pageNo*pageSize=" + topSize + " 超出范围,sql="
+							+ sqlToyConfig.getIdOrSql());
+				}
+				result = getDialectSqlWrapper(dbType).findTopBySql(sqlToyContext, realSqlToyConfig, queryExecutor,
+						(int) topSize, conn, dbType, dialect);
+			}
+			result.setRecordCount(count);
+		} else {
+			String sql = realSqlToyConfig.getSql(dialect);
+			// avg改写成sum和count
+			String rewriteSql = ShardingQueryUtils.parseMerge(sql, realSqlToyConfig.isHasWith()).getRewriteSql();
+			SqlToyResult queryParam = SqlConfigParseUtils.processSql((rewriteSql == null) ? sql : rewriteSql,
+					extend.getParamsName(realSqlToyConfig), extend.getParamsValue(sqlToyContext, realSqlToyConfig));
+			result = getDialectSqlWrapper(dbType).findBySql(sqlToyContext, realSqlToyConfig, queryParam.getSql(),
+					queryParam.getParamsValue(), null, conn, lockMode, dbType, dialect, extend.fetchSize,
+					(fullMerge || ownerFilter != null) ? -1 : extend.maxRows);
+			if (ownerFilter != null) {
+				filterOwnerRows(result, target, sqlToyConfig);
+			}
+			result.setRecordCount(Long.valueOf((result.getRows() == null) ? 0 : result.getRows().size()));
+		}
+		SqlExecuteStat.debug("分片查询", "数据源:{},分表:{},记录数:{}条!", target.getDataSourceName(), target.getTableMap(),
+				result.getRecordCount());
+		return result;
+	}
+
+	/**
+	 * @TODO 剔除不归属于分片数据源的记录(迁移窗口中已复制未切换、已切换未清理的数据)
+	 * @param result
+	 * @param target
+	 * @param sqlToyConfig
+	 */
+	private void filterOwnerRows(QueryResult result, ShardingTargetModel target, SqlToyConfig sqlToyConfig) {
+		List rows = result.getRows();
+		if (rows == null || rows.isEmpty()) {
+			return;
+		}
+		String field = (target.getShardingField() == null) ? null
+				: target.getShardingField().replace("_", "").toLowerCase();
+		String[] labelNames = result.getLabelNames();
+		int index = -1;
+		for (int i = 0; field != null && labelNames != null && i < labelNames.length; i++) {
+			if (labelNames[i] != null && labelNames[i].replace("_", "").toLowerCase().equals(field)) {
+				index = i;
+				break;
+			}
+		}
+		if (index == -1) {
+			throw new IllegalStateException("分片迁移窗口中分散查询结果需包含分片字段:" + target.getShardingField() + ",sql="
+					+ sqlToyConfig.getIdOrSql());
+		}
+		Predicate<Object> ownerFilter = target.getOwnerFilter();
+		List ownRows = new ArrayList(rows.size());
+		Object value;
+		for (Object row : rows) {
+			value = ((List) row).get(index);
+			// 无分片值的记录无法定位,保留
+			if (value == null || ownerFilter.test(value)) {
+				ownRows.add(row);
+			}
+		}
+		result.setRows(ownRows);
+	}
+
 	/**
 	 * @todo 取符合条件的前多少条记录
 	 * @param sqlToyContext
@@ -994,8 +1619,31 @@ public class DialectFactory {
 			Long startTime = System.currentTimeMillis();
 			extend.optimizeArgs(sqlToyConfig);
 			SqlExecuteStat.start(sqlToyConfig.getId(), "findByQuery", sqlToyConfig.isShowSql());
-			QueryResult result = (QueryResult) DataSourceUtils.processDataSource(sqlToyContext,
-					ShardingUtils.getShardingDataSource(sqlToyContext, sqlToyConfig, queryExecutor, dataSource),
+			// 分散查询:跨全部分片并行查询并归并
+			if (ShardingUtils.isScatterQuery(sqlToyConfig, queryExecutor)) {
+				QueryResult result = (QueryResult) scatterQuery(sqlToyContext, queryExecutor, sqlToyConfig,
+						"findByQuery", lockMode, -1, null, dataSource);
+				result.setExecuteTime(System.currentTimeMillis() - startTime);
+				return result;
+			}
+			DataSource realDataSource = ShardingUtils.getShardingDataSource(sqlToyContext, sqlToyConfig, queryExecutor,
+					dataSource);
+			// 查询结果缓存
+			ResultCache resultCache = ResultCacheUtils.getResultCache(sqlToyContext, sqlToyConfig, extend, lockMode);
+			String cacheKey = null;
+			long cacheVersion = 0;
+			if (resultCache != null) {
+				cacheVersion = ResultCacheUtils.getVersion(sqlToyContext);
+				cacheKey = ResultCacheUtils.generateKey(sqlToyContext, sqlToyConfig, queryExecutor, realDataSource,
+						"findByQuery");
+				QueryResult cacheResult = ResultCacheUtils.get(sqlToyContext, sqlToyConfig, cacheKey);
+				if (cacheResult != null) {
+					SqlExecuteStat.debug("过程提示", "查询结果缓存命中,记录数={}条!", cacheResult.getRecordCount());
+					cacheResult.setExecuteTime(System.currentTimeMillis() - startTime);
+					return cacheResult;
+				}
+			}
+			QueryResult result = (QueryResult) DataSourceUtils.processDataSource(sqlToyContext, realDataSource,
 					new AbstractDataSourceCallbackHandler() {
 						@Override
                         public void doConnection(Connection conn, Integer dbType, String dialect) throws Exception {
@@ -1006,11 +1654,16 @@ public class DialectFactory {
 							SqlToyResult queryParam = SqlConfigParseUtils.processSql(realSqlToyConfig.getSql(dialect),
 									extend.getParamsName(realSqlToyConfig),
 									extend.getParamsValue(sqlToyContext, realSqlToyConfig));
+							// 结果为VO且无旋转、汇总等计算时,直接将ResultSet映射成VO
+							DirectBeanRowHandler directHandler = ResultUtils.getDirectBeanHandler(sqlToyContext,
+									realSqlToyConfig, extend, conn);
 							QueryResult queryResult = getDialectSqlWrapper(dbType).findBySql(sqlToyContext,
 									realSqlToyConfig, queryParam.getSql(), queryParam.getParamsValue(),
-									extend.rowCallbackHandler, conn, lockMode, dbType, dialect, extend.fetchSize,
-									extend.maxRows);
-							if (queryResult.getRows() != null && !queryResult.getRows().isEmpty()) {
+									(directHandler != null) ? directHandler : extend.rowCallbackHandler, conn,
+									lockMode, dbType, dialect, extend.fetchSize, extend.maxRows);
+							if (directHandler != null) {
+								queryResult.setLabelNames(directHandler.getLabelNames());
+							} else if (queryResult.getRows() != null && !queryResult.getRows().isEmpty()) {
 								// 存在计算和旋转的数据不能映射到对象(数据类型不一致，如汇总平均以及数据旋转)
 								List pivotCategorySet = ResultUtils.getPivotCategory(sqlToyContext, realSqlToyConfig,
 										queryExecutor, conn, dbType, dialect);
@@ -1029,6 +1682,9 @@ public class DialectFactory {
 							this.setResult(queryResult);
 						}
 					});
+			if (cacheKey != null) {
+				ResultCacheUtils.put(sqlToyContext, sqlToyConfig, resultCache, cacheKey, result, cacheVersion);
+			}
 			result.setExecuteTime(System.currentTimeMillis() - startTime);
 			return result;
 		} catch (Exception e) {
@@ -1039,6 +1695,56 @@ public class DialectFactory {
 		}
 	}
 
+	/**
+	 * @todo 流式查询,逐行翻译、脱敏、格式化并映射成结果类型后交给streamResultHandler,不在内存中累积结果
+	 * @param sqlToyContext
+	 * @param queryExecutor
+	 * @param sqlToyConfig
+	 * @param streamResultHandler
+	 * @param dataSource
+	 * @return 处理的记录数量
+	 */
+	public Long streamByQuery(final SqlToyContext sqlToyContext, final QueryExecutor queryExecutor,
+			final SqlToyConfig sqlToyConfig, final StreamResultHandler streamResultHandler,
+			final DataSource dataSource) {
+		final QueryExecutorExtend extend = queryExecutor.getInnerModel();
+		// 合法校验
+		if (StringUtil.isBlank(extend.sql)) {
+			throw new IllegalArgumentException("streamByQuery operate sql is null!");
+		}
+		if (streamResultHandler == null) {
+			throw new IllegalArgumentException("streamByQuery operate streamResultHandler is null!");
+		}
+		try {
+			extend.optimizeArgs(sqlToyConfig);
+			SqlExecuteStat.start(sqlToyConfig.getId(), "streamByQuery", sqlToyConfig.isShowSql());
+			Long result = (Long) DataSourceUtils.processDataSource(sqlToyContext,
+					ShardingUtils.getShardingDataSource(sqlToyContext, sqlToyConfig, queryExecutor, dataSource),
+					new AbstractDataSourceCallbackHandler() {
+						@Override
+						public void doConnection(Connection conn, Integer dbType, String dialect) throws Exception {
+							// 处理sql中的?为统一的:named形式，并进行sharding table替换
+							SqlToyConfig realSqlToyConfig = DialectUtils.getUnifyParamsNamedConfig(sqlToyContext,
+									sqlToyConfig, queryExecutor, dialect, false);
+							// 通过参数处理最终的sql和参数值
+							SqlToyResult queryParam = SqlConfigParseUtils.processSql(realSqlToyConfig.getSql(dialect),
+									extend.getParamsName(realSqlToyConfig),
+									extend.getParamsValue(sqlToyContext, realSqlToyConfig));
+							this.setResult(DialectUtils.streamBySql(sqlToyContext, realSqlToyConfig,
+									queryParam.getSql(), queryParam.getParamsValue(), extend, streamResultHandler,
+									conn, dbType, 0));
+						}
+					});
+			SqlExecuteStat.debug("查询结果", "流式处理记录数={}条!", result);
+			return result;
+		} catch (Exception e) {
+			SqlExecuteStat.error(e);
+			throw new DataAccessException(e);
+		} finally {
+			SqlExecuteStat.destroy();
+		}
+	}
+
 	/**
 	 * @todo 查询符合条件的记录数量
 	 * @param sqlToyContext
@@ -1056,6 +1762,13 @@ public class DialectFactory {
 		try {
 			extend.optimizeArgs(sqlToyConfig);
 			SqlExecuteStat.start(sqlToyConfig.getId(), "getCountBySql", sqlToyConfig.isShowSql());
+			// 分散查询:各分片count求和(分组查询则合并分组后计数)
+			if (ShardingUtils.isScatterQuery(sqlToyConfig, queryExecutor)) {
+				Long count = (Long) scatterQuery(sqlToyContext, queryExecutor, sqlToyConfig, "getCountBySql", null,
+						-1, null, dataSource);
+				SqlExecuteStat.debug("查询结果", "count查询结果={}!", count);
+				return count;
+			}
 			Long count = (Long) DataSourceUtils.processDataSource(sqlToyContext,
 					ShardingUtils.getShardingDataSource(sqlToyContext, sqlToyConfig, queryExecutor, dataSource),
 					new AbstractDataSourceCallbackHandler() {
@@ -1178,6 +1891,8 @@ public class DialectFactory {
 						}
 					});
 			SqlExecuteStat.debug("执行结果", "实际影响记录数量:{} 条!", updateTotalCnt);
+			SqlExecuteStat.affectRows(updateTotalCnt);
+			ResultCacheUtils.invalidateByEntity(sqlToyContext, entity.getClass());
 			return updateTotalCnt;
 		} catch (Exception e) {
 			SqlExecuteStat.error(e);
@@ -1235,6 +1950,8 @@ public class DialectFactory {
 			}
 			// 输出修改记录量日志
 			SqlExecuteStat.debug("执行结果", "实际影响记录数量:{} 条!", updateTotalCnt);
+			SqlExecuteStat.affectRows(updateTotalCnt);
+			ResultCacheUtils.invalidateByEntity(sqlToyContext, entities.get(0).getClass());
 			return Long.valueOf(updateTotalCnt);
 		} catch (Exception e) {
 			SqlExecuteStat.error(e);
@@ -1288,6 +2005,8 @@ public class DialectFactory {
 				}
 			}
 			SqlExecuteStat.debug("执行结果", "实际影响记录数量:{} 条!", updateTotalCnt);
+			SqlExecuteStat.affectRows(updateTotalCnt);
+			ResultCacheUtils.invalidateByEntity(sqlToyContext, entities.get(0).getClass());
 			return Long.valueOf(updateTotalCnt);
 		} catch (Exception e) {
 			SqlExecuteStat.error(e);
@@ -1417,6 +2136,7 @@ public class DialectFactory {
 						}
 					});
 			SqlExecuteStat.debug("执行结果", "单对象保存返回主键值:{}", result);
+			ResultCacheUtils.invalidateByEntity(sqlToyContext, entity.getClass());
 			return result;
 		} catch (Exception e) {
 			SqlExecuteStat.error(e);
@@ -1438,6 +2158,22 @@ public class DialectFactory {
 	public Long saveAll(final SqlToyContext sqlToyContext, final List<?> entities, final int batchSize,
                         final AbstractReflectPropertyHandler reflectPropertyHandler, final DataSource dataSource,
                         final Boolean autoCommit) {
+		return saveAll(sqlToyContext, entities, batchSize, reflectPropertyHandler, dataSource, autoCommit, false);
+	}
+
+	/**
+	 * @todo 批量保存,bulkLoad=true时采用数据库原生的大批量写入方式(COPY、LOAD DATA、多行values)
+	 * @param sqlToyContext
+	 * @param entities
+	 * @param batchSize
+	 * @param reflectPropertyHandler
+	 * @param dataSource
+	 * @param autoCommit
+	 * @param bulkLoad
+	 */
+	public Long saveAll(final SqlToyContext sqlToyContext, final List<?> entities, final int batchSize,
+			final AbstractReflectPropertyHandler reflectPropertyHandler, final DataSource dataSource,
+			final Boolean autoCommit, final boolean bulkLoad) {
 		if (entities == null || entities.isEmpty()) {
 			logger.warn("saveAll entities is null or empty,please check!");
 			return 0L;
@@ -1454,9 +2190,21 @@ public class DialectFactory {
 									@Override
                                     public void doConnection(Connection conn, Integer dbType, String dialect)
 											throws Exception {
-										this.setResult(getDialectSqlWrapper(dbType).saveAll(context,
-												batchModel.getEntities(), batchSize, reflectPropertyHandler, conn,
-												dbType, dialect, autoCommit, shardingModel.getTableName()));
+										Long saveCnt = null;
+										if (bulkLoad) {
+											saveCnt = BulkLoadUtils.saveAll(context,
+													context.getEntityMeta(batchModel.getEntities().get(0).getClass()),
+													batchModel.getEntities(), batchSize, reflectPropertyHandler,
+													shardingModel.getDataSource(), conn, dbType, autoCommit,
+													shardingModel.getTableName());
+										}
+										// 数据库或主键策略不支持bulkLoad,采用常规批量
+										if (saveCnt == null) {
+											saveCnt = getDialectSqlWrapper(dbType).saveAll(context,
+													batchModel.getEntities(), batchSize, reflectPropertyHandler, conn,
+													dbType, dialect, autoCommit, shardingModel.getTableName());
+										}
+										this.setResult(saveCnt);
 									}
 								});
 						List<Long> tmp = new ArrayList();
@@ -1470,6 +2218,8 @@ public class DialectFactory {
 				}
 			}
 			SqlExecuteStat.debug("执行结果", "批量保存记录量:{}条!", updateTotalCnt);
+			SqlExecuteStat.affectRows(updateTotalCnt);
+			ResultCacheUtils.invalidateByEntity(sqlToyContext, entities.get(0).getClass());
 			return Long.valueOf(updateTotalCnt);
 		} catch (Exception e) {
 			SqlExecuteStat.error(e);
@@ -1509,6 +2259,8 @@ public class DialectFactory {
 						}
 					});
 			SqlExecuteStat.debug("执行结果", "update操作影响记录量:{} 条!", updateTotalCnt);
+			SqlExecuteStat.affectRows(updateTotalCnt);
+			ResultCacheUtils.invalidateByEntity(sqlToyContext, entity.getClass());
 			return updateTotalCnt;
 		} catch (Exception e) {
 			SqlExecuteStat.error(e);
@@ -1564,6 +2316,8 @@ public class DialectFactory {
 				}
 			}
 			SqlExecuteStat.debug("执行结果", "批量更新影响记录量:{} 条!", updateTotalCnt);
+			SqlExecuteStat.affectRows(updateTotalCnt);
+			ResultCacheUtils.invalidateByEntity(sqlToyContext, entities.get(0).getClass());
 			return Long.valueOf(updateTotalCnt);
 		} catch (Exception e) {
 			SqlExecuteStat.error(e);
@@ -1597,6 +2351,8 @@ public class DialectFactory {
 						}
 					});
 			SqlExecuteStat.debug("执行结果", "删除操作影响记录量:{} 条!", updateTotalCnt);
+			SqlExecuteStat.affectRows(updateTotalCnt);
+			ResultCacheUtils.invalidateByEntity(sqlToyContext, entity.getClass());
 			return updateTotalCnt;
 		} catch (Exception e) {
 			SqlExecuteStat.error(e);
@@ -1648,6 +2404,8 @@ public class DialectFactory {
 				}
 			}
 			SqlExecuteStat.debug("执行结果", "批量删除操作影响记录量:{} 条!", updateTotalCnt);
+			SqlExecuteStat.affectRows(updateTotalCnt);
+			ResultCacheUtils.invalidateByEntity(sqlToyContext, entities.get(0).getClass());
 			return Long.valueOf(updateTotalCnt);
 		} catch (Exception e) {
 			SqlExecuteStat.error(e);
@@ -1697,6 +2455,8 @@ public class DialectFactory {
 							this.setResult(queryResult);
 						}
 					});
+			// 使相关表的查询结果缓存失效
+			ResultCacheUtils.invalidate(sqlToyContext, ResultCacheUtils.parseQueryTables(sqlToyConfig.getSql()));
 			result.setExecuteTime(System.currentTimeMillis() - startTime);
 			return result;
 		} catch (Exception e) {
@@ -1741,6 +2501,8 @@ public class DialectFactory {
 							this.setResult(queryResult);
 						}
 					});
+			// 使相关表的查询结果缓存失效
+			ResultCacheUtils.invalidate(sqlToyContext, ResultCacheUtils.parseQueryTables(sqlToyConfig.getSql()));
 			result.setExecuteTime(System.currentTimeMillis() - startTime);
 			return result;
 		} catch (Exception e) {
@@ -1784,6 +2546,8 @@ public class DialectFactory {
 							this.setResult(queryResult);
 						}
 					});
+			// 使相关表的查询结果缓存失效
+			ResultCacheUtils.invalidate(sqlToyContext, ResultCacheUtils.parseQueryTables(sqlToyConfig.getSql()));
 			result.setExecuteTime(System.currentTimeMillis() - startTime);
 			return result;
 		} catch (Exception e) {
@@ -1795,7 +2559,7 @@ public class DialectFactory {
 	}
 
 	/**
-	 * @todo 存储过程调用
+	 * @todo 存储过程调用(无法解析存储过程修改的表,不会使查询结果缓存失效,修改了缓存涉及的表时需调用ResultCacheUtils.invalidate)
 	 * @param sqlToyContext
 	 * @param sqlToyConfig
 	 * @param inParamsValue
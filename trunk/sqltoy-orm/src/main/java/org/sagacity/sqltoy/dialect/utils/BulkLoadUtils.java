@@ -0,0 +1,850 @@
+package org.sagacity.sqltoy.dialect.utils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.lang.reflect.InvocationTargetException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLWarning;
+import java.sql.Statement;
+import java.sql.Types;
+import java.time.DateTimeException;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.sagacity.sqltoy.SqlExecuteStat;
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
+import org.sagacity.sqltoy.config.model.EntityMeta;
+import org.sagacity.sqltoy.config.model.PKStrategy;
+import org.sagacity.sqltoy.plugins.AbstractTypeHandler;
+import org.sagacity.sqltoy.utils.BeanUtil;
+import org.sagacity.sqltoy.utils.CollectionUtil;
+import org.sagacity.sqltoy.utils.DataSourceUtils.DBType;
+import org.sagacity.sqltoy.utils.ReservedWordsUtil;
+import org.sagacity.sqltoy.utils.SqlUtil;
+import org.sagacity.sqltoy.utils.SqlUtilsExt;
+import org.sagacity.sqltoy.utils.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 提供大批量数据写入的快速通道(数据采集、ETL场景),按数据库选择最快的写入方式:
+ *              <li>postgresql/gauss:COPY ... FROM STDIN(csv),通过驱动CopyManager流式写入</li>
+ *              <li>mysql/tidb/oceanbase:LOAD DATA LOCAL INFILE,驱动从内存流读取(需连接开启allowLoadLocalInfile),
+ *              LOCAL模式下主键冲突、类型转换错误只产生warning(跳过或截断),执行后存在warning或写入行数不一致即抛出异常,
+ *              非自动提交时由事务回滚,自动提交时已写入的数据不会撤销</li>
+ *              <li>其他:insert into table (...) values (..),(..) 多行合并插入</li>
+ *              COPY/LOAD DATA以文本方式传值,存在自定义typeHandler或二进制字段时统一走多行insert(参数赋值与常规批量一致)
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class BulkLoadUtils {
+	/**
+	 * 定义日志
+	 */
+	protected final static Logger logger = LoggerFactory.getLogger(BulkLoadUtils.class);
+
+	/**
+	 * 驱动或服务端未开启local infile的数据源,不再重复尝试
+	 */
+	private final static Set<DataSource> LOCAL_INFILE_DISABLED = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * 未开启local infile的错误码:1148(ER_NOT_ALLOWED_COMMAND)、3948(ER_CLIENT_LOCAL_FILES_DISABLED)、
+	 * 2068(CR_LOAD_DATA_LOCAL_INFILE_REJECTED)
+	 */
+	private final static int[] LOCAL_INFILE_ERROR_CODES = { 1148, 3948, 2068 };
+
+	/**
+	 * insert into xxx (...) values (...) 单行values语句(允许前面有sql签名注释)
+	 */
+	private final static Pattern INSERT_VALUES_PATTERN = Pattern
+			.compile("(?is)^\\s*((?:/\\*.*?\\*/\\s*)?insert\\s+into\\s+.+?\\s+values\\s*)(\\(.*\\))\\s*$");
+
+	private final static DateTimeFormatter DATE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+
+	private final static DateTimeFormatter OFFSET_FORMAT = DateTimeFormatter.ofPattern("xxx");
+
+	private BulkLoadUtils() {
+	}
+
+	/**
+	 * @TODO 大批量保存对象,数据库不支持时返回null由调用方按常规saveAll执行
+	 * @param sqlToyContext
+	 * @param entityMeta
+	 * @param entities
+	 * @param batchSize              多行insert时每条语句的最大行数
+	 * @param reflectPropertyHandler
+	 * @param dataSource             用于记录数据源是否开启local infile
+	 * @param conn
+	 * @param dbType
+	 * @param autoCommit
+	 * @param tableName
+	 * @return
+	 * @throws Exception
+	 */
+	public static Long saveAll(SqlToyContext sqlToyContext, EntityMeta entityMeta, List<?> entities,
+			final int batchSize, AbstractReflectPropertyHandler reflectPropertyHandler, DataSource dataSource,
+			Connection conn, final Integer dbType, final Boolean autoCommit, String tableName) throws Exception {
+		if (getMaxParams(dbType) <= 0) {
+			return null;
+		}
+		PKStrategy pkStrategy = entityMeta.getIdStrategy();
+		String[] fields = entityMeta.getFieldsArray();
+		int pkIndex = entityMeta.getIdIndex();
+		int columnSize = fields.length;
+		int totalRows = 0;
+		int blankCnt = 0;
+		boolean isIdentity = pkStrategy != null
+				&& (pkStrategy.equals(PKStrategy.IDENTITY) || pkStrategy.equals(PKStrategy.SEQUENCE));
+		for (Object entity : entities) {
+			if (entity != null) {
+				totalRows++;
+				if (isIdentity && StringUtil.isBlank(BeanUtil.getProperty(entity, entityMeta.getIdArray()[0]))) {
+					blankCnt++;
+				}
+			}
+		}
+		if (blankCnt > 0) {
+			// sequence需要nextval表达式、部分赋值的identity无法统一列,走常规批量
+			if (pkStrategy.equals(PKStrategy.SEQUENCE) || blankCnt < totalRows) {
+				return null;
+			}
+			// identity由数据库产生(不回写对象),主键列在最后
+			columnSize = pkIndex;
+		}
+		Integer[] types = new Integer[columnSize];
+		String[] columns = new String[columnSize];
+		boolean hasBinary = false;
+		for (int i = 0; i < columnSize; i++) {
+			types[i] = entityMeta.getFieldsTypeArray()[i];
+			columns[i] = ReservedWordsUtil.convertWord(entityMeta.getColumnName(fields[i]), dbType);
+			if (isBinary(types[i])) {
+				hasBinary = true;
+			}
+		}
+		EntityRows rowSource = new EntityRows(entityMeta, entities, columnSize, !isIdentity,
+				DialectUtils.getAddReflectHandler(sqlToyContext, reflectPropertyHandler), Math.max(1, batchSize));
+		String table = entityMeta.getSchemaTable(tableName);
+		String columnsStr = StringUtil.linkAry(",", true, (Object[]) columns);
+		boolean hasSetAutoCommit = false;
+		if (autoCommit != null && autoCommit.booleanValue() != conn.getAutoCommit()) {
+			conn.setAutoCommit(autoCommit.booleanValue());
+			hasSetAutoCommit = true;
+		}
+		try {
+			Long result = null;
+			// 文本协议无法应用typeHandler
+			boolean textMode = !hasBinary && sqlToyContext.getTypeHandler() == null;
+			try {
+				if (textMode && (dbType == DBType.POSTGRESQL || dbType == DBType.GAUSSDB)) {
+					result = copyIn(conn, table, columnsStr, rowSource, totalRows);
+				} else if (textMode && (dataSource == null || !LOCAL_INFILE_DISABLED.contains(dataSource))
+						&& (dbType == DBType.MYSQL || dbType == DBType.MYSQL57 || dbType == DBType.TIDB
+								|| dbType == DBType.OCEANBASE)) {
+					result = loadDataLocal(dataSource, conn, table, columnsStr, rowSource, totalRows);
+				}
+			} catch (Exception e) {
+				// 流式读取中加工数据(如主键生成)的异常被驱动包装,抛出原始异常
+				throw (rowSource.error != null) ? rowSource.error : e;
+			}
+			if (rowSource.error != null) {
+				throw rowSource.error;
+			}
+			if (result == null) {
+				StringBuilder rowHolder = new StringBuilder(columnSize * 2 + 2).append("(");
+				for (int i = 0; i < columnSize; i++) {
+					rowHolder.append((i == 0) ? "?" : ",?");
+				}
+				rowHolder.append(")");
+				String insertPrefix = "insert into " + table + " (" + columnsStr + ") values ";
+				long updateCount = 0;
+				// 重新从头逐批加工(已生成的主键已回写到对象,不会重复生成)
+				rowSource = rowSource.restart();
+				List<Object[]> values;
+				while ((values = rowSource.nextBatch()) != null) {
+					updateCount = updateCount + multiRowInsert(sqlToyContext.getTypeHandler(), insertPrefix,
+							rowHolder.toString(), values, types, batchSize, conn, dbType);
+				}
+				result = updateCount;
+			}
+			return result;
+		} finally {
+			if (hasSetAutoCommit) {
+				conn.setAutoCommit(!autoCommit);
+			}
+		}
+	}
+
+	/**
+	 * @TODO 针对link.batch()提交的单行insert语句,改写为多行values批量写入,sql不符合时返回null
+	 * @param typeHandler
+	 * @param insertSql   已经转化为?参数的sql
+	 * @param rowDatas    数组或集合形式的行数据
+	 * @param updateTypes
+	 * @param batchSize
+	 * @param autoCommit
+	 * @param conn
+	 * @param dbType
+	 * @return
+	 * @throws Exception
+	 */
+	public static Long batchInsert(AbstractTypeHandler typeHandler, final String insertSql, final List rowDatas,
+			final Integer[] updateTypes, final int batchSize, final Boolean autoCommit, final Connection conn,
+			final Integer dbType) throws Exception {
+		if (getMaxParams(dbType) <= 0) {
+			return null;
+		}
+		String[] sqlParts = splitInsertValues(insertSql);
+		if (sqlParts == null) {
+			return null;
+		}
+		List<Object[]> values = new ArrayList<Object[]>(rowDatas.size());
+		for (Object row : rowDatas) {
+			if (row == null) {
+				continue;
+			}
+			if (row instanceof Collection) {
+				values.add(((Collection) row).toArray());
+			} else if (row.getClass().isArray()) {
+				values.add(CollectionUtil.convertArray(row));
+			} else {
+				return null;
+			}
+		}
+		boolean hasSetAutoCommit = false;
+		if (autoCommit != null && autoCommit.booleanValue() != conn.getAutoCommit()) {
+			conn.setAutoCommit(autoCommit.booleanValue());
+			hasSetAutoCommit = true;
+		}
+		try {
+			return multiRowInsert(typeHandler, sqlParts[0], sqlParts[1], values, updateTypes, batchSize, conn,
+					dbType);
+		} finally {
+			if (hasSetAutoCommit) {
+				conn.setAutoCommit(!autoCommit);
+			}
+		}
+	}
+
+	/**
+	 * @TODO 拆分insert sql为:insert into table (...) values 和 (?,?) 两部分,values后有其他语句的返回null
+	 * @param insertSql
+	 * @return
+	 */
+	public static String[] splitInsertValues(String insertSql) {
+		Matcher matcher = INSERT_VALUES_PATTERN.matcher(insertSql);
+		if (!matcher.find()) {
+			return null;
+		}
+		String rowHolder = matcher.group(2);
+		// 存在字符常量或values后面还有其他内容(如on duplicate key、returning)不做改写
+		if (rowHolder.indexOf("'") != -1 || rowHolder.indexOf("\"") != -1) {
+			return null;
+		}
+		int level = 0;
+		for (int i = 0; i < rowHolder.length(); i++) {
+			if (rowHolder.charAt(i) == '(') {
+				level++;
+			} else if (rowHolder.charAt(i) == ')') {
+				level--;
+				if (level == 0 && i < rowHolder.length() - 1) {
+					return null;
+				}
+			}
+		}
+		return new String[] { matcher.group(1), rowHolder };
+	}
+
+	/**
+	 * @TODO 多行values合并插入,每条语句行数受batchSize和数据库参数个数上限约束
+	 * @param typeHandler
+	 * @param insertPrefix insert into table (...) values
+	 * @param rowHolder    (?,?,?)
+	 * @param values
+	 * @param types
+	 * @param batchSize
+	 * @param conn
+	 * @param dbType
+	 * @return
+	 * @throws Exception
+	 */
+	public static Long multiRowInsert(AbstractTypeHandler typeHandler, String insertPrefix, String rowHolder,
+			List<Object[]> values, Integer[] types, int batchSize, Connection conn, Integer dbType) throws Exception {
+		int totalRows = values.size();
+		if (totalRows == 0) {
+			return 0L;
+		}
+		int paramCnt = StringUtil.matchCnt(rowHolder, "\\?");
+		int maxRows = (paramCnt == 0) ? batchSize : Math.max(1, getMaxParams(dbType) / paramCnt);
+		// sqlserver 单条insert values最多1000行
+		if (dbType == DBType.SQLSERVER) {
+			maxRows = Math.min(maxRows, 1000);
+		}
+		int chunkRows = Math.max(1, Math.min(batchSize, maxRows));
+		SqlExecuteStat.showSql("多行合并批量插入[" + totalRows + "]条记录,每批[" + chunkRows + "]行",
+				insertPrefix + rowHolder, null);
+		long updateCount = 0;
+		PreparedStatement pst = null;
+		int pstRows = 0;
+		int rows;
+		int index;
+		Object[] rowData;
+		try {
+			for (int start = 0; start < totalRows; start += chunkRows) {
+				rows = Math.min(chunkRows, totalRows - start);
+				// 整批复用同一个PreparedStatement,最后不足一批时重新构造
+				if (pst == null || rows != pstRows) {
+					if (pst != null) {
+						pst.close();
+					}
+					pst = conn.prepareStatement(wrapMultiRowSql(insertPrefix, rowHolder, rows));
+					pstRows = rows;
+				}
+				index = 1;
+				for (int i = start; i < start + rows; i++) {
+					rowData = values.get(i);
+					for (int j = 0; j < rowData.length; j++) {
+						SqlUtil.setParamValue(typeHandler, conn, dbType, pst, rowData[j],
+								(types == null || j >= types.length || types[j] == null) ? -1 : types[j], index);
+						index++;
+					}
+				}
+				pst.execute();
+				updateCount = updateCount + ((pst.getUpdateCount() > 0) ? pst.getUpdateCount() : 0);
+			}
+		} finally {
+			if (pst != null) {
+				try {
+					pst.close();
+				} catch (SQLException se) {
+					logger.error(se.getMessage(), se);
+				}
+			}
+		}
+		return updateCount;
+	}
+
+	/**
+	 * @TODO 构造多行values语句
+	 * @param insertPrefix
+	 * @param rowHolder
+	 * @param rows
+	 * @return
+	 */
+	private static String wrapMultiRowSql(String insertPrefix, String rowHolder, int rows) {
+		StringBuilder sql = new StringBuilder(insertPrefix.length() + (rowHolder.length() + 1) * rows);
+		sql.append(insertPrefix);
+		for (int i = 0; i < rows; i++) {
+			if (i > 0) {
+				sql.append(",");
+			}
+			sql.append(rowHolder);
+		}
+		return sql.toString();
+	}
+
+	/**
+	 * @TODO postgresql COPY FROM STDIN,驱动不支持时返回null
+	 * @param conn
+	 * @param table
+	 * @param columns
+	 * @param rowSource
+	 * @param totalRows
+	 * @return
+	 * @throws Exception
+	 */
+	private static Long copyIn(Connection conn, String table, String columns, EntityRows rowSource, int totalRows)
+			throws Exception {
+		Object copyManager;
+		try {
+			Class pgConnClass = Class.forName("org.postgresql.PGConnection");
+			if (!conn.isWrapperFor(pgConnClass)) {
+				return null;
+			}
+			Object pgConn = conn.unwrap(pgConnClass);
+			copyManager = pgConnClass.getMethod("getCopyAPI").invoke(pgConn);
+		} catch (ClassNotFoundException e) {
+			return null;
+		}
+		String copySql = getCopySql(table, columns);
+		SqlExecuteStat.showSql("COPY批量写入[" + totalRows + "]条记录", copySql, null);
+		Object result;
+		try {
+			result = copyManager.getClass().getMethod("copyIn", String.class, InputStream.class).invoke(copyManager,
+					copySql, new RowsInputStream(rowSource, row -> toCsvLine(row)));
+		} catch (InvocationTargetException e) {
+			throw (e.getTargetException() instanceof Exception) ? (Exception) e.getTargetException() : e;
+		}
+		return ((Number) result).longValue();
+	}
+
+	/**
+	 * @TODO postgresql COPY语句
+	 * @param table
+	 * @param columns
+	 * @return
+	 */
+	public static String getCopySql(String table, String columns) {
+		return "COPY " + table + " (" + columns + ") FROM STDIN WITH CSV";
+	}
+
+	/**
+	 * @TODO mysql LOAD DATA语句(字段以双引号包裹、反斜杠转义,null为\N)
+	 * @param table
+	 * @param columns
+	 * @return
+	 */
+	public static String getLoadDataSql(String table, String columns) {
+		return "LOAD DATA LOCAL INFILE 'sqltoy_bulk_load' INTO TABLE " + table
+				+ " CHARACTER SET utf8mb4 FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '\\\\'"
+				+ " LINES TERMINATED BY '\\n' (" + columns + ")";
+	}
+
+	/**
+	 * @TODO mysql LOAD DATA LOCAL INFILE,驱动不支持或未开启local infile时返回null,存在warning(跳过或截断的行)时抛出异常
+	 * @param dataSource
+	 * @param conn
+	 * @param table
+	 * @param columns
+	 * @param rowSource
+	 * @param totalRows
+	 * @return
+	 * @throws Exception
+	 */
+	private static Long loadDataLocal(DataSource dataSource, Connection conn, String table, String columns,
+			EntityRows rowSource, int totalRows) throws Exception {
+		String loadSql = getLoadDataSql(table, columns);
+		// 时间以会话时区的文本写入,与数据库对timestamp的转换保持一致
+		final ZoneId sessionZone = getSessionZone(conn);
+		Statement stmt = null;
+		try {
+			stmt = conn.createStatement();
+			boolean setStream = false;
+			Class stmtClass;
+			for (String className : new String[] { "com.mysql.cj.jdbc.JdbcStatement", "com.mysql.jdbc.Statement" }) {
+				try {
+					stmtClass = Class.forName(className);
+				} catch (ClassNotFoundException e) {
+					continue;
+				}
+				if (stmt.isWrapperFor(stmtClass)) {
+					stmtClass.getMethod("setLocalInfileInputStream", InputStream.class).invoke(
+							stmt.unwrap(stmtClass), new RowsInputStream(rowSource, row -> toLoadDataLine(row, sessionZone)));
+					setStream = true;
+					break;
+				}
+			}
+			if (!setStream) {
+				disableLocalInfile(dataSource);
+				logger.warn("当前mysql驱动不支持LOAD DATA LOCAL INFILE内存流写入,bulkLoad将采用多行insert方式!");
+				return null;
+			}
+			SqlExecuteStat.showSql("LOAD DATA批量写入[" + totalRows + "]条记录", loadSql, null);
+			int updateCount;
+			try {
+				updateCount = stmt.executeUpdate(loadSql);
+			} catch (SQLException e) {
+				// 未开启allowLoadLocalInfile或服务端local_infile=0,此时尚未写入任何数据
+				if (isLocalInfileDisabled(e)) {
+					disableLocalInfile(dataSource);
+					logger.warn("数据库连接未开启LOAD DATA LOCAL INFILE(allowLoadLocalInfile=true),bulkLoad将采用多行insert方式:{}",
+							e.getMessage());
+					return null;
+				}
+				throw e;
+			}
+			// LOCAL模式下主键冲突、数据转换错误仅为warning,不能当作成功
+			SQLWarning warning = stmt.getWarnings();
+			if (warning != null || updateCount != totalRows) {
+				StringBuilder msg = new StringBuilder("LOAD DATA批量写入[").append(totalRows)
+						.append("]条记录,实际写入[").append(updateCount).append("]条");
+				int cnt = 0;
+				while (warning != null && cnt < 10) {
+					msg.append(cnt == 0 ? ",warning:" : ";").append(warning.getMessage());
+					warning = warning.getNextWarning();
+					cnt++;
+				}
+				throw new SQLException(msg.toString());
+			}
+			return Long.valueOf(updateCount);
+		} finally {
+			if (stmt != null) {
+				stmt.close();
+			}
+		}
+	}
+
+	/**
+	 * @TODO 获取mysql会话时区,SYSTEM时以当前与utc的时差为准
+	 * @param conn
+	 * @return
+	 * @throws SQLException
+	 */
+	private static ZoneId getSessionZone(Connection conn) throws SQLException {
+		Statement stmt = null;
+		ResultSet rs = null;
+		try {
+			stmt = conn.createStatement();
+			rs = stmt.executeQuery("select @@session.time_zone,timestampdiff(second,utc_timestamp(),now())");
+			rs.next();
+			String timeZone = rs.getString(1);
+			if (timeZone != null && !"SYSTEM".equalsIgnoreCase(timeZone)) {
+				try {
+					return ZoneId.of(timeZone);
+				} catch (DateTimeException e) {
+					logger.debug("会话时区:{}无法解析,按与utc的时差处理", timeZone);
+				}
+			}
+			return ZoneOffset.ofTotalSeconds(rs.getInt(2));
+		} finally {
+			if (rs != null) {
+				rs.close();
+			}
+			if (stmt != null) {
+				stmt.close();
+			}
+		}
+	}
+
+	/**
+	 * @TODO 按错误码判断是否为未开启local infile
+	 * @param e
+	 * @return
+	 */
+	private static boolean isLocalInfileDisabled(SQLException e) {
+		SQLException cause = e;
+		while (cause != null) {
+			for (int errorCode : LOCAL_INFILE_ERROR_CODES) {
+				if (cause.getErrorCode() == errorCode) {
+					return true;
+				}
+			}
+			cause = cause.getNextException();
+		}
+		return false;
+	}
+
+	private static void disableLocalInfile(DataSource dataSource) {
+		if (dataSource != null) {
+			LOCAL_INFILE_DISABLED.add(dataSource);
+		}
+	}
+
+	/**
+	 * @TODO 数据库单条语句参数个数上限,小于等于0表示不支持多行values
+	 * @param dbType
+	 * @return
+	 */
+	private static int getMaxParams(Integer dbType) {
+		switch (dbType) {
+		case DBType.SQLSERVER:
+			return 2000;
+		case DBType.SQLITE:
+			return 999;
+		case DBType.MYSQL:
+		case DBType.MYSQL57:
+		case DBType.TIDB:
+		case DBType.OCEANBASE:
+		case DBType.POSTGRESQL:
+		case DBType.GAUSSDB:
+		case DBType.KINGBASE:
+		case DBType.DB2:
+		case DBType.DM:
+		case DBType.CLICKHOUSE:
+			return 30000;
+		default:
+			return 0;
+		}
+	}
+
+	private static boolean isBinary(Integer jdbcType) {
+		return jdbcType != null && (jdbcType == Types.BINARY || jdbcType == Types.VARBINARY
+				|| jdbcType == Types.LONGVARBINARY || jdbcType == Types.BLOB);
+	}
+
+	/**
+	 * @TODO 校验主键策略依赖的关联字段值
+	 * @param entityMeta
+	 * @param rows
+	 */
+	private static void validateRelatedValues(EntityMeta entityMeta, List<Object[]> rows) {
+		Integer[] relatedColumn = entityMeta.getBizIdRelatedColIndex();
+		if (relatedColumn == null) {
+			return;
+		}
+		for (Object[] row : rows) {
+			for (int meter = 0; meter < relatedColumn.length; meter++) {
+				if (StringUtil.isBlank(row[relatedColumn[meter]])) {
+					throw new IllegalArgumentException("对象:" + entityMeta.getEntityClass().getName() + " 生成业务主键依赖的关联字段:"
+							+ entityMeta.getBizIdRelatedColumns()[meter] + " 值为null!");
+				}
+			}
+		}
+	}
+
+	/**
+	 * @TODO 转化为文本值
+	 * @param value
+	 * @param booleanAsNumber mysql 以1/0表示boolean
+	 * @param zone            时间(Timestamp、Date)的时区,为null表示按jvm时区并带上时差
+	 * @return
+	 */
+	private static String toText(Object value, boolean booleanAsNumber, ZoneId zone) {
+		if (value instanceof BigDecimal) {
+			return ((BigDecimal) value).toPlainString();
+		}
+		if (value instanceof java.sql.Date || value instanceof java.sql.Time) {
+			return value.toString();
+		}
+		if (value instanceof Date) {
+			ZonedDateTime dateTime = ((Date) value).toInstant().atZone((zone == null) ? ZoneId.systemDefault() : zone);
+			String text = formatDateTime(dateTime.toLocalDateTime());
+			return (zone == null) ? text + OFFSET_FORMAT.format(dateTime) : text;
+		}
+		if (value instanceof LocalDateTime) {
+			return formatDateTime((LocalDateTime) value);
+		}
+		if (value instanceof Boolean && booleanAsNumber) {
+			return ((Boolean) value) ? "1" : "0";
+		}
+		return value.toString();
+	}
+
+	/**
+	 * @TODO yyyy-MM-dd HH:mm:ss[.fffffffff]格式
+	 * @param dateTime
+	 * @return
+	 */
+	private static String formatDateTime(LocalDateTime dateTime) {
+		String text = DATE_TIME_FORMAT.format(dateTime);
+		if (dateTime.getNano() == 0) {
+			return text;
+		}
+		return text + "." + String.format("%09d", dateTime.getNano()).replaceFirst("0+$", "");
+	}
+
+	/**
+	 * @TODO csv行(postgresql COPY):null为空,其余加双引号,时间带上时差(timestamp字段忽略时差,与驱动按jvm时区传值一致)
+	 * @param row
+	 * @return
+	 */
+	public static String toCsvLine(Object[] row) {
+		StringBuilder line = new StringBuilder(row.length * 16);
+		for (int i = 0; i < row.length; i++) {
+			if (i > 0) {
+				line.append(",");
+			}
+			if (row[i] != null) {
+				line.append("\"").append(toText(row[i], false, null).replace("\"", "\"\"")).append("\"");
+			}
+		}
+		return line.append("\n").toString();
+	}
+
+	/**
+	 * @TODO LOAD DATA 行:null为\N,其余加双引号并以反斜杠转义
+	 * @param row
+	 * @param sessionZone 数据库会话时区
+	 * @return
+	 */
+	public static String toLoadDataLine(Object[] row, ZoneId sessionZone) {
+		StringBuilder line = new StringBuilder(row.length * 16);
+		String text;
+		char c;
+		for (int i = 0; i < row.length; i++) {
+			if (i > 0) {
+				line.append(",");
+			}
+			if (row[i] == null) {
+				line.append("\\N");
+				continue;
+			}
+			text = toText(row[i], true, sessionZone);
+			line.append("\"");
+			for (int j = 0; j < text.length(); j++) {
+				c = text.charAt(j);
+				if (c == '\\' || c == '"') {
+					line.append('\\').append(c);
+				} else if (c == '\n') {
+					line.append("\\n");
+				} else if (c == '\r') {
+					line.append("\\r");
+				} else if (c == '\0') {
+					line.append("\\0");
+				} else {
+					line.append(c);
+				}
+			}
+			line.append("\"");
+		}
+		return line.append("\n").toString();
+	}
+
+	/**
+	 * 按批次反射对象并加工(主键生成、默认值、截取写入列)的行数据,每次只保留一批
+	 */
+	private static class EntityRows {
+		private final EntityMeta entityMeta;
+		private final List<?> entities;
+		private final int columnSize;
+		private final boolean generateId;
+		private final AbstractReflectPropertyHandler handler;
+		private final int batchSize;
+		private int start = 0;
+
+		/**
+		 * 流式读取过程中加工数据产生的异常
+		 */
+		private Exception error;
+
+		EntityRows(EntityMeta entityMeta, List<?> entities, int columnSize, boolean generateId,
+				AbstractReflectPropertyHandler handler, int batchSize) {
+			this.entityMeta = entityMeta;
+			this.entities = entities;
+			this.columnSize = columnSize;
+			this.generateId = generateId;
+			this.handler = handler;
+			this.batchSize = batchSize;
+		}
+
+		private EntityRows restart() {
+			return new EntityRows(entityMeta, entities, columnSize, generateId, handler, batchSize);
+		}
+
+		/**
+		 * @TODO 加工下一批数据
+		 * @return 没有数据返回null
+		 * @throws Exception
+		 */
+		private List<Object[]> nextBatch() throws Exception {
+			List<Object[]> rows = null;
+			while (rows == null && start < entities.size()) {
+				int end = Math.min(start + batchSize, entities.size());
+				List<?> batchEntities = entities.subList(start, end);
+				start = end;
+				rows = BeanUtil.reflectBeansToInnerAry(batchEntities, entityMeta.getFieldsArray(), null, handler);
+				if (rows != null && rows.isEmpty()) {
+					rows = null;
+				}
+				if (rows != null) {
+					prepare(rows, batchEntities);
+				}
+			}
+			return rows;
+		}
+
+		private void prepare(List<Object[]> rows, List<?> batchEntities) throws Exception {
+			if (generateId && entityMeta.getIdStrategy() != null && entityMeta.getIdGenerator() != null) {
+				validateRelatedValues(entityMeta, rows);
+				DialectUtils.generateIds(entityMeta, entityMeta.getIdGenerator(), rows, entityMeta.getIdIndex(),
+						entityMeta.getIdType(), entityMeta.getIdLength(), batchEntities, entityMeta.getIdArray()[0]);
+			}
+			if (entityMeta.getBusinessIdGenerator() != null) {
+				validateRelatedValues(entityMeta, rows);
+				DialectUtils.generateIds(entityMeta, entityMeta.getBusinessIdGenerator(), rows,
+						entityMeta.getFieldIndex(entityMeta.getBusinessIdField()),
+						entityMeta.getColumnJavaType(entityMeta.getBusinessIdField()), entityMeta.getBizIdLength(),
+						batchEntities, entityMeta.getBusinessIdField());
+			}
+			// 按最终写入列截取并处理默认值
+			Integer[] fieldsType = entityMeta.getFieldsTypeArray();
+			String[] defaultValues = entityMeta.getFieldsDefaultValue();
+			Boolean[] nullables = entityMeta.getFieldsNullable();
+			Object[] row;
+			Object[] rowValues;
+			for (int i = 0, size = rows.size(); i < size; i++) {
+				row = rows.get(i);
+				rowValues = new Object[columnSize];
+				for (int j = 0; j < columnSize; j++) {
+					rowValues[j] = SqlUtilsExt.getDefaultValue(row[j], defaultValues[j], fieldsType[j], nullables[j]);
+				}
+				rows.set(i, rowValues);
+			}
+		}
+	}
+
+	/**
+	 * 逐行按需编码的输入流,避免将全部数据拼成一个大文本
+	 */
+	private static class RowsInputStream extends InputStream {
+		private final EntityRows rowSource;
+		private final Function<Object[], String> formatter;
+		private List<Object[]> rows = null;
+		private int rowIndex = 0;
+		private byte[] buffer = new byte[0];
+		private int position = 0;
+
+		RowsInputStream(EntityRows rowSource, Function<Object[], String> formatter) {
+			this.rowSource = rowSource;
+			this.formatter = formatter;
+		}
+
+		private boolean fill() throws IOException {
+			while (position >= buffer.length) {
+				if (rows == null || rowIndex >= rows.size()) {
+					try {
+						rows = rowSource.nextBatch();
+					} catch (Exception e) {
+						rowSource.error = e;
+						throw new IOException(e.getMessage(), e);
+					}
+					rowIndex = 0;
+					if (rows == null) {
+						return false;
+					}
+				}
+				buffer = formatter.apply(rows.get(rowIndex++)).getBytes(StandardCharsets.UTF_8);
+				position = 0;
+			}
+			return true;
+		}
+
+		@Override
+		public int read() throws IOException {
+			if (!fill()) {
+				return -1;
+			}
+			return buffer[position++] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] bytes, int offset, int length) throws IOException {
+			if (length == 0) {
+				return 0;
+			}
+			if (!fill()) {
+				return -1;
+			}
+			int total = 0;
+			int size;
+			while (total < length && fill()) {
+				size = Math.min(length - total, buffer.length - position);
+				System.arraycopy(buffer, position, bytes, offset + total, size);
+				position += size;
+				total += size;
+			}
+			return total;
+		}
+	}
+}
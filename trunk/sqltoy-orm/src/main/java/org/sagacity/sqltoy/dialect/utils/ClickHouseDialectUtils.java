@@ -203,11 +203,8 @@ public class ClickHouseDialectUtils {
 		// 是否存在业务ID
 		boolean hasBizId = (entityMeta.getBusinessIdGenerator() == null) ? false : true;
 		int bizIdColIndex = hasBizId ? entityMeta.getFieldIndex(entityMeta.getBusinessIdField()) : 0;
-		// 标识符
-		String signature = entityMeta.getBizIdSignature();
 		Integer[] relatedColumn = entityMeta.getBizIdRelatedColIndex();
 		String[] relatedColumnNames = entityMeta.getBizIdRelatedColumns();
-		int relatedColumnSize = (relatedColumn == null) ? 0 : relatedColumn.length;
 		// 无主键值以及多主键以及assign或通过generator方式产生主键策略
 		if (pkStrategy != null && null != entityMeta.getIdGenerator()) {
 			int bizIdLength = entityMeta.getBizIdLength();
@@ -215,42 +212,37 @@ public class ClickHouseDialectUtils {
 			Object[] rowData;
 			boolean isAssigned = true;
 			String idJdbcType = entityMeta.getIdType();
-			Object[] relatedColValue = null;
 			String businessIdType = hasBizId ? entityMeta.getColumnJavaType(entityMeta.getBusinessIdField()) : "";
 			List<Object[]> idSet = new ArrayList<Object[]>();
 			for (int i = 0, s = paramValues.size(); i < s; i++) {
 				rowData = (Object[]) paramValues.get(i);
 				// 判断主键策略关联的字段是否有值,合法性验证
 				if (relatedColumn != null) {
-					relatedColValue = new Object[relatedColumnSize];
-					for (int meter = 0; meter < relatedColumnSize; meter++) {
-						relatedColValue[meter] = rowData[relatedColumn[meter]];
-						if (StringUtil.isBlank(relatedColValue[meter])) {
+					for (int meter = 0; meter < relatedColumn.length; meter++) {
+						if (StringUtil.isBlank(rowData[relatedColumn[meter]])) {
 							throw new IllegalArgumentException("对象:" + entityMeta.getEntityClass().getName()
 									+ " 生成业务主键依赖的关联字段:" + relatedColumnNames[meter] + " 值为null!");
 						}
 					}
 				}
-				// 主键值为null,调用主键生成策略并赋值
 				if (StringUtil.isBlank(rowData[pkIndex])) {
 					isAssigned = false;
-					rowData[pkIndex] = entityMeta.getIdGenerator().getId(entityMeta.getTableName(), signature,
-							entityMeta.getBizIdRelatedColumns(), relatedColValue, null, idJdbcType, idLength,
-							entityMeta.getBizIdSequenceSize());
 				}
-				if (hasBizId && StringUtil.isBlank(rowData[bizIdColIndex])) {
-					rowData[bizIdColIndex] = entityMeta.getBusinessIdGenerator().getId(entityMeta.getTableName(),
-							signature, entityMeta.getBizIdRelatedColumns(), relatedColValue, null, businessIdType,
-							bizIdLength, entityMeta.getBizIdSequenceSize());
-					// 回写业务主键值
-					BeanUtil.setProperty(entities.get(i), entityMeta.getBusinessIdField(), rowData[bizIdColIndex]);
-				}
-				idSet.add(new Object[] { rowData[pkIndex] });
 			}
-			// 批量反向设置最终得到的主键值
+			// 主键值为null,批量调用主键生成策略并赋值(按关联字段值分组一次提取多个)
 			if (!isAssigned) {
+				DialectUtils.generateIds(entityMeta, entityMeta.getIdGenerator(), paramValues, pkIndex, idJdbcType,
+						idLength, null, null);
+				for (int i = 0, s = paramValues.size(); i < s; i++) {
+					idSet.add(new Object[] { ((Object[]) paramValues.get(i))[pkIndex] });
+				}
+				// 批量反向设置最终得到的主键值
 				BeanUtil.mappingSetProperties(entities, entityMeta.getIdArray(), idSet, new int[] { 0 }, true);
 			}
+			if (hasBizId) {
+				DialectUtils.generateIds(entityMeta, entityMeta.getBusinessIdGenerator(), paramValues, bizIdColIndex,
+						businessIdType, bizIdLength, entities, entityMeta.getBusinessIdField());
+			}
 		}
 		SqlExecuteStat.showSql("批量保存[" + paramValues.size() + "]条记录", insertSql, null);
 		return SqlUtilsExt.batchUpdateByJdbc(sqlToyContext.getTypeHandler(), insertSql, paramValues,
@@ -0,0 +1,387 @@
+package org.sagacity.sqltoy.dialect.utils;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.sagacity.sqltoy.SqlToyConstants;
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.callback.AbstractPreparedStatementResultHandler;
+import org.sagacity.sqltoy.config.model.EntityMeta;
+import org.sagacity.sqltoy.utils.DataSourceUtils.DBType;
+import org.sagacity.sqltoy.utils.SqlUtil;
+
+/**
+ * @project sagacity-sqltoy
+ * @description count语句推导的缓存和优化:按SqlToyContext分别缓存推导好的count语句(key为数据库类型+是否with+裁剪可选条件后的sql,
+ *              同一sqlId相同条件组合只推导一次),
+ *              剔除不影响记录数的left join,无条件单表查询可取数据库统计信息中的近似记录数
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class CountSqlUtils {
+	/**
+	 * left join table [as] alias on
+	 */
+	private static final Pattern LEFT_JOIN_PATTERN = Pattern.compile(
+			"(?i)\\sleft\\s+(?:outer\\s+)?join\\s+([\\w\\.\\$\"`\\[\\]]+)(?:\\s+(?:as\\s+)?(\\w+))?\\s+on\\s");
+
+	/**
+	 * join on条件的结束位置
+	 */
+	private static final Pattern JOIN_END_PATTERN = Pattern.compile(
+			"(?i)\\s(left|right|inner|full|cross|join|where|group|order|having|limit|offset|fetch|union|for)\\s");
+
+	private static final Pattern AND_PATTERN = Pattern.compile("(?i)\\s+and\\s+");
+
+	private static final Pattern EQUAL_PATTERN = Pattern
+			.compile("^([\\w\\.\\$\"`\\[\\]]+)\\s*=\\s*([\\w\\.\\$\"`\\[\\]']+)$");
+
+	/**
+	 * 无条件单表count: select count(1) from table [alias]
+	 */
+	private static final Pattern SINGLE_TABLE_PATTERN = Pattern.compile(
+			"(?i)^\\s*select\\s+count\\((?:\\s*1\\s*|\\s*\\*\\s*)\\)\\s+from\\s+([\\w\\.\\$\"`\\[\\]]+)(?:\\s+(?:as\\s+)?\\w+)?\\s*$");
+
+	/**
+	 * 近似记录数低于此值时依然执行精确count(代价很小且结果精确)
+	 */
+	private static final long APPROXIMATE_MIN_COUNT = 10000L;
+
+	/**
+	 * 未提供SqlToyContext时使用的缓存key
+	 */
+	private static final Object NONE_CONTEXT = new Object();
+
+	/**
+	 * SqlToyContext-->按访问顺序淘汰的count语句缓存(剔除left join依赖各自的EntityManager,因此按context隔离)
+	 */
+	private static final Map<Object, Map<String, CountSql>> countSqlCaches = new WeakHashMap<Object, Map<String, CountSql>>();
+
+	/**
+	 * @TODO 获取已经推导好的count语句,未缓存返回null
+	 * @param sqlToyContext
+	 * @param sql           裁剪掉为null的可选条件后的最终查询语句
+	 * @param dbType
+	 * @param hasWith       是否做了with as 解析
+	 * @return
+	 */
+	public static CountSql getCountSql(SqlToyContext sqlToyContext, String sql, Integer dbType, boolean hasWith) {
+		if (SqlToyConstants.getCountSqlCacheSize() <= 0) {
+			return null;
+		}
+		synchronized (countSqlCaches) {
+			Map<String, CountSql> countSqlCache = countSqlCaches
+					.get(sqlToyContext == null ? NONE_CONTEXT : sqlToyContext);
+			return (countSqlCache == null) ? null : countSqlCache.get(getCacheKey(sql, dbType, hasWith));
+		}
+	}
+
+	/**
+	 * @TODO 登记推导好的count语句
+	 * @param sqlToyContext
+	 * @param sql
+	 * @param dbType
+	 * @param hasWith
+	 * @param countSql
+	 */
+	public static void putCountSql(SqlToyContext sqlToyContext, String sql, Integer dbType, boolean hasWith,
+			CountSql countSql) {
+		if (SqlToyConstants.getCountSqlCacheSize() <= 0) {
+			return;
+		}
+		synchronized (countSqlCaches) {
+			countSqlCaches.computeIfAbsent(sqlToyContext == null ? NONE_CONTEXT : sqlToyContext, (key) -> {
+				return new LinkedHashMap<String, CountSql>(256, 0.75f, true) {
+					private static final long serialVersionUID = -4016327351983722047L;
+
+					@Override
+					protected boolean removeEldestEntry(Map.Entry<String, CountSql> eldest) {
+						return size() > SqlToyConstants.getCountSqlCacheSize();
+					}
+				};
+			}).put(getCacheKey(sql, dbType, hasWith), countSql);
+		}
+	}
+
+	private static String getCacheKey(String sql, Integer dbType, boolean hasWith) {
+		return dbType + ":" + (hasWith ? "1" : "0") + ":" + sql;
+	}
+
+	/**
+	 * @TODO 清除count语句缓存
+	 */
+	public static void clear() {
+		synchronized (countSqlCaches) {
+			countSqlCaches.clear();
+		}
+	}
+
+	/**
+	 * @TODO 剔除不影响记录数的left join:关联表为已解析的实体表,on条件为等值且覆盖了关联表的全部主键(最多关联一条),
+	 *       同时关联表的别名和字段在sql其他部分均未被引用
+	 * @param sqlToyContext
+	 * @param fromSql       from开始的语句部分
+	 * @return
+	 */
+	public static String removeUselessLeftJoin(SqlToyContext sqlToyContext, String fromSql) {
+		if (sqlToyContext == null || sqlToyContext.getEntityManager() == null) {
+			return fromSql;
+		}
+		String result = fromSql;
+		boolean removed = true;
+		Matcher matcher;
+		Matcher endMatcher;
+		int start;
+		int end;
+		String segment;
+		while (removed) {
+			removed = false;
+			matcher = LEFT_JOIN_PATTERN.matcher(result);
+			start = 0;
+			while (matcher.find(start)) {
+				start = matcher.end();
+				// 必须是最外层的join
+				if (getDepth(result, matcher.start()) != 0) {
+					continue;
+				}
+				endMatcher = JOIN_END_PATTERN.matcher(result);
+				end = endMatcher.find(matcher.end()) ? endMatcher.start() : result.length();
+				segment = result.substring(matcher.end(), end);
+				// on条件中存在括号、参数、字符串等复杂情况不做处理
+				if (segment.indexOf('(') != -1 || segment.indexOf(')') != -1 || segment.indexOf('?') != -1
+						|| segment.indexOf(':') != -1) {
+					continue;
+				}
+				String table = clearQuote(matcher.group(1));
+				String alias = (matcher.group(2) == null) ? table.substring(table.lastIndexOf('.') + 1)
+						: matcher.group(2).toLowerCase();
+				String rest = result.substring(0, matcher.start()).concat(" ").concat(result.substring(end));
+				if (isUselessJoin(sqlToyContext, table, alias, segment.trim(), rest)) {
+					result = rest;
+					removed = true;
+					break;
+				}
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 判断count语句是否是无条件的单表查询,是则返回表名,否则返回null
+	 * @param countSql
+	 * @return
+	 */
+	public static String getApproximateTable(String countSql) {
+		Matcher matcher = SINGLE_TABLE_PATTERN.matcher(countSql);
+		if (matcher.find()) {
+			return matcher.group(1);
+		}
+		return null;
+	}
+
+	/**
+	 * @TODO 从数据库统计信息中获取表的近似记录数,数据库不支持、统计信息缺失或记录数较少时返回null(由调用方执行精确count)
+	 * @param conn
+	 * @param dbType
+	 * @param tableName
+	 * @return
+	 * @throws Exception
+	 */
+	public static Long getApproximateCount(final Connection conn, final Integer dbType, final String tableName)
+			throws Exception {
+		String table = clearQuote(tableName);
+		String schema = null;
+		int dotIndex = table.lastIndexOf('.');
+		if (dotIndex != -1) {
+			schema = table.substring(0, dotIndex);
+			table = table.substring(dotIndex + 1);
+		}
+		String sql;
+		final String[] params;
+		switch (dbType) {
+		case DBType.POSTGRESQL:
+		case DBType.GAUSSDB: {
+			sql = "select c.reltuples from pg_class c join pg_namespace n on n.oid=c.relnamespace where c.relname=? and n.nspname="
+					+ ((schema == null) ? "current_schema()" : "?");
+			params = (schema == null) ? new String[] { table } : new String[] { table, schema };
+			break;
+		}
+		case DBType.MYSQL:
+		case DBType.MYSQL57:
+		case DBType.TIDB: {
+			sql = "select table_rows from information_schema.tables where table_name=? and table_schema="
+					+ ((schema == null) ? "database()" : "?");
+			params = (schema == null) ? new String[] { table } : new String[] { table, schema };
+			break;
+		}
+		case DBType.ORACLE:
+		case DBType.ORACLE11:
+		case DBType.DM: {
+			sql = (schema == null) ? "select num_rows from user_tables where table_name=?"
+					: "select num_rows from all_tables where table_name=? and owner=?";
+			params = (schema == null) ? new String[] { table.toUpperCase() }
+					: new String[] { table.toUpperCase(), schema.toUpperCase() };
+			break;
+		}
+		case DBType.SQLSERVER: {
+			sql = "select sum(p.rows) from sys.partitions p where p.object_id=object_id(?) and p.index_id in (0,1)";
+			params = new String[] { (schema == null) ? table : schema.concat(".").concat(table) };
+			break;
+		}
+		default:
+			return null;
+		}
+		PreparedStatement pst = conn.prepareStatement(sql);
+		ResultSet rs = null;
+		Long result = (Long) SqlUtil.preparedStatementProcess(null, pst, rs,
+				new AbstractPreparedStatementResultHandler() {
+					@Override
+					public void execute(Object obj, PreparedStatement pst, ResultSet rs)
+							throws SQLException, IOException {
+						for (int i = 0; i < params.length; i++) {
+							pst.setString(i + 1, params[i]);
+						}
+						rs = pst.executeQuery();
+						Long count = null;
+						if (rs.next()) {
+							Number value = (Number) rs.getObject(1);
+							if (value != null) {
+								count = value.longValue();
+							}
+						}
+						this.setResult(count);
+					}
+				});
+		if (result == null || result < APPROXIMATE_MIN_COUNT) {
+			return null;
+		}
+		return result;
+	}
+
+	private static boolean isUselessJoin(SqlToyContext sqlToyContext, String table, String alias, String onSql,
+			String rest) {
+		EntityMeta entityMeta = sqlToyContext.getEntityManager().getEntityMetaByTable(table);
+		if (entityMeta == null || entityMeta.getIdArray() == null || entityMeta.getIdArray().length == 0) {
+			return false;
+		}
+		String prefix = alias.concat(".");
+		Set<String> columns = new HashSet<String>();
+		Matcher matcher;
+		String left;
+		String right;
+		for (String condition : AND_PATTERN.split(onSql)) {
+			matcher = EQUAL_PATTERN.matcher(condition.trim());
+			if (!matcher.find()) {
+				return false;
+			}
+			left = clearQuote(matcher.group(1));
+			right = clearQuote(matcher.group(2));
+			if (left.startsWith(prefix) && !right.startsWith(prefix)) {
+				columns.add(left.substring(prefix.length()));
+			} else if (right.startsWith(prefix) && !left.startsWith(prefix)) {
+				columns.add(right.substring(prefix.length()));
+			} else {
+				return false;
+			}
+		}
+		// 主键全部作为等值条件,关联表最多匹配一条记录
+		for (String id : entityMeta.getIdArray()) {
+			if (!columns.contains(clearQuote(entityMeta.getColumnName(id)))) {
+				return false;
+			}
+		}
+		String lowerRest = rest.toLowerCase();
+		// 别名被其他部分引用
+		if (Pattern.compile("(^|[^\\w])" + Pattern.quote(alias) + "\\s*\\.").matcher(lowerRest).find()) {
+			return false;
+		}
+		// 关联表字段以无别名方式被引用(无法判断属于哪个表)
+		String column;
+		for (String field : entityMeta.getFieldsArray()) {
+			column = clearQuote(entityMeta.getColumnName(field));
+			if (Pattern.compile("(^|[^\\w\\.])" + Pattern.quote(column) + "([^\\w]|$)").matcher(lowerRest).find()) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int getDepth(String sql, int endIndex) {
+		int depth = 0;
+		char c;
+		for (int i = 0; i < endIndex; i++) {
+			c = sql.charAt(i);
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			}
+		}
+		return depth;
+	}
+
+	private static String clearQuote(String name) {
+		if (name == null) {
+			return "";
+		}
+		return name.replaceAll("[\"`\\[\\]]", "").toLowerCase();
+	}
+
+	/**
+	 * 推导好的count语句
+	 */
+	public static class CountSql {
+		/**
+		 * 未签名的count语句(含with部分)
+		 */
+		private final String sql;
+
+		/**
+		 * count主体部分的参数数量
+		 */
+		private final int paramCnt;
+
+		/**
+		 * with部分的参数数量
+		 */
+		private final int withParamCnt;
+
+		/**
+		 * 无条件单表查询时的表名(可取近似记录数)
+		 */
+		private final String approximateTable;
+
+		public CountSql(String sql, int paramCnt, int withParamCnt, String approximateTable) {
+			this.sql = sql;
+			this.paramCnt = paramCnt;
+			this.withParamCnt = withParamCnt;
+			this.approximateTable = approximateTable;
+		}
+
+		public String getSql() {
+			return sql;
+		}
+
+		public int getParamCnt() {
+			return paramCnt;
+		}
+
+		public int getWithParamCnt() {
+			return withParamCnt;
+		}
+
+		public String getApproximateTable() {
+			return approximateTable;
+		}
+	}
+}
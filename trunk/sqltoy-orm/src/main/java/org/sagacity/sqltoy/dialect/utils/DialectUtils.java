@@ -15,9 +15,11 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
 import org.sagacity.sqltoy.SqlExecuteStat;
@@ -27,6 +29,7 @@ import org.sagacity.sqltoy.callback.AbstractCallableStatementResultHandler;
 import org.sagacity.sqltoy.callback.AbstractPreparedStatementResultHandler;
 import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
 import org.sagacity.sqltoy.callback.AbstractRowCallbackHandler;
+import org.sagacity.sqltoy.callback.StreamResultHandler;
 import org.sagacity.sqltoy.callback.UniqueSqlHandler;
 import org.sagacity.sqltoy.callback.UpdateRowHandler;
 import org.sagacity.sqltoy.config.SqlConfigParseUtils;
@@ -44,12 +47,15 @@ import org.sagacity.sqltoy.dialect.handler.AbstractGenerateSqlHandler;
 import org.sagacity.sqltoy.dialect.handler.LockSqlHandler;
 import org.sagacity.sqltoy.dialect.model.ReturnPkType;
 import org.sagacity.sqltoy.dialect.model.SavePKStrategy;
+import org.sagacity.sqltoy.dialect.utils.CountSqlUtils.CountSql;
 import org.sagacity.sqltoy.executor.QueryExecutor;
 import org.sagacity.sqltoy.model.IgnoreCaseSet;
 import org.sagacity.sqltoy.model.LockMode;
 import org.sagacity.sqltoy.model.QueryExecutorExtend;
 import org.sagacity.sqltoy.model.QueryResult;
+import org.sagacity.sqltoy.model.ShardingTargetModel;
 import org.sagacity.sqltoy.model.StoreResult;
+import org.sagacity.sqltoy.plugins.id.IdGenerator;
 import org.sagacity.sqltoy.plugins.sharding.ShardingUtils;
 import org.sagacity.sqltoy.utils.BeanUtil;
 import org.sagacity.sqltoy.utils.CollectionUtil;
@@ -73,6 +79,9 @@ import org.slf4j.LoggerFactory;
  * @modify {Date:2018-5-3,修复getCountBySql关于剔除order by部分的逻辑错误}
  * @modify {Date:2018-9-25,修复select和from对称判断问题,影响分页查询时剔除from之前语句构建select
  *         count(1) from错误}
+ * @modify {Date:2021-05-19,批量保存时主键按关联字段值分组批量获取,避免逐条调用主键策略}
+ * @modify {Date:2021-05-20,count语句推导结果缓存,剔除不影响记录数的left join,支持无条件单表近似count}
+ * @modify {Date:2021-05-20,分散查询时按分片的表对应关系替换表名}
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class DialectUtils {
@@ -107,6 +116,12 @@ public class DialectUtils {
 	 */
 	private static final String SELECT_REGEX = "select\\s+";
 
+	/**
+	 * sqlserver 查询字段前的top n [percent]
+	 */
+	private static final Pattern SIMPLE_TOP_PATTERN = Pattern
+			.compile("(?i)^\\s*top\\s*(\\(\\s*\\d+\\s*\\)|\\d+)(\\s+percent)?\\s+");
+
 	/**
 	 * 查询from 匹配
 	 */
@@ -243,6 +258,70 @@ public class DialectUtils {
 		});
 	}
 
+	/**
+	 * @todo 流式查询,结果逐行交给streamResultHandler处理而不在内存中累积
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param sql
+	 * @param paramsValue
+	 * @param extend
+	 * @param streamResultHandler
+	 * @param conn
+	 * @param dbType
+	 * @param startIndex
+	 * @return 处理的记录数量
+	 * @throws Exception
+	 */
+	public static Long streamBySql(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig,
+			final String sql, final Object[] paramsValue, final QueryExecutorExtend extend,
+			final StreamResultHandler streamResultHandler, final Connection conn, final Integer dbType,
+			final int startIndex) throws Exception {
+		// 做sql签名
+		String lastSql = SqlUtilsExt.signSql(sql, dbType, sqlToyConfig);
+		// 打印sql
+		SqlExecuteStat.showSql("执行流式查询", lastSql, paramsValue);
+		// postgresql系驱动只有在非自动提交下才按fetchSize使用游标读取,否则一次性加载全部结果
+		boolean restoreAutoCommit = false;
+		if ((dbType == DBType.POSTGRESQL || dbType == DBType.GAUSSDB || dbType == DBType.KINGBASE)
+				&& conn.getAutoCommit()) {
+			conn.setAutoCommit(false);
+			restoreAutoCommit = true;
+		}
+		try {
+			PreparedStatement pst = conn.prepareStatement(lastSql, ResultSet.TYPE_FORWARD_ONLY,
+					ResultSet.CONCUR_READ_ONLY);
+			int fetchSize = extend.fetchSize;
+			if (fetchSize <= 0) {
+				// mysql协议(含tidb、oceanbase、mariadb)只有Integer.MIN_VALUE 才是逐行流式读取,否则驱动会一次性加载全部结果
+				if (dbType == DBType.MYSQL || dbType == DBType.MYSQL57 || dbType == DBType.TIDB
+						|| dbType == DBType.OCEANBASE) {
+					fetchSize = Integer.MIN_VALUE;
+				} else {
+					fetchSize = SqlToyConstants.getStreamFetchSize();
+				}
+			}
+			pst.setFetchSize(fetchSize);
+			if (extend.maxRows > 0) {
+				pst.setMaxRows(extend.maxRows);
+			}
+			ResultSet rs = null;
+			return (Long) SqlUtil.preparedStatementProcess(null, pst, rs, new AbstractPreparedStatementResultHandler() {
+				@Override
+				public void execute(Object obj, PreparedStatement pst, ResultSet rs) throws Exception {
+					SqlUtil.setParamsValue(sqlToyContext.getTypeHandler(), conn, dbType, pst, paramsValue, null, 0);
+					rs = pst.executeQuery();
+					this.setResult(ResultUtils.processResultSetByStream(sqlToyContext, sqlToyConfig, conn, rs,
+							extend, streamResultHandler, startIndex));
+				}
+			});
+		} finally {
+			// 恢复自动提交(只读查询,恢复时提交无副作用)
+			if (restoreAutoCommit) {
+				conn.setAutoCommit(true);
+			}
+		}
+	}
+
 	/**
 	 * @todo 实现普通的sql语句查询
 	 * @param sqlToyContext
@@ -300,85 +379,30 @@ public class DialectUtils {
 		String lastCountSql;
 		int paramCnt = 0;
 		int withParamCnt = 0;
+		String approximateTable = null;
 		// 通过配置直接给定的最优化count 语句
 		if (isLastSql) {
 			lastCountSql = sql;
 		} else {
-			String countPart = " count(1) ";
-			// es count(1) 不起作用
-			if (dbType.equals(DBType.ES)) {
-				countPart = " count(*) ";
-			}
-			String query_tmp = sql;
-			String withSql = "";
-			// with as分析器(避免每次做with 检测,提升效率)
-			if (sqlToyConfig != null && sqlToyConfig.isHasWith()) {
-				SqlWithAnalysis sqlWith = new SqlWithAnalysis(sql);
-				query_tmp = sqlWith.getRejectWithSql();
-				withSql = sqlWith.getWithSql();
-			}
-			int lastBracketIndex = query_tmp.lastIndexOf(")");
-			int sql_from_index = 0;
-			// sql不以from开头，截取from 后的部分语句
-			if (StringUtil.indexOfIgnoreCase(query_tmp, "from") != 0) {
-				sql_from_index = StringUtil.getSymMarkMatchIndex(SELECT_REGEX, FROM_REGEX, query_tmp.toLowerCase(), 0);
-			}
-			// 剔除order提高运行效率
-			int orderByIndex = StringUtil.matchLastIndex(query_tmp, ORDER_BY_PATTERN);
-			// order by 在from 之后
-			if (orderByIndex > sql_from_index) {
-				// 剔除order by 语句
-				if (orderByIndex > lastBracketIndex) {
-					query_tmp = query_tmp.substring(0, orderByIndex + 1);
-				} else {
-					// 剔除掉order by 后面语句对称的() 内容
-					String orderJudgeSql = clearDisturbSql(query_tmp.substring(orderByIndex + 1));
-					// 在order by 不在子查询内,说明可以整体切除掉order by
-					if (orderJudgeSql.indexOf(")") == -1) {
-						query_tmp = query_tmp.substring(0, orderByIndex + 1);
-					}
-				}
+			// 同一sql相同的条件组合(裁剪掉null条件后的sql一致)只推导一次count语句
+			boolean hasWith = sqlToyConfig != null && sqlToyConfig.isHasWith();
+			CountSql countSql = CountSqlUtils.getCountSql(sqlToyContext, sql, dbType, hasWith);
+			if (countSql == null) {
+				countSql = wrapCountSql(sqlToyContext, sqlToyConfig, sql, dbType);
+				CountSqlUtils.putCountSql(sqlToyContext, sql, dbType, hasWith, countSql);
+			}
+			lastCountSql = countSql.getSql();
+			paramCnt = countSql.getParamCnt();
+			withParamCnt = countSql.getWithParamCnt();
+			approximateTable = countSql.getApproximateTable();
+		}
+		// 无条件单表查询,取数据库统计信息中的近似记录数
+		if (approximateTable != null && sqlToyConfig != null && sqlToyConfig.isApproximateCount()) {
+			Long approximateCount = CountSqlUtils.getApproximateCount(conn, dbType, approximateTable);
+			if (approximateCount != null) {
+				SqlExecuteStat.debug("过程提示", "取表:{}统计信息中的近似记录数:{}", approximateTable, approximateCount);
+				return approximateCount;
 			}
-
-			int groupIndex = StringUtil.matchLastIndex(query_tmp, GROUP_BY_PATTERN);
-			// 判断group by 是否是内层，如select * from (select * from table group by)
-			// 外层group by 必须要进行包裹(update by chenrenfei 2016-4-21)
-			boolean isInnerGroup = false;
-			if (groupIndex != -1) {
-				isInnerGroup = clearDisturbSql(query_tmp.substring(groupIndex + 1)).lastIndexOf(")") != -1;
-			}
-			final StringBuilder countQueryStr = new StringBuilder();
-			// 是否包含union,update 2012-11-21
-			boolean hasUnion = StringUtil.matches(query_tmp, UNION_PATTERN);
-			// 不包含distinct和group by 等,则剔除[select * ] from 变成select count(1) from
-			// 性能最优
-			if (!StringUtil.matches(query_tmp.trim(), DISTINCT_PATTERN) && !hasUnion
-					&& (groupIndex == -1 || (groupIndex < lastBracketIndex && isInnerGroup))) {
-				int selectIndex = StringUtil.matchIndex(query_tmp.toLowerCase(), SELECT_REGEX);
-				// 截取出select 和from之间的语句
-				String selectFields = (sql_from_index < 1) ? ""
-						: query_tmp.substring(selectIndex + 6, sql_from_index).toLowerCase();
-				// 剔除嵌套的子查询语句中select 和 from 之间的内容,便于判断统计函数的作用位置
-				selectFields = clearSymSelectFromSql(selectFields);
-				// 存在统计函数 update by chenrenfei ,date: 2017-2-24
-				if (StringUtil.matches(selectFields, STAT_PATTERN)) {
-					countQueryStr.append("select ").append(countPart).append(" from (").append(query_tmp)
-							.append(") sag_count_tmpTable ");
-				} else {
-					// 截取from后的部分
-					countQueryStr.append("select ").append(countPart)
-							.append((sql_from_index != -1 ? query_tmp.substring(sql_from_index) : query_tmp));
-				}
-			} // 包含distinct 或包含union则直接将查询作为子表(普通做法)
-			else {
-				countQueryStr.append("select ").append(countPart).append(" from (").append(query_tmp)
-						.append(") sag_count_tmpTable ");
-			}
-
-			paramCnt = getParamsCount(countQueryStr.toString());
-			withParamCnt = getParamsCount(withSql);
-			countQueryStr.insert(0, withSql + " ");
-			lastCountSql = countQueryStr.toString();
 		}
 		final int paramCntFin = paramCnt;
 		final int withParamCntFin = withParamCnt;
@@ -412,6 +436,180 @@ public class DialectUtils {
 		});
 	}
 
+	/**
+	 * @TODO 由查询语句推导count语句:剔除order by,无distinct、union和外层group by时变成select count(1) from形式,
+	 *       外层group by(无having)时将查询字段替换为1再包裹(避免执行字段中的子查询),并剔除不影响记录数的left join
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param sql
+	 * @param dbType
+	 * @return
+	 */
+	private static CountSql wrapCountSql(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig,
+			final String sql, final Integer dbType) {
+		String countPart = " count(1) ";
+		// es count(1) 不起作用
+		if (dbType.equals(DBType.ES)) {
+			countPart = " count(*) ";
+		}
+		String query_tmp = sql;
+		String withSql = "";
+		// with as分析器(避免每次做with 检测,提升效率)
+		if (sqlToyConfig != null && sqlToyConfig.isHasWith()) {
+			SqlWithAnalysis sqlWith = new SqlWithAnalysis(sql);
+			query_tmp = sqlWith.getRejectWithSql();
+			withSql = sqlWith.getWithSql();
+		}
+		int lastBracketIndex = query_tmp.lastIndexOf(")");
+		int sql_from_index = 0;
+		// sql不以from开头，截取from 后的部分语句
+		if (StringUtil.indexOfIgnoreCase(query_tmp, "from") != 0) {
+			sql_from_index = StringUtil.getSymMarkMatchIndex(SELECT_REGEX, FROM_REGEX, query_tmp.toLowerCase(), 0);
+		}
+		// 剔除order提高运行效率
+		int orderByIndex = StringUtil.matchLastIndex(query_tmp, ORDER_BY_PATTERN);
+		// order by 在from 之后
+		if (orderByIndex > sql_from_index) {
+			// 剔除order by 语句
+			if (orderByIndex > lastBracketIndex) {
+				query_tmp = query_tmp.substring(0, orderByIndex + 1);
+			} else {
+				// 剔除掉order by 后面语句对称的() 内容
+				String orderJudgeSql = clearDisturbSql(query_tmp.substring(orderByIndex + 1));
+				// 在order by 不在子查询内,说明可以整体切除掉order by
+				if (orderJudgeSql.indexOf(")") == -1) {
+					query_tmp = query_tmp.substring(0, orderByIndex + 1);
+				}
+			}
+		}
+
+		int groupIndex = StringUtil.matchLastIndex(query_tmp, GROUP_BY_PATTERN);
+		// 判断group by 是否是内层，如select * from (select * from table group by)
+		// 外层group by 必须要进行包裹(update by chenrenfei 2016-4-21)
+		boolean isInnerGroup = false;
+		if (groupIndex != -1) {
+			isInnerGroup = clearDisturbSql(query_tmp.substring(groupIndex + 1)).lastIndexOf(")") != -1;
+		}
+		final StringBuilder countQueryStr = new StringBuilder();
+		// 是否包含union,update 2012-11-21
+		boolean hasUnion = StringUtil.matches(query_tmp, UNION_PATTERN);
+		boolean hasDistinct = StringUtil.matches(query_tmp.trim(), DISTINCT_PATTERN);
+		String approximateTable = null;
+		String simpleGroupTop;
+		// 不包含distinct和group by 等,则剔除[select * ] from 变成select count(1) from
+		// 性能最优
+		if (!hasDistinct && !hasUnion && (groupIndex == -1 || (groupIndex < lastBracketIndex && isInnerGroup))) {
+			int selectIndex = StringUtil.matchIndex(query_tmp.toLowerCase(), SELECT_REGEX);
+			// 截取出select 和from之间的语句
+			String selectFields = (sql_from_index < 1) ? ""
+					: query_tmp.substring(selectIndex + 6, sql_from_index).toLowerCase();
+			// 剔除嵌套的子查询语句中select 和 from 之间的内容,便于判断统计函数的作用位置
+			selectFields = clearSymSelectFromSql(selectFields);
+			// 存在统计函数 update by chenrenfei ,date: 2017-2-24
+			if (StringUtil.matches(selectFields, STAT_PATTERN)) {
+				countQueryStr.append("select ").append(countPart).append(" from (").append(query_tmp)
+						.append(") sag_count_tmpTable ");
+			} else {
+				// 截取from后的部分,并剔除不影响记录数的left join
+				countQueryStr.append("select ").append(countPart)
+						.append(CountSqlUtils.removeUselessLeftJoin(sqlToyContext,
+								(sql_from_index != -1 ? query_tmp.substring(sql_from_index) : query_tmp)));
+				if (withSql.equals("")) {
+					approximateTable = CountSqlUtils.getApproximateTable(countQueryStr.toString());
+				}
+			}
+		} // 外层group by且可以安全替换查询字段,select 1 from 避免执行查询字段中的子查询和函数
+		else if (!hasDistinct && !hasUnion && sql_from_index > 0
+				&& (simpleGroupTop = getSimpleGroupTop(
+						query_tmp.substring(StringUtil.matchIndex(query_tmp.toLowerCase(), SELECT_REGEX) + 6,
+								sql_from_index),
+						query_tmp.substring(groupIndex + 1))) != null) {
+			// 保留sqlserver的top n,确保记录数一致
+			countQueryStr.append("select ").append(countPart).append(" from (select ").append(simpleGroupTop)
+					.append("1 ")
+					.append(CountSqlUtils.removeUselessLeftJoin(sqlToyContext, query_tmp.substring(sql_from_index)))
+					.append(") sag_count_tmpTable ");
+		} // 包含distinct 或包含union则直接将查询作为子表(普通做法)
+		else {
+			countQueryStr.append("select ").append(countPart).append(" from (").append(query_tmp)
+					.append(") sag_count_tmpTable ");
+		}
+		int paramCnt = getParamsCount(countQueryStr.toString());
+		int withParamCnt = getParamsCount(withSql);
+		countQueryStr.insert(0, withSql + " ");
+		return new CountSql(countQueryStr.toString(), paramCnt, withParamCnt, approximateTable);
+	}
+
+	/**
+	 * @TODO 判断外层group by的查询字段是否可以替换成1:无having,group by中不存在序号和查询字段别名
+	 * @param selectFields
+	 * @param groupSql     group by 之后的语句
+	 * @return 不能替换返回null,可以替换返回需保留的top n部分(无top则为空字符串)
+	 */
+	private static String getSimpleGroupTop(String selectFields, String groupSql) {
+		String groupLower = clearDisturbSql(groupSql).toLowerCase();
+		if (groupLower.matches("(?s).*\\Whaving\\W.*")) {
+			return null;
+		}
+		// sqlserver top n [percent],参数化或with ties的top不做替换
+		String topPart = "";
+		Matcher topMatcher = SIMPLE_TOP_PATTERN.matcher(selectFields);
+		if (topMatcher.find()) {
+			topPart = topMatcher.group();
+			selectFields = selectFields.substring(topMatcher.end());
+			if (StringUtil.matches(selectFields, "(?i)^\\s*with\\s+ties\\W")) {
+				return null;
+			}
+		} else if (StringUtil.matches(selectFields, "(?i)^\\s*top\\W")) {
+			return null;
+		}
+		// 去掉group by 关键词
+		String groupFields = groupSql.trim().replaceFirst("(?i)^group\\s+by\\s+", "");
+		// 查询字段中定义的别名
+		Set<String> aliases = new HashSet<String>();
+		String field;
+		int aliasIndex;
+		for (String column : splitFields(selectFields)) {
+			field = column.trim();
+			aliasIndex = Math.max(field.lastIndexOf(" "), field.lastIndexOf(")"));
+			if (aliasIndex > 0) {
+				aliases.add(field.substring(aliasIndex + 1).replaceAll("[\"`\\[\\]]", "").toLowerCase());
+			}
+		}
+		for (String group : splitFields(groupFields)) {
+			field = group.trim().replaceAll("[\"`\\[\\]]", "").toLowerCase();
+			if (field.matches("\\d+") || aliases.contains(field)) {
+				return null;
+			}
+		}
+		return topPart;
+	}
+
+	/**
+	 * @TODO 按最外层逗号切分字段
+	 * @param fields
+	 * @return
+	 */
+	private static List<String> splitFields(String fields) {
+		List<String> result = new ArrayList<String>();
+		int depth = 0;
+		int start = 0;
+		char c;
+		for (int i = 0; i < fields.length(); i++) {
+			c = fields.charAt(i);
+			if (c == '(') {
+				depth++;
+			} else if (c == ')') {
+				depth--;
+			} else if (c == ',' && depth == 0) {
+				result.add(fields.substring(start, i));
+				start = i + 1;
+			}
+		}
+		result.add(fields.substring(start));
+		return result;
+	}
+
 	/**
 	 * @todo 统一将查询的sql参数由?形式变成:named形式(分页和查询随机记录时)
 	 * @param sqlToyContext
@@ -424,6 +622,23 @@ public class DialectUtils {
 	 */
 	public static SqlToyConfig getUnifyParamsNamedConfig(SqlToyContext sqlToyContext, SqlToyConfig sqlToyConfig,
 			QueryExecutor queryExecutor, String dialect, boolean wrapNamed) throws Exception {
+		return getUnifyParamsNamedConfig(sqlToyContext, sqlToyConfig, queryExecutor, dialect, wrapNamed, null);
+	}
+
+	/**
+	 * @TODO 统一将查询的sql参数由?形式变成:named形式,分散查询时按分片的表对应关系替换表名
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param queryExecutor
+	 * @param dialect
+	 * @param wrapNamed
+	 * @param shardingTarget 分散查询的分片,为null时按分表策略替换表名
+	 * @return
+	 * @throws Exception
+	 */
+	public static SqlToyConfig getUnifyParamsNamedConfig(SqlToyContext sqlToyContext, SqlToyConfig sqlToyConfig,
+			QueryExecutor queryExecutor, String dialect, boolean wrapNamed, ShardingTargetModel shardingTarget)
+			throws Exception {
 		// 本身就是:named参数形式或sql中没有任何参数
 		boolean isNamed = (sqlToyConfig.isNamedParam()
 				|| sqlToyConfig.getSql(dialect).indexOf(SqlConfigParseUtils.ARG_NAME) == -1);
@@ -437,8 +652,10 @@ public class DialectUtils {
 			isNamed = true;
 		}
 		// sql条件以:named形式并且当前数据库类型跟sqltoyContext配置的数据库类型一致
-		if ((isNamed || !wrapNamed) && sameDialect
-				&& (sqlToyConfig.getTableShardings().isEmpty() && extend.tableShardings.isEmpty())) {
+		boolean noShardingTable = (shardingTarget == null)
+				? (sqlToyConfig.getTableShardings().isEmpty() && extend.tableShardings.isEmpty())
+				: shardingTarget.getTableMap().isEmpty();
+		if ((isNamed || !wrapNamed) && sameDialect && noShardingTable) {
 			// 没有自定义缓存翻译直接返回
 			if (extend.translates.isEmpty()) {
 				return sqlToyConfig;
@@ -484,6 +701,10 @@ public class DialectUtils {
 			result.setCountSql(sqlParams.getSql());
 			SqlConfigParseUtils.processFastWith(result, dialect);
 		}
+		if (shardingTarget != null) {
+			ShardingUtils.replaceShardingSqlToyConfig(result, shardingTarget.getTableMap(), dialect);
+			return result;
+		}
 		// 以queryExecutor自定义的分表策略覆盖sql xml中定义的
 		List<ShardingStrategyConfig> tableShardings = sqlToyConfig.getTableShardings();
 		if (!extend.tableShardings.isEmpty()) {
@@ -559,41 +780,18 @@ public class DialectUtils {
 		// 是否存在业务ID
 		boolean hasBizId = (entityMeta.getBusinessIdGenerator() == null) ? false : true;
 		int bizIdColIndex = hasBizId ? entityMeta.getFieldIndex(entityMeta.getBusinessIdField()) : 0;
-		// 标识符
-		String signature = entityMeta.getBizIdSignature();
-		Integer[] relatedColumn = entityMeta.getBizIdRelatedColIndex();
-		int relatedColumnSize = (relatedColumn == null) ? 0 : relatedColumn.length;
 		// 无主键以及多主键以及assign或通过generator方式产生主键策略
 		if (null != entityMeta.getIdStrategy() && null != entityMeta.getIdGenerator()) {
 			int bizIdLength = entityMeta.getBizIdLength();
 			int idLength = entityMeta.getIdLength();
-			Object[] rowData;
-			Object[] relatedColValue = null;
 			String idJdbcType = entityMeta.getIdType();
 			String businessIdType = hasBizId ? entityMeta.getColumnJavaType(entityMeta.getBusinessIdField()) : "";
-			for (int i = 0; i < paramValues.size(); i++) {
-				rowData = (Object[]) paramValues.get(i);
-				// 获取主键策略关联字段的值
-				if (relatedColumn != null) {
-					relatedColValue = new Object[relatedColumnSize];
-					for (int meter = 0; meter < relatedColumnSize; meter++) {
-						relatedColValue[meter] = rowData[relatedColumn[meter]];
-					}
-				}
-				if (StringUtil.isBlank(rowData[pkIndex])) {
-					rowData[pkIndex] = entityMeta.getIdGenerator().getId(entityMeta.getTableName(), signature,
-							entityMeta.getBizIdRelatedColumns(), relatedColValue, null, idJdbcType, idLength,
-							entityMeta.getBizIdSequenceSize());
-					// 回写主键值
-					BeanUtil.setProperty(entities.get(i), entityMeta.getIdArray()[0], rowData[pkIndex]);
-				}
-				if (hasBizId && StringUtil.isBlank(rowData[bizIdColIndex])) {
-					rowData[bizIdColIndex] = entityMeta.getBusinessIdGenerator().getId(entityMeta.getTableName(),
-							signature, entityMeta.getBizIdRelatedColumns(), relatedColValue, null, businessIdType,
-							bizIdLength, entityMeta.getBizIdSequenceSize());
-					// 回写主键值
-					BeanUtil.setProperty(entities.get(i), entityMeta.getBusinessIdField(), rowData[bizIdColIndex]);
-				}
+			// 批量产生主键值并回写(按关联字段值分组一次提取多个)
+			generateIds(entityMeta, entityMeta.getIdGenerator(), paramValues, pkIndex, idJdbcType, idLength, entities,
+					entityMeta.getIdArray()[0]);
+			if (hasBizId) {
+				generateIds(entityMeta, entityMeta.getBusinessIdGenerator(), paramValues, bizIdColIndex,
+						businessIdType, bizIdLength, entities, entityMeta.getBusinessIdField());
 			}
 		}
 
@@ -628,8 +826,6 @@ public class DialectUtils {
 		// 是否存在业务ID
 		boolean hasBizId = (entityMeta.getBusinessIdGenerator() == null) ? false : true;
 		int bizIdColIndex = hasBizId ? entityMeta.getFieldIndex(entityMeta.getBusinessIdField()) : 0;
-		// 标识符
-		String signature = entityMeta.getBizIdSignature();
 		Integer[] relatedColumn = entityMeta.getBizIdRelatedColIndex();
 		String[] relatedColumnNames = entityMeta.getBizIdRelatedColumns();
 		int relatedColumnSize = (relatedColumn == null) ? 0 : relatedColumn.length;
@@ -638,36 +834,26 @@ public class DialectUtils {
 			int bizIdLength = entityMeta.getBizIdLength();
 			int idLength = entityMeta.getIdLength();
 			Object[] rowData;
-			Object[] relatedColValue = null;
 			String idJdbcType = entityMeta.getIdType();
 			String businessIdType = hasBizId ? entityMeta.getColumnJavaType(entityMeta.getBusinessIdField()) : "";
-			for (int i = 0; i < paramValues.size(); i++) {
-				rowData = (Object[]) paramValues.get(i);
-				// 关联字段赋值
-				if (relatedColumn != null) {
-					relatedColValue = new Object[relatedColumnSize];
+			// 关联字段合法性验证
+			if (relatedColumn != null) {
+				for (int i = 0; i < paramValues.size(); i++) {
+					rowData = (Object[]) paramValues.get(i);
 					for (int meter = 0; meter < relatedColumnSize; meter++) {
-						relatedColValue[meter] = rowData[relatedColumn[meter]];
-						if (relatedColValue[meter] == null) {
+						if (rowData[relatedColumn[meter]] == null) {
 							throw new IllegalArgumentException("对象:" + entityMeta.getEntityClass().getName()
 									+ " 生成业务主键依赖的关联字段:" + relatedColumnNames[meter] + " 值为null!");
 						}
 					}
 				}
-				if (StringUtil.isBlank(rowData[pkIndex])) {
-					rowData[pkIndex] = entityMeta.getIdGenerator().getId(entityMeta.getTableName(), signature,
-							entityMeta.getBizIdRelatedColumns(), relatedColValue, null, idJdbcType, idLength,
-							entityMeta.getBizIdSequenceSize());
-					// 回写主键值
-					BeanUtil.setProperty(entities.get(i), entityMeta.getIdArray()[0], rowData[pkIndex]);
-				}
-				if (hasBizId && StringUtil.isBlank(rowData[bizIdColIndex])) {
-					rowData[bizIdColIndex] = entityMeta.getBusinessIdGenerator().getId(entityMeta.getTableName(),
-							signature, entityMeta.getBizIdRelatedColumns(), relatedColValue, null, businessIdType,
-							bizIdLength, entityMeta.getBizIdSequenceSize());
-					// 回写业务主键值
-					BeanUtil.setProperty(entities.get(i), entityMeta.getBusinessIdField(), rowData[bizIdColIndex]);
-				}
+			}
+			// 批量产生主键值并回写(按关联字段值分组一次提取多个)
+			generateIds(entityMeta, entityMeta.getIdGenerator(), paramValues, pkIndex, idJdbcType, idLength, entities,
+					entityMeta.getIdArray()[0]);
+			if (hasBizId) {
+				generateIds(entityMeta, entityMeta.getBusinessIdGenerator(), paramValues, bizIdColIndex,
+						businessIdType, bizIdLength, entities, entityMeta.getBusinessIdField());
 			}
 		}
 
@@ -677,6 +863,57 @@ public class DialectUtils {
 				null, entityMeta.getFieldsTypeArray(), autoCommit, conn, dbType);
 	}
 
+	/**
+	 * @TODO 批量产生主键(或业务主键)值:按主键策略关联字段的值分组,每组调用一次idGenerator.getIds,
+	 *       避免逐条调用(如redis每条记录一次网络交互)
+	 * @param entityMeta
+	 * @param idGenerator
+	 * @param rowsValue   记录值,已有值的跳过
+	 * @param idIndex     主键(或业务主键)在记录中的位置
+	 * @param idJavaType
+	 * @param idLength
+	 * @param entities    不为null则回写对象属性
+	 * @param idField
+	 * @throws Exception
+	 */
+	public static void generateIds(EntityMeta entityMeta, IdGenerator idGenerator, List rowsValue, int idIndex,
+			String idJavaType, int idLength, List<?> entities, String idField) throws Exception {
+		Integer[] relatedColumn = entityMeta.getBizIdRelatedColIndex();
+		// 关联字段值相同的记录共用一次提取
+		LinkedHashMap<List<Object>, List<Integer>> groups = new LinkedHashMap<List<Object>, List<Integer>>();
+		List<Object> relatedValues;
+		Object[] rowData;
+		for (int i = 0, size = rowsValue.size(); i < size; i++) {
+			rowData = (Object[]) rowsValue.get(i);
+			if (!StringUtil.isBlank(rowData[idIndex])) {
+				continue;
+			}
+			relatedValues = new ArrayList<Object>();
+			if (relatedColumn != null) {
+				for (Integer index : relatedColumn) {
+					relatedValues.add(rowData[index]);
+				}
+			}
+			groups.computeIfAbsent(relatedValues, key -> new ArrayList<Integer>()).add(i);
+		}
+		Object[] ids;
+		List<Integer> indexes;
+		int rowIndex;
+		for (Map.Entry<List<Object>, List<Integer>> group : groups.entrySet()) {
+			indexes = group.getValue();
+			ids = idGenerator.getIds(entityMeta.getTableName(), entityMeta.getBizIdSignature(),
+					entityMeta.getBizIdRelatedColumns(), (relatedColumn == null) ? null : group.getKey().toArray(),
+					null, idJavaType, idLength, entityMeta.getBizIdSequenceSize(), indexes.size());
+			for (int i = 0; i < ids.length; i++) {
+				rowIndex = indexes.get(i);
+				((Object[]) rowsValue.get(rowIndex))[idIndex] = ids[i];
+				if (entities != null) {
+					BeanUtil.setProperty(entities.get(rowIndex), idField, ids[i]);
+				}
+			}
+		}
+	}
+
 	/**
 	 * @todo 处理加工对象基于db2、oracle、informix、sybase数据库的saveOrUpdateSql
 	 * @param dbType
@@ -1415,8 +1652,6 @@ public class DialectUtils {
 		// 是否存在业务ID
 		boolean hasBizId = (entityMeta.getBusinessIdGenerator() == null) ? false : true;
 		int bizIdColIndex = hasBizId ? entityMeta.getFieldIndex(entityMeta.getBusinessIdField()) : 0;
-		// 标识符
-		String signature = entityMeta.getBizIdSignature();
 		Integer[] relatedColumn = entityMeta.getBizIdRelatedColIndex();
 		String[] relatedColumnNames = entityMeta.getBizIdRelatedColumns();
 		int relatedColumnSize = (relatedColumn == null) ? 0 : relatedColumn.length;
@@ -1427,42 +1662,37 @@ public class DialectUtils {
 			Object[] rowData;
 			boolean isAssigned = true;
 			String idJdbcType = entityMeta.getIdType();
-			Object[] relatedColValue = null;
 			String businessIdType = hasBizId ? entityMeta.getColumnJavaType(entityMeta.getBusinessIdField()) : "";
 			List<Object[]> idSet = new ArrayList<Object[]>();
 			for (int i = 0, s = paramValues.size(); i < s; i++) {
 				rowData = (Object[]) paramValues.get(i);
 				// 判断主键策略关联的字段是否有值,合法性验证
 				if (relatedColumn != null) {
-					relatedColValue = new Object[relatedColumnSize];
 					for (int meter = 0; meter < relatedColumnSize; meter++) {
-						relatedColValue[meter] = rowData[relatedColumn[meter]];
-						if (StringUtil.isBlank(relatedColValue[meter])) {
+						if (StringUtil.isBlank(rowData[relatedColumn[meter]])) {
 							throw new IllegalArgumentException("对象:" + entityMeta.getEntityClass().getName()
 									+ " 生成业务主键依赖的关联字段:" + relatedColumnNames[meter] + " 值为null!");
 						}
 					}
 				}
-				// 主键值为null,调用主键生成策略并赋值
 				if (StringUtil.isBlank(rowData[pkIndex])) {
 					isAssigned = false;
-					rowData[pkIndex] = entityMeta.getIdGenerator().getId(entityMeta.getTableName(), signature,
-							entityMeta.getBizIdRelatedColumns(), relatedColValue, null, idJdbcType, idLength,
-							entityMeta.getBizIdSequenceSize());
-				}
-				if (hasBizId && StringUtil.isBlank(rowData[bizIdColIndex])) {
-					rowData[bizIdColIndex] = entityMeta.getBusinessIdGenerator().getId(entityMeta.getTableName(),
-							signature, entityMeta.getBizIdRelatedColumns(), relatedColValue, null, businessIdType,
-							bizIdLength, entityMeta.getBizIdSequenceSize());
-					// 回写业务主键值
-					BeanUtil.setProperty(entities.get(i), entityMeta.getBusinessIdField(), rowData[bizIdColIndex]);
 				}
-				idSet.add(new Object[] { rowData[pkIndex] });
 			}
-			// 批量反向设置最终得到的主键值
+			// 主键值为null,批量调用主键生成策略并赋值(按关联字段值分组一次提取多个)
 			if (!isAssigned) {
+				generateIds(entityMeta, entityMeta.getIdGenerator(), paramValues, pkIndex, idJdbcType, idLength, null,
+						null);
+				for (int i = 0, s = paramValues.size(); i < s; i++) {
+					idSet.add(new Object[] { ((Object[]) paramValues.get(i))[pkIndex] });
+				}
+				// 批量反向设置最终得到的主键值
 				BeanUtil.mappingSetProperties(entities, entityMeta.getIdArray(), idSet, new int[] { 0 }, true);
 			}
+			if (hasBizId) {
+				generateIds(entityMeta, entityMeta.getBusinessIdGenerator(), paramValues, bizIdColIndex,
+						businessIdType, bizIdLength, entities, entityMeta.getBusinessIdField());
+			}
 		}
 
 		SqlExecuteStat.showSql("批量保存[" + paramValues.size() + "]条记录", insertSql, null);
@@ -0,0 +1,345 @@
+package org.sagacity.sqltoy.dialect.utils;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.sagacity.sqltoy.config.model.SqlToyConfig;
+import org.sagacity.sqltoy.config.model.SqlWithAnalysis;
+import org.sagacity.sqltoy.model.NamedValuesModel;
+import org.sagacity.sqltoy.utils.DataSourceUtils.DBType;
+import org.sagacity.sqltoy.utils.StringUtil;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 提供keyset(seek)分页的sql改写:以上一页最后一行的排序键值作为条件定位,替代offset跳过前面的记录,
+ *              深度翻页耗时不随页号增长
+ *
+ *              <pre>
+ *              select * from (原sql,剔除order by) SAG_Keysettable where (k1,k2) > (?,?) order by k1,k2
+ *              </pre>
+ *
+ *              取前pageSize条由各数据库方言的findTopBySql完成,从而适配全部方言
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-19
+ */
+public class KeysetPageUtils {
+	/**
+	 * keyset条件参数名称前缀
+	 */
+	public final static String KEYSET_PARAM_NAME = "sagKeysetParam";
+
+	/**
+	 * 外层包裹表别名
+	 */
+	private final static String KEYSET_TABLE = "SAG_Keysettable";
+
+	/**
+	 * @fast()子查询的别名
+	 */
+	private final static Pattern FAST_ALIAS_PATTERN = Pattern.compile("^(as\\s+)?(\\w+)", Pattern.CASE_INSENSITIVE);
+
+	/**
+	 * 紧跟在子查询后面但不是别名的关键词
+	 */
+	private final static Pattern NOT_ALIAS_PATTERN = Pattern.compile(
+			"(?i)^(where|left|right|inner|full|cross|join|on|order|group|having|union|limit|offset|fetch|for|window)$");
+
+	/**
+	 * @TODO 解析排序键列(格式:列名 [asc|desc]),返回列名(剔除表别名)
+	 * @param keysetColumns
+	 * @return
+	 */
+	public static String[] getKeyColumns(String[] keysetColumns) {
+		String[] columns = new String[keysetColumns.length];
+		String column;
+		int index;
+		for (int i = 0; i < keysetColumns.length; i++) {
+			if (StringUtil.isBlank(keysetColumns[i])) {
+				throw new IllegalArgumentException("keyset分页排序键列不能为空!");
+			}
+			column = keysetColumns[i].trim().split("\\s+")[0];
+			index = column.lastIndexOf(".");
+			columns[i] = (index == -1) ? column : column.substring(index + 1);
+		}
+		return columns;
+	}
+
+	/**
+	 * @TODO 判断排序键列是否为倒序
+	 * @param keysetColumns
+	 * @return
+	 */
+	public static boolean[] getKeyDescs(String[] keysetColumns) {
+		boolean[] descs = new boolean[keysetColumns.length];
+		String[] parts;
+		for (int i = 0; i < keysetColumns.length; i++) {
+			parts = keysetColumns[i].trim().split("\\s+");
+			descs[i] = parts.length > 1 && "desc".equalsIgnoreCase(parts[parts.length - 1]);
+		}
+		return descs;
+	}
+
+	/**
+	 * @TODO 是否支持(k1,k2)>(?,?)行值比较
+	 * @param dbType
+	 * @return
+	 */
+	public static boolean isSupportRowValue(Integer dbType) {
+		switch (dbType) {
+		case DBType.MYSQL:
+		case DBType.MYSQL57:
+		case DBType.TIDB:
+		case DBType.OCEANBASE:
+		case DBType.POSTGRESQL:
+		case DBType.GAUSSDB:
+		case DBType.KINGBASE:
+		case DBType.SQLITE:
+		case DBType.CLICKHOUSE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @TODO 构造keyset分页的sqlToyConfig(clone),fast查询改写@fast()内的sql,否则改写整个sql
+	 * @param sqlToyConfig   已经统一为:named参数的sql配置
+	 * @param keysetColumns
+	 * @param hasKeyValues   是否有上一页键值(无则为第一页,只排序不加条件)
+	 * @param dbType
+	 * @param dialect
+	 * @return
+	 */
+	public static SqlToyConfig wrapKeysetSqlToyConfig(SqlToyConfig sqlToyConfig, String[] keysetColumns,
+			boolean hasKeyValues, Integer dbType, String dialect) {
+		SqlToyConfig result = sqlToyConfig.clone();
+		String[] columns = getKeyColumns(keysetColumns);
+		boolean[] descs = getKeyDescs(keysetColumns);
+		boolean rowValue = isSupportRowValue(dbType);
+		if (sqlToyConfig.isHasFast()) {
+			result.setFastSql(
+					wrapKeysetSql(sqlToyConfig.getFastSql(dialect), false, columns, descs, hasKeyValues, rowValue));
+			// 外层关联查询不保证顺序,需按@fast()子查询别名再次排序
+			result.setFastTailSql(wrapFastTailSql(sqlToyConfig.getFastTailSql(dialect),
+					sqlToyConfig.isIgnoreBracket(), columns, descs));
+		} else {
+			result.setSql(wrapKeysetSql(sqlToyConfig.getSql(dialect), sqlToyConfig.isHasWith(), columns, descs,
+					hasKeyValues, rowValue));
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 将sql改写为按排序键定位的查询
+	 * @param sql
+	 * @param hasWith
+	 * @param columns
+	 * @param descs
+	 * @param hasKeyValues
+	 * @param rowValue     是否用行值比较,否则展开成or形式
+	 * @return
+	 */
+	public static String wrapKeysetSql(String sql, boolean hasWith, String[] columns, boolean[] descs,
+			boolean hasKeyValues, boolean rowValue) {
+		String withSql = "";
+		String innerSql = sql;
+		// with as 语句不能放入子查询中
+		if (hasWith) {
+			SqlWithAnalysis sqlWith = new SqlWithAnalysis(sql);
+			withSql = sqlWith.getWithSql();
+			innerSql = sqlWith.getRejectWithSql();
+		}
+		StringBuilder result = new StringBuilder(innerSql.length() + 200);
+		if (StringUtil.isNotBlank(withSql)) {
+			result.append(withSql).append(" ");
+		}
+		result.append("select ").append(KEYSET_TABLE).append(".* from (").append(clearOrderBy(innerSql)).append(") ")
+				.append(KEYSET_TABLE);
+		if (hasKeyValues) {
+			result.append(" where ").append(getSeekCondition(columns, descs, rowValue));
+		}
+		result.append(" order by ");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				result.append(",");
+			}
+			result.append(KEYSET_TABLE).append(".").append(columns[i]);
+			if (descs[i]) {
+				result.append(" desc");
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @TODO @fast()之后的外层sql:剔除原有order by,按@fast()子查询的别名追加排序键的order by
+	 * @param tailSql
+	 * @param ignoreBracket @fast()外面已经有括号,tailSql以)开头
+	 * @param columns
+	 * @param descs
+	 * @return
+	 */
+	public static String wrapFastTailSql(String tailSql, boolean ignoreBracket, String[] columns, boolean[] descs) {
+		String aliasSql = (tailSql == null) ? "" : tailSql.trim();
+		if (ignoreBracket && aliasSql.startsWith(")")) {
+			aliasSql = aliasSql.substring(1).trim();
+		}
+		Matcher matcher = FAST_ALIAS_PATTERN.matcher(aliasSql);
+		if (!matcher.find() || StringUtil.matches(matcher.group(2), NOT_ALIAS_PATTERN)) {
+			throw new IllegalArgumentException("keyset分页的@fast()子查询必须定义别名,以便外层查询按排序键排序!");
+		}
+		String alias = matcher.group(2);
+		StringBuilder result = new StringBuilder(clearOrderBy(tailSql));
+		result.append(" order by ");
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				result.append(",");
+			}
+			result.append(alias).append(".").append(columns[i]);
+			if (descs[i]) {
+				result.append(" desc");
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @TODO 定位条件:同向排序且数据库支持时用(k1,k2)>(:p1,:p2),否则展开为
+	 *       k1>=:p1 and (k1>:p1 or (k1=:p1 and k2>:p2)),首列范围条件便于走索引
+	 * @param columns
+	 * @param descs
+	 * @param rowValue
+	 * @return
+	 */
+	public static String getSeekCondition(String[] columns, boolean[] descs, boolean rowValue) {
+		int size = columns.length;
+		StringBuilder condition = new StringBuilder();
+		if (size == 1) {
+			return condition.append(KEYSET_TABLE).append(".").append(columns[0]).append(descs[0] ? "<:" : ">:")
+					.append(KEYSET_PARAM_NAME).append(1).toString();
+		}
+		boolean sameOrder = true;
+		for (int i = 1; i < size; i++) {
+			if (descs[i] != descs[0]) {
+				sameOrder = false;
+				break;
+			}
+		}
+		if (rowValue && sameOrder) {
+			condition.append("(");
+			for (int i = 0; i < size; i++) {
+				if (i > 0) {
+					condition.append(",");
+				}
+				condition.append(KEYSET_TABLE).append(".").append(columns[i]);
+			}
+			condition.append(")").append(descs[0] ? "<" : ">").append("(");
+			for (int i = 0; i < size; i++) {
+				if (i > 0) {
+					condition.append(",");
+				}
+				condition.append(":").append(KEYSET_PARAM_NAME).append(i + 1);
+			}
+			return condition.append(")").toString();
+		}
+		condition.append(KEYSET_TABLE).append(".").append(columns[0]).append(descs[0] ? "<=:" : ">=:")
+				.append(KEYSET_PARAM_NAME).append(1).append(" and (");
+		for (int i = 0; i < size; i++) {
+			if (i > 0) {
+				condition.append(" or ");
+			}
+			condition.append("(");
+			for (int j = 0; j < i; j++) {
+				condition.append(KEYSET_TABLE).append(".").append(columns[j]).append("=:").append(KEYSET_PARAM_NAME)
+						.append(j + 1).append(" and ");
+			}
+			condition.append(KEYSET_TABLE).append(".").append(columns[i]).append(descs[i] ? "<:" : ">:")
+					.append(KEYSET_PARAM_NAME).append(i + 1).append(")");
+		}
+		return condition.append(")").toString();
+	}
+
+	/**
+	 * @TODO 从本页查询结果中提取最后一行的排序键值,作为下一页的定位条件
+	 * @param rows
+	 * @param labelNames
+	 * @param keysetColumns
+	 * @return
+	 */
+	public static Object[] getLastKeyValues(List rows, String[] labelNames, String[] keysetColumns) {
+		if (rows == null || rows.isEmpty()) {
+			return null;
+		}
+		String[] columns = getKeyColumns(keysetColumns);
+		int[] indexes = new int[columns.length];
+		String column;
+		for (int i = 0; i < columns.length; i++) {
+			indexes[i] = -1;
+			column = columns[i].replaceAll("[\"`\\[\\]]", "");
+			for (int j = 0; j < labelNames.length; j++) {
+				if (labelNames[j].equalsIgnoreCase(column)
+						|| labelNames[j].replace("_", "").equalsIgnoreCase(column.replace("_", ""))) {
+					indexes[i] = j;
+					break;
+				}
+			}
+			if (indexes[i] == -1) {
+				throw new IllegalArgumentException("keyset分页排序键列:" + keysetColumns[i] + " 不在查询结果列中!");
+			}
+		}
+		List lastRow = (List) rows.get(rows.size() - 1);
+		Object[] result = new Object[indexes.length];
+		for (int i = 0; i < indexes.length; i++) {
+			result[i] = lastRow.get(indexes[i]);
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 剔除最外层的order by(keyset以排序键重新排序)
+	 * @param sql
+	 * @return
+	 */
+	private static String clearOrderBy(String sql) {
+		int orderByIndex = StringUtil.matchLastIndex(sql, DialectUtils.ORDER_BY_PATTERN);
+		if (orderByIndex == -1) {
+			return sql;
+		}
+		int lastBracketIndex = sql.lastIndexOf(")");
+		if (orderByIndex > lastBracketIndex
+				|| DialectUtils.clearDisturbSql(sql.substring(orderByIndex + 1)).indexOf(")") == -1) {
+			return sql.substring(0, orderByIndex + 1);
+		}
+		return sql;
+	}
+
+	/**
+	 * @TODO 合并原查询参数与keyset参数
+	 * @param paramsName
+	 * @param paramsValue
+	 * @param keyValues
+	 * @return
+	 */
+	public static NamedValuesModel mergeParams(String[] paramsName, Object[] paramsValue, Object[] keyValues) {
+		int paramSize = (paramsName == null) ? 0 : paramsName.length;
+		int keySize = (keyValues == null) ? 0 : keyValues.length;
+		String[] names = new String[paramSize + keySize];
+		Object[] values = new Object[paramSize + keySize];
+		for (int i = 0; i < paramSize; i++) {
+			names[i] = paramsName[i];
+			values[i] = (paramsValue == null || i >= paramsValue.length) ? null : paramsValue[i];
+		}
+		for (int i = 0; i < keySize; i++) {
+			if (keyValues[i] == null) {
+				throw new IllegalArgumentException("keyset分页上一页排序键值不能为null!");
+			}
+			names[paramSize + i] = KEYSET_PARAM_NAME + (i + 1);
+			values[paramSize + i] = keyValues[i];
+		}
+		NamedValuesModel result = new NamedValuesModel();
+		result.setNames(names);
+		result.setValues(values);
+		return result;
+	}
+}
@@ -3,16 +3,22 @@
  */
 package org.sagacity.sqltoy.dialect.utils;
 
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
 
+import org.sagacity.sqltoy.SqlExecuteStat;
+import org.sagacity.sqltoy.SqlToyConstants;
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.config.model.PageOptimize;
 import org.sagacity.sqltoy.config.model.SqlToyConfig;
 import org.sagacity.sqltoy.executor.QueryExecutor;
 import org.sagacity.sqltoy.model.QueryExecutorExtend;
+import org.sagacity.sqltoy.plugins.cache.PageCountCache;
+import org.sagacity.sqltoy.plugins.cache.impl.DefaultPageCountCache;
+import org.sagacity.sqltoy.plugins.metrics.CacheMetric;
+import org.sagacity.sqltoy.plugins.metrics.SqlMetric;
+import org.sagacity.sqltoy.plugins.metrics.SqlMetricsRegistry;
 import org.sagacity.sqltoy.utils.CollectionUtil;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 /**
  * @project sagacity-sqltoy4.0
@@ -21,18 +27,21 @@ import org.sagacity.sqltoy.utils.CollectionUtil;
  * @version v1.0,Date:2016年11月24日
  * @modify 2020-8-4 修改原本只支持xml中必须有id的sql才能缓存的策略,便于今后直接从代码中实现分页优化功能
  * @modify 2020-8-13 修改失效策略，在登记时只控制aliveMax，在获取时判定aliveSeconds清除过期的
+ * @modify 2021-5-8 缓存改为可扩展的PageCountCache实现(默认无锁本地缓存,可选redis集中缓存),条件key改为64位hash值
+ * @modify 2021-5-18 登记分页count缓存命中指标
+ * @modify 2021-5-20 增加分页自适应并行判断及有效率指标
  */
 public class PageOptimizeUtils {
-	private static final int INITIAL_CAPACITY = 128;
-	private static final float LOAD_FACTOR = 0.75f;
+	private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
 
-	// 定义sql对应的分页查询请求(不同查询条件构成的key)对应的总记录数Object[] as
-	// {expireTime(失效时间),recordCount(分页查询总记录数)}
-	private static ConcurrentHashMap<String, LinkedHashMap<String, Object[]>> pageOptimizeCache = new ConcurrentHashMap<String, LinkedHashMap<String, Object[]>>(
-			INITIAL_CAPACITY, LOAD_FACTOR);
+	/**
+	 * 分页总记录数缓存,由SqlToyContext初始化时设置
+	 */
+	private static PageCountCache pageCountCache;
 
 	/**
-	 * @todo 根据查询条件组成key
+	 * @todo 根据查询条件组成key(64位hash值,避免以name=value拼接的长字符串作为key)
 	 * @param sqlToyContext
 	 * @param sqlToyConfig
 	 * @param queryExecutor
@@ -40,7 +49,7 @@ public class PageOptimizeUtils {
 	 * @return
 	 * @throws Exception
 	 */
-	public static String generateOptimizeKey(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig,
+	public static Long generateOptimizeKey(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig,
 			final QueryExecutor queryExecutor, PageOptimize pageOptimize) throws Exception {
 		// 没有开放分页优化或sql id为null都不执行优化操作
 		if (pageOptimize == null || pageOptimize.getAliveMax() <= 1 || pageOptimize.getAliveSeconds() < 1) {
@@ -49,42 +58,42 @@ public class PageOptimizeUtils {
 		QueryExecutorExtend extend = queryExecutor.getInnerModel();
 		String[] paramNames = extend.getParamsName(sqlToyConfig);
 		Object[] paramValues = extend.getParamsValue(sqlToyContext, sqlToyConfig);
-		// sql中所有参数都为null,返回sqlId作为key
+		// sql中所有参数都为null,sqlId本身即可区分
 		if (paramValues == null || paramValues.length == 0) {
-			return sqlToyConfig.getIdOrSql();
+			return 0L;
 		}
-		StringBuilder cacheKey = new StringBuilder();
 		boolean isParamsNamed = true;
 		if (null == paramNames || paramNames.length == 0) {
 			isParamsNamed = false;
 		}
+		long hash = FNV_OFFSET;
 		int i = 0;
 		// 循环查询条件的值构造key
 		for (Object value : paramValues) {
-			if (i > 0) {
-				cacheKey.append(",");
-			}
 			if (isParamsNamed) {
-				cacheKey.append(paramNames[i]).append("=");
+				hash = hash(hash, paramNames[i]);
 			} else {
-				cacheKey.append("p_").append(i).append("=");
+				hash = hash(hash, i);
 			}
+			hash = hash(hash, '=');
 			if (value == null) {
-				cacheKey.append("null");
+				hash = hash(hash, 0);
 			} else if ((value instanceof Object[]) || value.getClass().isArray() || (value instanceof List)) {
 				Object[] arrayValue = (value instanceof List) ? ((List) value).toArray()
 						: CollectionUtil.convertArray(value);
-				cacheKey.append("[");
+				hash = hash(hash, '[');
 				for (Object obj : arrayValue) {
-					cacheKey.append((obj == null) ? "null" : obj.toString()).append(",");
+					hash = (obj == null) ? hash(hash, 0) : hash(hash, obj.toString());
+					hash = hash(hash, ',');
 				}
-				cacheKey.append("]");
+				hash = hash(hash, ']');
 			} else {
-				cacheKey.append(value.toString());
+				hash = hash(hash, value.toString());
 			}
+			hash = hash(hash, ',');
 			i++;
 		}
-		return cacheKey.toString();
+		return mix(hash);
 	}
 
 	/**
@@ -95,33 +104,20 @@ public class PageOptimizeUtils {
 	 * @return
 	 */
 	public static Long getPageTotalCount(final SqlToyConfig sqlToyConfig, PageOptimize pageOptimize,
-			String conditionsKey) {
-		// sql初次执行查询
-		if (!pageOptimizeCache.containsKey(sqlToyConfig.getIdOrSql())) {
-			return null;
-		}
-		LinkedHashMap<String, Object[]> map = pageOptimizeCache.get(sqlToyConfig.getIdOrSql());
-		synchronized (map) {
-			// 为null表示条件初次查询或已经全部过期移除
-			if (!map.containsKey(conditionsKey)) {
-				return null;
-			}
-			Object[] values = map.get(conditionsKey);
-			// 失效时间
-			long expireTime = (Long) values[0];
-			// 总记录数
-			Long totalCount = (Long) values[1];
-			long nowTime = System.currentTimeMillis();
-			// 已经失效
-			if (nowTime >= expireTime) {
-				// 剔除过时的
-				map.remove(conditionsKey);
-				// System.err.println("删除过期的key=" + conditionsKey);
-				return null;
+			long conditionsKey) {
+		Long totalCount = getPageCountCache().get(sqlToyConfig.getIdOrSql(), conditionsKey);
+		// 登记count缓存命中情况
+		SqlMetricsRegistry registry = SqlExecuteStat.getMetricsRegistry();
+		if (registry != null) {
+			CacheMetric metric = registry.getCacheMetric(SqlMetricsRegistry.PAGE_COUNT_CACHE,
+					(sqlToyConfig.getId() == null) ? SqlMetricsRegistry.CODE_SQL : sqlToyConfig.getId());
+			if (totalCount == null) {
+				metric.miss();
+			} else {
+				metric.hit();
 			}
-			// 没有过期返回总记录数量
-			return totalCount;
 		}
+		return totalCount;
 	}
 
 	/**
@@ -132,34 +128,50 @@ public class PageOptimizeUtils {
 	 * @param totalCount
 	 */
 	public static void registPageTotalCount(final SqlToyConfig sqlToyConfig, PageOptimize pageOptimize,
-			String conditionsKey, Long totalCount) {
-		long nowTime = System.currentTimeMillis();
-		// 当前时间
-		long expireTime = nowTime + pageOptimize.getAliveSeconds() * 1000;
-		// 同一个分页查询sql保留的不同查询条件记录数量
-		int aliveMax = pageOptimize.getAliveMax();
-		// sql id
-		String id = sqlToyConfig.getIdOrSql();
-		LinkedHashMap<String, Object[]> map = null;
-		if (!pageOptimizeCache.containsKey(id)) {
-			map = new LinkedHashMap<String, Object[]>(aliveMax);
-			map.put(conditionsKey, new Object[] { expireTime, totalCount });
-			pageOptimizeCache.put(id, map);
+			long conditionsKey, Long totalCount) {
+		if (totalCount == null) {
+			return;
+		}
+		getPageCountCache().put(sqlToyConfig.getIdOrSql(), conditionsKey, totalCount, pageOptimize);
+	}
+
+	/**
+	 * @TODO 判断分页是否自适应并行查询count和单页数据:需开启sqltoy.page.parallel.adaptive,且不在事务中
+	 *       (另一连接读不到当前事务未提交的数据),同时sql历史分页平均耗时达到阈值(无历史记录则并行)
+	 * @param sqlToyConfig
+	 * @return
+	 */
+	public static boolean isAdaptiveParallel(final SqlToyConfig sqlToyConfig) {
+		if (!SqlToyConstants.pageParallelAdaptive() || TransactionSynchronizationManager.isActualTransactionActive()) {
+			return false;
+		}
+		SqlMetricsRegistry registry = SqlExecuteStat.getMetricsRegistry();
+		if (registry == null) {
+			return true;
+		}
+		SqlMetric metric = registry.getSqlMetric(sqlToyConfig.getId(), "findPage");
+		if (metric.getCount() == 0) {
+			return true;
+		}
+		return metric.getMeanMillis() >= SqlToyConstants.getPageParallelMinMillis();
+	}
+
+	/**
+	 * @TODO 登记自适应并行的单页数据是否被采用(count为0或页号越界时数据被丢弃)
+	 * @param sqlToyConfig
+	 * @param used
+	 */
+	public static void registAdaptiveParallel(final SqlToyConfig sqlToyConfig, boolean used) {
+		SqlMetricsRegistry registry = SqlExecuteStat.getMetricsRegistry();
+		if (registry == null) {
+			return;
+		}
+		CacheMetric metric = registry.getCacheMetric(SqlMetricsRegistry.PAGE_PARALLEL,
+				(sqlToyConfig.getId() == null) ? SqlMetricsRegistry.CODE_SQL : sqlToyConfig.getId());
+		if (used) {
+			metric.hit();
 		} else {
-			map = pageOptimizeCache.get(id);
-			synchronized (map) {
-				// 已经存在,先移除
-				if (map.containsKey(conditionsKey)) {
-					map.remove(conditionsKey);
-				}
-				// 放入最新的(在最后位置)
-				map.put(conditionsKey, new Object[] { expireTime, totalCount });
-				// 长度超阀值,移除最早进入的
-				while (map.size() > aliveMax) {
-					// System.err.println("size="+map.size()+":删除超量数据");
-					map.remove(map.keySet().iterator().next());
-				}
-			}
+			metric.miss();
 		}
 	}
 
@@ -168,6 +180,50 @@ public class PageOptimizeUtils {
 	 * @param sqlId
 	 */
 	public static void remove(String sqlId) {
-		pageOptimizeCache.remove(sqlId);
+		getPageCountCache().remove(sqlId);
+	}
+
+	/**
+	 * @TODO 设置分页总记录数缓存实现
+	 * @param countCache
+	 */
+	public static void setPageCountCache(PageCountCache countCache) {
+		pageCountCache = countCache;
+	}
+
+	private static PageCountCache getPageCountCache() {
+		if (pageCountCache == null) {
+			synchronized (PageOptimizeUtils.class) {
+				if (pageCountCache == null) {
+					DefaultPageCountCache defaultCache = new DefaultPageCountCache();
+					defaultCache.initialize(null);
+					pageCountCache = defaultCache;
+				}
+			}
+		}
+		return pageCountCache;
+	}
+
+	private static long hash(long hash, String str) {
+		long result = hash;
+		for (int i = 0; i < str.length(); i++) {
+			result = (result ^ str.charAt(i)) * FNV_PRIME;
+		}
+		return result;
+	}
+
+	private static long hash(long hash, int value) {
+		return (hash ^ value) * FNV_PRIME;
+	}
+
+	// 对fnv结果进行再次扩散,使各位分布更均匀
+	private static long mix(long hash) {
+		long result = hash;
+		result ^= result >>> 33;
+		result *= 0xff51afd7ed558ccdL;
+		result ^= result >>> 33;
+		result *= 0xc4ceb9fe1a85ec53L;
+		result ^= result >>> 33;
+		return result;
 	}
 }
@@ -0,0 +1,404 @@
+package org.sagacity.sqltoy.dialect.utils;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.sagacity.sqltoy.SqlExecuteStat;
+import org.sagacity.sqltoy.SqlToyConstants;
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.callback.AbstractPreparedStatementResultHandler;
+import org.sagacity.sqltoy.config.model.SqlToyConfig;
+import org.sagacity.sqltoy.config.model.SqlToyResult;
+import org.sagacity.sqltoy.config.model.SqlWithAnalysis;
+import org.sagacity.sqltoy.executor.QueryExecutor;
+import org.sagacity.sqltoy.model.QueryExecutorExtend;
+import org.sagacity.sqltoy.model.QueryResult;
+import org.sagacity.sqltoy.model.RandomSampleMode;
+import org.sagacity.sqltoy.plugins.sampling.RandomSampleStrategy;
+import org.sagacity.sqltoy.utils.DataSourceUtils.DBType;
+import org.sagacity.sqltoy.utils.ResultUtils;
+import org.sagacity.sqltoy.utils.SqlUtil;
+import org.sagacity.sqltoy.utils.SqlUtilsExt;
+import org.sagacity.sqltoy.utils.StringUtil;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 基于已知总记录数的随机抽样,避免order by random()对全部结果排序:
+ *              <li>ROW_NUMBER:预先产生随机行号,row_number()/rownum定位一次提取</li>
+ *              <li>TABLESAMPLE:单表查询先按比例抽取数据块再随机取(postgresql、gaussdb、sqlserver)</li>
+ *              <li>STREAM:顺序读取结果集一遍,按选择抽样算法(Knuth Algorithm S)逐行决定是否保留</li>
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class RandomSampleUtils {
+	/**
+	 * 行号列
+	 */
+	public final static String ROW_NUMBER_COLUMN = "sag_row_number";
+
+	/**
+	 * TABLESAMPLE 抽样比例放大倍数(弥补where条件过滤)
+	 */
+	private final static int TABLESAMPLE_OVERSAMPLE = 5;
+
+	/**
+	 * 简单单表查询:select cols from table [alias] [where ...]
+	 */
+	private final static Pattern SINGLE_TABLE_PATTERN = Pattern.compile(
+			"(?is)^\\s*select\\s+(.+?)\\s+from\\s+([\\w\\.\"`\\[\\]]+)(?:\\s+(?:as\\s+)?(\\w+))?(\\s+where\\s+.+)?\\s*$");
+
+	/**
+	 * 单表查询中不能出现的语句(出现则不使用TABLESAMPLE)
+	 */
+	private final static Pattern NOT_SINGLE_TABLE_PATTERN = Pattern.compile(
+			"(?i)\\W(join|group\\s+by|order\\s+by|having|union|limit|fetch|top|distinct|tablesample)\\W");
+
+	private RandomSampleUtils() {
+	}
+
+	/**
+	 * @TODO 按抽样策略取随机记录,返回null表示采用数据库方言的随机方式
+	 * @param sqlToyContext
+	 * @param sampleStrategy
+	 * @param sqlToyConfig
+	 * @param queryExecutor
+	 * @param totalCount
+	 * @param randomCount
+	 * @param conn
+	 * @param dbType
+	 * @param dialect
+	 * @return
+	 * @throws Exception
+	 */
+	public static QueryResult getRandomResult(SqlToyContext sqlToyContext, RandomSampleStrategy sampleStrategy,
+			SqlToyConfig sqlToyConfig, QueryExecutor queryExecutor, Long totalCount, Long randomCount,
+			Connection conn, final Integer dbType, final String dialect) throws Exception {
+		RandomSampleMode mode = sampleStrategy.choose(dbType, sqlToyConfig, totalCount, randomCount);
+		if (mode == null || mode == RandomSampleMode.DIALECT) {
+			return null;
+		}
+		SqlExecuteStat.debug("过程提示", "随机抽样方式:{},总记录数:{}条,抽取:{}条!", mode, totalCount, randomCount);
+		QueryResult result = null;
+		// 不满足条件时依次降级:TABLESAMPLE-->ROW_NUMBER-->STREAM
+		if (mode == RandomSampleMode.TABLESAMPLE) {
+			result = getRandomByTableSample(sqlToyContext, sqlToyConfig, queryExecutor, totalCount, randomCount, conn,
+					dbType, dialect);
+			if (result != null) {
+				return result;
+			}
+			mode = (isSupportRowNumber(dbType) && randomCount <= getMaxPositions(dbType)) ? RandomSampleMode.ROW_NUMBER
+					: RandomSampleMode.STREAM;
+		}
+		if (mode == RandomSampleMode.ROW_NUMBER) {
+			result = getRandomByRowNumber(sqlToyContext, sqlToyConfig, queryExecutor, totalCount, randomCount, conn,
+					dbType, dialect);
+		}
+		if (result == null) {
+			result = getRandomByStream(sqlToyContext, sqlToyConfig, queryExecutor, totalCount, randomCount, conn,
+					dbType, dialect);
+		}
+		// 按行号顺序提取的结果打乱顺序
+		if (result.getRows() != null && result.getRows().size() > 1) {
+			Collections.shuffle(result.getRows(), ThreadLocalRandom.current());
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 是否支持row_number()或rownum定位
+	 * @param dbType
+	 * @return
+	 */
+	public static boolean isSupportRowNumber(Integer dbType) {
+		switch (dbType) {
+		case DBType.ORACLE:
+		case DBType.ORACLE11:
+		case DBType.DM:
+		case DBType.SQLSERVER:
+		case DBType.DB2:
+		case DBType.MYSQL:
+		case DBType.TIDB:
+		case DBType.OCEANBASE:
+		case DBType.POSTGRESQL:
+		case DBType.GAUSSDB:
+		case DBType.KINGBASE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @TODO row_number定位时in条件中行号的最大数量
+	 * @param dbType
+	 * @return
+	 */
+	public static int getMaxPositions(Integer dbType) {
+		// oracle in 最多1000个
+		if (dbType == DBType.ORACLE || dbType == DBType.ORACLE11 || dbType == DBType.DM) {
+			return 1000;
+		}
+		return 5000;
+	}
+
+	/**
+	 * @TODO 是否支持TABLESAMPLE
+	 * @param dbType
+	 * @return
+	 */
+	public static boolean isSupportTableSample(Integer dbType) {
+		return dbType == DBType.POSTGRESQL || dbType == DBType.GAUSSDB || dbType == DBType.SQLSERVER;
+	}
+
+	/**
+	 * @TODO 是否为可使用TABLESAMPLE的简单单表查询
+	 * @param sql
+	 * @return
+	 */
+	public static boolean isTableSampleSql(String sql) {
+		if (sql == null || NOT_SINGLE_TABLE_PATTERN.matcher(" " + sql + " ").find()) {
+			return false;
+		}
+		Matcher matcher = SINGLE_TABLE_PATTERN.matcher(sql);
+		if (!matcher.find()) {
+			return false;
+		}
+		// 查询列中存在子查询
+		if (StringUtil.matches(matcher.group(1), "(?i)\\(\\s*select\\s")) {
+			return false;
+		}
+		String alias = matcher.group(3);
+		return alias == null || !alias.matches("(?i)where|left|right|inner|outer|full|cross|join|natural");
+	}
+
+	/**
+	 * @TODO 在[1,totalCount]中产生randomCount个不重复的随机行号(Floyd算法),并排序
+	 * @param totalCount
+	 * @param randomCount
+	 * @return
+	 */
+	public static long[] randomPositions(long totalCount, int randomCount) {
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		HashSet<Long> positions = new HashSet<Long>(randomCount * 2);
+		long position;
+		for (long j = totalCount - randomCount + 1; j <= totalCount; j++) {
+			position = random.nextLong(1, j + 1);
+			if (!positions.add(position)) {
+				positions.add(j);
+			}
+		}
+		long[] result = new long[positions.size()];
+		int index = 0;
+		for (Long pos : positions) {
+			result[index++] = pos;
+		}
+		Arrays.sort(result);
+		return result;
+	}
+
+	/**
+	 * @TODO 预先产生随机行号,通过row_number()(oracle、dm用rownum)一次提取,不满足条件返回null
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param queryExecutor
+	 * @param totalCount
+	 * @param randomCount
+	 * @param conn
+	 * @param dbType
+	 * @param dialect
+	 * @return
+	 * @throws Exception
+	 */
+	public static QueryResult getRandomByRowNumber(SqlToyContext sqlToyContext, SqlToyConfig sqlToyConfig,
+			QueryExecutor queryExecutor, Long totalCount, Long randomCount, Connection conn, final Integer dbType,
+			final String dialect) throws Exception {
+		// fast查询外层语句无法确定行号列位置
+		if (sqlToyConfig.isHasFast() || !isSupportRowNumber(dbType) || randomCount > getMaxPositions(dbType)) {
+			return null;
+		}
+		String withSql = "";
+		String innerSql = sqlToyConfig.getSql(dialect);
+		if (sqlToyConfig.isHasWith()) {
+			SqlWithAnalysis sqlWith = new SqlWithAnalysis(innerSql);
+			withSql = sqlWith.getWithSql();
+			innerSql = sqlWith.getRejectWithSql();
+		}
+		// sqlserver 子查询中不能有order by
+		if (dbType == DBType.SQLSERVER && DialectUtils.hasOrderByOrUnion(innerSql)) {
+			return null;
+		}
+		String rowNumber;
+		if (dbType == DBType.ORACLE || dbType == DBType.ORACLE11 || dbType == DBType.DM) {
+			rowNumber = "rownum";
+		} else if (dbType == DBType.SQLSERVER) {
+			rowNumber = "row_number() over(order by (select null))";
+		} else {
+			rowNumber = "row_number() over()";
+		}
+		long[] positions = randomPositions(totalCount, randomCount.intValue());
+		StringBuilder sql = new StringBuilder(innerSql.length() + positions.length * 8 + 200);
+		if (StringUtil.isNotBlank(withSql)) {
+			sql.append(withSql).append(" ");
+		}
+		sql.append("select * from (select ").append(rowNumber).append(" ").append(ROW_NUMBER_COLUMN);
+		sql.append(",sag_random_inner.* from (").append(innerSql).append(") sag_random_inner) sag_random_table");
+		sql.append(" where ").append(ROW_NUMBER_COLUMN).append(" in (");
+		for (int i = 0; i < positions.length; i++) {
+			if (i > 0) {
+				sql.append(",");
+			}
+			sql.append(positions[i]);
+		}
+		sql.append(")");
+		SqlToyResult queryParam = DialectUtils.wrapPageSqlParams(sqlToyContext, sqlToyConfig, queryExecutor,
+				sql.toString(), null, null);
+		QueryExecutorExtend extend = queryExecutor.getInnerModel();
+		// 跳过第一列行号
+		return DialectUtils.findBySql(sqlToyContext, sqlToyConfig, queryParam.getSql(), queryParam.getParamsValue(),
+				extend.rowCallbackHandler, conn, dbType, 1, extend.fetchSize, extend.maxRows);
+	}
+
+	/**
+	 * @TODO 单表查询通过TABLESAMPLE先抽取少量数据再随机排序,抽取不足时返回null
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param queryExecutor
+	 * @param totalCount
+	 * @param randomCount
+	 * @param conn
+	 * @param dbType
+	 * @param dialect
+	 * @return
+	 * @throws Exception
+	 */
+	public static QueryResult getRandomByTableSample(SqlToyContext sqlToyContext, SqlToyConfig sqlToyConfig,
+			QueryExecutor queryExecutor, Long totalCount, Long randomCount, Connection conn, final Integer dbType,
+			final String dialect) throws Exception {
+		if (sqlToyConfig.isHasFast() || sqlToyConfig.isHasWith() || !isSupportTableSample(dbType)) {
+			return null;
+		}
+		String sql = sqlToyConfig.getSql(dialect);
+		if (!isTableSampleSql(sql)) {
+			return null;
+		}
+		Matcher matcher = SINGLE_TABLE_PATTERN.matcher(sql);
+		matcher.find();
+		BigDecimal percent = BigDecimal.valueOf(randomCount * 100.0 * TABLESAMPLE_OVERSAMPLE / totalCount)
+				.setScale(4, RoundingMode.UP);
+		if (percent.compareTo(BigDecimal.valueOf(100)) >= 0) {
+			return null;
+		}
+		boolean isSqlServer = (dbType == DBType.SQLSERVER);
+		StringBuilder sampleSql = new StringBuilder(sql.length() + 100);
+		sampleSql.append("select ");
+		if (isSqlServer) {
+			sampleSql.append("top ").append(randomCount).append(" ");
+		}
+		sampleSql.append(matcher.group(1)).append(" from ").append(matcher.group(2));
+		if (matcher.group(3) != null) {
+			sampleSql.append(" ").append(matcher.group(3));
+		}
+		sampleSql.append(" tablesample system (").append(percent.toPlainString());
+		sampleSql.append(isSqlServer ? " percent)" : ")");
+		if (matcher.group(4) != null) {
+			sampleSql.append(matcher.group(4));
+		}
+		if (isSqlServer) {
+			sampleSql.append(" order by newid()");
+		} else {
+			sampleSql.append(" order by random() limit ").append(randomCount);
+		}
+		SqlToyResult queryParam = DialectUtils.wrapPageSqlParams(sqlToyContext, sqlToyConfig, queryExecutor,
+				sampleSql.toString(), null, null);
+		QueryExecutorExtend extend = queryExecutor.getInnerModel();
+		QueryResult result = DialectUtils.findBySql(sqlToyContext, sqlToyConfig, queryParam.getSql(),
+				queryParam.getParamsValue(), extend.rowCallbackHandler, conn, dbType, 0, extend.fetchSize,
+				extend.maxRows);
+		// 数据块抽样数量不足(where过滤较多或数据分布不均)
+		if (result.getRows() == null || result.getRows().size() < randomCount) {
+			SqlExecuteStat.debug("过程提示", "TABLESAMPLE抽样记录不足,改用其他方式!");
+			return null;
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 顺序读取结果集一遍,逐行按选择抽样决定是否保留,取满后不再读取
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param queryExecutor
+	 * @param totalCount
+	 * @param randomCount
+	 * @param conn
+	 * @param dbType
+	 * @param dialect
+	 * @return
+	 * @throws Exception
+	 */
+	public static QueryResult getRandomByStream(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig,
+			QueryExecutor queryExecutor, final Long totalCount, final Long randomCount, final Connection conn,
+			final Integer dbType, final String dialect) throws Exception {
+		SqlToyResult queryParam = DialectUtils.wrapPageSqlParams(sqlToyContext, sqlToyConfig, queryExecutor,
+				sqlToyConfig.getSql(dialect), null, null);
+		final QueryExecutorExtend extend = queryExecutor.getInnerModel();
+		String lastSql = SqlUtilsExt.signSql(queryParam.getSql(), dbType, sqlToyConfig);
+		final Object[] paramsValue = queryParam.getParamsValue();
+		SqlExecuteStat.showSql("随机抽样查询", lastSql, paramsValue);
+		PreparedStatement pst = conn.prepareStatement(lastSql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+		pst.setFetchSize((extend.fetchSize > 0) ? extend.fetchSize : SqlToyConstants.getStreamFetchSize());
+		ResultSet rs = null;
+		return (QueryResult) SqlUtil.preparedStatementProcess(null, pst, rs,
+				new AbstractPreparedStatementResultHandler() {
+					@Override
+					public void execute(Object obj, PreparedStatement pst, ResultSet rs) throws Exception {
+						SqlUtil.setParamsValue(sqlToyContext.getTypeHandler(), conn, dbType, pst, paramsValue, null, 0);
+						rs = pst.executeQuery();
+						this.setResult(ResultUtils.processResultSet(sqlToyContext, sqlToyConfig, conn,
+								wrapSampling(rs, totalCount, randomCount), extend.rowCallbackHandler, null, 0));
+					}
+				});
+	}
+
+	/**
+	 * @TODO 包装结果集:next()只返回被抽中的行,第i行(剩余r行、还需k行)被选中的概率为k/r
+	 * @param rs
+	 * @param totalCount
+	 * @param randomCount
+	 * @return
+	 */
+	public static ResultSet wrapSampling(final ResultSet rs, final long totalCount, final long randomCount) {
+		final long[] counter = { 0, 0 };
+		return (ResultSet) Proxy.newProxyInstance(RandomSampleUtils.class.getClassLoader(),
+				new Class[] { ResultSet.class }, (proxy, method, args) -> {
+					if ("next".equals(method.getName()) && method.getParameterCount() == 0) {
+						ThreadLocalRandom random = ThreadLocalRandom.current();
+						while (counter[1] < randomCount && rs.next()) {
+							counter[0]++;
+							// 实际记录超出总记录数时(统计后有新增)剩余量按1计
+							if (random.nextDouble() * Math.max(1, totalCount - counter[0] + 1) < randomCount
+									- counter[1]) {
+								counter[1]++;
+								return true;
+							}
+						}
+						return false;
+					}
+					try {
+						return method.invoke(rs, args);
+					} catch (InvocationTargetException e) {
+						throw e.getTargetException();
+					}
+				});
+	}
+}
@@ -0,0 +1,451 @@
+package org.sagacity.sqltoy.dialect.utils;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.sql.DataSource;
+
+import org.sagacity.sqltoy.SqlExecuteStat;
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.config.model.EntityMeta;
+import org.sagacity.sqltoy.config.model.FormatModel;
+import org.sagacity.sqltoy.config.model.ResultCache;
+import org.sagacity.sqltoy.config.model.SecureMask;
+import org.sagacity.sqltoy.config.model.ShardingStrategyConfig;
+import org.sagacity.sqltoy.config.model.SqlToyConfig;
+import org.sagacity.sqltoy.config.model.TableCascadeModel;
+import org.sagacity.sqltoy.config.model.Translate;
+import org.sagacity.sqltoy.executor.QueryExecutor;
+import org.sagacity.sqltoy.model.LockMode;
+import org.sagacity.sqltoy.model.QueryExecutorExtend;
+import org.sagacity.sqltoy.model.QueryResult;
+import org.sagacity.sqltoy.model.TranslateExtend;
+import org.sagacity.sqltoy.plugins.cache.ResultCacheRegistry;
+import org.sagacity.sqltoy.plugins.metrics.CacheMetric;
+import org.sagacity.sqltoy.plugins.metrics.SqlMetricsRegistry;
+import org.sagacity.sqltoy.utils.BeanUtil;
+import org.sagacity.sqltoy.utils.CollectionUtil;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 查询结果缓存:按sqlId+条件值缓存findByQuery、findPage的结果,通过sqltoy对相关表写入(save、update、delete、executeSql等)时
+ *              按表名使缓存失效;存储过程无法解析其修改的表,不会自动失效,需自行调用invalidate(sqlToyContext,tables)
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class ResultCacheUtils {
+	/**
+	 * 查询语句中涉及的表:from/join/逗号后面的表名(排除函数)
+	 */
+	private final static Pattern QUERY_TABLE_PATTERN = Pattern
+			.compile("(?i)(?:\\bfrom\\s+|\\bjoin\\s+|,\\s*)([a-z_\"`\\[][\\w\\.\\$\"`\\[\\]]*+)(?!\\s*\\()");
+
+	/**
+	 * 修改语句中被修改的表
+	 */
+	private final static Pattern UPDATE_TABLE_PATTERN = Pattern.compile(
+			"(?i)\\b(?:insert\\s+into|update|delete\\s+from|delete|merge\\s+into|replace\\s+into|truncate\\s+table)\\s+([a-z_\"`\\[][\\w\\.\\$\"`\\[\\]]*+)(?!\\s*\\()");
+
+	/**
+	 * 结果对象类型-->{get方法,set方法},用于复制缓存中的对象行
+	 */
+	private final static ConcurrentHashMap<Class, Method[][]> beanMethods = new ConcurrentHashMap<Class, Method[][]>();
+
+	private ResultCacheUtils() {
+	}
+
+	/**
+	 * @TODO 获取查询对应的结果缓存配置(QueryExecutor优先于xml),锁查询和自定义行处理不缓存;
+	 *       使用缓存时先登记sql涉及的表,需在getVersion之前调用
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param extend
+	 * @param lockMode
+	 * @return
+	 */
+	public static ResultCache getResultCache(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig,
+			final QueryExecutorExtend extend, final LockMode lockMode) {
+		ResultCache resultCache = (extend.resultCache != null) ? extend.resultCache : sqlToyConfig.getResultCache();
+		if (resultCache == null || !resultCache.isEnabled() || lockMode != null || extend.rowCallbackHandler != null) {
+			return null;
+		}
+		// 可写事务中可能读到自身未提交的数据,也可能需要看到自身的修改,不使用缓存
+		if (TransactionSynchronizationManager.isActualTransactionActive()
+				&& !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+			return null;
+		}
+		String[] tables = resultCache.getTables();
+		if (tables == null || tables.length == 0) {
+			tables = parseQueryTables(sqlToyConfig.getSql(null));
+		} else {
+			tables = normalizeTables(tables);
+		}
+		sqlToyContext.getResultCacheRegistry().register(sqlToyConfig.getIdOrSql(), tables);
+		return resultCache;
+	}
+
+	/**
+	 * @TODO 构造缓存key:查询类别、数据源、条件参数名称和值、结果类型以及分页等附加信息(sql由sqlId及条件值唯一确定)
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param queryExecutor
+	 * @param dataSource
+	 * @param queryType
+	 * @param extras
+	 * @return
+	 * @throws Exception
+	 */
+	public static String generateKey(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig,
+			final QueryExecutor queryExecutor, final DataSource dataSource, String queryType, Object... extras)
+			throws Exception {
+		QueryExecutorExtend extend = queryExecutor.getInnerModel();
+		String[] paramNames = extend.getParamsName(sqlToyConfig);
+		Object[] paramValues = extend.getParamsValue(sqlToyContext, sqlToyConfig);
+		StringBuilder key = new StringBuilder(128);
+		key.append(queryType).append('|');
+		key.append(sqlToyContext.getResultCacheRegistry().getDataSourceId(dataSource)).append('|');
+		key.append((extend.resultType == null) ? "" : ((Class) extend.resultType).getName()).append('|');
+		key.append(extend.humpMapLabel).append('|');
+		key.append(extend.maxRows).append('|');
+		// 脱敏、格式化、缓存翻译以及分表策略都会影响结果
+		for (SecureMask mask : extend.secureMask.values()) {
+			key.append(mask.getColumn()).append(':').append(mask.getType()).append(':').append(mask.getHeadSize())
+					.append(':').append(mask.getTailSize()).append(':').append(mask.getMaskCode()).append(':')
+					.append(mask.getMaskRate()).append(',');
+		}
+		key.append('|');
+		for (FormatModel format : extend.colsFormat.values()) {
+			key.append(format.getColumn()).append(':').append(format.getType()).append(':')
+					.append(format.getFormat()).append(':').append(format.getRoundingMode()).append(',');
+		}
+		key.append('|');
+		TranslateExtend trans;
+		for (Translate translate : extend.translates.values()) {
+			trans = translate.getExtend();
+			key.append(trans.column).append(':').append(trans.cache).append(':').append(trans.cacheType)
+					.append(':').append(trans.index).append(':').append(trans.keyColumn).append(':')
+					.append(trans.alias).append(':').append(trans.splitRegex).append(':').append(trans.linkSign)
+					.append(':').append(trans.keyTemplate).append(':').append(trans.uncached).append(',');
+		}
+		key.append('|');
+		for (ShardingStrategyConfig sharding : extend.tableShardings) {
+			key.append(sharding.getStrategy()).append(':').append(Arrays.toString(sharding.getTables())).append(':')
+					.append(Arrays.toString(sharding.getFields())).append(':')
+					.append(Arrays.toString(sharding.getAliasNames())).append(':')
+					.append(sharding.getDecisionType()).append(',');
+		}
+		key.append('|');
+		if (extras != null) {
+			for (Object extra : extras) {
+				key.append(extra).append(',');
+			}
+		}
+		key.append('|');
+		if (paramValues != null) {
+			boolean isParamsNamed = (paramNames != null && paramNames.length == paramValues.length);
+			Object value;
+			for (int i = 0; i < paramValues.length; i++) {
+				key.append(isParamsNamed ? paramNames[i] : Integer.toString(i)).append('=');
+				value = paramValues[i];
+				if (value == null) {
+					key.append("null");
+				} else if (value instanceof List) {
+					key.append(((List) value).toString());
+				} else if (value.getClass().isArray()) {
+					key.append('[');
+					for (Object obj : CollectionUtil.convertArray(value)) {
+						key.append(obj).append(',');
+					}
+					key.append(']');
+				} else {
+					key.append(value.getClass().getSimpleName()).append(':').append(value);
+				}
+				key.append(';');
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * @TODO 获取当前版本,在查询前获取,登记结果时随结果一起保存
+	 * @param sqlToyContext
+	 * @return
+	 */
+	public static long getVersion(final SqlToyContext sqlToyContext) {
+		return sqlToyContext.getResultCacheRegistry().getVersion();
+	}
+
+	/**
+	 * @TODO 从缓存中获取查询结果(返回新的结果对象并复制每一行,避免调用者修改结果影响缓存),
+	 *       结果的版本早于涉及表的失效版本时视为未命中
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param cacheKey
+	 * @return
+	 * @throws Exception
+	 */
+	public static QueryResult get(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig,
+			String cacheKey) throws Exception {
+		ResultCacheRegistry cacheRegistry = sqlToyContext.getResultCacheRegistry();
+		String sqlId = sqlToyConfig.getIdOrSql();
+		QueryResult result = cacheRegistry.getQueryResultCache().get(sqlId, cacheKey);
+		if (result instanceof VersionedResult && cacheRegistry.isStale(sqlId, ((VersionedResult) result).version)) {
+			result = null;
+		}
+		// 登记结果缓存命中情况
+		SqlMetricsRegistry registry = SqlExecuteStat.getMetricsRegistry();
+		if (registry != null) {
+			CacheMetric metric = registry.getCacheMetric(SqlMetricsRegistry.RESULT_CACHE,
+					(sqlToyConfig.getId() == null) ? SqlMetricsRegistry.CODE_SQL : sqlToyConfig.getId());
+			if (result == null) {
+				metric.miss();
+			} else {
+				metric.hit();
+			}
+		}
+		return (result == null) ? null : copy(result, new QueryResult());
+	}
+
+	/**
+	 * @TODO 登记查询结果,结果携带查询前的版本,读取时据此判断查询期间是否发生了失效
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param resultCache
+	 * @param cacheKey
+	 * @param result
+	 * @param version       查询前通过getVersion获取的版本
+	 * @throws Exception
+	 */
+	public static void put(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig,
+			ResultCache resultCache, String cacheKey, QueryResult result, long version) throws Exception {
+		if (result == null || !result.isSuccess()) {
+			return;
+		}
+		// 事务中的查询结果可能是未提交或提交后即失效的数据,不登记
+		if (TransactionSynchronizationManager.isActualTransactionActive()) {
+			return;
+		}
+		ResultCacheRegistry cacheRegistry = sqlToyContext.getResultCacheRegistry();
+		String sqlId = sqlToyConfig.getIdOrSql();
+		// 查询期间已经发生了失效,无需登记
+		if (cacheRegistry.isStale(sqlId, version)) {
+			return;
+		}
+		VersionedResult entry = (VersionedResult) copy(result, new VersionedResult());
+		entry.version = version;
+		cacheRegistry.getQueryResultCache().put(sqlId, cacheKey, entry, resultCache);
+	}
+
+	/**
+	 * @TODO 表数据被修改,使涉及这些表的查询结果缓存失效;存在事务时在事务结束后再失效一次,
+	 *       清除提交前并发查询登记的旧数据
+	 * @param sqlToyContext
+	 * @param tables
+	 */
+	public static void invalidate(final SqlToyContext sqlToyContext, String... tables) {
+		if (tables == null || tables.length == 0) {
+			return;
+		}
+		ResultCacheRegistry cacheRegistry = sqlToyContext.getResultCacheRegistry();
+		String[] realTables = normalizeTables(tables);
+		doInvalidate(cacheRegistry, realTables);
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			// 同一事务只登记一次事务结束后的失效,汇总事务中修改的表
+			Set<String> pendingTables = (Set<String>) TransactionSynchronizationManager.getResource(cacheRegistry);
+			if (pendingTables == null) {
+				Set<String> txTables = new LinkedHashSet<String>();
+				TransactionSynchronizationManager.bindResource(cacheRegistry, txTables);
+				TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+					@Override
+					public void afterCompletion(int status) {
+						TransactionSynchronizationManager.unbindResourceIfPossible(cacheRegistry);
+						doInvalidate(cacheRegistry, txTables.toArray(new String[txTables.size()]));
+					}
+				});
+				pendingTables = txTables;
+			}
+			pendingTables.addAll(Arrays.asList(realTables));
+		}
+	}
+
+	private static void doInvalidate(ResultCacheRegistry cacheRegistry, String... tables) {
+		Set<String> sqlIds;
+		for (String table : tables) {
+			sqlIds = cacheRegistry.invalidate(table);
+			if (sqlIds != null) {
+				for (String sqlId : sqlIds) {
+					cacheRegistry.getQueryResultCache().remove(sqlId);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @TODO 修改性sql执行后,使其修改的表相关的结果缓存失效
+	 * @param sqlToyContext
+	 * @param sql
+	 */
+	public static void invalidateBySql(final SqlToyContext sqlToyContext, String sql) {
+		if (sql == null) {
+			return;
+		}
+		invalidate(sqlToyContext, parseUpdateTables(sql));
+	}
+
+	/**
+	 * @TODO 对象保存、修改、删除后,使对象表以及级联子表相关的结果缓存失效
+	 * @param sqlToyContext
+	 * @param entityClass
+	 */
+	public static void invalidateByEntity(final SqlToyContext sqlToyContext, Class entityClass) {
+		if (entityClass == null) {
+			return;
+		}
+		EntityMeta entityMeta = sqlToyContext.getEntityMeta(entityClass);
+		invalidate(sqlToyContext, entityMeta.getTableName());
+		if (entityMeta.getCascadeModels() != null) {
+			for (TableCascadeModel cascadeModel : entityMeta.getCascadeModels()) {
+				invalidate(sqlToyContext, cascadeModel.getMappedTable());
+			}
+		}
+	}
+
+	/**
+	 * @TODO 解析查询语句中涉及的表(可能包含个别非表的名称,只会导致多余的失效)
+	 * @param sql
+	 * @return
+	 */
+	public static String[] parseQueryTables(String sql) {
+		return parseTables(sql, QUERY_TABLE_PATTERN);
+	}
+
+	/**
+	 * @TODO 解析修改语句中被修改的表
+	 * @param sql
+	 * @return
+	 */
+	public static String[] parseUpdateTables(String sql) {
+		return parseTables(sql, UPDATE_TABLE_PATTERN);
+	}
+
+	/**
+	 * @TODO 清除sql对应的结果缓存
+	 * @param sqlToyContext
+	 * @param sqlId
+	 */
+	public static void remove(final SqlToyContext sqlToyContext, String sqlId) {
+		sqlToyContext.getResultCacheRegistry().getQueryResultCache().remove(sqlId);
+	}
+
+	private static String[] parseTables(String sql, Pattern pattern) {
+		Set<String> tables = new LinkedHashSet<String>();
+		if (sql != null) {
+			Matcher matcher = pattern.matcher(sql);
+			String table;
+			while (matcher.find()) {
+				table = normalizeTable(matcher.group(1));
+				if (!table.isEmpty() && !"select".equals(table)) {
+					tables.add(table);
+				}
+			}
+		}
+		return tables.toArray(new String[tables.size()]);
+	}
+
+	/**
+	 * @TODO 统一表名:去除schema、引号,转小写
+	 * @param table
+	 * @return
+	 */
+	private static String normalizeTable(String table) {
+		String result = table.replaceAll("[\"`\\[\\]]", "").trim().toLowerCase();
+		int index = result.lastIndexOf('.');
+		return (index >= 0) ? result.substring(index + 1) : result;
+	}
+
+	private static String[] normalizeTables(String... tables) {
+		Set<String> result = new LinkedHashSet<String>();
+		for (String table : tables) {
+			if (table != null && !table.trim().isEmpty()) {
+				result.add(normalizeTable(table));
+			}
+		}
+		return result.toArray(new String[result.size()]);
+	}
+
+	private static QueryResult copy(QueryResult source, QueryResult result) throws Exception {
+		result.setLabelNames((source.getLabelNames() == null) ? null : source.getLabelNames().clone());
+		result.setLabelTypes((source.getLabelTypes() == null) ? null : source.getLabelTypes().clone());
+		if (source.getRows() != null) {
+			List rows = new ArrayList(source.getRows().size());
+			for (Object row : source.getRows()) {
+				rows.add(copyRow(row));
+			}
+			result.setRows(rows);
+		}
+		result.setRecordCount(source.getRecordCount());
+		result.setPageNo(source.getPageNo());
+		result.setPageSize(source.getPageSize());
+		result.setSkipQueryCount(source.getSkipQueryCount());
+		result.setKeysetColumns(source.getKeysetColumns());
+		result.setKeysetValues(source.getKeysetValues());
+		return result;
+	}
+
+	/**
+	 * @TODO 复制单行数据,对象按属性复制(属性值为不可变类型时互不影响)
+	 * @param row
+	 * @return
+	 * @throws Exception
+	 */
+	private static Object copyRow(Object row) throws Exception {
+		if (row == null) {
+			return null;
+		}
+		if (row instanceof List) {
+			return new ArrayList((List) row);
+		}
+		if (row instanceof Map) {
+			return new LinkedHashMap((Map) row);
+		}
+		if (row.getClass().isArray()) {
+			return CollectionUtil.convertArray(row).clone();
+		}
+		if (BeanUtil.isBaseDataType(row.getClass())) {
+			return row;
+		}
+		Method[][] methods = beanMethods.computeIfAbsent(row.getClass(), (beanClass) -> {
+			String[] props = BeanUtil.matchSetMethodNames(beanClass);
+			return new Method[][] { BeanUtil.matchGetMethods(beanClass, props),
+					BeanUtil.matchSetMethods(beanClass, props) };
+		});
+		Object result = row.getClass().getDeclaredConstructor().newInstance();
+		for (int i = 0; i < methods[0].length; i++) {
+			if (methods[0][i] != null && methods[1][i] != null) {
+				methods[1][i].invoke(result, methods[0][i].invoke(row));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * 缓存中的结果,携带查询前的版本
+	 */
+	private static class VersionedResult extends QueryResult {
+		private static final long serialVersionUID = -2187305417236478320L;
+
+		private long version;
+	}
+}
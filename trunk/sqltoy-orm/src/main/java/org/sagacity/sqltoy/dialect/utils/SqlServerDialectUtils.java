@@ -46,6 +46,7 @@ import org.slf4j.LoggerFactory;
  * @author zhongxuchen
  * @version v1.0,Date:2014年12月26日
  * @modify Date:2020-2-5 废弃对sqlserver2008 的支持,最低版本为2012版
+ * @modify Date:2021-05-19 批量保存按关联字段值分组批量获取主键值
  */
 @SuppressWarnings({ "rawtypes" })
 public class SqlServerDialectUtils {
@@ -736,8 +737,6 @@ public class SqlServerDialectUtils {
 		// 是否存在业务ID
 		boolean hasBizId = (entityMeta.getBusinessIdGenerator() == null) ? false : true;
 		int bizIdColIndex = hasBizId ? entityMeta.getFieldIndex(entityMeta.getBusinessIdField()) : 0;
-		// 标识符
-		String signature = entityMeta.getBizIdSignature();
 		Integer[] relatedColumn = entityMeta.getBizIdRelatedColIndex();
 
 		// 无主键值以及多主键以及assign或通过generator方式产生主键策略
@@ -748,15 +747,13 @@ public class SqlServerDialectUtils {
 			boolean isAssigned = true;
 			List<Object[]> idSet = new ArrayList<Object[]>();
 			String idJdbcType = entityMeta.getIdType();
-			Object[] relatedColValue = null;
 			String businessIdType = hasBizId ? entityMeta.getColumnJavaType(entityMeta.getBusinessIdField()) : "";
 			for (int i = 0, s = paramValues.size(); i < s; i++) {
 				rowData = (Object[]) paramValues.get(i);
+				// 判断主键策略关联的字段是否有值,合法性验证
 				if (relatedColumn != null) {
-					relatedColValue = new Object[relatedColumn.length];
 					for (int meter = 0; meter < relatedColumn.length; meter++) {
-						relatedColValue[meter] = rowData[relatedColumn[meter]];
-						if (relatedColValue[meter] == null) {
+						if (rowData[relatedColumn[meter]] == null) {
 							throw new IllegalArgumentException("对象:" + entityMeta.getEntityClass().getName()
 									+ " 生成业务主键依赖的关联字段:" + relatedColumn[meter] + " 值为null!");
 						}
@@ -764,23 +761,22 @@ public class SqlServerDialectUtils {
 				}
 				if (StringUtil.isBlank(rowData[pkIndex])) {
 					isAssigned = false;
-					rowData[pkIndex] = entityMeta.getIdGenerator().getId(entityMeta.getTableName(), signature,
-							entityMeta.getBizIdRelatedColumns(), relatedColValue, null, idJdbcType, idLength,
-							entityMeta.getBizIdSequenceSize());
 				}
-				if (hasBizId && StringUtil.isBlank(rowData[bizIdColIndex])) {
-					rowData[bizIdColIndex] = entityMeta.getBusinessIdGenerator().getId(entityMeta.getTableName(),
-							signature, entityMeta.getBizIdRelatedColumns(), relatedColValue, null, businessIdType,
-							bizIdLength, entityMeta.getBizIdSequenceSize());
-					// 回写业务主键值
-					BeanUtil.setProperty(entities.get(i), entityMeta.getBusinessIdField(), rowData[bizIdColIndex]);
-				}
-				idSet.add(new Object[] { rowData[pkIndex] });
 			}
-			// 批量反向设置最终得到的主键值
+			// 主键值为null,批量调用主键生成策略并赋值(按关联字段值分组一次提取多个)
 			if (!isAssigned) {
+				DialectUtils.generateIds(entityMeta, entityMeta.getIdGenerator(), paramValues, pkIndex, idJdbcType,
+						idLength, null, null);
+				for (int i = 0, s = paramValues.size(); i < s; i++) {
+					idSet.add(new Object[] { ((Object[]) paramValues.get(i))[pkIndex] });
+				}
+				// 批量反向设置最终得到的主键值
 				BeanUtil.mappingSetProperties(entities, entityMeta.getIdArray(), idSet, new int[] { 0 }, true);
 			}
+			if (hasBizId) {
+				DialectUtils.generateIds(entityMeta, entityMeta.getBusinessIdGenerator(), paramValues, bizIdColIndex,
+						businessIdType, bizIdLength, entities, entityMeta.getBusinessIdField());
+			}
 		}
 		SqlExecuteStat.showSql("mssql批量保存", insertSql, null);
 		return batchUpdateByJdbc(sqlToyContext.getTypeHandler(), insertSql, paramValues, sqlToyContext.getBatchSize(),
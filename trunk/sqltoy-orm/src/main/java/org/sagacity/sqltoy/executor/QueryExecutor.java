@@ -14,6 +14,7 @@ import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
 import org.sagacity.sqltoy.callback.AbstractRowCallbackHandler;
 import org.sagacity.sqltoy.config.model.FormatModel;
 import org.sagacity.sqltoy.config.model.PageOptimize;
+import org.sagacity.sqltoy.config.model.ResultCache;
 import org.sagacity.sqltoy.config.model.SecureMask;
 import org.sagacity.sqltoy.config.model.ShardingStrategyConfig;
 import org.sagacity.sqltoy.config.model.Translate;
@@ -215,6 +216,16 @@ public class QueryExecutor implements Serializable {
 		return this;
 	}
 
+	/**
+	 * @TODO 设置keyset(seek)分页的排序键列,如:keyset("order_date desc","order_id desc")
+	 * @param columns
+	 * @return
+	 */
+	public QueryExecutor keyset(String... columns) {
+		innerModel.keysetColumns = columns;
+		return this;
+	}
+
 	/**
 	 * @TODO 针对resultType为Map.class 时，设定map的key是否转为骆驼命名法，默认true
 	 * @param humpMapLabel
@@ -337,6 +348,18 @@ public class QueryExecutor implements Serializable {
 		return this;
 	}
 
+	/**
+	 * @TODO 查询结果缓存(findByQuery、findPage),相关表通过sqltoy写入时自动失效
+	 * @param resultCache
+	 * @return
+	 */
+	public QueryExecutor resultCache(ResultCache resultCache) {
+		if (resultCache != null) {
+			innerModel.resultCache = resultCache;
+		}
+		return this;
+	}
+
 	// 分库分表在xml中应用,代码中暂时不支持(必要性不强，不建议将sql写在代码中，更不推荐调试完sql再转成jooq对象查询模式)
 //	public QueryExecutor shardingDB(String strategory, String... columns) {
 //		return this;
@@ -52,6 +52,11 @@ public class Batch extends BaseLink {
 	 */
 	private Boolean autoCommit = false;
 
+	/**
+	 * 单行insert语句改写为多行values合并插入
+	 */
+	private boolean bulkLoad = false;
+
 	/**
 	 * sql语句
 	 */
@@ -101,6 +106,11 @@ public class Batch extends BaseLink {
 		return this;
 	}
 
+	public Batch bulkLoad(boolean bulkLoad) {
+		this.bulkLoad = bulkLoad;
+		return this;
+	}
+
 	public Long submit() {
 		if (StringUtil.isBlank(sql)) {
 			throw new IllegalArgumentException("batch execute sql is null!");
@@ -108,6 +118,6 @@ public class Batch extends BaseLink {
 		int realBatchSize = (batchSize > 0) ? batchSize : sqlToyContext.getBatchSize();
 		SqlToyConfig sqlToyConfig = sqlToyContext.getSqlToyConfig(sql, SqlType.update, super.getDialect());
 		return dialectFactory.batchUpdate(sqlToyContext, sqlToyConfig, dataSet, realBatchSize, reflectPropertyHandler,
-				insertCallhandler, autoCommit, getDataSource(sqlToyConfig));
+				insertCallhandler, autoCommit, bulkLoad, getDataSource(sqlToyConfig));
 	}
 }
@@ -10,6 +10,7 @@ import javax.sql.DataSource;
 
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.callback.AbstractRowCallbackHandler;
+import org.sagacity.sqltoy.callback.StreamResultHandler;
 import org.sagacity.sqltoy.config.model.SqlToyConfig;
 import org.sagacity.sqltoy.config.model.SqlType;
 import org.sagacity.sqltoy.executor.QueryExecutor;
@@ -81,6 +82,11 @@ public class Query extends BaseLink {
 	 */
 	private LockMode lockMode;
 
+	/**
+	 * keyset分页排序键列
+	 */
+	private String[] keysetColumns;
+
 	/**
 	 * @param sqlToyContext
 	 * @param dataSource
@@ -89,7 +95,11 @@ public class Query extends BaseLink {
 		super(sqlToyContext, dataSource);
 	}
 
-	@Deprecated
+	/**
+	 * @TODO 设置jdbc每次从数据库提取的记录数量,流式查询时可据此控制内存占用
+	 * @param fetchSize
+	 * @return
+	 */
 	public Query fetchSize(int fetchSize) {
 		this.fetchSize = fetchSize;
 		return this;
@@ -101,6 +111,16 @@ public class Query extends BaseLink {
 		return this;
 	}
 
+	/**
+	 * @TODO 分页采用keyset(seek)模式,上一页最后一行的键值通过PaginationModel传递
+	 * @param columns 排序键列,如:"order_date desc","order_id desc"
+	 * @return
+	 */
+	public Query keyset(String... columns) {
+		this.keysetColumns = columns;
+		return this;
+	}
+
 	public Query lock(LockMode lockMode) {
 		this.lockMode = lockMode;
 		return this;
@@ -221,6 +241,19 @@ public class Query extends BaseLink {
 		return result.getRows();
 	}
 
+	/**
+	 * @TODO 流式查询,逐行映射成resultType后交给handler处理,不在内存中累积结果
+	 * @param <T>
+	 * @param streamResultHandler
+	 * @return 处理的记录数量
+	 */
+	public <T> Long stream(final StreamResultHandler<T> streamResultHandler) {
+		QueryExecutor queryExecute = build();
+		SqlToyConfig sqlToyConfig = sqlToyContext.getSqlToyConfig(queryExecute, SqlType.search, getDialect());
+		return dialectFactory.streamByQuery(sqlToyContext, queryExecute, sqlToyConfig, streamResultHandler,
+				getDataSource(sqlToyConfig));
+	}
+
 	/**
 	 * @todo 取前多少条记录
 	 * @param topSize
@@ -255,6 +288,10 @@ public class Query extends BaseLink {
 	public PaginationModel<?> findPage(final PaginationModel pageModel) {
 		QueryExecutor queryExecute = build();
 		SqlToyConfig sqlToyConfig = sqlToyContext.getSqlToyConfig(queryExecute, SqlType.search, getDialect());
+		if (pageModel.isKeyset() || keysetColumns != null) {
+			return (PaginationModel<?>) dialectFactory.findKeysetPage(sqlToyContext, queryExecute, sqlToyConfig,
+					pageModel, getDataSource(sqlToyConfig)).getPageResult();
+		}
 		if (pageModel.getSkipQueryCount()) {
 			return (PaginationModel<?>) dialectFactory.findSkipTotalCountPage(sqlToyContext, queryExecute, sqlToyConfig,
 					pageModel.getPageNo(), pageModel.getPageSize(), getDataSource(sqlToyConfig)).getPageResult();
@@ -279,6 +316,9 @@ public class Query extends BaseLink {
 		queryExecutor.humpMapLabel(humpMapLabel);
 		queryExecutor.maxRows(maxRows);
 		queryExecutor.fetchSize(fetchSize);
+		if (keysetColumns != null) {
+			queryExecutor.keyset(keysetColumns);
+		}
 		return queryExecutor;
 	}
 }
@@ -4,19 +4,24 @@
 package org.sagacity.sqltoy.link;
 
 import java.io.Serializable;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
+import org.sagacity.sqltoy.callback.ChunkProgressHandler;
 import org.sagacity.sqltoy.model.SaveMode;
+import org.sagacity.sqltoy.utils.ChunkUtils;
 
 /**
  * @project sagacity-sqltoy
  * @description 对象保存操作
  * @author zhongxuchen
  * @version v1.0,Date:2017年10月9日
+ * @modify Date:2021-05-20 {增加Iterable/Stream数据源的分块流式保存}
  */
 public class Save extends BaseLink {
 
@@ -51,6 +56,21 @@ public class Save extends BaseLink {
 	 */
 	private int batchSize = 0;
 
+	/**
+	 * 是否采用数据库原生大批量写入(COPY、LOAD DATA、多行values),仅对APPEND模式的many有效
+	 */
+	private boolean bulkLoad = false;
+
+	/**
+	 * Iterable/Stream分块保存时每块单独提交
+	 */
+	private boolean commitPerChunk = false;
+
+	/**
+	 * 分块保存进度反调
+	 */
+	private ChunkProgressHandler progressHandler;
+
 	/**
 	 * @param sqlToyContext
 	 * @param dataSource
@@ -115,6 +135,21 @@ public class Save extends BaseLink {
 	 * @param entity
 	 * @return
 	 */
+	public Save bulkLoad(boolean bulkLoad) {
+		this.bulkLoad = bulkLoad;
+		return this;
+	}
+
+	public Save commitPerChunk(boolean commitPerChunk) {
+		this.commitPerChunk = commitPerChunk;
+		return this;
+	}
+
+	public Save progress(ChunkProgressHandler progressHandler) {
+		this.progressHandler = progressHandler;
+		return this;
+	}
+
 	public Object one(final Serializable entity) {
 		if (entity == null) {
 			throw new IllegalArgumentException("save entity is null!");
@@ -149,6 +184,48 @@ public class Save extends BaseLink {
 					reflectPropertyHandler, getDataSource(null), autoCommit);
 		}
 		return dialectFactory.saveAll(sqlToyContext, entities, realBatchSize, reflectPropertyHandler,
-				getDataSource(null), autoCommit);
+				getDataSource(null), autoCommit, bulkLoad);
+	}
+
+	/**
+	 * @todo 按batchSize分块流式保存,提取下一块并分配主键与当前块的数据库执行重叠进行,内存只保留少量块
+	 * @param source
+	 * @return
+	 */
+	public <T extends Serializable> Long many(final Iterable<T> source) {
+		if (source == null) {
+			throw new IllegalArgumentException("saveAll source is null!");
+		}
+		return many(source.iterator());
+	}
+
+	/**
+	 * @todo 按batchSize分块流式保存
+	 * @param source
+	 * @return
+	 */
+	public <T extends Serializable> Long many(final Stream<T> source) {
+		if (source == null) {
+			throw new IllegalArgumentException("saveAll source is null!");
+		}
+		return many(source.iterator());
+	}
+
+	private Long many(final Iterator<?> source) {
+		int realBatchSize = (batchSize > 0) ? batchSize : sqlToyContext.getBatchSize();
+		final Boolean chunkAutoCommit = commitPerChunk ? Boolean.TRUE : autoCommit;
+		final DataSource realDataSource = getDataSource(null);
+		return ChunkUtils.execute(sqlToyContext, source, realBatchSize, true, chunk -> {
+			if (saveMode == SaveMode.IGNORE) {
+				return dialectFactory.saveAllIgnoreExist(sqlToyContext, chunk, realBatchSize, reflectPropertyHandler,
+						realDataSource, chunkAutoCommit);
+			}
+			if (saveMode == SaveMode.UPDATE) {
+				return dialectFactory.saveOrUpdateAll(sqlToyContext, chunk, realBatchSize, forceUpdateProps,
+						reflectPropertyHandler, realDataSource, chunkAutoCommit);
+			}
+			return dialectFactory.saveAll(sqlToyContext, chunk, realBatchSize, reflectPropertyHandler, realDataSource,
+					chunkAutoCommit, bulkLoad);
+		}, progressHandler);
 	}
 }
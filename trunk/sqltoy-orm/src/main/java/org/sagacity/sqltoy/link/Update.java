@@ -5,18 +5,23 @@ package org.sagacity.sqltoy.link;
 
 import java.io.Serializable;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.sql.DataSource;
 
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
+import org.sagacity.sqltoy.callback.ChunkProgressHandler;
+import org.sagacity.sqltoy.utils.ChunkUtils;
 
 /**
  * @project sagacity-sqltoy
  * @description 数据修改操作
  * @author zhongxuchen
  * @version v1.0,Date:2017年10月9日
+ * @modify Date:2021-05-20 {增加Iterable/Stream数据源的分块流式修改}
  */
 public class Update extends BaseLink {
 	/**
@@ -44,6 +49,16 @@ public class Update extends BaseLink {
 	 */
 	private int batchSize = 0;
 
+	/**
+	 * Iterable/Stream分块修改时每块单独提交
+	 */
+	private boolean commitPerChunk = false;
+
+	/**
+	 * 分块修改进度反调
+	 */
+	private ChunkProgressHandler progressHandler;
+
 	/**
 	 * (强制需要修改的子对象,当子集合数据为null,则进行清空或置为无效处理,否则则忽视对存量数据的处理)
 	 */
@@ -138,6 +153,16 @@ public class Update extends BaseLink {
 	 * @todo 单个对象修改
 	 * @param entity
 	 */
+	public Update commitPerChunk(boolean commitPerChunk) {
+		this.commitPerChunk = commitPerChunk;
+		return this;
+	}
+
+	public Update progress(ChunkProgressHandler progressHandler) {
+		this.progressHandler = progressHandler;
+		return this;
+	}
+
 	public Long one(final Serializable entity) {
 		if (entity == null) {
 			throw new IllegalArgumentException("update operate entity is null!");
@@ -180,4 +205,43 @@ public class Update extends BaseLink {
 		return dialectFactory.updateAll(sqlToyContext, entities, realBatchSize, forceUpdate, reflectPropertyHandler,
 				getDataSource(null), autoCommit);
 	}
+
+	/**
+	 * @todo 按batchSize分块流式修改,内存只保留少量块
+	 * @param source
+	 * @return
+	 */
+	public <T extends Serializable> Long many(final Iterable<T> source) {
+		if (source == null) {
+			throw new IllegalArgumentException("updateAll operate source is null!");
+		}
+		return many(source.iterator());
+	}
+
+	/**
+	 * @todo 按batchSize分块流式修改
+	 * @param source
+	 * @return
+	 */
+	public <T extends Serializable> Long many(final Stream<T> source) {
+		if (source == null) {
+			throw new IllegalArgumentException("updateAll operate source is null!");
+		}
+		return many(source.iterator());
+	}
+
+	private Long many(final Iterator<?> source) {
+		int realBatchSize = (batchSize > 0) ? batchSize : sqlToyContext.getBatchSize();
+		final Boolean chunkAutoCommit = commitPerChunk ? Boolean.TRUE : autoCommit;
+		final DataSource realDataSource = getDataSource(null);
+		return ChunkUtils.execute(sqlToyContext, source, realBatchSize, false, chunk -> {
+			String[] forceUpdate = forceUpdateProps;
+			// 深度修改
+			if (deeply) {
+				forceUpdate = sqlToyContext.getEntityMeta(chunk.get(0).getClass()).getRejectIdFieldArray();
+			}
+			return dialectFactory.updateAll(sqlToyContext, chunk, realBatchSize, forceUpdate, reflectPropertyHandler,
+					realDataSource, chunkAutoCommit);
+		}, progressHandler);
+	}
 }
@@ -9,6 +9,7 @@ import java.util.List;
  * @description 分页数据模型
  * @author zhongxuchen
  * @version v1.0,Date:2011-2-25
+ * @modify Date:2021-05-19 {增加keyset(seek)分页模式:以上一页最后一行的排序键值定位,避免深度翻页offset越来越慢}
  */
 public class PaginationModel<T> implements Serializable {
 	private static final long serialVersionUID = -7117473828519846708L;
@@ -43,6 +44,16 @@ public class PaginationModel<T> implements Serializable {
 	 */
 	private long startIndex = 0;
 
+	/**
+	 * keyset分页排序键列(结果列名,可带desc,如:order_date desc,order_id desc),为空则为常规分页
+	 */
+	private String[] keysetColumns;
+
+	/**
+	 * 上一页最后一行的排序键值(null表示第一页),查询结果中为本页最后一行的键值,直接用于查询下一页
+	 */
+	private Object[] keysetValues;
+
 	public PaginationModel() {
 
 	}
@@ -218,4 +229,33 @@ public class PaginationModel<T> implements Serializable {
 		this.skipQueryCount = skipQueryCount;
 	}
 
+	/**
+	 * @TODO 以keyset模式分页,columns为排序键列(需构成唯一排序,一般最后一列为主键)
+	 * @param columns
+	 * @return
+	 */
+	public PaginationModel<T> keyset(String... columns) {
+		this.keysetColumns = columns;
+		return this;
+	}
+
+	public boolean isKeyset() {
+		return this.keysetColumns != null && this.keysetColumns.length > 0;
+	}
+
+	public String[] getKeysetColumns() {
+		return keysetColumns;
+	}
+
+	public void setKeysetColumns(String[] keysetColumns) {
+		this.keysetColumns = keysetColumns;
+	}
+
+	public Object[] getKeysetValues() {
+		return keysetValues;
+	}
+
+	public void setKeysetValues(Object[] keysetValues) {
+		this.keysetValues = keysetValues;
+	}
 }
@@ -17,6 +17,7 @@ import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
 import org.sagacity.sqltoy.callback.AbstractRowCallbackHandler;
 import org.sagacity.sqltoy.config.model.FormatModel;
 import org.sagacity.sqltoy.config.model.PageOptimize;
+import org.sagacity.sqltoy.config.model.ResultCache;
 import org.sagacity.sqltoy.config.model.ParamFilterModel;
 import org.sagacity.sqltoy.config.model.SecureMask;
 import org.sagacity.sqltoy.config.model.ShardingStrategyConfig;
@@ -130,6 +131,11 @@ public class QueryExecutorExtend implements Serializable {
 	 */
 	public PageOptimize pageOptimize;
 
+	/**
+	 * 查询结果缓存
+	 */
+	public ResultCache resultCache;
+
 	/**
 	 * 空白字符转为null，默认为true
 	 */
@@ -145,6 +151,11 @@ public class QueryExecutorExtend implements Serializable {
 	 */
 	public String countSql;
 
+	/**
+	 * keyset分页排序键列(PaginationModel中未指定时使用)
+	 */
+	public String[] keysetColumns;
+
 	// 分库策略配置
 	public ShardingStrategyConfig dbSharding;
 
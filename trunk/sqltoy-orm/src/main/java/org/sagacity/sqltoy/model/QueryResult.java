@@ -33,6 +33,16 @@ public class QueryResult<T> extends DataSetResult<T> implements Serializable {
 	 */
 	private Boolean skipQueryCount = false;
 
+	/**
+	 * keyset分页排序键列
+	 */
+	private String[] keysetColumns;
+
+	/**
+	 * keyset分页本页最后一行的排序键值
+	 */
+	private Object[] keysetValues;
+
 	/**
 	 * @return the pageNo
 	 */
@@ -69,6 +79,22 @@ public class QueryResult<T> extends DataSetResult<T> implements Serializable {
 		this.skipQueryCount = skipQueryCount;
 	}
 
+	public String[] getKeysetColumns() {
+		return keysetColumns;
+	}
+
+	public void setKeysetColumns(String[] keysetColumns) {
+		this.keysetColumns = keysetColumns;
+	}
+
+	public Object[] getKeysetValues() {
+		return keysetValues;
+	}
+
+	public void setKeysetValues(Object[] keysetValues) {
+		this.keysetValues = keysetValues;
+	}
+
 	/**
 	 * @todo 获取分页结果模型
 	 * @return
@@ -82,6 +108,8 @@ public class QueryResult<T> extends DataSetResult<T> implements Serializable {
 		if (skipQueryCount != null) {
 			result.setSkipQueryCount(skipQueryCount);
 		}
+		result.setKeysetColumns(keysetColumns);
+		result.setKeysetValues(keysetValues);
 		return result;
 	}
 
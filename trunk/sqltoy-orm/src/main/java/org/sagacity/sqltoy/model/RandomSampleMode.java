@@ -0,0 +1,24 @@
+/**
+ * 
+ */
+package org.sagacity.sqltoy.model;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 取随机记录的抽样方式
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public enum RandomSampleMode {
+	// 数据库方言方式:order by random() limit n 等,需对全部结果排序
+	DIALECT,
+
+	// 按总记录数预先产生随机行号,通过row_number()一次提取
+	ROW_NUMBER,
+
+	// 单表查询通过数据库TABLESAMPLE先抽取少量数据块再随机取
+	TABLESAMPLE,
+
+	// 顺序读取结果集一遍,按选择抽样算法逐行决定是否保留
+	STREAM
+}
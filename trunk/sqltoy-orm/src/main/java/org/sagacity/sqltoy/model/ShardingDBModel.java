@@ -4,6 +4,7 @@
 package org.sagacity.sqltoy.model;
 
 import java.io.Serializable;
+import java.util.function.Predicate;
 
 import javax.sql.DataSource;
 
@@ -30,6 +31,11 @@ public class ShardingDBModel implements Serializable {
 	 */
 	private DataSource dataSource;
 
+	/**
+	 * 分散查询时按分片字段值判断记录是否归属该数据源(迁移窗口中节点上存在重复数据时由分片策略提供),null表示不过滤
+	 */
+	private transient Predicate<Object> ownerFilter;
+
 	/**
 	 * @return the dataSourceName
 	 */
@@ -58,4 +64,17 @@ public class ShardingDBModel implements Serializable {
 		this.dataSource = dataSource;
 	}
 
+	/**
+	 * @return the ownerFilter
+	 */
+	public Predicate<Object> getOwnerFilter() {
+		return ownerFilter;
+	}
+
+	/**
+	 * @param ownerFilter the ownerFilter to set
+	 */
+	public void setOwnerFilter(Predicate<Object> ownerFilter) {
+		this.ownerFilter = ownerFilter;
+	}
 }
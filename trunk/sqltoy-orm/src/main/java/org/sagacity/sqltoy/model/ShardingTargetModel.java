@@ -0,0 +1,82 @@
+package org.sagacity.sqltoy.model;
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.function.Predicate;
+
+import javax.sql.DataSource;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 分散查询的单个分片:数据源以及sql中原表对应的实际分表
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class ShardingTargetModel implements Serializable {
+	private static final long serialVersionUID = -3512496011437215930L;
+
+	/**
+	 * 数据源名称
+	 */
+	private String dataSourceName;
+
+	/**
+	 * 数据源
+	 */
+	private DataSource dataSource;
+
+	/**
+	 * key:sql中的表名,value:实际分表名
+	 */
+	private HashMap<String, String> tableMap = new HashMap<String, String>();
+
+	/**
+	 * 分散查询时按分片字段值判断记录是否归属该数据源(迁移窗口中节点上存在重复数据时由分片策略提供),null表示不过滤
+	 */
+	private transient Predicate<Object> ownerFilter;
+
+	/**
+	 * 过滤记录时取值的分片字段
+	 */
+	private String shardingField;
+
+	public String getDataSourceName() {
+		return dataSourceName;
+	}
+
+	public void setDataSourceName(String dataSourceName) {
+		this.dataSourceName = dataSourceName;
+	}
+
+	public DataSource getDataSource() {
+		return dataSource;
+	}
+
+	public void setDataSource(DataSource dataSource) {
+		this.dataSource = dataSource;
+	}
+
+	public HashMap<String, String> getTableMap() {
+		return tableMap;
+	}
+
+	public void setTableMap(HashMap<String, String> tableMap) {
+		this.tableMap = tableMap;
+	}
+
+	public Predicate<Object> getOwnerFilter() {
+		return ownerFilter;
+	}
+
+	public void setOwnerFilter(Predicate<Object> ownerFilter) {
+		this.ownerFilter = ownerFilter;
+	}
+
+	public String getShardingField() {
+		return shardingField;
+	}
+
+	public void setShardingField(String shardingField) {
+		this.shardingField = shardingField;
+	}
+}
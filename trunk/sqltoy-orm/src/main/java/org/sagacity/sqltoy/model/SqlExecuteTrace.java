@@ -14,6 +14,7 @@ import org.sagacity.sqltoy.utils.IdUtil;
  * @description sql执行日志
  * @author zhongxuchen
  * @version v1.0,Date:2018年3月24日
+ * @modify Date:2021-05-18 {增加纳秒计时、查询和影响记录数,为执行指标统计提供数据}
  */
 public class SqlExecuteTrace implements Serializable {
 	/**
@@ -25,6 +26,7 @@ public class SqlExecuteTrace implements Serializable {
 		this.id = id;
 		this.type = type;
 		this.start = System.currentTimeMillis();
+		this.startNanos = System.nanoTime();
 		this.isPrint = isPrint;
 		// 不需要体现年月日
 		this.uid = IdUtil.getDebugId();
@@ -35,6 +37,21 @@ public class SqlExecuteTrace implements Serializable {
 	 */
 	private Long start;
 
+	/**
+	 * 开始执行(纳秒,用于精确计算耗时)
+	 */
+	private long startNanos;
+
+	/**
+	 * 查询获得的记录数
+	 */
+	private long rowsFetched = 0;
+
+	/**
+	 * 修改影响的记录数
+	 */
+	private long rowsAffected = 0;
+
 	/**
 	 * sqlid
 	 */
@@ -176,6 +193,29 @@ public class SqlExecuteTrace implements Serializable {
 		this.overTime = overTime;
 	}
 
+	/**
+	 * @return 执行耗时(微秒)
+	 */
+	public long getExecuteMicros() {
+		return (System.nanoTime() - startNanos) / 1000;
+	}
+
+	public long getRowsFetched() {
+		return rowsFetched;
+	}
+
+	public void addRowsFetched(long rows) {
+		this.rowsFetched = this.rowsFetched + rows;
+	}
+
+	public long getRowsAffected() {
+		return rowsAffected;
+	}
+
+	public void addRowsAffected(long rows) {
+		this.rowsAffected = this.rowsAffected + rows;
+	}
+
 	public void addLogs(List<SqlExecuteLog> sqlExecuteLogs) {
 		if (sqlExecuteLogs != null && !sqlExecuteLogs.isEmpty()) {
 			executeLogs.addAll(sqlExecuteLogs);
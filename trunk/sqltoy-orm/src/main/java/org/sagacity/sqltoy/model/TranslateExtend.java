@@ -6,6 +6,7 @@ package org.sagacity.sqltoy.model;
 import java.io.Serializable;
 
 import org.sagacity.sqltoy.SqlToyConstants;
+import org.sagacity.sqltoy.plugins.metrics.CacheMetric;
 
 /**
  * @project sagacity-sqltoy
@@ -13,6 +14,7 @@ import org.sagacity.sqltoy.SqlToyConstants;
  * @author zhongxuchen
  * @version v1.0, Date:2020-8-7
  * @modify 2020-8-7,修改说明
+ * @modify 2021-05-18,增加缓存翻译命中指标
  */
 public class TranslateExtend implements Serializable {
 
@@ -70,4 +72,9 @@ public class TranslateExtend implements Serializable {
 	 * 未被缓存的模板
 	 */
 	public String uncached = SqlToyConstants.UNCACHED_KEY_RESULT;
+
+	/**
+	 * 缓存翻译命中指标(首次翻译时绑定)
+	 */
+	public transient CacheMetric metric;
 }
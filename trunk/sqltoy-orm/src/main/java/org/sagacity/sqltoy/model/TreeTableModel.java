@@ -10,6 +10,7 @@ import java.io.Serializable;
  * @description 树形表结构模型
  * @author zhongxuchen
  * @version v1.0,Date:2010-9-27
+ * @modify Date:2021-05-20 {增加wrapMode,默认一次加载全部节点在内存中计算节点路径}
  */
 public class TreeTableModel implements Serializable {
 	/**
@@ -87,6 +88,11 @@ public class TreeTableModel implements Serializable {
 	 */
 	private int idLength = -1;
 
+	/**
+	 * 节点路径等信息的计算方式
+	 */
+	private TreeWrapMode wrapMode = TreeWrapMode.MEMORY;
+
 	public TreeTableModel() {
 
 	}
@@ -164,6 +170,18 @@ public class TreeTableModel implements Serializable {
 		return this;
 	}
 
+	public TreeTableModel wrapMode(TreeWrapMode wrapMode) {
+		this.wrapMode = wrapMode;
+		return this;
+	}
+
+	/**
+	 * @return the wrapMode
+	 */
+	public TreeWrapMode getWrapMode() {
+		return wrapMode;
+	}
+
 	/**
 	 * @return the tableName
 	 */
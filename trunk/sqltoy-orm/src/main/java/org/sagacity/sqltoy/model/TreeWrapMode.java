@@ -0,0 +1,18 @@
+package org.sagacity.sqltoy.model;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 树形表节点路径、等级、是否叶子节点的计算方式
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public enum TreeWrapMode {
+	// 逐层查询下级节点并逐条修改(原有方式)
+	LEVEL,
+
+	// 一次流式查询全部节点,内存中计算后仅批量修改发生变化的记录(默认)
+	MEMORY,
+
+	// 数据库端递归(with recursive)计算并修改,数据库不支持时退回MEMORY
+	RECURSIVE;
+}
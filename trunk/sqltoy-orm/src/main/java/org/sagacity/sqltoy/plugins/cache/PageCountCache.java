@@ -0,0 +1,46 @@
+package org.sagacity.sqltoy.plugins.cache;
+
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.config.model.PageOptimize;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 分页优化总记录数缓存接口,默认为本地缓存实现,可扩展为redis等集中式缓存实现多节点共享
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-08
+ */
+public interface PageCountCache {
+	/**
+	 * @TODO 初始化
+	 * @param sqlToyContext
+	 */
+	public void initialize(SqlToyContext sqlToyContext);
+
+	/**
+	 * @TODO 获取sql对应查询条件的总记录数,未命中或已过期返回null
+	 * @param sqlId
+	 * @param conditionsKey 查询条件值构成的hash
+	 * @return
+	 */
+	public Long get(String sqlId, long conditionsKey);
+
+	/**
+	 * @TODO 登记sql对应查询条件的总记录数
+	 * @param sqlId
+	 * @param conditionsKey
+	 * @param totalCount
+	 * @param pageOptimize  提供aliveSeconds(存活时长)和aliveMax(单个sql保留的条件数量)
+	 */
+	public void put(String sqlId, long conditionsKey, long totalCount, PageOptimize pageOptimize);
+
+	/**
+	 * @TODO 清除sql对应的全部总记录数缓存
+	 * @param sqlId
+	 */
+	public void remove(String sqlId);
+
+	/**
+	 * @TODO 销毁
+	 */
+	public void destroy();
+}
@@ -0,0 +1,47 @@
+package org.sagacity.sqltoy.plugins.cache;
+
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.config.model.ResultCache;
+import org.sagacity.sqltoy.model.QueryResult;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 查询结果缓存接口,按sqlId分区存放不同查询条件的结果,默认本地缓存,cacheType=caffeine时使用caffeine实现
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public interface QueryResultCache {
+	/**
+	 * @TODO 初始化
+	 * @param sqlToyContext
+	 */
+	public void initialize(SqlToyContext sqlToyContext);
+
+	/**
+	 * @TODO 获取sql对应查询条件的结果,未命中或已过期返回null
+	 * @param sqlId
+	 * @param cacheKey 由sql、条件参数值、结果类型等构成
+	 * @return
+	 */
+	public QueryResult get(String sqlId, String cacheKey);
+
+	/**
+	 * @TODO 登记sql对应查询条件的结果
+	 * @param sqlId
+	 * @param cacheKey
+	 * @param result
+	 * @param resultCache 提供aliveSeconds(存活时长)和aliveMax(单个sql保留的条件数量)
+	 */
+	public void put(String sqlId, String cacheKey, QueryResult result, ResultCache resultCache);
+
+	/**
+	 * @TODO 清除sql对应的全部结果缓存
+	 * @param sqlId
+	 */
+	public void remove(String sqlId);
+
+	/**
+	 * @TODO 销毁
+	 */
+	public void destroy();
+}
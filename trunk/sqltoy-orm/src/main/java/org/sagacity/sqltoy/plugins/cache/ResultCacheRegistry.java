@@ -0,0 +1,134 @@
+package org.sagacity.sqltoy.plugins.cache;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 查询结果缓存的运行状态(每个SqlToyContext一份):结果缓存实现、表与sqlId的关系、按表的失效版本以及数据源标识
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class ResultCacheRegistry {
+	/**
+	 * 结果缓存实现
+	 */
+	private final QueryResultCache queryResultCache;
+
+	/**
+	 * 表名-->使用了结果缓存且涉及该表的sqlId
+	 */
+	private final ConcurrentHashMap<String, Set<String>> tableSqlIds = new ConcurrentHashMap<String, Set<String>>();
+
+	/**
+	 * sqlId-->涉及的表
+	 */
+	private final ConcurrentHashMap<String, Set<String>> sqlTables = new ConcurrentHashMap<String, Set<String>>();
+
+	/**
+	 * 表名-->最近一次失效时的版本
+	 */
+	private final ConcurrentHashMap<String, Long> tableVersions = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * 全局版本,查询前取值作为结果的版本,每次失效递增
+	 */
+	private final AtomicLong version = new AtomicLong(0);
+
+	/**
+	 * 数据源-->标识(同一个数据源对象在其生命周期内标识不变且不会与其他数据源重复)
+	 */
+	private final Map<DataSource, String> dataSourceIds = Collections
+			.synchronizedMap(new WeakHashMap<DataSource, String>());
+
+	private final AtomicLong dataSourceSeq = new AtomicLong(0);
+
+	public ResultCacheRegistry(QueryResultCache queryResultCache) {
+		this.queryResultCache = queryResultCache;
+	}
+
+	/**
+	 * @return the queryResultCache
+	 */
+	public QueryResultCache getQueryResultCache() {
+		return queryResultCache;
+	}
+
+	/**
+	 * @TODO 登记sql涉及的表(需在获取查询版本之前登记)
+	 * @param sqlId
+	 * @param tables 统一过格式的表名
+	 */
+	public void register(String sqlId, String[] tables) {
+		Set<String> registed = sqlTables.computeIfAbsent(sqlId, (key) -> {
+			return ConcurrentHashMap.newKeySet();
+		});
+		for (String table : tables) {
+			if (registed.add(table)) {
+				tableSqlIds.computeIfAbsent(table, (key) -> {
+					return ConcurrentHashMap.newKeySet();
+				}).add(sqlId);
+			}
+		}
+	}
+
+	/**
+	 * @TODO 当前版本,在查询前获取并随结果一起登记
+	 * @return
+	 */
+	public long getVersion() {
+		return version.get();
+	}
+
+	/**
+	 * @TODO 表被修改,递增版本并记录为该表的失效版本
+	 * @param table
+	 * @return 涉及该表的sqlId
+	 */
+	public Set<String> invalidate(String table) {
+		long current = version.incrementAndGet();
+		tableVersions.merge(table, current, Math::max);
+		return tableSqlIds.get(table);
+	}
+
+	/**
+	 * @TODO 判断指定版本的结果是否已经失效(查询开始之后涉及的表发生过修改)
+	 * @param sqlId
+	 * @param resultVersion
+	 * @return
+	 */
+	public boolean isStale(String sqlId, long resultVersion) {
+		Set<String> tables = sqlTables.get(sqlId);
+		if (tables == null) {
+			return false;
+		}
+		Long tableVersion;
+		for (String table : tables) {
+			tableVersion = tableVersions.get(table);
+			if (tableVersion != null && tableVersion > resultVersion) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @TODO 获取数据源的标识,用于构造缓存key
+	 * @param dataSource
+	 * @return
+	 */
+	public String getDataSourceId(DataSource dataSource) {
+		if (dataSource == null) {
+			return "";
+		}
+		return dataSourceIds.computeIfAbsent(dataSource, (key) -> {
+			return "ds" + dataSourceSeq.incrementAndGet();
+		});
+	}
+}
@@ -0,0 +1,62 @@
+package org.sagacity.sqltoy.plugins.cache.impl;
+
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.config.model.ResultCache;
+import org.sagacity.sqltoy.model.QueryResult;
+import org.sagacity.sqltoy.plugins.cache.QueryResultCache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 基于Caffeine的查询结果缓存实现,每个sql一个按aliveMax限制大小、aliveSeconds写入后过期的缓存
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class CaffeineQueryResultCache implements QueryResultCache {
+	/**
+	 * key:sqlId
+	 */
+	private final ConcurrentHashMap<String, Cache<String, QueryResult>> caches = new ConcurrentHashMap<String, Cache<String, QueryResult>>();
+
+	@Override
+	public void initialize(SqlToyContext sqlToyContext) {
+	}
+
+	@Override
+	public QueryResult get(String sqlId, String cacheKey) {
+		Cache<String, QueryResult> cache = caches.get(sqlId);
+		if (cache == null) {
+			return null;
+		}
+		return cache.getIfPresent(cacheKey);
+	}
+
+	@Override
+	public void put(String sqlId, String cacheKey, QueryResult result, ResultCache resultCache) {
+		caches.computeIfAbsent(sqlId, (key) -> {
+			return Caffeine.newBuilder().maximumSize(resultCache.getAliveMax())
+					.expireAfterWrite(Duration.ofSeconds(resultCache.getAliveSeconds())).build();
+		}).put(cacheKey, result);
+	}
+
+	@Override
+	public void remove(String sqlId) {
+		Cache<String, QueryResult> cache = caches.remove(sqlId);
+		if (cache != null) {
+			cache.invalidateAll();
+		}
+	}
+
+	@Override
+	public void destroy() {
+		for (Cache<String, QueryResult> cache : caches.values()) {
+			cache.invalidateAll();
+		}
+		caches.clear();
+	}
+}
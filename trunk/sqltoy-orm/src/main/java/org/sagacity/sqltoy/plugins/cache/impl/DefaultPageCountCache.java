@@ -0,0 +1,225 @@
+package org.sagacity.sqltoy.plugins.cache.impl;
+
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.config.model.PageOptimize;
+import org.sagacity.sqltoy.plugins.cache.PageCountCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 分页优化总记录数的本地缓存实现:无锁读写,单个sql按aliveMax先进先出淘汰,全局按maxEntries控制上限,
+ *              后台线程定时清理过期记录
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-08
+ */
+public class DefaultPageCountCache implements PageCountCache {
+	/**
+	 * 定义全局日志
+	 */
+	protected final static Logger logger = LoggerFactory.getLogger(DefaultPageCountCache.class);
+
+	/**
+	 * 全局最大缓存记录数(每条记录固定约80字节,10万条约8M内存)
+	 */
+	private int maxEntries = 100000;
+
+	/**
+	 * 过期记录清理间隔(秒)
+	 */
+	private int cleanIntervalSeconds = 30;
+
+	/**
+	 * 当前缓存的记录总数
+	 */
+	private final AtomicInteger size = new AtomicInteger(0);
+
+	/**
+	 * key:sqlId
+	 */
+	private final ConcurrentHashMap<String, SqlCountCache> caches = new ConcurrentHashMap<String, SqlCountCache>();
+
+	/**
+	 * 过期清理线程
+	 */
+	private Thread cleaner;
+
+	@Override
+	public void initialize(SqlToyContext sqlToyContext) {
+		if (cleaner != null) {
+			return;
+		}
+		cleaner = new Thread("sqltoy-page-count-cleaner") {
+			@Override
+			public void run() {
+				boolean isRun = true;
+				while (isRun) {
+					try {
+						Thread.sleep(1000L * cleanIntervalSeconds);
+						clean();
+					} catch (InterruptedException e) {
+						isRun = false;
+					} catch (Exception e) {
+						logger.warn("分页优化缓存清理过期记录发生异常:{}", e.getMessage());
+					}
+				}
+			}
+		};
+		cleaner.setDaemon(true);
+		cleaner.start();
+	}
+
+	@Override
+	public Long get(String sqlId, long conditionsKey) {
+		SqlCountCache sqlCache = caches.get(sqlId);
+		if (sqlCache == null) {
+			return null;
+		}
+		CountEntry entry = sqlCache.entries.get(conditionsKey);
+		if (entry == null) {
+			return null;
+		}
+		// 已经失效
+		if (System.currentTimeMillis() >= entry.expireTime) {
+			if (sqlCache.entries.remove(conditionsKey, entry)) {
+				size.decrementAndGet();
+			}
+			return null;
+		}
+		return entry.totalCount;
+	}
+
+	@Override
+	public void put(String sqlId, long conditionsKey, long totalCount, PageOptimize pageOptimize) {
+		SqlCountCache sqlCache = caches.get(sqlId);
+		if (sqlCache == null) {
+			sqlCache = new SqlCountCache();
+			SqlCountCache preCache = caches.putIfAbsent(sqlId, sqlCache);
+			if (preCache != null) {
+				sqlCache = preCache;
+			}
+		}
+		// 超出全局上限,先淘汰本sql最早进入的记录,本sql无记录可淘汰则放弃登记(等待后台清理)
+		if (size.get() >= maxEntries && !evictEldest(sqlCache)) {
+			return;
+		}
+		CountEntry entry = new CountEntry(conditionsKey,
+				System.currentTimeMillis() + pageOptimize.getAliveSeconds() * 1000L, totalCount);
+		if (sqlCache.entries.put(conditionsKey, entry) == null) {
+			size.incrementAndGet();
+		}
+		sqlCache.order.offer(entry);
+		// 单个sql超出aliveMax,移除最早进入的
+		while (sqlCache.entries.size() > pageOptimize.getAliveMax()) {
+			if (!evictEldest(sqlCache)) {
+				break;
+			}
+		}
+	}
+
+	@Override
+	public void remove(String sqlId) {
+		SqlCountCache sqlCache = caches.remove(sqlId);
+		if (sqlCache != null) {
+			size.addAndGet(-sqlCache.entries.size());
+		}
+	}
+
+	@Override
+	public void destroy() {
+		if (cleaner != null) {
+			cleaner.interrupt();
+			cleaner = null;
+		}
+		caches.clear();
+		size.set(0);
+	}
+
+	/**
+	 * @TODO 淘汰最早进入的记录(队列中已被重新登记覆盖的记录直接跳过)
+	 * @param sqlCache
+	 * @return 是否有记录被淘汰
+	 */
+	private boolean evictEldest(SqlCountCache sqlCache) {
+		CountEntry entry;
+		while ((entry = sqlCache.order.poll()) != null) {
+			if (sqlCache.entries.remove(entry.key, entry)) {
+				size.decrementAndGet();
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @TODO 清理过期记录以及队列中已经被覆盖的记录
+	 */
+	private void clean() {
+		long nowTime = System.currentTimeMillis();
+		SqlCountCache sqlCache;
+		CountEntry entry;
+		Iterator<CountEntry> iter;
+		for (Iterator<SqlCountCache> cacheIter = caches.values().iterator(); cacheIter.hasNext();) {
+			sqlCache = cacheIter.next();
+			iter = sqlCache.order.iterator();
+			while (iter.hasNext()) {
+				entry = iter.next();
+				if (sqlCache.entries.get(entry.key) != entry) {
+					iter.remove();
+				} else if (nowTime >= entry.expireTime) {
+					iter.remove();
+					if (sqlCache.entries.remove(entry.key, entry)) {
+						size.decrementAndGet();
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return 当前缓存的记录总数
+	 */
+	public int size() {
+		return size.get();
+	}
+
+	public void setMaxEntries(int maxEntries) {
+		this.maxEntries = maxEntries;
+	}
+
+	public void setCleanIntervalSeconds(int cleanIntervalSeconds) {
+		if (cleanIntervalSeconds > 0) {
+			this.cleanIntervalSeconds = cleanIntervalSeconds;
+		}
+	}
+
+	/**
+	 * 单个sql的总记录数缓存
+	 */
+	private static class SqlCountCache {
+		private final ConcurrentHashMap<Long, CountEntry> entries = new ConcurrentHashMap<Long, CountEntry>();
+
+		// 记录进入的先后顺序,用于先进先出淘汰
+		private final ConcurrentLinkedQueue<CountEntry> order = new ConcurrentLinkedQueue<CountEntry>();
+	}
+
+	/**
+	 * 单个查询条件对应的总记录数
+	 */
+	private static class CountEntry {
+		private final long key;
+		private final long expireTime;
+		private final long totalCount;
+
+		private CountEntry(long key, long expireTime, long totalCount) {
+			this.key = key;
+			this.expireTime = expireTime;
+			this.totalCount = totalCount;
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package org.sagacity.sqltoy.plugins.cache.impl;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.config.model.ResultCache;
+import org.sagacity.sqltoy.model.QueryResult;
+import org.sagacity.sqltoy.plugins.cache.QueryResultCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 查询结果的本地缓存实现:单个sql按aliveMax做LRU淘汰,获取时判定过期,后台线程定时清理过期记录
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class DefaultQueryResultCache implements QueryResultCache {
+	/**
+	 * 定义全局日志
+	 */
+	protected final static Logger logger = LoggerFactory.getLogger(DefaultQueryResultCache.class);
+
+	/**
+	 * 过期记录清理间隔(秒)
+	 */
+	private int cleanIntervalSeconds = 30;
+
+	/**
+	 * key:sqlId
+	 */
+	private final ConcurrentHashMap<String, SqlResultCache> caches = new ConcurrentHashMap<String, SqlResultCache>();
+
+	/**
+	 * 过期清理线程
+	 */
+	private Thread cleaner;
+
+	@Override
+	public void initialize(SqlToyContext sqlToyContext) {
+		if (cleaner != null) {
+			return;
+		}
+		cleaner = new Thread("sqltoy-result-cache-cleaner") {
+			@Override
+			public void run() {
+				boolean isRun = true;
+				while (isRun) {
+					try {
+						Thread.sleep(1000L * cleanIntervalSeconds);
+						clean();
+					} catch (InterruptedException e) {
+						isRun = false;
+					} catch (Exception e) {
+						logger.warn("查询结果缓存清理过期记录发生异常:{}", e.getMessage());
+					}
+				}
+			}
+		};
+		cleaner.setDaemon(true);
+		cleaner.start();
+	}
+
+	@Override
+	public QueryResult get(String sqlId, String cacheKey) {
+		SqlResultCache sqlCache = caches.get(sqlId);
+		if (sqlCache == null) {
+			return null;
+		}
+		synchronized (sqlCache) {
+			ResultEntry entry = sqlCache.entries.get(cacheKey);
+			if (entry == null) {
+				return null;
+			}
+			if (System.currentTimeMillis() >= entry.expireTime) {
+				sqlCache.entries.remove(cacheKey);
+				return null;
+			}
+			return entry.result;
+		}
+	}
+
+	@Override
+	public void put(String sqlId, String cacheKey, QueryResult result, ResultCache resultCache) {
+		SqlResultCache sqlCache = caches.computeIfAbsent(sqlId, (key) -> {
+			return new SqlResultCache(resultCache.getAliveMax());
+		});
+		synchronized (sqlCache) {
+			sqlCache.aliveMax = resultCache.getAliveMax();
+			sqlCache.entries.put(cacheKey,
+					new ResultEntry(System.currentTimeMillis() + resultCache.getAliveSeconds() * 1000L, result));
+		}
+	}
+
+	@Override
+	public void remove(String sqlId) {
+		caches.remove(sqlId);
+	}
+
+	@Override
+	public void destroy() {
+		if (cleaner != null) {
+			cleaner.interrupt();
+			cleaner = null;
+		}
+		caches.clear();
+	}
+
+	/**
+	 * @TODO 清理过期记录
+	 */
+	private void clean() {
+		long nowTime = System.currentTimeMillis();
+		Iterator<ResultEntry> iter;
+		for (SqlResultCache sqlCache : caches.values()) {
+			synchronized (sqlCache) {
+				iter = sqlCache.entries.values().iterator();
+				while (iter.hasNext()) {
+					if (nowTime >= iter.next().expireTime) {
+						iter.remove();
+					}
+				}
+			}
+		}
+	}
+
+	public void setCleanIntervalSeconds(int cleanIntervalSeconds) {
+		if (cleanIntervalSeconds > 0) {
+			this.cleanIntervalSeconds = cleanIntervalSeconds;
+		}
+	}
+
+	/**
+	 * 单个sql的结果缓存(按访问顺序LRU淘汰)
+	 */
+	private static class SqlResultCache {
+		private int aliveMax;
+
+		private final LinkedHashMap<String, ResultEntry> entries = new LinkedHashMap<String, ResultEntry>(16, 0.75f,
+				true) {
+			private static final long serialVersionUID = -2137364598183420512L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, ResultEntry> eldest) {
+				return size() > aliveMax;
+			}
+		};
+
+		private SqlResultCache(int aliveMax) {
+			this.aliveMax = aliveMax;
+		}
+	}
+
+	/**
+	 * 单个查询条件对应的结果
+	 */
+	private static class ResultEntry {
+		private final long expireTime;
+		private final QueryResult result;
+
+		private ResultEntry(long expireTime, QueryResult result) {
+			this.expireTime = expireTime;
+			this.result = result;
+		}
+	}
+}
@@ -0,0 +1,158 @@
+package org.sagacity.sqltoy.plugins.cache.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Set;
+
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.config.model.PageOptimize;
+import org.sagacity.sqltoy.plugins.cache.PageCountCache;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.connection.RedisConnection;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 基于redis的分页优化总记录数缓存,多个应用节点共享count结果,记录过期交由redis的ttl处理
+ *              (aliveMax在redis模式下不做控制)
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-08
+ * @modify Date:2021-05-20 {按sqlId以set登记count key,清除时不再使用keys全库匹配;长sql以SHA-1摘要作为key}
+ */
+public class RedisPageCountCache implements PageCountCache {
+	/**
+	 * 定义全局日志
+	 */
+	protected final static Logger logger = LoggerFactory.getLogger(RedisPageCountCache.class);
+
+	/**
+	 * key前缀,格式:SQLTOY_PAGE_CNT:sqlId:conditionsKey
+	 */
+	private final static String KEY_PREFIX = "SQLTOY_PAGE_CNT:";
+
+	/**
+	 * 同一sqlId下count key的索引集合,格式:SQLTOY_PAGE_CNT_KEYS:sqlId
+	 */
+	private final static String KEYS_PREFIX = "SQLTOY_PAGE_CNT_KEYS:";
+
+	private RedisTemplate<?, ?> redisTemplate;
+
+	@Override
+	public void initialize(SqlToyContext sqlToyContext) {
+		if (redisTemplate == null) {
+			Object template = sqlToyContext.getBean("redisTemplate");
+			if (template == null) {
+				logger.error("RedisPageCountCache 未定义redisTemplate!");
+			} else {
+				redisTemplate = (RedisTemplate<?, ?>) template;
+			}
+		}
+	}
+
+	@Override
+	public Long get(String sqlId, long conditionsKey) {
+		final byte[] key = getKey(sqlId, conditionsKey);
+		try {
+			byte[] value = redisTemplate.execute(new RedisCallback<byte[]>() {
+				@Override
+				public byte[] doInRedis(RedisConnection connection) throws DataAccessException {
+					return connection.get(key);
+				}
+			});
+			if (value == null) {
+				return null;
+			}
+			return Long.valueOf(new String(value, StandardCharsets.UTF_8));
+		} catch (Exception e) {
+			// redis异常不影响分页查询,直接执行count
+			logger.warn("从redis获取分页总记录数失败:{}", e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public void put(String sqlId, long conditionsKey, long totalCount, final PageOptimize pageOptimize) {
+		final byte[] key = getKey(sqlId, conditionsKey);
+		final byte[] keysKey = getKeysKey(sqlId);
+		final byte[] value = Long.toString(totalCount).getBytes(StandardCharsets.UTF_8);
+		try {
+			redisTemplate.execute(new RedisCallback<Boolean>() {
+				@Override
+				public Boolean doInRedis(RedisConnection connection) throws DataAccessException {
+					connection.setEx(key, pageOptimize.getAliveSeconds(), value);
+					// 索引集合随最后一次登记续期,过期的count key在清除时del不存在的key无副作用
+					connection.sAdd(keysKey, key);
+					return connection.expire(keysKey, pageOptimize.getAliveSeconds());
+				}
+			});
+		} catch (Exception e) {
+			logger.warn("登记分页总记录数到redis失败:{}", e.getMessage());
+		}
+	}
+
+	@Override
+	public void remove(String sqlId) {
+		final byte[] keysKey = getKeysKey(sqlId);
+		try {
+			redisTemplate.execute(new RedisCallback<Long>() {
+				@Override
+				public Long doInRedis(RedisConnection connection) throws DataAccessException {
+					// 只访问该sqlId登记的key,避免keys命令遍历全库以及sqlId中*、?、[被当作通配符
+					Set<byte[]> keys = connection.sMembers(keysKey);
+					connection.del(keysKey);
+					if (keys == null || keys.isEmpty()) {
+						return 0L;
+					}
+					return connection.del(keys.toArray(new byte[keys.size()][]));
+				}
+			});
+		} catch (Exception e) {
+			logger.warn("清除redis中sql:{}的分页总记录数失败:{}", sqlId, e.getMessage());
+		}
+	}
+
+	@Override
+	public void destroy() {
+	}
+
+	private byte[] getKey(String sqlId, long conditionsKey) {
+		return KEY_PREFIX.concat(getSqlKey(sqlId)).concat(":").concat(Long.toHexString(conditionsKey))
+				.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private byte[] getKeysKey(String sqlId) {
+		return KEYS_PREFIX.concat(getSqlKey(sqlId)).getBytes(StandardCharsets.UTF_8);
+	}
+
+	/**
+	 * @TODO 代码中直接写的sql没有id,以sql本身作为id,过长时转为SHA-1摘要避免redis key过大(hashCode易冲突)
+	 * @param sqlId
+	 * @return
+	 */
+	private String getSqlKey(String sqlId) {
+		if (sqlId.length() <= 128) {
+			return sqlId;
+		}
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-1").digest(sqlId.getBytes(StandardCharsets.UTF_8));
+			StringBuilder result = new StringBuilder(44).append("sql_");
+			for (byte b : digest) {
+				result.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+			}
+			return result.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param redisTemplate the redisTemplate to set
+	 */
+	public void setRedisTemplate(RedisTemplate<?, ?> redisTemplate) {
+		this.redisTemplate = redisTemplate;
+	}
+}
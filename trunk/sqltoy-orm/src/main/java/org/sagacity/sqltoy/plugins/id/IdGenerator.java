@@ -10,6 +10,7 @@ import java.util.Date;
  * @description 定义主键产生器接口,自定义产生器必须实现getId()方法
  * @author zhongxuchen
  * @version v1.0,Date:2012-6-4 上午10:08:15
+ * @modify Date:2021-05-19 {增加getIds批量获取主键,批量保存时按关联字段值分组一次提取多个}
  */
 public interface IdGenerator {
 	/**
@@ -25,4 +26,27 @@ public interface IdGenerator {
 	 */
 	public Object getId(String tableName, String signature, String[] relatedColumns, Object[] relatedColValue,
 			Date bizDate, String idJavaType, int length, int sequencSize);
+
+	/**
+	 * @todo <b>批量返回id</b>,默认逐个调用getId,需要网络交互或可以一次分配一段的实现应覆盖此方法
+	 * @param tableName
+	 * @param signature
+	 * @param relatedColumns
+	 * @param relatedColValue
+	 * @param bizDate
+	 * @param idJavaType
+	 * @param length
+	 * @param sequencSize
+	 * @param count           需要的id数量
+	 * @return
+	 */
+	public default Object[] getIds(String tableName, String signature, String[] relatedColumns,
+			Object[] relatedColValue, Date bizDate, String idJavaType, int length, int sequencSize, int count) {
+		Object[] result = new Object[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = getId(tableName, signature, relatedColumns, relatedColValue, bizDate, idJavaType, length,
+					sequencSize);
+		}
+		return result;
+	}
 }
@@ -3,6 +3,7 @@
  */
 package org.sagacity.sqltoy.plugins.id.impl;
 
+import java.math.BigDecimal;
 import java.util.Date;
 
 import org.sagacity.sqltoy.SqlToyConstants;
@@ -15,6 +16,7 @@ import org.sagacity.sqltoy.utils.SqlUtil;
  * @description 格式:13位当前毫秒+6位纳秒+3位主机ID 构成的22位不重复的ID
  * @author zhongxuchen
  * @version v1.0,Date:2012-6-4 上午10:12:48
+ * @modify Date:2021-05-19 {增加批量产生id}
  */
 public class DefaultIdGenerator implements IdGenerator {
 	private static IdGenerator me = new DefaultIdGenerator();
@@ -38,4 +40,15 @@ public class DefaultIdGenerator implements IdGenerator {
 			Date bizDate, String idJavaType, int length, int sequencSize) {
 		return SqlUtil.convertIdValueType(IdUtil.getShortNanoTimeId(SqlToyConstants.SERVER_ID), idJavaType);
 	}
+
+	@Override
+	public Object[] getIds(String tableName, String signature, String[] relatedColumns, Object[] relatedColsValue,
+			Date bizDate, String idJavaType, int length, int sequencSize, int count) {
+		BigDecimal[] ids = IdUtil.getShortNanoTimeIds(SqlToyConstants.SERVER_ID, count);
+		Object[] result = new Object[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = SqlUtil.convertIdValueType(ids[i], idJavaType);
+		}
+		return result;
+	}
 }
@@ -4,11 +4,16 @@
 package org.sagacity.sqltoy.plugins.id.impl;
 
 import java.util.Date;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
+import org.sagacity.sqltoy.SqlToyConstants;
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.model.IgnoreKeyCaseMap;
 import org.sagacity.sqltoy.plugins.id.IdGenerator;
 import org.sagacity.sqltoy.plugins.id.macro.MacroUtils;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolManager;
 import org.sagacity.sqltoy.utils.DateUtil;
 import org.sagacity.sqltoy.utils.StringUtil;
 import org.slf4j.Logger;
@@ -24,6 +29,7 @@ import org.springframework.data.redis.support.atomic.RedisAtomicLong;
  * @author zhongxuchen
  * @version v1.0,Date:2018年1月30日
  * @modify Date:2019-1-24 {key命名策略改为SQLTOY_GL_ID:tableName:xxx 便于redis检索}
+ * @modify Date:2021-05-19 {支持批量获取:一次INCRBY分配一段连续号码,可选本地号段双缓冲预取}
  */
 public class RedisIdGenerator implements IdGenerator {
 	/**
@@ -44,6 +50,26 @@ public class RedisIdGenerator implements IdGenerator {
 	 */
 	private String dateFormat;
 
+	/**
+	 * 号段缓存key的数量上限
+	 */
+	private final static int MAX_SEGMENT_KEYS = 10000;
+
+	/**
+	 * 每次预取的号段大小,0表示不预取(每次按需INCRBY,号码严格连续);开启后多节点间号码不再按时间有序,停机时未用完的号段会跳号
+	 */
+	private int segmentSize = 0;
+
+	/**
+	 * 按key缓存的号段
+	 */
+	private final ConcurrentHashMap<String, IdSegmentBuffer> segments = new ConcurrentHashMap<String, IdSegmentBuffer>();
+
+	/**
+	 * 异步预取号段的线程池
+	 */
+	private ExecutorService prefetchExecutor;
+
 	/**
 	 * @todo 获取对象单例
 	 * @param sqlToyContext
@@ -57,6 +83,10 @@ public class RedisIdGenerator implements IdGenerator {
 			} else {
 				me.setRedisTemplate((RedisTemplate<?, ?>) template);
 			}
+			me.setSegmentSize(SqlToyConstants.getRedisIdSegmentSize());
+			if (sqlToyContext.getThreadPoolManager() != null) {
+				me.prefetchExecutor = sqlToyContext.getThreadPoolManager().getExecutor(ThreadPoolManager.ASYNC);
+			}
 		}
 		return me;
 	}
@@ -94,6 +124,20 @@ public class RedisIdGenerator implements IdGenerator {
 	@Override
 	public Object getId(String tableName, String signature, String[] relatedColumns, Object[] relatedColValue,
 			Date bizDate, String idJavaType, int length, int sequencSize) {
+		return getIds(tableName, signature, relatedColumns, relatedColValue, bizDate, idJavaType, length, sequencSize,
+				1)[0];
+	}
+
+	/*
+	 * (non-Javadoc)
+	 * 
+	 * @see org.sagacity.sqltoy.plugins.id.IdGenerator#getIds(java.lang.String,
+	 * java.lang.String, java.lang.String[], java.lang.Object[], java.util.Date,
+	 * java.lang.String, int, int, int)
+	 */
+	@Override
+	public Object[] getIds(String tableName, String signature, String[] relatedColumns, Object[] relatedColValue,
+			Date bizDate, String idJavaType, int length, int sequencSize, int count) {
 		String key = (signature == null ? "" : signature);
 		// 主键生成依赖业务的相关字段值
 		IgnoreKeyCaseMap<String, Object> keyValueMap = new IgnoreKeyCaseMap<String, Object>();
@@ -117,17 +161,103 @@ public class RedisIdGenerator implements IdGenerator {
 		if (!keyValueMap.isEmpty()) {
 			realKey = MacroUtils.replaceParams(realKey, keyValueMap);
 		}
-		// 结合redis计数取末尾几位顺序数
-		Long result;
-
 		// update 2019-1-24 key命名策略改为SQLTOY_GL_ID:tableName:xxx 便于redis检索
+		String redisKey = realKey;
 		if (tableName != null) {
-			result = generateId("".equals(realKey) ? tableName : tableName.concat(":").concat(realKey));
-		} else {
-			result = generateId(realKey);
+			redisKey = "".equals(realKey) ? tableName : tableName.concat(":").concat(realKey);
+		}
+		// 结合redis计数取末尾几位顺序数
+		long[] sequences = allocate(redisKey, count);
+		int seqLength = (sequencSize > 0) ? sequencSize : length - realKey.length();
+		Object[] result = new Object[count];
+		for (int i = 0; i < count; i++) {
+			result[i] = realKey.concat(StringUtil.addLeftZero2Len("" + sequences[i], seqLength));
 		}
-		return realKey.concat(
-				StringUtil.addLeftZero2Len("" + result, (sequencSize > 0) ? sequencSize : length - realKey.length()));
+		return result;
+	}
+
+	/**
+	 * @TODO 分配count个顺序号:未开启号段预取时一次INCRBY取连续的count个;开启后从本地号段中分配,
+	 *       号段剩余不足20%时异步预取下一个号段(双缓冲),号段用尽时直接切换,不再等待redis
+	 * @param key
+	 * @param count
+	 * @return
+	 */
+	private long[] allocate(String key, int count) {
+		long[] result = new long[count];
+		if (segmentSize <= 0) {
+			long end = generateId(key, count);
+			for (int i = 0; i < count; i++) {
+				result[i] = end - count + 1 + i;
+			}
+			return result;
+		}
+		// 日期类key每天变化,避免号段缓存无限增长
+		if (segments.size() > MAX_SEGMENT_KEYS) {
+			segments.clear();
+		}
+		IdSegmentBuffer buffer = segments.computeIfAbsent(key, k -> new IdSegmentBuffer());
+		synchronized (buffer) {
+			int index = 0;
+			long[] segment;
+			while (index < count) {
+				if (buffer.current == null || buffer.current[0] > buffer.current[1]) {
+					CompletableFuture<long[]> next = buffer.next;
+					buffer.next = null;
+					buffer.current = null;
+					if (next != null) {
+						try {
+							buffer.current = next.join();
+						} catch (Exception e) {
+							logger.warn("RedisIdGenerator 预取号段失败,key={},改为同步获取:{}", key, e.getMessage());
+						}
+					}
+					// 单次需求超过号段大小时按需求量一次取足
+					if (buffer.current == null) {
+						buffer.current = fetchSegment(key, Math.max(segmentSize, count - index));
+					}
+				}
+				segment = buffer.current;
+				while (index < count && segment[0] <= segment[1]) {
+					result[index++] = segment[0]++;
+				}
+			}
+			// 剩余不足20%,异步预取下一号段
+			if (buffer.next == null && (buffer.current[1] - buffer.current[0] + 1) < segmentSize / 5 + 1) {
+				buffer.next = (prefetchExecutor == null)
+						? CompletableFuture.supplyAsync(() -> fetchSegment(key, segmentSize))
+						: CompletableFuture.supplyAsync(() -> fetchSegment(key, segmentSize), prefetchExecutor);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 从redis一次取一个号段[start,end]
+	 * @param key
+	 * @param size
+	 * @return
+	 */
+	private long[] fetchSegment(String key, int size) {
+		long end = generateId(key, size);
+		return new long[] { end - size + 1, end };
+	}
+
+	/**
+	 * @param segmentSize 每次预取的号段大小(0表示不预取)
+	 */
+	public void setSegmentSize(int segmentSize) {
+		this.segmentSize = segmentSize;
+	}
+
+	/**
+	 * 同一个key的当前号段和预取号段
+	 */
+	private static class IdSegmentBuffer {
+		// {下一个可用值,号段最大值}
+		private long[] current;
+
+		private CompletableFuture<long[]> next;
 	}
 
 	/**
@@ -0,0 +1,78 @@
+package org.sagacity.sqltoy.plugins.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 缓存命中指标(分页count缓存、翻译缓存、查询结果缓存),分页自适应并行的有效率也借用此指标
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-18
+ */
+public class CacheMetric {
+	/**
+	 * 缓存类别:pageCount、translate、resultCache、pageParallel
+	 */
+	private final String type;
+
+	/**
+	 * 缓存名称
+	 */
+	private final String name;
+
+	private final LongAdder hits = new LongAdder();
+
+	private final LongAdder misses = new LongAdder();
+
+	public CacheMetric(String type, String name) {
+		this.type = type;
+		this.name = name;
+	}
+
+	public void hit() {
+		hits.increment();
+	}
+
+	public void miss() {
+		misses.increment();
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * @TODO 命中率(0~1)
+	 * @return
+	 */
+	public double getHitRate() {
+		long hitCount = hits.sum();
+		long total = hitCount + misses.sum();
+		if (total == 0) {
+			return 0;
+		}
+		return (double) hitCount / total;
+	}
+
+	public void reset() {
+		hits.reset();
+		misses.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "type=" + type + ",name=" + name + ",hits=" + getHits() + ",misses=" + getMisses() + ",hitRate="
+				+ getHitRate();
+	}
+}
@@ -0,0 +1,119 @@
+package org.sagacity.sqltoy.plugins.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 对数-线性分桶的耗时直方图(参照HdrHistogram):每个2的幂区间再均分16个子桶,相对误差不超过1/16,
+ *              记录时只做一次数组原子累加,不产生对象
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-18
+ */
+public class LatencyHistogram {
+	/**
+	 * 小于32(微秒)的值一一对应桶
+	 */
+	private final static int LINEAR_COUNT = 32;
+
+	/**
+	 * 每个2的幂区间的子桶数量
+	 */
+	private final static int SUB_COUNT = 16;
+
+	/**
+	 * 最大指数(2^41微秒约25天,超出的计入最后一个桶)
+	 */
+	private final static int MAX_EXPONENT = 40;
+
+	private final static int BUCKET_COUNT = LINEAR_COUNT + (MAX_EXPONENT - 4) * SUB_COUNT;
+
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+
+	/**
+	 * @TODO 记录一次耗时
+	 * @param micros 微秒
+	 */
+	public void record(long micros) {
+		counts.incrementAndGet(bucketIndex(micros < 0 ? 0 : micros));
+	}
+
+	/**
+	 * @TODO 获取百分位对应的耗时(微秒),返回所在桶的上界
+	 * @param percentile 如:99、99.9
+	 * @return
+	 */
+	public long getValueAtPercentile(double percentile) {
+		int size = BUCKET_COUNT;
+		long[] snapshot = new long[size];
+		long total = 0;
+		for (int i = 0; i < size; i++) {
+			snapshot[i] = counts.get(i);
+			total = total + snapshot[i];
+		}
+		if (total == 0) {
+			return 0;
+		}
+		long target = (long) Math.ceil(Math.min(percentile, 100d) / 100d * total);
+		if (target < 1) {
+			target = 1;
+		}
+		long accumulate = 0;
+		for (int i = 0; i < size; i++) {
+			accumulate = accumulate + snapshot[i];
+			if (accumulate >= target) {
+				return upperBound(i);
+			}
+		}
+		return upperBound(size - 1);
+	}
+
+	/**
+	 * @TODO 记录总次数
+	 * @return
+	 */
+	public long getTotalCount() {
+		long total = 0;
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			total = total + counts.get(i);
+		}
+		return total;
+	}
+
+	public void reset() {
+		for (int i = 0; i < BUCKET_COUNT; i++) {
+			counts.set(i, 0);
+		}
+	}
+
+	/**
+	 * @TODO 值对应的桶:小于32直接对应,否则按最高位确定区间,再取紧随其后的4位作为子桶
+	 * @param value
+	 * @return
+	 */
+	static int bucketIndex(long value) {
+		if (value < LINEAR_COUNT) {
+			return (int) value;
+		}
+		int exponent = 63 - Long.numberOfLeadingZeros(value);
+		if (exponent > MAX_EXPONENT) {
+			return BUCKET_COUNT - 1;
+		}
+		int shift = exponent - 4;
+		return LINEAR_COUNT + (exponent - 5) * SUB_COUNT + (int) ((value >>> shift) - SUB_COUNT);
+	}
+
+	/**
+	 * @TODO 桶所能容纳的最大值
+	 * @param index
+	 * @return
+	 */
+	static long upperBound(int index) {
+		if (index < LINEAR_COUNT) {
+			return index;
+		}
+		int exponent = (index - LINEAR_COUNT) / SUB_COUNT + 5;
+		int sub = (index - LINEAR_COUNT) % SUB_COUNT + SUB_COUNT;
+		int shift = exponent - 4;
+		return ((long) (sub + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,166 @@
+package org.sagacity.sqltoy.plugins.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 单个sqlId(或实体类)+操作类型的执行指标:次数、异常、慢sql、耗时分布、查询/影响记录数、批量大小
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-18
+ */
+public class SqlMetric {
+	private final String sqlId;
+
+	private final String type;
+
+	private final LongAdder count = new LongAdder();
+
+	private final LongAdder errorCount = new LongAdder();
+
+	private final LongAdder slowCount = new LongAdder();
+
+	private final LongAdder totalMicros = new LongAdder();
+
+	private final AtomicLong maxMicros = new AtomicLong(0);
+
+	private final LongAdder rowsFetched = new LongAdder();
+
+	private final LongAdder rowsAffected = new LongAdder();
+
+	private final LongAdder batchCount = new LongAdder();
+
+	private final LongAdder batchRows = new LongAdder();
+
+	private final LatencyHistogram histogram = new LatencyHistogram();
+
+	public SqlMetric(String sqlId, String type) {
+		this.sqlId = sqlId;
+		this.type = type;
+	}
+
+	/**
+	 * @TODO 登记一次执行
+	 * @param micros    耗时(微秒)
+	 * @param error     是否异常
+	 * @param slow      是否超过慢sql阀值
+	 * @param fetched   查询获得的记录数
+	 * @param affected  修改影响的记录数
+	 * @param batchSize 批量操作的记录数(非批量为-1)
+	 */
+	public void record(long micros, boolean error, boolean slow, long fetched, long affected, int batchSize) {
+		count.increment();
+		totalMicros.add(micros);
+		histogram.record(micros);
+		long max = maxMicros.get();
+		while (micros > max && !maxMicros.compareAndSet(max, micros)) {
+			max = maxMicros.get();
+		}
+		if (error) {
+			errorCount.increment();
+		}
+		if (slow) {
+			slowCount.increment();
+		}
+		if (fetched > 0) {
+			rowsFetched.add(fetched);
+		}
+		if (affected > 0) {
+			rowsAffected.add(affected);
+		}
+		if (batchSize >= 0) {
+			batchCount.increment();
+			batchRows.add(batchSize);
+		}
+	}
+
+	public String getSqlId() {
+		return sqlId;
+	}
+
+	public String getType() {
+		return type;
+	}
+
+	public long getCount() {
+		return count.sum();
+	}
+
+	public long getErrorCount() {
+		return errorCount.sum();
+	}
+
+	public long getSlowCount() {
+		return slowCount.sum();
+	}
+
+	public long getTotalMicros() {
+		return totalMicros.sum();
+	}
+
+	public double getMeanMillis() {
+		long executeCount = count.sum();
+		if (executeCount == 0) {
+			return 0;
+		}
+		return totalMicros.sum() / 1000d / executeCount;
+	}
+
+	public double getMaxMillis() {
+		return maxMicros.get() / 1000d;
+	}
+
+	/**
+	 * @TODO 获取百分位耗时(毫秒)
+	 * @param percentile 如:50、99、99.9
+	 * @return
+	 */
+	public double getPercentileMillis(double percentile) {
+		return histogram.getValueAtPercentile(percentile) / 1000d;
+	}
+
+	public long getRowsFetched() {
+		return rowsFetched.sum();
+	}
+
+	public long getRowsAffected() {
+		return rowsAffected.sum();
+	}
+
+	public long getBatchCount() {
+		return batchCount.sum();
+	}
+
+	/**
+	 * @TODO 平均批量记录数
+	 * @return
+	 */
+	public double getMeanBatchSize() {
+		long batches = batchCount.sum();
+		if (batches == 0) {
+			return 0;
+		}
+		return (double) batchRows.sum() / batches;
+	}
+
+	public void reset() {
+		count.reset();
+		errorCount.reset();
+		slowCount.reset();
+		totalMicros.reset();
+		maxMicros.set(0);
+		rowsFetched.reset();
+		rowsAffected.reset();
+		batchCount.reset();
+		batchRows.reset();
+		histogram.reset();
+	}
+
+	@Override
+	public String toString() {
+		return "sqlId=" + sqlId + ",type=" + type + ",count=" + getCount() + ",errorCount=" + getErrorCount()
+				+ ",slowCount=" + getSlowCount() + ",mean=" + getMeanMillis() + "ms,p50=" + getPercentileMillis(50)
+				+ "ms,p99=" + getPercentileMillis(99) + "ms,max=" + getMaxMillis() + "ms,rowsFetched="
+				+ getRowsFetched() + ",rowsAffected=" + getRowsAffected();
+	}
+}
@@ -0,0 +1,21 @@
+package org.sagacity.sqltoy.plugins.metrics;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 新增指标的监听,用于对接Micrometer等外部监控(新的sqlId或缓存第一次出现时通知)
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-18
+ */
+public interface SqlMetricsListener {
+	/**
+	 * @TODO 新增sql执行指标
+	 * @param sqlMetric
+	 */
+	public void onSqlMetric(SqlMetric sqlMetric);
+
+	/**
+	 * @TODO 新增缓存命中指标
+	 * @param cacheMetric
+	 */
+	public void onCacheMetric(CacheMetric cacheMetric);
+}
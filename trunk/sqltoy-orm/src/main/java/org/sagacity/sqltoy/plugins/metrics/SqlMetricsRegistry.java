@@ -0,0 +1,214 @@
+package org.sagacity.sqltoy.plugins.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @project sagacity-sqltoy
+ * @description sql执行指标登记中心:按操作类型+sqlId(对象操作为实体类名)归集执行耗时分布、记录数、批量大小,以及缓存命中率,
+ *              不依赖debug日志即可获得生产环境各sql的p99等统计
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-18
+ */
+public class SqlMetricsRegistry {
+	/**
+	 * 超出sql数量上限后统一归集的sqlId
+	 */
+	public final static String OTHERS = "@others";
+
+	/**
+	 * 直接在代码中写的sql(无id)统一归集的sqlId
+	 */
+	public final static String CODE_SQL = "@codeSql";
+
+	/**
+	 * 分页count缓存
+	 */
+	public final static String PAGE_COUNT_CACHE = "pageCount";
+
+	/**
+	 * 缓存翻译
+	 */
+	public final static String TRANSLATE_CACHE = "translate";
+
+	/**
+	 * 查询结果缓存
+	 */
+	public final static String RESULT_CACHE = "resultCache";
+
+	/**
+	 * 分页自适应并行(hit:并行取得的单页数据被采用,miss:count为0或页号越界数据被丢弃)
+	 */
+	public final static String PAGE_PARALLEL = "pageParallel";
+
+	/**
+	 * 操作类型-->(sqlId-->指标),两级map避免每次登记拼接key
+	 */
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, SqlMetric>> sqlMetrics = new ConcurrentHashMap<String, ConcurrentHashMap<String, SqlMetric>>();
+
+	private final ConcurrentHashMap<String, ConcurrentHashMap<String, CacheMetric>> cacheMetrics = new ConcurrentHashMap<String, ConcurrentHashMap<String, CacheMetric>>();
+
+	private final List<SqlMetricsListener> listeners = new CopyOnWriteArrayList<SqlMetricsListener>();
+
+	private final AtomicInteger sqlCount = new AtomicInteger(0);
+
+	/**
+	 * 单独统计的sqlId数量上限,防止拼接sql导致无限增长
+	 */
+	private int maxSqlCount = 2000;
+
+	public SqlMetricsRegistry() {
+	}
+
+	public SqlMetricsRegistry(int maxSqlCount) {
+		this.maxSqlCount = maxSqlCount;
+	}
+
+	/**
+	 * @TODO 获取sql执行指标,不存在则创建
+	 * @param sqlId
+	 * @param type
+	 * @return
+	 */
+	public SqlMetric getSqlMetric(String sqlId, String type) {
+		ConcurrentHashMap<String, SqlMetric> typeMetrics = sqlMetrics.get(type);
+		if (typeMetrics == null) {
+			typeMetrics = sqlMetrics.computeIfAbsent(type, (key) -> {
+				return new ConcurrentHashMap<String, SqlMetric>();
+			});
+		}
+		String realId = (sqlId == null) ? CODE_SQL : sqlId;
+		SqlMetric metric = typeMetrics.get(realId);
+		if (metric != null) {
+			return metric;
+		}
+		if (sqlCount.get() >= maxSqlCount) {
+			realId = OTHERS;
+			metric = typeMetrics.get(realId);
+			if (metric != null) {
+				return metric;
+			}
+		}
+		final String metricId = realId;
+		final boolean[] created = { false };
+		metric = typeMetrics.computeIfAbsent(metricId, (key) -> {
+			sqlCount.incrementAndGet();
+			created[0] = true;
+			return new SqlMetric(metricId, type);
+		});
+		if (created[0]) {
+			for (SqlMetricsListener listener : listeners) {
+				listener.onSqlMetric(metric);
+			}
+		}
+		return metric;
+	}
+
+	/**
+	 * @TODO 获取缓存命中指标,不存在则创建
+	 * @param type
+	 * @param name
+	 * @return
+	 */
+	public CacheMetric getCacheMetric(String type, String name) {
+		ConcurrentHashMap<String, CacheMetric> typeMetrics = cacheMetrics.get(type);
+		if (typeMetrics == null) {
+			typeMetrics = cacheMetrics.computeIfAbsent(type, (key) -> {
+				return new ConcurrentHashMap<String, CacheMetric>();
+			});
+		}
+		CacheMetric metric = typeMetrics.get(name);
+		if (metric != null) {
+			return metric;
+		}
+		final boolean[] created = { false };
+		metric = typeMetrics.computeIfAbsent(name, (key) -> {
+			created[0] = true;
+			return new CacheMetric(type, name);
+		});
+		if (created[0]) {
+			for (SqlMetricsListener listener : listeners) {
+				listener.onCacheMetric(metric);
+			}
+		}
+		return metric;
+	}
+
+	/**
+	 * @TODO 全部sql执行指标
+	 * @return
+	 */
+	public List<SqlMetric> getSqlMetrics() {
+		List<SqlMetric> result = new ArrayList<SqlMetric>();
+		for (ConcurrentHashMap<String, SqlMetric> typeMetrics : sqlMetrics.values()) {
+			result.addAll(typeMetrics.values());
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 指定sqlId的各类操作执行指标
+	 * @param sqlId
+	 * @return
+	 */
+	public List<SqlMetric> getSqlMetrics(String sqlId) {
+		List<SqlMetric> result = new ArrayList<SqlMetric>();
+		SqlMetric metric;
+		for (ConcurrentHashMap<String, SqlMetric> typeMetrics : sqlMetrics.values()) {
+			metric = typeMetrics.get(sqlId);
+			if (metric != null) {
+				result.add(metric);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 全部缓存命中指标
+	 * @return
+	 */
+	public List<CacheMetric> getCacheMetrics() {
+		List<CacheMetric> result = new ArrayList<CacheMetric>();
+		for (ConcurrentHashMap<String, CacheMetric> typeMetrics : cacheMetrics.values()) {
+			result.addAll(typeMetrics.values());
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 新的指标产生时通知监听器,已经存在的指标在注册时立即通知
+	 * @param listener
+	 */
+	public void addListener(SqlMetricsListener listener) {
+		listeners.add(listener);
+		for (SqlMetric metric : getSqlMetrics()) {
+			listener.onSqlMetric(metric);
+		}
+		for (CacheMetric metric : getCacheMetrics()) {
+			listener.onCacheMetric(metric);
+		}
+	}
+
+	/**
+	 * @TODO 清零全部指标(保留已经创建的指标对象,已对接的外部监控依然有效)
+	 */
+	public void reset() {
+		for (SqlMetric metric : getSqlMetrics()) {
+			metric.reset();
+		}
+		for (CacheMetric metric : getCacheMetrics()) {
+			metric.reset();
+		}
+	}
+
+	public int getMaxSqlCount() {
+		return maxSqlCount;
+	}
+
+	public void setMaxSqlCount(int maxSqlCount) {
+		this.maxSqlCount = maxSqlCount;
+	}
+}
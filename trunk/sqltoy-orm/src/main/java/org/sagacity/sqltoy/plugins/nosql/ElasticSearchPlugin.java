@@ -38,6 +38,7 @@ import com.alibaba.fastjson.JSONObject;
  * @description elasticSearch的插件
  * @author zhongxuchen
  * @version v1.0,Date:2018年1月3日
+ * @modify Date:2021-05-16 {查询结果改为流式提取}
  */
 public class ElasticSearchPlugin {
 	/**
@@ -182,12 +183,19 @@ public class ElasticSearchPlugin {
 			}
 		}
 
-		// 执行请求
-		JSONObject json = HttpClientUtils.doPost(sqlToyContext, noSqlModel, esConfig, jsonQuery);
-		if (json == null || json.isEmpty()) {
+		final String[] realFields = fields;
+		// 执行请求,边读取边提取数据
+		DataSetResult resultSet = HttpClientUtils.doPost(sqlToyContext, noSqlModel, esConfig, jsonQuery,
+				(reader) -> {
+					return ElasticSearchUtils.extractFieldValue(sqlToyContext, sqlToyConfig, reader, realFields);
+				});
+		// 无返回或无记录(getRows()不会为null)
+		if (resultSet == null) {
 			return new DataSetResult();
 		}
-		DataSetResult resultSet = ElasticSearchUtils.extractFieldValue(sqlToyContext, sqlToyConfig, json, fields);
+		if (resultSet.getRows().isEmpty()) {
+			return resultSet;
+		}
 		MongoElasticUtils.processTranslate(sqlToyContext, sqlToyConfig, resultSet.getRows(), resultSet.getLabelNames());
 
 		// 不支持指定查询集合的行列转换
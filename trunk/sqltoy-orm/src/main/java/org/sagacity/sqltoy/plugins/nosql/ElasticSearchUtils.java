@@ -3,6 +3,7 @@
  */
 package org.sagacity.sqltoy.plugins.nosql;
 
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -27,12 +28,14 @@ import org.slf4j.LoggerFactory;
 
 import com.alibaba.fastjson.JSONArray;
 import com.alibaba.fastjson.JSONObject;
+import com.alibaba.fastjson.JSONReader;
 
 /**
  * @project sagacity-sqltoy4.1
  * @description 提供es执行过程处理的工具方法
  * @author zhongxuchen
  * @version v1.0,Date:2018年1月8日
+ * @modify Date:2021-05-16 {增加流式提取hits记录,避免一次性构造整个返回结果的JSON对象}
  */
 public class ElasticSearchUtils {
 	/**
@@ -195,6 +198,90 @@ public class ElasticSearchUtils {
 		return resultModel;
 	}
 
+	/**
+	 * @todo 从返回结果流中提取数据,hits记录逐条解析并转成行数据,不在内存中构造完整的JSON对象
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param reader
+	 * @param fields
+	 * @return
+	 */
+	public static DataSetResult extractFieldValue(SqlToyContext sqlToyContext, SqlToyConfig sqlToyConfig,
+			Reader reader, String[] fields) {
+		if (reader == null) {
+			return new DataSetResult();
+		}
+		NoSqlConfigModel nosqlConfig = sqlToyConfig.getNoSqlConfigModel();
+		JSONReader jsonReader = new JSONReader(reader);
+		try {
+			// 聚合或自定义取值路径,依然整体解析
+			if (nosqlConfig.isHasAggs() || nosqlConfig.getValueRoot() != null) {
+				JSONObject json = jsonReader.readObject(JSONObject.class);
+				HttpClientUtils.checkError(nosqlConfig, json);
+				if (json == null || json.isEmpty()) {
+					return new DataSetResult();
+				}
+				return extractFieldValue(sqlToyContext, sqlToyConfig, json, fields);
+			}
+			DataSetResult resultModel = new DataSetResult();
+			NoSqlFieldsModel fieldModel = MongoElasticUtils.processFields(fields, null);
+			String[] realFields = fieldModel.getFields();
+			List result = null;
+			// hits之外的属性(aggregations、suggest、error等)
+			JSONObject others = new JSONObject();
+			String key;
+			Object total;
+			JSONObject rowJson;
+			jsonReader.startObject();
+			while (jsonReader.hasNext()) {
+				key = jsonReader.readString();
+				if (!"hits".equals(key)) {
+					others.put(key, jsonReader.readObject());
+					continue;
+				}
+				jsonReader.startObject();
+				while (jsonReader.hasNext()) {
+					key = jsonReader.readString();
+					if ("total".equals(key)) {
+						// 设置总记录数量
+						total = jsonReader.readObject();
+						if (total instanceof JSONObject) {
+							resultModel.setRecordCount(((JSONObject) total).getLong("value"));
+						} else if (total != null) {
+							resultModel.setRecordCount(Long.parseLong(total.toString()));
+						}
+					} else if ("hits".equals(key)) {
+						result = new ArrayList();
+						jsonReader.startArray();
+						while (jsonReader.hasNext()) {
+							rowJson = jsonReader.readObject(JSONObject.class);
+							// 非聚合,数据取_source
+							addRow(result, rowJson.getJSONObject("_source"), realFields);
+						}
+						jsonReader.endArray();
+					} else {
+						jsonReader.readObject();
+					}
+				}
+				jsonReader.endObject();
+			}
+			jsonReader.endObject();
+			HttpClientUtils.checkError(nosqlConfig, others);
+			if (others.getJSONObject("aggregations") != null) {
+				return extractAggsFieldValue(sqlToyContext, sqlToyConfig, others, fields);
+			} else if (others.containsKey("suggest")) {
+				return extractSuggestFieldValue(sqlToyContext, sqlToyConfig, others, fields);
+			}
+			if (result != null) {
+				resultModel.setRows(result);
+				resultModel.setLabelNames(fieldModel.getAliasLabels());
+			}
+			return resultModel;
+		} finally {
+			jsonReader.close();
+		}
+	}
+
 	/**
 	 * @todo 提取聚合数据
 	 * @param sqlToyContext
@@ -0,0 +1,32 @@
+/**
+ * 
+ */
+package org.sagacity.sqltoy.plugins.sampling;
+
+import org.sagacity.sqltoy.config.model.SqlToyConfig;
+import org.sagacity.sqltoy.model.RandomSampleMode;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 取随机记录的抽样策略,根据数据库类型、总记录数和需提取的记录数选择抽样方式,开发者可通过SqlToyContext替换
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public interface RandomSampleStrategy {
+	/**
+	 * @todo 是否启用抽样策略(启用时会先查询总记录数),不启用则沿用数据库方言的随机方式
+	 * @param dbType
+	 * @return
+	 */
+	public boolean isEnabled(Integer dbType);
+
+	/**
+	 * @todo 选择抽样方式
+	 * @param dbType
+	 * @param sqlToyConfig
+	 * @param totalCount   总记录数
+	 * @param randomCount  需提取的随机记录数(小于总记录数)
+	 * @return
+	 */
+	public RandomSampleMode choose(Integer dbType, SqlToyConfig sqlToyConfig, long totalCount, long randomCount);
+}
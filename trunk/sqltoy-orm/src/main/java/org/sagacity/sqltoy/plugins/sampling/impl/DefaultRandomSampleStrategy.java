@@ -0,0 +1,61 @@
+/**
+ *
+ */
+package org.sagacity.sqltoy.plugins.sampling.impl;
+
+import org.sagacity.sqltoy.SqlToyConstants;
+import org.sagacity.sqltoy.config.model.SqlToyConfig;
+import org.sagacity.sqltoy.dialect.utils.RandomSampleUtils;
+import org.sagacity.sqltoy.model.RandomSampleMode;
+import org.sagacity.sqltoy.plugins.sampling.RandomSampleStrategy;
+import org.sagacity.sqltoy.utils.DataSourceUtils.DBType;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 默认抽样策略:大表小比例单表查询用TABLESAMPLE,少量记录用行号定位,较大比例顺序抽样,其余沿用数据库方言
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class DefaultRandomSampleStrategy implements RandomSampleStrategy {
+	/**
+	 * 使用TABLESAMPLE的最小总记录数
+	 */
+	private final static long TABLESAMPLE_MIN_TOTAL = 100000;
+
+	/**
+	 * 使用TABLESAMPLE的最大抽取比例
+	 */
+	private final static double TABLESAMPLE_MAX_RATIO = 0.01;
+
+	/**
+	 * 顺序抽样的最小抽取比例(比例过小时需读取的记录过多)
+	 */
+	private final static double STREAM_MIN_RATIO = 0.1;
+
+	@Override
+	public boolean isEnabled(Integer dbType) {
+		// sybase iq 已经按总记录数产生随机行号
+		if (dbType == DBType.SYBASE_IQ) {
+			return false;
+		}
+		return !"dialect".equalsIgnoreCase(SqlToyConstants.getRandomSampleStrategy());
+	}
+
+	@Override
+	public RandomSampleMode choose(Integer dbType, SqlToyConfig sqlToyConfig, long totalCount, long randomCount) {
+		double ratio = (double) randomCount / totalCount;
+		if (totalCount >= TABLESAMPLE_MIN_TOTAL && ratio <= TABLESAMPLE_MAX_RATIO
+				&& RandomSampleUtils.isSupportTableSample(dbType) && !sqlToyConfig.isHasFast()
+				&& !sqlToyConfig.isHasWith() && RandomSampleUtils.isTableSampleSql(sqlToyConfig.getSql())) {
+			return RandomSampleMode.TABLESAMPLE;
+		}
+		if (!sqlToyConfig.isHasFast() && RandomSampleUtils.isSupportRowNumber(dbType)
+				&& randomCount <= RandomSampleUtils.getMaxPositions(dbType)) {
+			return RandomSampleMode.ROW_NUMBER;
+		}
+		if (ratio >= STREAM_MIN_RATIO) {
+			return RandomSampleMode.STREAM;
+		}
+		return RandomSampleMode.DIALECT;
+	}
+}
@@ -0,0 +1,784 @@
+package org.sagacity.sqltoy.plugins.sharding;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.sagacity.sqltoy.config.model.SqlWithAnalysis;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 分散查询(scatter-gather)结果归并:解析sql最外层查询字段、group by、order by,
+ *              按order by对各分片有序结果做k路归并,group by/distinct按分组合并,count/sum/min/max/avg跨分片合并(avg改写为sum和count);
+ *              字符串的排序、分组以及min/max按数据库默认排序规则是否区分大小写(ignoreCase)进行比较,与单库查询保持一致
+ *              (重音不敏感等其他排序规则差异仍需在sql中统一处理)
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class ShardingQueryUtils {
+	/**
+	 * 聚合函数类型
+	 */
+	public static final int NONE = -1;
+	public static final int COUNT = 0;
+	public static final int SUM = 1;
+	public static final int MIN = 2;
+	public static final int MAX = 3;
+	public static final int AVG = 4;
+
+	private static final String[] AGG_NAMES = { "count", "sum", "min", "max", "avg" };
+
+	private static final Pattern SELECT_PATTERN = Pattern.compile("(^|\\W)select\\s");
+	private static final Pattern FROM_PATTERN = Pattern.compile("\\sfrom[\\s\\(]");
+	private static final Pattern UNION_PATTERN = Pattern.compile("\\Wunion(\\s+all)?\\W");
+	private static final Pattern GROUP_BY_PATTERN = Pattern.compile("\\Wgroup\\s+by\\W");
+	private static final Pattern HAVING_PATTERN = Pattern.compile("\\Whaving\\W");
+	private static final Pattern ORDER_BY_PATTERN = Pattern.compile("\\Worder\\s+by\\W");
+	private static final Pattern ORDER_END_PATTERN = Pattern
+			.compile("\\W(limit|offset|fetch|for\\s+update|for\\s+share)\\W");
+
+	/**
+	 * 单个聚合函数构成的查询字段(括号内容已经被掩盖)
+	 */
+	private static final Pattern AGG_COLUMN_PATTERN = Pattern.compile("^(count|sum|min|max|avg)\\s*\\(\\s*\\)$");
+	private static final Pattern AGG_FUNCTION_PATTERN = Pattern.compile("(^|[^\\w\\.])(count|sum|min|max|avg)\\s*\\(");
+	private static final Pattern ALIAS_PATTERN = Pattern.compile("(?s)^(.*\\S)\\s+(as\\s+)?([\\w\"`\\[\\]\\$#]+)$");
+
+	private ShardingQueryUtils() {
+	}
+
+	/**
+	 * @TODO 解析sql获取归并模型,存在无法跨分片正确合并的聚合(如count(distinct)、having、聚合表达式)时抛出异常
+	 * @param sql
+	 * @param hasWith
+	 * @return
+	 */
+	public static MergeModel parseMerge(String sql, boolean hasWith) {
+		MergeModel model = new MergeModel();
+		String withSql = "";
+		String querySql = sql;
+		if (hasWith) {
+			SqlWithAnalysis sqlWith = new SqlWithAnalysis(sql);
+			withSql = sqlWith.getWithSql().concat(" ");
+			querySql = sqlWith.getRejectWithSql();
+		}
+		String masked = mask(querySql).toLowerCase();
+		Matcher matcher = SELECT_PATTERN.matcher(masked);
+		if (!matcher.find()) {
+			return model;
+		}
+		int selectEnd = matcher.end();
+		matcher = FROM_PATTERN.matcher(masked);
+		if (!matcher.find(selectEnd)) {
+			return model;
+		}
+		int fromIndex = matcher.start();
+		int firstFrom = fromIndex;
+		matcher = UNION_PATTERN.matcher(masked);
+		boolean hasUnion = false;
+		while (matcher.find(fromIndex)) {
+			hasUnion = true;
+			// union(非union all)需要跨分片去重
+			if (matcher.group(1) == null) {
+				model.groupMerge = true;
+			}
+			fromIndex = matcher.end();
+		}
+		// 最外层order by
+		int orderIndex = lastIndex(masked, ORDER_BY_PATTERN, fromIndex);
+		int tailIndex = (orderIndex == -1) ? masked.length() : orderIndex;
+		int groupIndex = lastIndex(masked.substring(0, tailIndex), GROUP_BY_PATTERN, fromIndex);
+		if (orderIndex != -1) {
+			matcher = ORDER_END_PATTERN.matcher(masked);
+			int orderEnd = matcher.find(orderIndex + 1) ? matcher.start() + 1 : masked.length();
+			parseOrders(model, querySql.substring(orderIndex + 1, orderEnd).trim().replaceFirst("(?i)^order\\s+by\\s+",
+					""), mask(querySql.substring(orderIndex + 1, orderEnd)).trim().replaceFirst("(?i)^order\\s+by\\s+",
+							""));
+		}
+		if (hasUnion) {
+			parseColumns(model, querySql, masked, selectEnd, firstFrom);
+			if (model.aggregate) {
+				throw new IllegalArgumentException("分散查询不支持union与聚合函数组合的查询,sql=" + sql);
+			}
+			return model;
+		}
+		// select distinct
+		String selectMasked = masked.substring(selectEnd, fromIndex);
+		int columnStart = selectEnd;
+		Matcher distinct = Pattern.compile("^\\s*distinct\\s").matcher(selectMasked);
+		if (distinct.find()) {
+			model.groupMerge = true;
+			columnStart = selectEnd + distinct.end();
+		}
+		parseColumns(model, querySql, masked, columnStart, fromIndex);
+		if (groupIndex != -1) {
+			model.groupMerge = true;
+			if (HAVING_PATTERN.matcher(masked.substring(groupIndex, tailIndex)).find()) {
+				throw new IllegalArgumentException("分散查询不支持having条件(各分片的分组为部分数据),sql=" + sql);
+			}
+		}
+		if (model.aggregate && model.hasStar) {
+			throw new IllegalArgumentException("分散查询中聚合函数不能与*同时作为查询字段,sql=" + sql);
+		}
+		// avg改写为sum,并在查询字段末尾追加count
+		if (model.avgCount > 0) {
+			StringBuilder rewrite = new StringBuilder(withSql);
+			rewrite.append(querySql.substring(0, columnStart));
+			StringBuilder hidden = new StringBuilder();
+			String column;
+			int avgIndex = 0;
+			for (int i = 0; i < model.columnSize; i++) {
+				column = model.columnTexts[i];
+				if (i > 0) {
+					rewrite.append(",");
+				}
+				if (model.aggTypes[i] == AVG) {
+					int funIndex = column.toLowerCase().indexOf("avg");
+					String inner = model.aggArgs[i];
+					if (inner.indexOf(":") != -1 || inner.indexOf("?") != -1) {
+						throw new IllegalArgumentException("分散查询avg函数中不能包含参数,sql=" + sql);
+					}
+					rewrite.append(column.substring(0, funIndex)).append("sum").append(column.substring(funIndex + 3));
+					hidden.append(",count(").append(inner).append(") sag_avg_cnt").append(avgIndex);
+					model.avgCountIndexes[i] = model.columnSize + avgIndex;
+					avgIndex++;
+				} else {
+					rewrite.append(column);
+				}
+			}
+			rewrite.append(hidden).append(querySql.substring(fromIndex));
+			model.rewriteSql = rewrite.toString();
+		}
+		return model;
+	}
+
+	/**
+	 * @TODO 归并各分片的完整结果:聚合或分组则合并分组并按order by排序,有order by则k路归并,否则依次拼接
+	 * @param model
+	 * @param shardRows  各分片的结果(各分片内已经按order by排序)
+	 * @param labelNames
+	 * @param nullsLast  数据库升序时null是否排在最后
+	 * @param ignoreCase 数据库排序规则是否不区分大小写(如mysql的*_ci)
+	 * @return
+	 */
+	public static List merge(MergeModel model, List<List> shardRows, String[] labelNames, boolean nullsLast,
+			boolean ignoreCase) {
+		Comparator<List> comparator = getComparator(model, labelNames, nullsLast, ignoreCase);
+		if (model.groupMerge || model.aggregate) {
+			List result = mergeGroups(model, shardRows, labelNames, ignoreCase);
+			if (comparator != null) {
+				Collections.sort(result, comparator);
+			}
+			return result;
+		}
+		if (comparator != null) {
+			return mergeSorted(shardRows, comparator, Integer.MAX_VALUE);
+		}
+		List result = new ArrayList();
+		for (List rows : shardRows) {
+			if (rows != null) {
+				result.addAll(rows);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 从各分片前(offset+size)条记录中归并出全局[offset,offset+size)的记录
+	 * @param model
+	 * @param shardRows  各分片的前offset+size条记录
+	 * @param shardCounts 各分片的总记录数(无order by时按分片顺序拼接定位)
+	 * @param labelNames
+	 * @param nullsLast
+	 * @param ignoreCase
+	 * @param offset
+	 * @param size
+	 * @return
+	 */
+	public static List mergePage(MergeModel model, List<List> shardRows, long[] shardCounts, String[] labelNames,
+			boolean nullsLast, boolean ignoreCase, long offset, int size) {
+		Comparator<List> comparator = getComparator(model, labelNames, nullsLast, ignoreCase);
+		List result = new ArrayList();
+		if (comparator != null) {
+			List merged = mergeSorted(shardRows, comparator, offset + size);
+			for (long i = offset; i < merged.size(); i++) {
+				result.add(merged.get((int) i));
+			}
+			return result;
+		}
+		// 无排序:等同于各分片结果依次拼接后截取
+		long preCount = 0;
+		long end = offset + size;
+		List rows;
+		for (int i = 0; i < shardRows.size() && preCount < end; i++) {
+			rows = shardRows.get(i);
+			if (rows != null) {
+				for (long j = Math.max(offset - preCount, 0); j < rows.size() && preCount + j < end; j++) {
+					result.add(rows.get((int) j));
+				}
+			}
+			preCount += shardCounts[i];
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 剔除avg改写后追加的count列标题
+	 * @param model
+	 * @param labels
+	 * @return
+	 */
+	public static String[] trimLabels(MergeModel model, String[] labels) {
+		if (labels == null || model.avgCount == 0 || labels.length <= model.columnSize) {
+			return labels;
+		}
+		String[] result = new String[model.columnSize];
+		System.arraycopy(labels, 0, result, 0, model.columnSize);
+		return result;
+	}
+
+	/**
+	 * @TODO 按order by对各分片有序结果进行k路归并
+	 * @param shardRows
+	 * @param comparator
+	 * @param limit      最多归并的记录数
+	 * @return
+	 */
+	private static List mergeSorted(final List<List> shardRows, final Comparator<List> comparator, long limit) {
+		// {分片序号,记录位置}
+		PriorityQueue<int[]> queue = new PriorityQueue<int[]>(Math.max(shardRows.size(), 1), (a, b) -> {
+			int result = comparator.compare((List) shardRows.get(a[0]).get(a[1]),
+					(List) shardRows.get(b[0]).get(b[1]));
+			return (result != 0) ? result : a[0] - b[0];
+		});
+		for (int i = 0; i < shardRows.size(); i++) {
+			if (shardRows.get(i) != null && !shardRows.get(i).isEmpty()) {
+				queue.add(new int[] { i, 0 });
+			}
+		}
+		List result = new ArrayList();
+		int[] cursor;
+		while (!queue.isEmpty() && result.size() < limit) {
+			cursor = queue.poll();
+			result.add(shardRows.get(cursor[0]).get(cursor[1]));
+			if (cursor[1] + 1 < shardRows.get(cursor[0]).size()) {
+				queue.add(new int[] { cursor[0], cursor[1] + 1 });
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 分组合并,非聚合字段作为分组key,聚合字段按类型合并
+	 * @param model
+	 * @param shardRows
+	 * @param labelNames
+	 * @param ignoreCase 不区分大小写时字符串按统一大小写后分组
+	 * @return
+	 */
+	private static List mergeGroups(MergeModel model, List<List> shardRows, String[] labelNames,
+			boolean ignoreCase) {
+		boolean aggregate = model.aggregate;
+		if (aggregate && labelNames != null && labelNames.length != model.columnSize + model.avgCount) {
+			throw new IllegalArgumentException("分散查询结果列数:" + labelNames.length + " 与查询字段数量:"
+					+ (model.columnSize + model.avgCount) + " 不一致,无法合并聚合结果!");
+		}
+		LinkedHashMap<List, Object[]> groups = new LinkedHashMap<List, Object[]>();
+		List row;
+		List key;
+		Object[] group;
+		for (List rows : shardRows) {
+			if (rows == null) {
+				continue;
+			}
+			for (Object item : rows) {
+				row = (List) item;
+				key = new ArrayList();
+				for (int i = 0; i < row.size(); i++) {
+					if (!aggregate || (i < model.columnSize && model.aggTypes[i] == NONE)) {
+						key.add(groupValue(row.get(i), ignoreCase));
+					}
+				}
+				group = groups.get(key);
+				if (group == null) {
+					groups.put(key, row.toArray());
+				} else if (aggregate) {
+					for (int i = 0; i < model.columnSize; i++) {
+						switch (model.aggTypes[i]) {
+						case COUNT:
+						case SUM:
+							group[i] = add(group[i], row.get(i));
+							break;
+						case AVG:
+							group[i] = add(group[i], row.get(i));
+							group[model.avgCountIndexes[i]] = add(group[model.avgCountIndexes[i]],
+									row.get(model.avgCountIndexes[i]));
+							break;
+						case MIN:
+							if (group[i] == null || (row.get(i) != null && compareValue(row.get(i), group[i], ignoreCase) < 0)) {
+								group[i] = row.get(i);
+							}
+							break;
+						case MAX:
+							if (group[i] == null || (row.get(i) != null && compareValue(row.get(i), group[i], ignoreCase) > 0)) {
+								group[i] = row.get(i);
+							}
+							break;
+						default:
+							break;
+						}
+					}
+				}
+			}
+		}
+		List result = new ArrayList(groups.size());
+		List<Object> mergeRow;
+		for (Object[] values : groups.values()) {
+			int size = aggregate ? model.columnSize : values.length;
+			mergeRow = new ArrayList<Object>(size);
+			for (int i = 0; i < size; i++) {
+				if (aggregate && model.aggTypes[i] == AVG) {
+					mergeRow.add(divide(values[i], values[model.avgCountIndexes[i]]));
+				} else {
+					mergeRow.add(values[i]);
+				}
+			}
+			result.add(mergeRow);
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 按order by构造记录比较器,order by字段必须能对应到查询结果列
+	 * @param model
+	 * @param labelNames
+	 * @param nullsLast
+	 * @param ignoreCase
+	 * @return 无order by返回null
+	 */
+	private static Comparator<List> getComparator(MergeModel model, String[] labelNames, boolean nullsLast,
+			final boolean ignoreCase) {
+		if (model.orderItems.isEmpty()) {
+			return null;
+		}
+		final int size = model.orderItems.size();
+		final int[] indexes = new int[size];
+		final boolean[] descs = new boolean[size];
+		final boolean[] nullsFirsts = new boolean[size];
+		OrderItem item;
+		for (int i = 0; i < size; i++) {
+			item = model.orderItems.get(i);
+			indexes[i] = resolveColumn(model, item.expression, labelNames);
+			if (indexes[i] == -1) {
+				throw new IllegalArgumentException("分散查询order by字段:" + item.expression + " 必须出现在查询结果列中!");
+			}
+			descs[i] = item.desc;
+			// 未显式指定nulls first/last,按数据库默认(升序null最大则降序时null在前)
+			nullsFirsts[i] = (item.nullsFirst != null) ? item.nullsFirst : (nullsLast == item.desc);
+		}
+		return (a, b) -> {
+			Object va;
+			Object vb;
+			int result;
+			for (int i = 0; i < size; i++) {
+				va = a.get(indexes[i]);
+				vb = b.get(indexes[i]);
+				if (va == null || vb == null) {
+					if (va == vb) {
+						continue;
+					}
+					return (va == null) == nullsFirsts[i] ? -1 : 1;
+				}
+				result = compareValue(va, vb, ignoreCase);
+				if (result != 0) {
+					return descs[i] ? -result : result;
+				}
+			}
+			return 0;
+		};
+	}
+
+	/**
+	 * @TODO order by字段对应的结果列:序号、查询字段别名或表达式、结果列标题(忽略大小写和下划线)
+	 * @param model
+	 * @param expression
+	 * @param labelNames
+	 * @return
+	 */
+	private static int resolveColumn(MergeModel model, String expression, String[] labelNames) {
+		String expr = expression.trim();
+		if (expr.matches("\\d+")) {
+			return Integer.parseInt(expr) - 1;
+		}
+		String exprLow = normalize(expr);
+		if (!model.hasStar) {
+			for (int i = 0; i < model.columnSize; i++) {
+				if ((model.aliases[i] != null && normalize(model.aliases[i]).equals(exprLow))
+						|| normalize(model.expressions[i]).equals(exprLow)) {
+					return i;
+				}
+			}
+		}
+		if (labelNames == null) {
+			return -1;
+		}
+		String name = exprLow.substring(exprLow.lastIndexOf(".") + 1);
+		for (int i = 0; i < labelNames.length; i++) {
+			if (labelNames[i] != null && labelNames[i].equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		name = name.replace("_", "");
+		for (int i = 0; i < labelNames.length; i++) {
+			if (labelNames[i] != null && labelNames[i].replace("_", "").equalsIgnoreCase(name)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	private static String normalize(String expression) {
+		return expression.replaceAll("[\"`\\[\\]]", "").replaceAll("\\s+", "").toLowerCase();
+	}
+
+	/**
+	 * @TODO 解析最外层查询字段
+	 */
+	private static void parseColumns(MergeModel model, String sql, String masked, int start, int end) {
+		List<int[]> ranges = new ArrayList<int[]>();
+		int from = start;
+		for (int i = start; i < end; i++) {
+			if (masked.charAt(i) == ',') {
+				ranges.add(new int[] { from, i });
+				from = i + 1;
+			}
+		}
+		ranges.add(new int[] { from, end });
+		int size = ranges.size();
+		model.columnSize = size;
+		model.columnTexts = new String[size];
+		model.expressions = new String[size];
+		model.aliases = new String[size];
+		model.aggTypes = new int[size];
+		model.aggArgs = new String[size];
+		model.avgCountIndexes = new int[size];
+		String column;
+		String columnMasked;
+		String expression;
+		String expressionMasked;
+		Matcher matcher;
+		for (int i = 0; i < size; i++) {
+			column = sql.substring(ranges.get(i)[0], ranges.get(i)[1]);
+			columnMasked = masked.substring(ranges.get(i)[0], ranges.get(i)[1]);
+			model.columnTexts[i] = column;
+			model.aggTypes[i] = NONE;
+			model.avgCountIndexes[i] = -1;
+			String trimMasked = columnMasked.trim();
+			if (trimMasked.equals("*") || trimMasked.endsWith(".*")) {
+				model.hasStar = true;
+			}
+			// 别名
+			int leading = columnMasked.length() - columnMasked.replaceAll("^\\s+", "").length();
+			expression = column.trim();
+			expressionMasked = trimMasked;
+			matcher = ALIAS_PATTERN.matcher(trimMasked);
+			if (matcher.matches() && !"end".equals(matcher.group(3))
+					&& (matcher.group(2) != null || !matcher.group(1).matches("(?s).*[\\+\\-\\*/%\\|=<>]$"))) {
+				expression = column.substring(leading, leading + matcher.end(1)).trim();
+				expressionMasked = trimMasked.substring(0, matcher.end(1)).trim();
+				model.aliases[i] = column.substring(leading + matcher.start(3), leading + matcher.end(3))
+						.replaceAll("[\"`\\[\\]]", "");
+			}
+			model.expressions[i] = expression;
+			// 聚合函数
+			matcher = AGG_COLUMN_PATTERN.matcher(expressionMasked);
+			if (matcher.matches()) {
+				String arg = expression.substring(expression.indexOf("(") + 1, expression.lastIndexOf(")")).trim();
+				int type = indexOf(AGG_NAMES, matcher.group(1));
+				if (type != MIN && type != MAX && arg.toLowerCase().matches("(?s)^distinct\\W.*")) {
+					throw new IllegalArgumentException("分散查询不支持" + matcher.group(1) + "(distinct)跨分片合并,sql=" + sql);
+				}
+				model.aggTypes[i] = type;
+				model.aggArgs[i] = arg;
+				model.aggregate = true;
+				if (type == AVG) {
+					model.avgCount++;
+				}
+			} else if (AGG_FUNCTION_PATTERN.matcher(expression.toLowerCase()).find()
+					&& !expression.toLowerCase().matches("(?s).*\\Wselect\\W.*")) {
+				throw new IllegalArgumentException("分散查询不支持聚合函数参与运算的查询字段:" + expression + ",sql=" + sql);
+			}
+		}
+	}
+
+	/**
+	 * @TODO 解析order by字段
+	 */
+	private static void parseOrders(MergeModel model, String orderSql, String orderMasked) {
+		int from = 0;
+		List<String> items = new ArrayList<String>();
+		for (int i = 0; i < orderMasked.length() && i < orderSql.length(); i++) {
+			if (orderMasked.charAt(i) == ',') {
+				items.add(orderSql.substring(from, i));
+				from = i + 1;
+			}
+		}
+		items.add(orderSql.substring(from));
+		String expression;
+		String lower;
+		OrderItem item;
+		for (String text : items) {
+			expression = text.trim();
+			if (expression.equals("")) {
+				continue;
+			}
+			item = new OrderItem();
+			lower = expression.toLowerCase();
+			if (lower.matches("(?s).*\\s+nulls\\s+first$")) {
+				item.nullsFirst = true;
+				expression = expression.replaceFirst("(?is)\\s+nulls\\s+first$", "");
+			} else if (lower.matches("(?s).*\\s+nulls\\s+last$")) {
+				item.nullsFirst = false;
+				expression = expression.replaceFirst("(?is)\\s+nulls\\s+last$", "");
+			}
+			lower = expression.toLowerCase();
+			if (lower.matches("(?s).*\\s+desc$")) {
+				item.desc = true;
+				expression = expression.replaceFirst("(?is)\\s+desc$", "");
+			} else if (lower.matches("(?s).*\\s+asc$")) {
+				expression = expression.replaceFirst("(?is)\\s+asc$", "");
+			}
+			item.expression = expression.trim();
+			model.orderItems.add(item);
+		}
+	}
+
+	/**
+	 * @TODO 将单引号字符串和括号内的内容替换成空白(长度不变),便于定位最外层关键词
+	 * @param sql
+	 * @return
+	 */
+	private static String mask(String sql) {
+		char[] chars = sql.toCharArray();
+		int depth = 0;
+		boolean quote = false;
+		for (int i = 0; i < chars.length; i++) {
+			if (quote) {
+				if (chars[i] == '\'') {
+					quote = false;
+				}
+				chars[i] = ' ';
+			} else if (chars[i] == '\'') {
+				quote = true;
+				chars[i] = ' ';
+			} else if (chars[i] == '(') {
+				if (depth > 0) {
+					chars[i] = ' ';
+				}
+				depth++;
+			} else if (chars[i] == ')') {
+				depth--;
+				if (depth > 0) {
+					chars[i] = ' ';
+				}
+			} else if (depth > 0) {
+				chars[i] = ' ';
+			}
+		}
+		return new String(chars);
+	}
+
+	private static int lastIndex(String source, Pattern pattern, int start) {
+		Matcher matcher = pattern.matcher(source);
+		int index = -1;
+		int from = start;
+		while (from < source.length() && matcher.find(from)) {
+			index = matcher.start();
+			from = matcher.start() + 1;
+		}
+		return index;
+	}
+
+	private static int indexOf(String[] values, String value) {
+		for (int i = 0; i < values.length; i++) {
+			if (values[i].equals(value)) {
+				return i;
+			}
+		}
+		return NONE;
+	}
+
+	/**
+	 * @TODO 比较两个非null值:数字按数值,日期按时间,字符串按是否区分大小写比较,同类型Comparable直接比较,否则按字符串
+	 */
+	private static int compareValue(Object a, Object b, boolean ignoreCase) {
+		if (a instanceof Number && b instanceof Number) {
+			if ((a instanceof Long || a instanceof Integer) && (b instanceof Long || b instanceof Integer)) {
+				return Long.compare(((Number) a).longValue(), ((Number) b).longValue());
+			}
+			return toBigDecimal(a).compareTo(toBigDecimal(b));
+		}
+		if (a instanceof Date && b instanceof Date) {
+			return Long.compare(((Date) a).getTime(), ((Date) b).getTime());
+		}
+		if (ignoreCase && a instanceof String && b instanceof String) {
+			return String.CASE_INSENSITIVE_ORDER.compare((String) a, (String) b);
+		}
+		if (a instanceof Comparable && a.getClass().equals(b.getClass())) {
+			return ((Comparable) a).compareTo(b);
+		}
+		return a.toString().compareTo(b.toString());
+	}
+
+	/**
+	 * @TODO 分组key的值,不区分大小写时字符串统一大小写(与String.CASE_INSENSITIVE_ORDER相等判定一致)
+	 */
+	private static Object groupValue(Object value, boolean ignoreCase) {
+		if (ignoreCase && value instanceof String) {
+			char[] chars = ((String) value).toCharArray();
+			for (int i = 0; i < chars.length; i++) {
+				chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+			}
+			return new String(chars);
+		}
+		return value;
+	}
+
+	private static BigDecimal toBigDecimal(Object value) {
+		if (value instanceof BigDecimal) {
+			return (BigDecimal) value;
+		}
+		return new BigDecimal(value.toString());
+	}
+
+	/**
+	 * @TODO 数值相加,结果保持第一个非null值的数据类型
+	 */
+	private static Object add(Object a, Object b) {
+		if (a == null) {
+			return b;
+		}
+		if (b == null) {
+			return a;
+		}
+		if ((a instanceof Long || a instanceof Integer || a instanceof Short)
+				&& (b instanceof Long || b instanceof Integer || b instanceof Short)) {
+			long sum = ((Number) a).longValue() + ((Number) b).longValue();
+			if (a instanceof Integer && sum <= Integer.MAX_VALUE && sum >= Integer.MIN_VALUE) {
+				return (int) sum;
+			}
+			return sum;
+		}
+		BigDecimal sum = toBigDecimal(a).add(toBigDecimal(b));
+		if (a instanceof Double) {
+			return sum.doubleValue();
+		}
+		if (a instanceof Float) {
+			return sum.floatValue();
+		}
+		if (a instanceof BigInteger) {
+			return sum.toBigInteger();
+		}
+		return sum;
+	}
+
+	private static Object divide(Object sum, Object count) {
+		if (sum == null || count == null) {
+			return null;
+		}
+		BigDecimal countValue = toBigDecimal(count);
+		if (countValue.signum() == 0) {
+			return null;
+		}
+		return toBigDecimal(sum).divide(countValue, MathContext.DECIMAL64);
+	}
+
+	/**
+	 * @description order by字段
+	 */
+	private static class OrderItem {
+		private String expression;
+		private boolean desc = false;
+		private Boolean nullsFirst;
+	}
+
+	/**
+	 * @description 分散查询的结果归并模型
+	 */
+	public static class MergeModel {
+		/**
+		 * 查询字段数量
+		 */
+		private int columnSize = 0;
+
+		private String[] columnTexts;
+
+		private String[] expressions;
+
+		private String[] aliases;
+
+		/**
+		 * 每个查询字段的聚合类型
+		 */
+		private int[] aggTypes;
+
+		private String[] aggArgs;
+
+		/**
+		 * avg字段对应的追加count列位置
+		 */
+		private int[] avgCountIndexes;
+
+		private int avgCount = 0;
+
+		private boolean aggregate = false;
+
+		/**
+		 * 需要跨分片按分组合并(group by、distinct、union)
+		 */
+		private boolean groupMerge = false;
+
+		private boolean hasStar = false;
+
+		private List<OrderItem> orderItems = new ArrayList<OrderItem>();
+
+		/**
+		 * avg改写后的sql
+		 */
+		private String rewriteSql;
+
+		/**
+		 * @TODO 结果需要各分片完整数据进行合并(无法下推limit)
+		 * @return
+		 */
+		public boolean isFullMerge() {
+			return groupMerge || aggregate;
+		}
+
+		public boolean isAggregate() {
+			return aggregate;
+		}
+
+		public boolean isGroupMerge() {
+			return groupMerge;
+		}
+
+		public boolean hasOrder() {
+			return !orderItems.isEmpty();
+		}
+
+		public String getRewriteSql() {
+			return rewriteSql;
+		}
+	}
+}
@@ -3,6 +3,9 @@
  */
 package org.sagacity.sqltoy.plugins.sharding;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.model.IgnoreCaseLinkedMap;
 import org.sagacity.sqltoy.model.ShardingDBModel;
@@ -12,6 +15,7 @@ import org.sagacity.sqltoy.model.ShardingDBModel;
  * @description sharding 策略接口
  * @author zhongxuchen
  * @version v1.0,Date:2015年3月17日
+ * @modify Date:2021-05-20 {增加getShardingDBs、getShardingTables,为分散查询提供全部(或按参数裁剪后的)分片}
  */
 public interface ShardingStrategy {
 	/**
@@ -38,6 +42,42 @@ public interface ShardingStrategy {
 	public ShardingDBModel getShardingDB(SqlToyContext sqlToyContext, Class entityClass, String tableOrSql,
 			String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap);
 
+	/**
+	 * @TODO 分散查询时获取需要查询的全部分表,参数足以定位单表时应返回单表以裁剪查询范围,默认按getShardingTable返回单表
+	 * @param sqlToyContext
+	 * @param entityClass
+	 * @param baseTableName
+	 * @param decisionType
+	 * @param paramsMap
+	 * @return 实际表名集合
+	 */
+	public default List<String> getShardingTables(SqlToyContext sqlToyContext, Class entityClass,
+			String baseTableName, String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		List<String> result = new ArrayList<String>();
+		String table = getShardingTable(sqlToyContext, entityClass, baseTableName, decisionType, paramsMap);
+		result.add((table == null || "".equals(table.trim())) ? baseTableName : table);
+		return result;
+	}
+
+	/**
+	 * @TODO 分散查询时获取需要查询的全部分库,参数足以定位单库时应返回单库以裁剪查询范围,默认按getShardingDB返回单库
+	 * @param sqlToyContext
+	 * @param entityClass
+	 * @param tableOrSql
+	 * @param decisionType
+	 * @param paramsMap
+	 * @return 分库集合,空集合表示使用当前默认的数据源
+	 */
+	public default List<ShardingDBModel> getShardingDBs(SqlToyContext sqlToyContext, Class entityClass,
+			String tableOrSql, String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		List<ShardingDBModel> result = new ArrayList<ShardingDBModel>();
+		ShardingDBModel dbModel = getShardingDB(sqlToyContext, entityClass, tableOrSql, decisionType, paramsMap);
+		if (dbModel != null && (dbModel.getDataSource() != null || dbModel.getDataSourceName() != null)) {
+			result.add(dbModel);
+		}
+		return result;
+	}
+
 	/**
 	 * @TODO 初始化
 	 */
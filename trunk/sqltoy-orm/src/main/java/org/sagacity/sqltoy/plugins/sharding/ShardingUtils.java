@@ -8,6 +8,7 @@ import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -20,12 +21,14 @@ import org.sagacity.sqltoy.config.model.EntityMeta;
 import org.sagacity.sqltoy.config.model.ShardingConfig;
 import org.sagacity.sqltoy.config.model.ShardingStrategyConfig;
 import org.sagacity.sqltoy.config.model.SqlToyConfig;
+import org.sagacity.sqltoy.config.model.SqlType;
 import org.sagacity.sqltoy.executor.QueryExecutor;
 import org.sagacity.sqltoy.model.IgnoreCaseLinkedMap;
 import org.sagacity.sqltoy.model.QueryExecutorExtend;
 import org.sagacity.sqltoy.model.ShardingDBModel;
 import org.sagacity.sqltoy.model.ShardingGroupModel;
 import org.sagacity.sqltoy.model.ShardingModel;
+import org.sagacity.sqltoy.model.ShardingTargetModel;
 import org.sagacity.sqltoy.plugins.id.IdGenerator;
 import org.sagacity.sqltoy.utils.BeanUtil;
 import org.sagacity.sqltoy.utils.StringUtil;
@@ -38,6 +41,9 @@ import org.slf4j.LoggerFactory;
  * @author zhongxuchen
  * @version v1.0,Date:2014年12月7日
  * @modify Date:2016-9-7 {修复matchReplace方法,解决因表名大小写未匹配无法替换表名错误}
+ * @modify Date:2021-05-19 {批量主键赋值按关联字段值分组批量获取,避免逐条调用主键策略}
+ * @modify Date:2021-05-20 {增加分散查询的分片(库、表组合)获取}
+ * @modify Date:2021-05-20 {未指定决策类别的非查询语句按写操作(write)传递给分库策略}
  */
 @SuppressWarnings("rawtypes")
 public class ShardingUtils {
@@ -46,6 +52,21 @@ public class ShardingUtils {
 	 */
 	protected final static Logger logger = LoggerFactory.getLogger(ShardingUtils.class);
 
+	/**
+	 * 写操作的决策类别
+	 */
+	public static final String WRITE = "write";
+
+	/**
+	 * 查询语句(select、with开头)
+	 */
+	private final static Pattern SEARCH_SQL_PATTERN = Pattern.compile("(?i)^[\\s\\(]*(select|with)\\W");
+
+	/**
+	 * 锁定查询
+	 */
+	private final static Pattern FOR_UPDATE_PATTERN = Pattern.compile("(?i)\\Wfor\\s+update\\W*");
+
 	/**
 	 * @todo 单个对象sharding策略处理,适用于load、save、update、delete单对象操作
 	 * @param sqlToyContext
@@ -288,14 +309,35 @@ public class ShardingUtils {
 		} else {
 			realDataMap = valueMap;
 		}
+		String decisionType = shardingConfig.getDecisionType();
+		// 未指定决策类别时,非查询语句(修改、锁定)按写操作处理,供读写分离等策略路由到主库
+		if (StringUtil.isBlank(decisionType) && isWriteSql(sqlToyConfig)) {
+			decisionType = WRITE;
+		}
 		ShardingDBModel shardingDBModel = shardingStrategy.getShardingDB(sqlToyContext, null, sqlToyConfig.getId(),
-				shardingConfig.getDecisionType(), realDataMap);
+				decisionType, realDataMap);
 		if (shardingDBModel.getDataSource() != null) {
 			return shardingDBModel.getDataSource();
 		}
 		return sqlToyContext.getDataSourceBean(shardingDBModel.getDataSourceName());
 	}
 
+	/**
+	 * @TODO 判断sql是否为写操作:sqlType为update、非select/with开头的语句以及select for update
+	 * @param sqlToyConfig
+	 * @return
+	 */
+	public static boolean isWriteSql(SqlToyConfig sqlToyConfig) {
+		if (SqlType.update.equals(sqlToyConfig.getSqlType())) {
+			return true;
+		}
+		String sql = sqlToyConfig.getSql(null);
+		if (sql == null) {
+			return false;
+		}
+		return !SEARCH_SQL_PATTERN.matcher(sql).find() || FOR_UPDATE_PATTERN.matcher(sql).find();
+	}
+
 	/**
 	 * @todo 根据查询条件变更sql后同时修改sqltoyConfig(clone后的对象，不会冲掉原配置)
 	 * @param sqlToyContext
@@ -310,8 +352,18 @@ public class ShardingUtils {
 		if (tableShardings == null || tableShardings.isEmpty()) {
 			return;
 		}
-		HashMap<String, String> shardingTableMap = getShardingTables(sqlToyContext, tableShardings, paramNames,
-				paramValues);
+		replaceShardingSqlToyConfig(sqlToyConfig,
+				getShardingTables(sqlToyContext, tableShardings, paramNames, paramValues), dialect);
+	}
+
+	/**
+	 * @TODO 按照表名对应关系替换sqlToyConfig中的表(clone后的对象，不会冲掉原配置)
+	 * @param sqlToyConfig
+	 * @param shardingTableMap key:sql中的表名,value:实际表名
+	 * @param dialect
+	 */
+	public static void replaceShardingSqlToyConfig(SqlToyConfig sqlToyConfig, Map<String, String> shardingTableMap,
+			String dialect) {
 		if (shardingTableMap == null || shardingTableMap.isEmpty()) {
 			return;
 		}
@@ -459,6 +511,183 @@ public class ShardingUtils {
 		return lastSql.append(tailSql).toString();
 	}
 
+	/**
+	 * @TODO 查询是否需要分散到多个分片执行(分库或分表策略配置了scatter)
+	 * @param sqlToyConfig
+	 * @param queryExecutor
+	 * @return
+	 */
+	public static boolean isScatterQuery(SqlToyConfig sqlToyConfig, QueryExecutor queryExecutor) {
+		QueryExecutorExtend extend = queryExecutor.getInnerModel();
+		ShardingStrategyConfig dbConfig = (extend.dbSharding != null) ? extend.dbSharding
+				: sqlToyConfig.getDataSourceSharding();
+		if (dbConfig != null && dbConfig.isScatter()) {
+			return true;
+		}
+		List<ShardingStrategyConfig> tableShardings = extend.tableShardings.isEmpty()
+				? sqlToyConfig.getTableShardings()
+				: extend.tableShardings;
+		if (tableShardings != null) {
+			for (ShardingStrategyConfig tableConfig : tableShardings) {
+				if (tableConfig.isScatter()) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @TODO 获取分散查询的全部分片:分库(scatter则为策略给出的全部库)与分表组合(scatter的分表策略按位置对齐,多个策略之间做笛卡尔组合)
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param queryExecutor
+	 * @param dataSource
+	 * @return
+	 * @throws Exception
+	 */
+	public static List<ShardingTargetModel> getScatterTargets(SqlToyContext sqlToyContext, SqlToyConfig sqlToyConfig,
+			QueryExecutor queryExecutor, DataSource dataSource) throws Exception {
+		QueryExecutorExtend extend = queryExecutor.getInnerModel();
+		// 分库
+		List<ShardingDBModel> dbModels = new ArrayList<ShardingDBModel>();
+		ShardingStrategyConfig dbConfig = (extend.dbSharding != null) ? extend.dbSharding
+				: sqlToyConfig.getDataSourceSharding();
+		String shardingField = null;
+		if (dbConfig != null && dbConfig.isScatter()) {
+			if (dbConfig.getFields() != null && dbConfig.getFields().length > 0) {
+				shardingField = dbConfig.getFields()[0];
+			} else if (dbConfig.getAliasNames() != null && dbConfig.getAliasNames().length > 0) {
+				shardingField = dbConfig.getAliasNames()[0];
+			}
+			ShardingStrategy shardingStrategy = getStrategy(sqlToyContext, dbConfig);
+			IgnoreCaseLinkedMap<String, Object> valueMap = realParams(dbConfig,
+					hashParams(extend.getDataSourceShardingParamsName(sqlToyConfig),
+							extend.getDataSourceShardingParamsValue(sqlToyConfig)));
+			dbModels.addAll(shardingStrategy.getShardingDBs(sqlToyContext, null, sqlToyConfig.getId(),
+					dbConfig.getDecisionType(), valueMap));
+		}
+		if (dbModels.isEmpty()) {
+			ShardingDBModel dbModel = new ShardingDBModel();
+			dbModel.setDataSource(getShardingDataSource(sqlToyContext, sqlToyConfig, queryExecutor, dataSource));
+			dbModels.add(dbModel);
+		}
+		// 分表组合
+		List<HashMap<String, String>> tableMaps = new ArrayList<HashMap<String, String>>();
+		tableMaps.add(new HashMap<String, String>());
+		List<ShardingStrategyConfig> tableShardings = extend.tableShardings.isEmpty()
+				? sqlToyConfig.getTableShardings()
+				: extend.tableShardings;
+		if (tableShardings != null && !tableShardings.isEmpty()) {
+			String[] paramNames = extend.getTableShardingParamsName(sqlToyConfig);
+			Object[] paramValues = extend.getTableShardingParamsValue(sqlToyConfig);
+			List<ShardingStrategyConfig> singleShardings = new ArrayList<ShardingStrategyConfig>();
+			for (ShardingStrategyConfig tableConfig : tableShardings) {
+				if (tableConfig.isScatter()) {
+					tableMaps = scatterTables(sqlToyContext, tableConfig, hashParams(paramNames, paramValues),
+							tableMaps);
+				} else {
+					singleShardings.add(tableConfig);
+				}
+			}
+			// 非scatter的分表策略依据参数定位单表
+			HashMap<String, String> singleTables = getShardingTables(sqlToyContext, singleShardings, paramNames,
+					paramValues);
+			if (singleTables != null && !singleTables.isEmpty()) {
+				for (HashMap<String, String> tableMap : tableMaps) {
+					tableMap.putAll(singleTables);
+				}
+			}
+		}
+		List<ShardingTargetModel> result = new ArrayList<ShardingTargetModel>();
+		for (ShardingDBModel dbModel : dbModels) {
+			for (HashMap<String, String> tableMap : tableMaps) {
+				ShardingTargetModel target = new ShardingTargetModel();
+				target.setDataSourceName(dbModel.getDataSourceName());
+				target.setDataSource((dbModel.getDataSource() != null) ? dbModel.getDataSource()
+						: sqlToyContext.getDataSourceBean(dbModel.getDataSourceName()));
+				if (target.getDataSource() == null) {
+					throw new IllegalArgumentException("分散查询的数据源:" + dbModel.getDataSourceName() + " 不存在,请检查!");
+				}
+				target.setTableMap(new HashMap<String, String>(tableMap));
+				if (dbModel.getOwnerFilter() != null) {
+					target.setOwnerFilter(dbModel.getOwnerFilter());
+					target.setShardingField(shardingField);
+				}
+				result.add(target);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 单个scatter分表策略:同一策略下的多张表按位置对齐(如订单和订单明细同规则分表),与已有组合做笛卡尔组合
+	 * @param sqlToyContext
+	 * @param tableConfig
+	 * @param valueMap
+	 * @param tableMaps
+	 * @return
+	 */
+	private static List<HashMap<String, String>> scatterTables(SqlToyContext sqlToyContext,
+			ShardingStrategyConfig tableConfig, IgnoreCaseLinkedMap<String, Object> valueMap,
+			List<HashMap<String, String>> tableMaps) {
+		ShardingStrategy shardingStrategy = getStrategy(sqlToyContext, tableConfig);
+		IgnoreCaseLinkedMap<String, Object> realDataMap = realParams(tableConfig, valueMap);
+		String[] tables = tableConfig.getTables();
+		List<List<String>> shardingTables = new ArrayList<List<String>>();
+		for (String table : tables) {
+			List<String> items = shardingStrategy.getShardingTables(sqlToyContext, null, table,
+					tableConfig.getDecisionType(), realDataMap);
+			if (!shardingTables.isEmpty() && shardingTables.get(0).size() != items.size()) {
+				throw new IllegalArgumentException("分散查询的分表策略:" + tableConfig.getStrategy() + " 中表:"
+						+ StringUtil.linkAry(",", true, tables) + " 对应的分表数量不一致,无法对齐!");
+			}
+			shardingTables.add(items);
+		}
+		List<HashMap<String, String>> result = new ArrayList<HashMap<String, String>>();
+		int size = shardingTables.isEmpty() ? 0 : shardingTables.get(0).size();
+		String shardingTable;
+		for (HashMap<String, String> tableMap : tableMaps) {
+			for (int i = 0; i < size; i++) {
+				HashMap<String, String> item = new HashMap<String, String>(tableMap);
+				for (int j = 0; j < tables.length; j++) {
+					shardingTable = shardingTables.get(j).get(i);
+					if (shardingTable != null && !shardingTable.equalsIgnoreCase(tables[j])) {
+						item.put(tables[j], shardingTable);
+					}
+				}
+				result.add(item);
+			}
+		}
+		return result;
+	}
+
+	private static ShardingStrategy getStrategy(SqlToyContext sqlToyContext, ShardingStrategyConfig config) {
+		ShardingStrategy shardingStrategy = sqlToyContext.getShardingStrategy(config.getStrategy());
+		if (shardingStrategy == null) {
+			throw new IllegalArgumentException("sharding strategy:" + config.getStrategy() + " 未定义,请检查!");
+		}
+		return shardingStrategy;
+	}
+
+	/**
+	 * @TODO 按策略配置的字段别名组织传递给策略的参数
+	 * @param config
+	 * @param valueMap
+	 * @return
+	 */
+	private static IgnoreCaseLinkedMap<String, Object> realParams(ShardingStrategyConfig config,
+			IgnoreCaseLinkedMap<String, Object> valueMap) {
+		if (config.getFields() == null) {
+			return valueMap;
+		}
+		IgnoreCaseLinkedMap<String, Object> realDataMap = new IgnoreCaseLinkedMap<String, Object>();
+		for (int i = 0, n = config.getFields().length; i < n; i++) {
+			realDataMap.put(config.getAliasNames()[i], valueMap.get(config.getFields()[i]));
+		}
+		return realDataMap;
+	}
+
 	/**
 	 * @todo 将sharding决策需要的参数构造成有序map传递给sharding决策器
 	 * @param paramNames
@@ -522,30 +751,41 @@ public class ShardingUtils {
 			String signature = entityMeta.getBizIdSignature();
 			Integer[] relatedColumnIndex = entityMeta.getBizIdRelatedColIndex();
 			List<Object[]> ids = BeanUtil.reflectBeansToInnerAry(entities, pks, null, null);
+			// 按关联字段值分组,每组一次批量提取主键值,避免逐条调用主键策略
+			LinkedHashMap<List<Object>, List<Integer>> groups = new LinkedHashMap<List<Object>, List<Integer>>();
 			Object pkValue;
-			Object[] relatedColValue = null;
+			Object relatedValue;
+			List<Object> relatedColValue;
 			Object[] fullParamValues;
 			for (int i = 0; i < entities.size(); i++) {
 				pkValue = ids.get(i)[0];
 				// 主键值未赋予,则自动赋予
 				if (pkValue == null || "".equals(pkValue.toString().trim())) {
-					if (entityMeta.isBizIdEqPK()) {
+					relatedColValue = new ArrayList<Object>();
+					if (entityMeta.isBizIdEqPK() && relatedColumnIndex != null) {
 						fullParamValues = BeanUtil.reflectBeanToAry(entities.get(i), reflectColumns);
-						if (relatedColumnIndex != null) {
-							relatedColValue = new Object[relatedColumnIndex.length];
-							for (int meter = 0; meter < relatedColumnIndex.length; meter++) {
-								relatedColValue[meter] = fullParamValues[relatedColumnIndex[meter]];
-								if (relatedColValue[meter] == null) {
-									throw new IllegalArgumentException("对象:" + entityMeta.getEntityClass().getName()
-											+ " 生成业务主键依赖的关联字段:" + relatedColumnIndex[meter] + " 值为null!");
-								}
+						for (int meter = 0; meter < relatedColumnIndex.length; meter++) {
+							relatedValue = fullParamValues[relatedColumnIndex[meter]];
+							if (relatedValue == null) {
+								throw new IllegalArgumentException("对象:" + entityMeta.getEntityClass().getName()
+										+ " 生成业务主键依赖的关联字段:" + relatedColumnIndex[meter] + " 值为null!");
 							}
+							relatedColValue.add(relatedValue);
 						}
 					}
-					// 回写主键值
-					BeanUtil.setProperty(entities.get(i), pks[0],
-							idGenerator.getId(table, signature, entityMeta.getBizIdRelatedColumns(), relatedColValue,
-									null, idType, idLength, sequenceSize));
+					groups.computeIfAbsent(relatedColValue, key -> new ArrayList<Integer>()).add(i);
+				}
+			}
+			Object[] idValues;
+			List<Integer> indexes;
+			for (Map.Entry<List<Object>, List<Integer>> group : groups.entrySet()) {
+				indexes = group.getValue();
+				idValues = idGenerator.getIds(table, signature, entityMeta.getBizIdRelatedColumns(),
+						group.getKey().isEmpty() ? null : group.getKey().toArray(), null, idType, idLength,
+						sequenceSize, indexes.size());
+				// 回写主键值
+				for (int i = 0; i < idValues.length; i++) {
+					BeanUtil.setProperty(entities.get(indexes.get(i)), pks[0], idValues[i]);
 				}
 			}
 		}
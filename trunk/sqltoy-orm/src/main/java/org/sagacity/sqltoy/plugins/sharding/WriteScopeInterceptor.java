@@ -0,0 +1,29 @@
+package org.sagacity.sqltoy.plugins.sharding;
+
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.sagacity.sqltoy.SqlExecuteStat;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 写操作范围拦截器:在被拦截方法(如controller、service入口)执行期间开启SqlExecuteStat写操作范围,
+ *              配合ReadWriteShardingStrategy实现非事务场景下写之后读主库(read-your-writes),已处于范围内则直接沿用
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class WriteScopeInterceptor implements MethodInterceptor {
+
+	@Override
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		// 外层已经开启(或事务中已经创建)范围,由外层负责清理
+		if (SqlExecuteStat.getWriteScope(false) != null) {
+			return invocation.proceed();
+		}
+		SqlExecuteStat.openWriteScope();
+		try {
+			return invocation.proceed();
+		} finally {
+			SqlExecuteStat.closeWriteScope();
+		}
+	}
+}
@@ -0,0 +1,599 @@
+package org.sagacity.sqltoy.plugins.sharding.impl;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.model.IgnoreCaseLinkedMap;
+import org.sagacity.sqltoy.model.ShardingDBModel;
+import org.sagacity.sqltoy.plugins.sharding.ShardingStrategy;
+import org.sagacity.sqltoy.utils.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 一致性hash分库分表策略:sharding值经murmur3 64位hash落到固定数量的槽(slot),
+ *              槽按带虚拟节点的hash环预先计算归属节点,路由只需一次hash和一次数组定位;
+ *              扩容时配置targetDataSourceMap,迁移工具按getMovingSlots()逐段迁移,每段步骤:
+ *              <li>1、全量复制槽数据到目标节点</li>
+ *              <li>2、freezeSlots()冻结该段槽(写屏障,按sharding值定位到冻结槽的读写直接报错,调用方重试)</li>
+ *              <li>3、复制第1步之后产生的增量数据</li>
+ *              <li>4、migrateSlots()切换到目标节点并解除冻结</li>
+ *              <li>5、将getMigratedSlots()持久化到配置(migratedSlots),应用重启或其他实例initialize()时据此恢复切换进度</li>
+ *              冻结与切换只作用于当前实例,多实例部署需在全部实例上执行(如经配置中心下发frozenSlots/migratedSlots后重新initialize),
+ *              全部完成后completeMigration()并以目标节点配置替换dataSourceMap
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class ConsistentHashShardingStrategy implements ShardingStrategy {
+	/**
+	 * 定义日志
+	 */
+	protected final Logger logger = LoggerFactory.getLogger(ConsistentHashShardingStrategy.class);
+
+	/**
+	 * 分库节点,key:节点编号,value:数据源名称(同一数据源配置多个key表示按倍数加权)
+	 */
+	private HashMap<String, String> dataSourceMap = new HashMap<String, String>();
+
+	/**
+	 * 分表节点,key:节点编号,value:表名
+	 */
+	private HashMap<String, String> tableMap = new HashMap<String, String>();
+
+	/**
+	 * 扩容(或缩容)后的分库节点,不为空表示处于迁移窗口中
+	 */
+	private HashMap<String, String> targetDataSourceMap;
+
+	/**
+	 * 每个节点的虚拟节点数量
+	 */
+	private int virtualNodes = 160;
+
+	/**
+	 * 槽数量的二进制位数,默认2^14=16384个槽
+	 */
+	private int slotBits = 14;
+
+	/**
+	 * 分表的槽归属
+	 */
+	private volatile String[] tableSlots;
+
+	/**
+	 * 分库路由快照(当前槽归属、迁移目标、已切换和冻结的槽),变更时整体替换,路由只读取一次引用
+	 */
+	private volatile Routing routing = new Routing(null, null, new BitSet(), new BitSet());
+
+	/**
+	 * 已切换到目标节点的槽,格式:0-1023,2048,4096-5000
+	 */
+	private String migratedSlots;
+
+	/**
+	 * 冻结(禁止按sharding值读写)的槽,格式同migratedSlots
+	 */
+	private String frozenSlots;
+
+	@Override
+	public String getShardingTable(SqlToyContext sqlToyContext, Class entityClass, String baseTableName,
+			String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		String[] slots = tableSlots;
+		if (slots == null || !hasShardingValue(paramsMap)) {
+			return null;
+		}
+		return slots[getSlot(paramsMap.values().iterator().next())];
+	}
+
+	@Override
+	public ShardingDBModel getShardingDB(SqlToyContext sqlToyContext, Class entityClass, String tableOrSql,
+			String strategyVar, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		ShardingDBModel shardingModel = new ShardingDBModel();
+		// 归属与冻结状态取自同一快照,避免读到切换前的归属和切换后的解冻状态
+		Routing current = routing;
+		if (current.slots == null || !hasShardingValue(paramsMap)) {
+			return shardingModel;
+		}
+		int slot = getSlot(paramsMap.values().iterator().next());
+		// 槽处于增量复制到切换之间,写入旧节点会丢失,读取新节点数据不全
+		if (current.frozen.get(slot)) {
+			throw new IllegalStateException("一致性hash分库槽:" + slot + " 正在迁移切换中,暂停读写,请稍后重试!");
+		}
+		shardingModel.setDataSourceName(current.slots[slot]);
+		return shardingModel;
+	}
+
+	@Override
+	public List<String> getShardingTables(SqlToyContext sqlToyContext, Class entityClass, String baseTableName,
+			String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		if (hasShardingValue(paramsMap) || tableSlots == null) {
+			return ShardingStrategy.super.getShardingTables(sqlToyContext, entityClass, baseTableName, decisionType,
+					paramsMap);
+		}
+		return distinct(tableSlots);
+	}
+
+	@Override
+	public List<ShardingDBModel> getShardingDBs(SqlToyContext sqlToyContext, Class entityClass, String tableOrSql,
+			String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		final Routing current = routing;
+		if (hasShardingValue(paramsMap) || current.slots == null) {
+			return ShardingStrategy.super.getShardingDBs(sqlToyContext, entityClass, tableOrSql, decisionType,
+					paramsMap);
+		}
+		List<ShardingDBModel> result = new ArrayList<ShardingDBModel>();
+		ShardingDBModel shardingModel;
+		// 迁移中数据分布在新旧节点上,按当前槽归属枚举
+		for (final String dataSourceName : distinct(current.slots)) {
+			shardingModel = new ShardingDBModel();
+			shardingModel.setDataSourceName(dataSourceName);
+			// 迁移窗口中节点上存在已复制未切换(或已切出未清理)的数据,只保留归属于该节点的记录,避免重复
+			if (current.targets != null) {
+				shardingModel.setOwnerFilter(
+						(shardingValue) -> dataSourceName.equals(current.slots[getSlot(shardingValue)]));
+			}
+			result.add(shardingModel);
+		}
+		return result;
+	}
+
+	@Override
+	public void initialize() {
+		if (slotBits < 1 || slotBits > 24) {
+			throw new IllegalArgumentException("一致性hash分片策略slotBits取值范围为1~24,当前为:" + slotBits);
+		}
+		if (virtualNodes < 1) {
+			throw new IllegalArgumentException("一致性hash分片策略virtualNodes必须大于0,当前为:" + virtualNodes);
+		}
+		tableSlots = buildSlots(tableMap);
+		String[] slots = buildSlots(dataSourceMap);
+		BitSet migratedSet = parseSlots(migratedSlots);
+		BitSet frozenSet = parseSlots(frozenSlots);
+		String[] targetSlots = null;
+		if (targetDataSourceMap != null && !targetDataSourceMap.isEmpty()) {
+			targetSlots = buildSlots(targetDataSourceMap);
+			// 恢复已持久化的切换进度
+			if (slots != null) {
+				for (int i = migratedSet.nextSetBit(0); i >= 0 && i < slots.length; i = migratedSet.nextSetBit(i + 1)) {
+					slots[i] = targetSlots[i];
+				}
+			}
+		} else if (!migratedSet.isEmpty() || !frozenSet.isEmpty()) {
+			throw new IllegalArgumentException("一致性hash分片策略配置了migratedSlots或frozenSlots,但未配置targetDataSourceMap!");
+		}
+		routing = new Routing(slots, targetSlots, migratedSet, frozenSet);
+		if (targetSlots != null) {
+			logger.info("一致性hash分库迁移窗口开启,已切换槽:[{}],冻结槽:[{}],待迁移槽数量:{}/{}", getMigratedSlots(),
+					getFrozenSlots(), getMovingSlots().length, 1 << slotBits);
+		}
+	}
+
+	/**
+	 * @TODO 获取sharding值对应的槽,迁移工具据此判断记录是否属于正在迁移的槽
+	 * @param shardingValue
+	 * @return
+	 */
+	public int getSlot(Object shardingValue) {
+		byte[] bytes = shardingValue.toString().getBytes(StandardCharsets.UTF_8);
+		return (int) (murmurHash64(bytes) >>> (64 - slotBits));
+	}
+
+	/**
+	 * @TODO 迁移窗口中当前归属与目标归属不一致(需要迁移数据)的槽
+	 * @return
+	 */
+	public int[] getMovingSlots() {
+		Routing snapshot = routing;
+		String[] current = snapshot.slots;
+		String[] target = snapshot.targets;
+		if (current == null || target == null) {
+			return new int[0];
+		}
+		int[] result = new int[current.length];
+		int size = 0;
+		for (int i = 0; i < current.length; i++) {
+			if (!current[i].equals(target[i])) {
+				result[size++] = i;
+			}
+		}
+		return Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * @TODO 获取槽迁移的源数据源和目标数据源
+	 * @param slot
+	 * @return {源数据源,目标数据源},非迁移槽返回null
+	 */
+	public String[] getMoving(int slot) {
+		Routing snapshot = routing;
+		String[] current = snapshot.slots;
+		String[] target = snapshot.targets;
+		if (current == null || target == null || current[slot].equals(target[slot])) {
+			return null;
+		}
+		return new String[] { current[slot], target[slot] };
+	}
+
+	/**
+	 * @TODO 全量复制完成后冻结[fromSlot,toSlot]区间的槽(写屏障),再复制增量数据,避免切换前写入旧节点的数据丢失
+	 * @param fromSlot
+	 * @param toSlot
+	 */
+	public synchronized void freezeSlots(int fromSlot, int toSlot) {
+		Routing current = routing;
+		if (current.targets == null) {
+			throw new IllegalStateException("一致性hash分库未配置targetDataSourceMap,不存在迁移窗口!");
+		}
+		int start = Math.max(fromSlot, 0);
+		int end = Math.min(toSlot, current.targets.length - 1);
+		if (start > end) {
+			return;
+		}
+		BitSet frozenSet = (BitSet) current.frozen.clone();
+		frozenSet.set(start, end + 1);
+		routing = new Routing(current.slots, current.targets, current.migrated, frozenSet);
+	}
+
+	/**
+	 * @TODO 数据复制完成后,将[fromSlot,toSlot]区间的槽切换到目标节点并解除冻结(读写随即路由到新节点),
+	 *       切换后需持久化getMigratedSlots()
+	 * @param fromSlot
+	 * @param toSlot
+	 */
+	public synchronized void migrateSlots(int fromSlot, int toSlot) {
+		Routing current = routing;
+		if (current.targets == null || current.slots == null) {
+			throw new IllegalStateException("一致性hash分库未配置targetDataSourceMap,不存在迁移窗口!");
+		}
+		int start = Math.max(fromSlot, 0);
+		int end = Math.min(toSlot, current.slots.length - 1);
+		if (start > end) {
+			return;
+		}
+		String[] slots = current.slots.clone();
+		for (int i = start; i <= end; i++) {
+			slots[i] = current.targets[i];
+		}
+		BitSet migratedSet = (BitSet) current.migrated.clone();
+		BitSet frozenSet = (BitSet) current.frozen.clone();
+		migratedSet.set(start, end + 1);
+		frozenSet.clear(start, end + 1);
+		// 归属切换与解除冻结在同一快照中一次发布,路由过程无锁
+		routing = new Routing(slots, current.targets, migratedSet, frozenSet);
+	}
+
+	/**
+	 * @TODO 结束迁移窗口:全部槽切换到目标节点,目标节点成为当前分库配置
+	 */
+	public synchronized void completeMigration() {
+		Routing current = routing;
+		if (current.targets == null) {
+			return;
+		}
+		routing = new Routing(current.targets, null, new BitSet(), new BitSet());
+		dataSourceMap = targetDataSourceMap;
+		targetDataSourceMap = null;
+		migratedSlots = null;
+		frozenSlots = null;
+	}
+
+	/**
+	 * @TODO 当前已切换到目标节点的槽区间,用于持久化迁移进度
+	 * @return 格式:0-1023,2048,4096-5000
+	 */
+	public String getMigratedSlots() {
+		return toRanges(routing.migrated);
+	}
+
+	/**
+	 * @TODO 当前冻结中的槽区间
+	 * @return
+	 */
+	public String getFrozenSlots() {
+		return toRanges(routing.frozen);
+	}
+
+	/**
+	 * @TODO 解析槽区间配置:0-1023,2048,4096-5000
+	 * @param ranges
+	 * @return
+	 */
+	private BitSet parseSlots(String ranges) {
+		BitSet result = new BitSet();
+		if (StringUtil.isBlank(ranges)) {
+			return result;
+		}
+		int slotSize = 1 << slotBits;
+		int index;
+		int start;
+		int end;
+		for (String range : ranges.split(",")) {
+			range = range.trim();
+			if (range.isEmpty()) {
+				continue;
+			}
+			index = range.indexOf("-");
+			start = Integer.parseInt((index == -1) ? range : range.substring(0, index).trim());
+			end = (index == -1) ? start : Integer.parseInt(range.substring(index + 1).trim());
+			if (start < 0 || end < start || end >= slotSize) {
+				throw new IllegalArgumentException("一致性hash分片策略槽区间:" + range + " 不合法,取值范围为0~" + (slotSize - 1));
+			}
+			result.set(start, end + 1);
+		}
+		return result;
+	}
+
+	private String toRanges(BitSet slots) {
+		StringBuilder result = new StringBuilder();
+		int end;
+		for (int start = slots.nextSetBit(0); start >= 0; start = slots.nextSetBit(end + 1)) {
+			end = slots.nextClearBit(start) - 1;
+			if (result.length() > 0) {
+				result.append(",");
+			}
+			result.append(start);
+			if (end > start) {
+				result.append("-").append(end);
+			}
+		}
+		return result.toString();
+	}
+
+	/**
+	 * @TODO 按hash环(含虚拟节点)预先计算每个槽归属的节点
+	 * @param nodeMap
+	 * @return
+	 */
+	private String[] buildSlots(HashMap<String, String> nodeMap) {
+		if (nodeMap == null || nodeMap.isEmpty()) {
+			return null;
+		}
+		// 同一节点配置多次则按倍数加权,节点按名称排序保证环的构造与配置顺序无关
+		Map<String, Integer> weights = new TreeMap<String, Integer>();
+		for (String node : nodeMap.values()) {
+			weights.put(node, weights.getOrDefault(node, 0) + 1);
+		}
+		TreeMap<Long, String> ring = new TreeMap<Long, String>();
+		for (Map.Entry<String, Integer> entry : weights.entrySet()) {
+			int size = virtualNodes * entry.getValue();
+			for (int i = 0; i < size; i++) {
+				long point = murmurHash64((entry.getKey() + "#" + i).getBytes(StandardCharsets.UTF_8)) >>> 1;
+				ring.putIfAbsent(point, entry.getKey());
+			}
+		}
+		int slotSize = 1 << slotBits;
+		String[] slots = new String[slotSize];
+		Map.Entry<Long, String> owner;
+		for (int i = 0; i < slotSize; i++) {
+			// 槽的起点在63位环上的位置,顺时针第一个虚拟节点为归属节点
+			owner = ring.ceilingEntry(((long) i) << (63 - slotBits));
+			slots[i] = (owner == null) ? ring.firstEntry().getValue() : owner.getValue();
+		}
+		return slots;
+	}
+
+	private List<String> distinct(String[] slots) {
+		LinkedHashMap<String, Boolean> nodes = new LinkedHashMap<String, Boolean>();
+		for (String slot : slots) {
+			nodes.put(slot, Boolean.TRUE);
+		}
+		return new ArrayList<String>(nodes.keySet());
+	}
+
+	/**
+	 * @TODO 是否传递了sharding字段值(可直接定位单个分片)
+	 * @param paramsMap
+	 * @return
+	 */
+	private boolean hasShardingValue(IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		return paramsMap != null && !paramsMap.isEmpty() && paramsMap.values().iterator().next() != null;
+	}
+
+	/**
+	 * @TODO murmur3 x64_128算法的前64位
+	 * @param data
+	 * @return
+	 */
+	private static long murmurHash64(byte[] data) {
+		final long c1 = 0x87c37b91114253d5L;
+		final long c2 = 0x4cf5ad432745937fL;
+		int length = data.length;
+		int blocks = length >>> 4;
+		long h1 = 0;
+		long h2 = 0;
+		long k1;
+		long k2;
+		for (int i = 0; i < blocks; i++) {
+			k1 = getLong(data, i << 4);
+			k2 = getLong(data, (i << 4) + 8);
+			k1 *= c1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= c2;
+			h1 ^= k1;
+			h1 = Long.rotateLeft(h1, 27);
+			h1 += h2;
+			h1 = h1 * 5 + 0x52dce729;
+			k2 *= c2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= c1;
+			h2 ^= k2;
+			h2 = Long.rotateLeft(h2, 31);
+			h2 += h1;
+			h2 = h2 * 5 + 0x38495ab5;
+		}
+		int tail = blocks << 4;
+		k1 = 0;
+		k2 = 0;
+		switch (length & 15) {
+		case 15:
+			k2 ^= (long) (data[tail + 14] & 0xff) << 48;
+		case 14:
+			k2 ^= (long) (data[tail + 13] & 0xff) << 40;
+		case 13:
+			k2 ^= (long) (data[tail + 12] & 0xff) << 32;
+		case 12:
+			k2 ^= (long) (data[tail + 11] & 0xff) << 24;
+		case 11:
+			k2 ^= (long) (data[tail + 10] & 0xff) << 16;
+		case 10:
+			k2 ^= (long) (data[tail + 9] & 0xff) << 8;
+		case 9:
+			k2 ^= (long) (data[tail + 8] & 0xff);
+			k2 *= c2;
+			k2 = Long.rotateLeft(k2, 33);
+			k2 *= c1;
+			h2 ^= k2;
+		case 8:
+			k1 ^= (long) (data[tail + 7] & 0xff) << 56;
+		case 7:
+			k1 ^= (long) (data[tail + 6] & 0xff) << 48;
+		case 6:
+			k1 ^= (long) (data[tail + 5] & 0xff) << 40;
+		case 5:
+			k1 ^= (long) (data[tail + 4] & 0xff) << 32;
+		case 4:
+			k1 ^= (long) (data[tail + 3] & 0xff) << 24;
+		case 3:
+			k1 ^= (long) (data[tail + 2] & 0xff) << 16;
+		case 2:
+			k1 ^= (long) (data[tail + 1] & 0xff) << 8;
+		case 1:
+			k1 ^= (long) (data[tail] & 0xff);
+			k1 *= c1;
+			k1 = Long.rotateLeft(k1, 31);
+			k1 *= c2;
+			h1 ^= k1;
+		default:
+			break;
+		}
+		h1 ^= length;
+		h2 ^= length;
+		h1 += h2;
+		h2 += h1;
+		h1 = fmix64(h1);
+		h2 = fmix64(h2);
+		h1 += h2;
+		return h1;
+	}
+
+	private static long getLong(byte[] data, int index) {
+		return (data[index] & 0xffL) | (data[index + 1] & 0xffL) << 8 | (data[index + 2] & 0xffL) << 16
+				| (data[index + 3] & 0xffL) << 24 | (data[index + 4] & 0xffL) << 32 | (data[index + 5] & 0xffL) << 40
+				| (data[index + 6] & 0xffL) << 48 | (data[index + 7] & 0xffL) << 56;
+	}
+
+	private static long fmix64(long value) {
+		long k = value;
+		k ^= k >>> 33;
+		k *= 0xff51afd7ed558ccdL;
+		k ^= k >>> 33;
+		k *= 0xc4ceb9fe1a85ec53L;
+		k ^= k >>> 33;
+		return k;
+	}
+
+	/**
+	 * @return the dataSourceMap
+	 */
+	public HashMap<String, String> getDataSourceMap() {
+		return dataSourceMap;
+	}
+
+	/**
+	 * @param dataSourceMap the dataSourceMap to set
+	 */
+	public void setDataSourceMap(HashMap<String, String> dataSourceMap) {
+		this.dataSourceMap = dataSourceMap;
+	}
+
+	/**
+	 * @return the tableMap
+	 */
+	public HashMap<String, String> getTableMap() {
+		return tableMap;
+	}
+
+	/**
+	 * @param tableMap the tableMap to set
+	 */
+	public void setTableMap(HashMap<String, String> tableMap) {
+		this.tableMap = tableMap;
+	}
+
+	/**
+	 * @return the targetDataSourceMap
+	 */
+	public HashMap<String, String> getTargetDataSourceMap() {
+		return targetDataSourceMap;
+	}
+
+	/**
+	 * @param targetDataSourceMap the targetDataSourceMap to set
+	 */
+	public void setTargetDataSourceMap(HashMap<String, String> targetDataSourceMap) {
+		this.targetDataSourceMap = targetDataSourceMap;
+	}
+
+	/**
+	 * @param migratedSlots 已切换到目标节点的槽区间,initialize()时恢复
+	 */
+	public void setMigratedSlots(String migratedSlots) {
+		this.migratedSlots = migratedSlots;
+	}
+
+	/**
+	 * @param frozenSlots 冻结中的槽区间,initialize()时恢复
+	 */
+	public void setFrozenSlots(String frozenSlots) {
+		this.frozenSlots = frozenSlots;
+	}
+
+	/**
+	 * @param virtualNodes the virtualNodes to set
+	 */
+	public void setVirtualNodes(int virtualNodes) {
+		this.virtualNodes = virtualNodes;
+	}
+
+	/**
+	 * @param slotBits the slotBits to set
+	 */
+	public void setSlotBits(int slotBits) {
+		this.slotBits = slotBits;
+	}
+
+	/**
+	 * @description 不可变的分库路由快照,BitSet创建后不再修改
+	 */
+	private static final class Routing {
+		/**
+		 * 当前槽归属
+		 */
+		private final String[] slots;
+
+		/**
+		 * 迁移目标的槽归属,为null表示不在迁移窗口中
+		 */
+		private final String[] targets;
+
+		private final BitSet migrated;
+
+		private final BitSet frozen;
+
+		private Routing(String[] slots, String[] targets, BitSet migrated, BitSet frozen) {
+			this.slots = slots;
+			this.targets = targets;
+			this.migrated = migrated;
+			this.frozen = frozen;
+		}
+	}
+}
@@ -3,8 +3,10 @@
  */
 package org.sagacity.sqltoy.plugins.sharding.impl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -28,6 +30,8 @@ import org.springframework.context.ApplicationContextAware;
  * @description 提供默认的数据库sharding策略
  * @author zhongxuchen
  * @version v1.0,Date: 2017年1月3日
+ * @modify Date:2021-05-20 {分散查询无业务日期参数时查询当前表以及全部历史表}
+ * @modify Date:2021-05-20 {去除每次选择数据源时的控制台输出}
  */
 public class DefaultShardingStrategy implements ShardingStrategy, ApplicationContextAware {
 	private final static Logger logger = LoggerFactory.getLogger(DefaultShardingStrategy.class);
@@ -155,6 +159,46 @@ public class DefaultShardingStrategy implements ShardingStrategy, ApplicationCon
 		return shardingTable[index].trim();
 	}
 
+	/**
+	 * @TODO 分散查询:存在业务日期参数则定位单表,否则查询当前表以及全部历史表
+	 */
+	@Override
+	public List<String> getShardingTables(SqlToyContext sqlToyContext, Class entityClass, String baseTableName,
+			String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		if (baseTableName == null || tableNamesMap == null || tableNamesMap.get(baseTableName.toUpperCase()) == null
+				|| hasBizDate(paramsMap)) {
+			return ShardingStrategy.super.getShardingTables(sqlToyContext, entityClass, baseTableName, decisionType,
+					paramsMap);
+		}
+		List<String> result = new ArrayList<String>();
+		result.add(baseTableName);
+		String table;
+		for (String shardingTable : tableNamesMap.get(baseTableName.toUpperCase()).split("\\,")) {
+			table = shardingTable.trim();
+			if (!"".equals(table) && !result.contains(table)) {
+				result.add(table);
+			}
+		}
+		return result;
+	}
+
+	private boolean hasBizDate(IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		if (paramsMap == null || paramsMap.isEmpty()) {
+			return false;
+		}
+		if (paramsMap.size() == 1) {
+			return paramsMap.values().iterator().next() != null;
+		}
+		if (dateParams != null) {
+			for (String dateParam : dateParams) {
+				if (paramsMap.get(dateParam) != null) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
@@ -186,8 +230,6 @@ public class DefaultShardingStrategy implements ShardingStrategy, ApplicationCon
 		chooseDataSource = dataSourceWeightConfig[index][0].toString();
 		if (logger.isDebugEnabled()) {
 			logger.debug("本次sharding使用的数据库为:{},index={}", chooseDataSource, index);
-		} else {
-			System.out.println("本次sharding使用的数据库为:" + chooseDataSource + ",index=" + index);
 		}
 		ShardingDBModel shardingModel = new ShardingDBModel();
 		shardingModel.setDataSourceName(chooseDataSource);
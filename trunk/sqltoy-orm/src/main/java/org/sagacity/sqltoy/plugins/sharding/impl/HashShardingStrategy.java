@@ -3,7 +3,9 @@
  */
 package org.sagacity.sqltoy.plugins.sharding.impl;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.model.IgnoreCaseLinkedMap;
@@ -15,6 +17,7 @@ import org.sagacity.sqltoy.plugins.sharding.ShardingStrategy;
  * @description hash取模形式的分库策略
  * @author zhongxuchen
  * @version v1.0,Date:2017年11月1日
+ * @modify Date:2021-05-20 {实现分散查询的分片枚举,sharding参数有值时只返回取模对应的单个分片}
  */
 public class HashShardingStrategy implements ShardingStrategy {
 
@@ -73,6 +76,55 @@ public class HashShardingStrategy implements ShardingStrategy {
 		return shardingModel;
 	}
 
+	@Override
+	public List<String> getShardingTables(SqlToyContext sqlToyContext, Class entityClass, String baseTableName,
+			String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		if (hasShardingValue(paramsMap) || tableMode < 1) {
+			return ShardingStrategy.super.getShardingTables(sqlToyContext, entityClass, baseTableName, decisionType,
+					paramsMap);
+		}
+		List<String> result = new ArrayList<String>();
+		String table;
+		for (int i = 0; i < tableMode; i++) {
+			table = tableMap.get(Integer.toString(i));
+			if (table != null && !result.contains(table)) {
+				result.add(table);
+			}
+		}
+		return result;
+	}
+
+	@Override
+	public List<ShardingDBModel> getShardingDBs(SqlToyContext sqlToyContext, Class entityClass, String tableOrSql,
+			String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		if (hasShardingValue(paramsMap) || dataSourceMode < 1) {
+			return ShardingStrategy.super.getShardingDBs(sqlToyContext, entityClass, tableOrSql, decisionType,
+					paramsMap);
+		}
+		List<ShardingDBModel> result = new ArrayList<ShardingDBModel>();
+		List<String> dataSourceNames = new ArrayList<String>();
+		String dataSourceName;
+		for (int i = 0; i < dataSourceMode; i++) {
+			dataSourceName = dataSourceMap.get(Integer.toString(i));
+			if (dataSourceName != null && !dataSourceNames.contains(dataSourceName)) {
+				dataSourceNames.add(dataSourceName);
+				ShardingDBModel shardingModel = new ShardingDBModel();
+				shardingModel.setDataSourceName(dataSourceName);
+				result.add(shardingModel);
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 是否传递了sharding字段值(可直接定位单个分片)
+	 * @param paramsMap
+	 * @return
+	 */
+	private boolean hasShardingValue(IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		return paramsMap != null && !paramsMap.isEmpty() && paramsMap.values().iterator().next() != null;
+	}
+
 	/*
 	 * (non-Javadoc)
 	 * 
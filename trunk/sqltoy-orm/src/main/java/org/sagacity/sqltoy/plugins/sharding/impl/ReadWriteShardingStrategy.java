@@ -0,0 +1,503 @@
+package org.sagacity.sqltoy.plugins.sharding.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.sql.DataSource;
+
+import org.sagacity.sqltoy.SqlExecuteStat;
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.model.IgnoreCaseLinkedMap;
+import org.sagacity.sqltoy.model.ShardingDBModel;
+import org.sagacity.sqltoy.plugins.sharding.ShardingStrategy;
+import org.sagacity.sqltoy.plugins.sharding.ShardingUtils;
+import org.sagacity.sqltoy.utils.DataSourceUtils;
+import org.sagacity.sqltoy.utils.DataSourceUtils.DBType;
+import org.sagacity.sqltoy.utils.StringUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 读写分离策略:写操作(decisionType=write、非查询语句或对象crud)以及事务中、写之后短时间内的读取走主库,
+ *              其余读取在健康且复制延迟未超限的从库中用power-of-two-choices选择负载最低者
+ *              (连接耗时的指数加权平均值 x (在用连接数+1)),从库异常自动剔除并由后台检测恢复,无可用从库时读主库;
+ *              非事务场景的写后读主库依赖SqlExecuteStat写操作范围,需在请求入口调用openWriteScope/closeWriteScope
+ *              或配置WriteScopeInterceptor,未开启范围时写之后的读取依然可能读到延迟的从库
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class ReadWriteShardingStrategy implements ShardingStrategy, ApplicationContextAware {
+	private final static Logger logger = LoggerFactory.getLogger(ReadWriteShardingStrategy.class);
+
+	/**
+	 * 写操作的决策类别
+	 */
+	public static final String WRITE = ShardingUtils.WRITE;
+
+	/**
+	 * 主库数据源名称
+	 */
+	private String primary;
+
+	/**
+	 * 从库数据源名称
+	 */
+	private String[] replicaNames = {};
+
+	/**
+	 * 从库允许的最大复制延迟(秒)
+	 */
+	private int maxLagSeconds = 10;
+
+	/**
+	 * 写操作之后同一请求(SqlExecuteStat.openWriteScope/closeWriteScope界定)读主库的时长(毫秒)
+	 */
+	private int primaryStickyMillis = 2000;
+
+	/**
+	 * 健康和复制延迟检测间隔(秒)
+	 */
+	private int checkSeconds = 30;
+
+	/**
+	 * 未开启后台检测(checkSeconds<=0)时,不可用从库间隔多少秒后在读取时检测恢复
+	 */
+	private int retrySeconds = 30;
+
+	/**
+	 * 自定义获取复制延迟秒数的sql,为空则mysql、postgresql按默认方式获取,其他数据库不检测延迟
+	 */
+	private String lagSql;
+
+	/**
+	 * mysql不支持show replica status(8.0.22之前版本),改用show slave status
+	 */
+	private volatile boolean legacyReplicaStatus = false;
+
+	/**
+	 * 指数加权平均的权重
+	 */
+	private double ewmaAlpha = 0.3;
+
+	private volatile Replica[] replicas;
+
+	private ShardingDBModel primaryModel;
+
+	/**
+	 * spring 上下文容器
+	 */
+	private ApplicationContext applicationContext;
+
+	@Override
+	@Autowired
+	public void setApplicationContext(ApplicationContext applicationContext) {
+		this.applicationContext = applicationContext;
+	}
+
+	@Override
+	public void initialize() {
+		if (StringUtil.isBlank(primary)) {
+			throw new IllegalArgumentException("读写分离策略必须配置primary主库数据源!");
+		}
+		primaryModel = new ShardingDBModel();
+		primaryModel.setDataSourceName(primary);
+		// 检测时间小于等于零,则表示不做自动检测
+		if (checkSeconds <= 0 || replicaNames.length == 0) {
+			return;
+		}
+		Thread monitor = new Thread("sqltoy-replica-monitor") {
+			@Override
+			public void run() {
+				while (true) {
+					try {
+						Thread.sleep(1000L * checkSeconds);
+					} catch (InterruptedException e) {
+						logger.warn("读写分离从库检测将终止!{}", e.getMessage());
+						return;
+					}
+					checkReplicas();
+				}
+			}
+		};
+		monitor.setDaemon(true);
+		monitor.start();
+	}
+
+	@Override
+	public String getShardingTable(SqlToyContext sqlToyContext, Class entityClass, String baseTableName,
+			String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		return null;
+	}
+
+	@Override
+	public ShardingDBModel getShardingDB(SqlToyContext sqlToyContext, Class entityClass, String tableOrSql,
+			String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		// 对象crud(含load)以及写操作(未指定决策类别的非查询语句由ShardingUtils判定为write)使用主库
+		if (entityClass != null || WRITE.equalsIgnoreCase(decisionType)) {
+			return primaryModel;
+		}
+		// 事务中以及当前请求(SqlExecuteStat.openWriteScope)或事务范围内刚发生写操作,读主库保证读到自己的写入
+		if (TransactionSynchronizationManager.isActualTransactionActive()
+				|| System.currentTimeMillis() - SqlExecuteStat.getLastWriteTime() < primaryStickyMillis) {
+			return primaryModel;
+		}
+		Replica replica = choose();
+		if (replica == null) {
+			return primaryModel;
+		}
+		if (logger.isDebugEnabled()) {
+			logger.debug("本次读取使用的从库为:{},耗时均值:{}ms,在用连接:{}", replica.name, replica.ewmaMillis,
+					replica.inFlight.get());
+		}
+		ShardingDBModel shardingModel = new ShardingDBModel();
+		shardingModel.setDataSourceName(replica.name);
+		shardingModel.setDataSource(replica);
+		return shardingModel;
+	}
+
+	/**
+	 * @TODO 分散查询时只需查询一个库
+	 */
+	@Override
+	public List<ShardingDBModel> getShardingDBs(SqlToyContext sqlToyContext, Class entityClass, String tableOrSql,
+			String decisionType, IgnoreCaseLinkedMap<String, Object> paramsMap) {
+		List<ShardingDBModel> result = new ArrayList<ShardingDBModel>();
+		result.add(getShardingDB(sqlToyContext, entityClass, tableOrSql, decisionType, paramsMap));
+		return result;
+	}
+
+	/**
+	 * @TODO power-of-two-choices:随机取两个可用从库,选择负载较低者
+	 * @return 无可用从库返回null
+	 */
+	private Replica choose() {
+		Replica[] all = getReplicas();
+		int size = 0;
+		Replica[] available = new Replica[all.length];
+		for (Replica replica : all) {
+			if (replica.isAvailable(maxLagSeconds)) {
+				available[size++] = replica;
+			}
+		}
+		if (size == 0) {
+			return null;
+		}
+		if (size == 1) {
+			return available[0];
+		}
+		ThreadLocalRandom random = ThreadLocalRandom.current();
+		int first = random.nextInt(size);
+		int second = random.nextInt(size - 1);
+		if (second >= first) {
+			second++;
+		}
+		return (available[first].load() <= available[second].load()) ? available[first] : available[second];
+	}
+
+	private Replica[] getReplicas() {
+		Replica[] result = replicas;
+		if (result == null) {
+			synchronized (this) {
+				if (replicas == null) {
+					Replica[] items = new Replica[replicaNames.length];
+					for (int i = 0; i < replicaNames.length; i++) {
+						items[i] = new Replica(replicaNames[i],
+								(DataSource) applicationContext.getBean(replicaNames[i]));
+					}
+					replicas = items;
+				}
+				result = replicas;
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 检测从库可用性和复制延迟,检测耗时同样计入耗时均值
+	 */
+	private void checkReplicas() {
+		for (Replica replica : getReplicas()) {
+			checkReplica(replica);
+		}
+	}
+
+	/**
+	 * @TODO 检测单个从库
+	 * @param replica
+	 */
+	private void checkReplica(Replica replica) {
+		Connection conn = null;
+		PreparedStatement pst = null;
+		ResultSet rs = null;
+		long start = System.currentTimeMillis();
+		try {
+			conn = org.springframework.jdbc.datasource.DataSourceUtils.getConnection(replica.target);
+			pst = conn.prepareStatement(DataSourceUtils.getValidateQuery(conn));
+			rs = pst.executeQuery();
+			rs.close();
+			pst.close();
+			replica.lagSeconds = getLagSeconds(conn);
+			replica.record(System.currentTimeMillis() - start);
+			if (!replica.healthy) {
+				logger.info("从库:{}已恢复可用,复制延迟:{}秒", replica.name, replica.lagSeconds);
+			}
+			replica.healthy = true;
+		} catch (Exception e) {
+			logger.warn("从库:{}检测异常,暂停读取:{}", replica.name, e.getMessage());
+			replica.markUnhealthy();
+		} finally {
+			close(rs, pst);
+			org.springframework.jdbc.datasource.DataSourceUtils.releaseConnection(conn, replica.target);
+		}
+	}
+
+	/**
+	 * @TODO 获取复制延迟秒数
+	 * @param conn
+	 * @return -1表示无法获取(不作为剔除依据)
+	 * @throws SQLException
+	 */
+	private double getLagSeconds(Connection conn) throws SQLException {
+		String sql = lagSql;
+		int dbType = DataSourceUtils.getDBType(conn);
+		boolean isMySql = (lagSql == null && (dbType == DBType.MYSQL || dbType == DBType.MYSQL57));
+		if (sql == null) {
+			if (dbType == DBType.POSTGRESQL) {
+				// 已接收的wal全部回放完成则无延迟(主库长时间无写入时回放时间戳不再更新,不能据此判断延迟)
+				sql = "select case when pg_last_wal_receive_lsn()=pg_last_wal_replay_lsn() then 0 "
+						+ "else coalesce(extract(epoch from now()-pg_last_xact_replay_timestamp()),0) end";
+			} else if (isMySql) {
+				sql = legacyReplicaStatus ? "show slave status" : "show replica status";
+			} else {
+				return -1;
+			}
+		}
+		PreparedStatement pst = null;
+		ResultSet rs = null;
+		try {
+			try {
+				pst = conn.prepareStatement(sql);
+				rs = pst.executeQuery();
+			} catch (SQLException e) {
+				if (!isMySql || legacyReplicaStatus) {
+					throw e;
+				}
+				close(rs, pst);
+				rs = null;
+				legacyReplicaStatus = true;
+				pst = conn.prepareStatement("show slave status");
+				rs = pst.executeQuery();
+			}
+			if (!rs.next()) {
+				return -1;
+			}
+			Object lag = isMySql ? getMySqlLag(rs) : rs.getObject(1);
+			// mysql复制中断时延迟为null
+			return (lag == null) ? Double.MAX_VALUE : Double.parseDouble(lag.toString());
+		} catch (SQLException e) {
+			// 无权限等原因无法获取延迟,不影响从库可用性
+			logger.warn("获取从库复制延迟失败:{}", e.getMessage());
+			return -1;
+		} finally {
+			close(rs, pst);
+		}
+	}
+
+	/**
+	 * @TODO mysql 8.0.22之后为Seconds_Behind_Source,之前以及mariadb为Seconds_Behind_Master
+	 * @param rs
+	 * @return
+	 * @throws SQLException
+	 */
+	private Object getMySqlLag(ResultSet rs) throws SQLException {
+		ResultSetMetaData meta = rs.getMetaData();
+		for (int i = 1; i <= meta.getColumnCount(); i++) {
+			if ("Seconds_Behind_Source".equalsIgnoreCase(meta.getColumnLabel(i))) {
+				return rs.getObject(i);
+			}
+		}
+		return rs.getObject("Seconds_Behind_Master");
+	}
+
+	private void close(ResultSet rs, PreparedStatement pst) {
+		try {
+			if (rs != null) {
+				rs.close();
+			}
+			if (pst != null) {
+				pst.close();
+			}
+		} catch (SQLException e) {
+			logger.warn("关闭检测语句异常:{}", e.getMessage());
+		}
+	}
+
+	/**
+	 * @description 从库:包装数据源以统计在用连接数和连接占用耗时,获取连接失败时立即剔除
+	 */
+	private class Replica extends DelegatingDataSource {
+		private final String name;
+
+		private final DataSource target;
+
+		private final AtomicInteger inFlight = new AtomicInteger(0);
+
+		private volatile double ewmaMillis = 0;
+
+		private volatile double lagSeconds = 0;
+
+		private volatile boolean healthy = true;
+
+		/**
+		 * 不可用从库下次检测恢复的时间
+		 */
+		private volatile long retryAt = 0;
+
+		private final AtomicBoolean probing = new AtomicBoolean(false);
+
+		private Replica(String name, DataSource target) {
+			super(target);
+			this.name = name;
+			this.target = target;
+		}
+
+		private boolean isAvailable(int maxLag) {
+			// 未开启后台检测时,到达重试时间由一个线程同步检测恢复
+			if (!healthy && checkSeconds <= 0 && System.currentTimeMillis() >= retryAt
+					&& probing.compareAndSet(false, true)) {
+				try {
+					checkReplica(this);
+				} finally {
+					probing.set(false);
+				}
+			}
+			return healthy && lagSeconds <= maxLag;
+		}
+
+		private void markUnhealthy() {
+			healthy = false;
+			retryAt = System.currentTimeMillis() + 1000L * retrySeconds;
+		}
+
+		private double load() {
+			// 未有统计值时按1ms计算,避免新加入的从库负载被视为0而集中访问
+			return Math.max(ewmaMillis, 1) * (inFlight.get() + 1);
+		}
+
+		private synchronized void record(long millis) {
+			ewmaMillis = (ewmaMillis == 0) ? millis : ewmaAlpha * millis + (1 - ewmaAlpha) * ewmaMillis;
+		}
+
+		@Override
+		public Connection getConnection() throws SQLException {
+			final Connection conn;
+			try {
+				conn = super.getConnection();
+			} catch (SQLException e) {
+				markUnhealthy();
+				logger.warn("从库:{}获取连接失败,暂停读取直至检测恢复:{}", name, e.getMessage());
+				throw e;
+			}
+			inFlight.incrementAndGet();
+			final long start = System.currentTimeMillis();
+			return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+					new Class[] { Connection.class }, new InvocationHandler() {
+						private boolean closed = false;
+
+						@Override
+						public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+							if ("close".equals(method.getName()) && !closed) {
+								closed = true;
+								inFlight.decrementAndGet();
+								record(System.currentTimeMillis() - start);
+							}
+							try {
+								return method.invoke(conn, args);
+							} catch (InvocationTargetException e) {
+								throw e.getTargetException();
+							}
+						}
+					});
+		}
+	}
+
+	/**
+	 * @param primary the primary to set
+	 */
+	public void setPrimary(String primary) {
+		this.primary = primary;
+	}
+
+	/**
+	 * @param replicas 逗号分隔的从库数据源名称
+	 */
+	public void setReplicas(String replicas) {
+		List<String> names = new ArrayList<String>();
+		for (String name : replicas.split("\\,")) {
+			if (!"".equals(name.trim())) {
+				names.add(name.trim());
+			}
+		}
+		this.replicaNames = names.toArray(new String[names.size()]);
+	}
+
+	/**
+	 * @param maxLagSeconds the maxLagSeconds to set
+	 */
+	public void setMaxLagSeconds(int maxLagSeconds) {
+		this.maxLagSeconds = maxLagSeconds;
+	}
+
+	/**
+	 * @param primaryStickyMillis 写之后读主库的时长,仅在SqlExecuteStat写操作范围(或事务)内生效
+	 */
+	public void setPrimaryStickyMillis(int primaryStickyMillis) {
+		this.primaryStickyMillis = primaryStickyMillis;
+	}
+
+	/**
+	 * @param checkSeconds the checkSeconds to set
+	 */
+	public void setCheckSeconds(int checkSeconds) {
+		this.checkSeconds = checkSeconds;
+	}
+
+	/**
+	 * @param retrySeconds the retrySeconds to set
+	 */
+	public void setRetrySeconds(int retrySeconds) {
+		this.retrySeconds = retrySeconds;
+	}
+
+	/**
+	 * @param lagSql the lagSql to set
+	 */
+	public void setLagSql(String lagSql) {
+		this.lagSql = lagSql;
+	}
+
+	/**
+	 * @param ewmaAlpha the ewmaAlpha to set
+	 */
+	public void setEwmaAlpha(double ewmaAlpha) {
+		this.ewmaAlpha = ewmaAlpha;
+	}
+}
@@ -0,0 +1,76 @@
+package org.sagacity.sqltoy.plugins.threadpool;
+
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+
+import org.sagacity.sqltoy.SqlToyContext;
+
+/**
+ * @project sagacity-sqltoy
+ * @description sqltoy统一的线程池管理接口,分库分表并行、并行查询、分页并行count等按用途使用各自有界的共享线程池
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-17
+ */
+public interface ThreadPoolManager {
+	/**
+	 * 分库分表并行执行
+	 */
+	public final static String SHARDING = "sharding";
+
+	/**
+	 * 并行查询(parallQuery)
+	 */
+	public final static String PARALL_QUERY = "parallQuery";
+
+	/**
+	 * 分页并行查询count和记录
+	 */
+	public final static String PAGE_COUNT = "pageCount";
+
+	/**
+	 * 异步调用
+	 */
+	public final static String ASYNC = "async";
+
+	/**
+	 * 分块执行时预先分配主键(独立于async,避免异步调用中分块执行时相互等待)
+	 */
+	public final static String CHUNK_PREFETCH = "chunkPrefetch";
+
+	/**
+	 * @TODO 初始化
+	 * @param sqlToyContext
+	 */
+	public void initialize(SqlToyContext sqlToyContext);
+
+	/**
+	 * @TODO 获取指定用途的线程池,不存在则按配置创建
+	 * @param poolName
+	 * @return
+	 */
+	public ExecutorService getExecutor(String poolName);
+
+	/**
+	 * @TODO 在指定线程池中并行执行一组任务,按任务顺序返回结果;超过最大等待时长或任一任务异常则取消剩余任务并抛出异常
+	 * @param poolName
+	 * @param tasks
+	 * @param maxConcurrents 本批任务最大并行数量(<=0 表示不限制)
+	 * @param maxWaitSeconds 最大等待时长(<=0 表示取默认值)
+	 * @return
+	 * @throws Exception
+	 */
+	public <T> List<T> invokeAll(String poolName, List<Callable<T>> tasks, int maxConcurrents, long maxWaitSeconds)
+			throws Exception;
+
+	/**
+	 * @TODO 获取各个线程池的运行指标
+	 * @return
+	 */
+	public List<ThreadPoolMetrics> getMetrics();
+
+	/**
+	 * @TODO 销毁
+	 */
+	public void destroy();
+}
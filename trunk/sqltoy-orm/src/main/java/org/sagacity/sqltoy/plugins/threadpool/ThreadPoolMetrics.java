@@ -0,0 +1,112 @@
+package org.sagacity.sqltoy.plugins.threadpool;
+
+import java.io.Serializable;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 线程池运行指标
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-17
+ */
+public class ThreadPoolMetrics implements Serializable {
+
+	private static final long serialVersionUID = -2651573853372453061L;
+
+	/**
+	 * 线程池名称(用途)
+	 */
+	private String poolName;
+
+	/**
+	 * 最大线程数
+	 */
+	private int maxThreads;
+
+	/**
+	 * 当前线程数
+	 */
+	private int poolSize;
+
+	/**
+	 * 正在执行的任务数
+	 */
+	private int activeCount;
+
+	/**
+	 * 排队等待的任务数
+	 */
+	private int queueSize;
+
+	/**
+	 * 已完成任务数
+	 */
+	private long completedCount;
+
+	/**
+	 * 因饱和被拒绝(或由调用线程执行)的任务数
+	 */
+	private long rejectedCount;
+
+	public ThreadPoolMetrics(String poolName) {
+		this.poolName = poolName;
+	}
+
+	public String getPoolName() {
+		return poolName;
+	}
+
+	public int getMaxThreads() {
+		return maxThreads;
+	}
+
+	public void setMaxThreads(int maxThreads) {
+		this.maxThreads = maxThreads;
+	}
+
+	public int getPoolSize() {
+		return poolSize;
+	}
+
+	public void setPoolSize(int poolSize) {
+		this.poolSize = poolSize;
+	}
+
+	public int getActiveCount() {
+		return activeCount;
+	}
+
+	public void setActiveCount(int activeCount) {
+		this.activeCount = activeCount;
+	}
+
+	public int getQueueSize() {
+		return queueSize;
+	}
+
+	public void setQueueSize(int queueSize) {
+		this.queueSize = queueSize;
+	}
+
+	public long getCompletedCount() {
+		return completedCount;
+	}
+
+	public void setCompletedCount(long completedCount) {
+		this.completedCount = completedCount;
+	}
+
+	public long getRejectedCount() {
+		return rejectedCount;
+	}
+
+	public void setRejectedCount(long rejectedCount) {
+		this.rejectedCount = rejectedCount;
+	}
+
+	@Override
+	public String toString() {
+		return "poolName=" + poolName + ",maxThreads=" + maxThreads + ",poolSize=" + poolSize + ",activeCount="
+				+ activeCount + ",queueSize=" + queueSize + ",completedCount=" + completedCount + ",rejectedCount="
+				+ rejectedCount;
+	}
+}
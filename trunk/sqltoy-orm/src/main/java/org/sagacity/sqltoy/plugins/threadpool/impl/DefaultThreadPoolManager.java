@@ -0,0 +1,240 @@
+package org.sagacity.sqltoy.plugins.threadpool.impl;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sagacity.sqltoy.SqlToyConstants;
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.exception.DataAccessException;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolManager;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 默认线程池管理实现:每种用途一个有界线程池(固定最大线程数+有界队列),饱和时调用线程等待排队(背压)、
+ *              由调用线程执行或直接拒绝,jdk21+ 可配置使用虚拟线程
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-17
+ */
+public class DefaultThreadPoolManager implements ThreadPoolManager {
+	/**
+	 * 定义全局日志
+	 */
+	protected final Logger logger = LoggerFactory.getLogger(DefaultThreadPoolManager.class);
+
+	/**
+	 * 饱和时直接拒绝
+	 */
+	private final static String ABORT_POLICY = "abort";
+
+	/**
+	 * 饱和时由调用线程执行
+	 */
+	private final static String CALLER_RUNS_POLICY = "callerRuns";
+
+	private final ConcurrentHashMap<String, ThreadPoolExecutor> pools = new ConcurrentHashMap<String, ThreadPoolExecutor>();
+
+	private final ConcurrentHashMap<String, AtomicLong> rejectedCounts = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * 虚拟线程工厂(jdk21+且开启时有效)
+	 */
+	private ThreadFactory virtualThreadFactory;
+
+	private volatile boolean destroyed = false;
+
+	@Override
+	public void initialize(SqlToyContext sqlToyContext) {
+		if (SqlToyConstants.useVirtualThreads()) {
+			virtualThreadFactory = createVirtualThreadFactory();
+			if (virtualThreadFactory == null) {
+				logger.warn("当前jdk版本不支持虚拟线程,sqltoy线程池将使用普通线程!");
+			}
+		}
+	}
+
+	@Override
+	public ExecutorService getExecutor(String poolName) {
+		if (destroyed) {
+			throw new DataAccessException("sqltoy线程池已经销毁,不能再提交任务!");
+		}
+		return pools.computeIfAbsent(poolName, (name) -> {
+			return createPool(name);
+		});
+	}
+
+	@Override
+	public <T> List<T> invokeAll(String poolName, List<Callable<T>> tasks, int maxConcurrents, long maxWaitSeconds)
+			throws Exception {
+		List<T> results = new ArrayList<T>();
+		if (tasks == null || tasks.isEmpty()) {
+			return results;
+		}
+		int size = tasks.size();
+		// 本批任务同时提交的数量,其余任务待前面任务完成后再提交,避免单批任务占满线程池
+		int window = (maxConcurrents > 0 && maxConcurrents < size) ? maxConcurrents : size;
+		long deadline = System.nanoTime() + TimeUnit.SECONDS
+				.toNanos((maxWaitSeconds > 0) ? maxWaitSeconds : SqlToyConstants.PARALLEL_MAXWAIT_SECONDS);
+		ExecutorCompletionService<T> completionService = new ExecutorCompletionService<T>(getExecutor(poolName));
+		List<Future<T>> futures = new ArrayList<Future<T>>(size);
+		Map<Future<T>, Integer> futureIndexes = new IdentityHashMap<Future<T>, Integer>();
+		Future<T> future;
+		int submitted = 0;
+		try {
+			for (; submitted < window; submitted++) {
+				future = completionService.submit(tasks.get(submitted));
+				futures.add(future);
+				futureIndexes.put(future, submitted);
+			}
+			for (int completed = 0; completed < size; completed++) {
+				future = completionService.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+				if (future == null) {
+					throw new DataAccessException("线程池[" + poolName + "]并行任务执行超时,已完成:" + completed + "/" + size + "!");
+				}
+				try {
+					future.get();
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					logger.error("线程池[{}]第:{} 个并行任务执行异常:{}", poolName, futureIndexes.get(future) + 1,
+							cause.getMessage());
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					throw new DataAccessException("并行任务执行异常:" + cause.getMessage(), cause);
+				}
+				if (submitted < size) {
+					future = completionService.submit(tasks.get(submitted));
+					futures.add(future);
+					futureIndexes.put(future, submitted);
+					submitted++;
+				}
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new DataAccessException("线程池[" + poolName + "]并行任务等待被中断!", e);
+		} finally {
+			// 超时或异常时取消尚未完成的任务
+			for (Future<T> item : futures) {
+				if (!item.isDone()) {
+					item.cancel(true);
+				}
+			}
+		}
+		for (Future<T> item : futures) {
+			results.add(item.get());
+		}
+		return results;
+	}
+
+	@Override
+	public List<ThreadPoolMetrics> getMetrics() {
+		List<ThreadPoolMetrics> result = new ArrayList<ThreadPoolMetrics>();
+		ThreadPoolExecutor pool;
+		ThreadPoolMetrics metrics;
+		for (Map.Entry<String, ThreadPoolExecutor> entry : pools.entrySet()) {
+			pool = entry.getValue();
+			metrics = new ThreadPoolMetrics(entry.getKey());
+			metrics.setMaxThreads(pool.getMaximumPoolSize());
+			metrics.setPoolSize(pool.getPoolSize());
+			metrics.setActiveCount(pool.getActiveCount());
+			metrics.setQueueSize(pool.getQueue().size());
+			metrics.setCompletedCount(pool.getCompletedTaskCount());
+			metrics.setRejectedCount(rejectedCounts.get(entry.getKey()).get());
+			result.add(metrics);
+		}
+		return result;
+	}
+
+	@Override
+	public void destroy() {
+		destroyed = true;
+		for (ThreadPoolExecutor pool : pools.values()) {
+			pool.shutdownNow();
+		}
+		pools.clear();
+	}
+
+	/**
+	 * @TODO 创建有界线程池
+	 * @param poolName
+	 * @return
+	 */
+	private ThreadPoolExecutor createPool(final String poolName) {
+		int threads = SqlToyConstants.getExecutorThreads(poolName);
+		final AtomicLong rejectedCount = new AtomicLong(0);
+		rejectedCounts.put(poolName, rejectedCount);
+		final String policy = SqlToyConstants.getExecutorRejectPolicy();
+		RejectedExecutionHandler rejectedHandler = new RejectedExecutionHandler() {
+			@Override
+			public void rejectedExecution(Runnable task, ThreadPoolExecutor executor) {
+				rejectedCount.incrementAndGet();
+				if (ABORT_POLICY.equalsIgnoreCase(policy) || executor.isShutdown()) {
+					throw new RejectedExecutionException("sqltoy线程池[" + poolName + "]已饱和,活跃线程:"
+							+ executor.getActiveCount() + ",排队任务:" + executor.getQueue().size() + "!");
+				}
+				if (CALLER_RUNS_POLICY.equalsIgnoreCase(policy)) {
+					task.run();
+					return;
+				}
+				// 默认调用线程等待队列空闲后排队,形成背压
+				try {
+					executor.getQueue().put(task);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new RejectedExecutionException("sqltoy线程池[" + poolName + "]排队等待被中断!", e);
+				}
+			}
+		};
+		final AtomicInteger threadIndex = new AtomicInteger(0);
+		final ThreadFactory virtualFactory = virtualThreadFactory;
+		ThreadFactory threadFactory = new ThreadFactory() {
+			@Override
+			public Thread newThread(Runnable runnable) {
+				Thread thread = (virtualFactory == null) ? new Thread(runnable) : virtualFactory.newThread(runnable);
+				thread.setName("sqltoy-" + poolName + "-" + threadIndex.incrementAndGet());
+				if (virtualFactory == null) {
+					thread.setDaemon(true);
+				}
+				return thread;
+			}
+		};
+		ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(SqlToyConstants.getExecutorQueueSize()), threadFactory,
+				rejectedHandler);
+		// 空闲时线程全部回收
+		pool.allowCoreThreadTimeOut(true);
+		logger.debug("创建sqltoy线程池:{},最大线程数:{}", poolName, threads);
+		return pool;
+	}
+
+	/**
+	 * @TODO jdk21+ 通过Thread.ofVirtual().factory() 获取虚拟线程工厂
+	 * @return
+	 */
+	private ThreadFactory createVirtualThreadFactory() {
+		try {
+			Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			return (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		} catch (Exception e) {
+			return null;
+		}
+	}
+}
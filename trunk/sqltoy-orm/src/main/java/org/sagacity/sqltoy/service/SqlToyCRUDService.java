@@ -7,6 +7,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
+import org.sagacity.sqltoy.dao.SqlToyAsyncDao;
 import org.sagacity.sqltoy.model.CacheMatchFilter;
 import org.sagacity.sqltoy.model.PaginationModel;
 import org.sagacity.sqltoy.model.ParallQuery;
@@ -21,6 +22,7 @@ import org.sagacity.sqltoy.translate.AbstractTranslateHandler;
  * @author zhongxuchen
  * @version v1.0,Date:2012-7-16
  * @modify Date:2020-4-23 {对分页查询增加泛型支持}
+ * @modify Date:2021-05-20 {增加async()异步调用门面}
  */
 @SuppressWarnings("rawtypes")
 public interface SqlToyCRUDService {
@@ -353,4 +355,10 @@ public interface SqlToyCRUDService {
 	 */
 	public <T> List<QueryResult<T>> parallQuery(List<ParallQuery> parallQueryList, Map<String, Object> paramsMap,
 			ParallelConfig parallelConfig);
+
+	/**
+	 * @TODO 提供返回CompletableFuture的异步调用门面(不参与调用线程的事务)
+	 * @return
+	 */
+	public SqlToyAsyncDao async();
 }
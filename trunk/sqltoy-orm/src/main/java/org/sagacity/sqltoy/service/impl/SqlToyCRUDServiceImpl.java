@@ -8,6 +8,7 @@ import java.util.Set;
 
 import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
 import org.sagacity.sqltoy.config.model.EntityMeta;
+import org.sagacity.sqltoy.dao.SqlToyAsyncDao;
 import org.sagacity.sqltoy.dao.SqlToyLazyDao;
 import org.sagacity.sqltoy.exception.DataAccessException;
 import org.sagacity.sqltoy.executor.QueryExecutor;
@@ -544,4 +545,8 @@ public class SqlToyCRUDServiceImpl implements SqlToyCRUDService {
 		return sqlToyLazyDao.convertType(sourcePage, resultType);
 	}
 
+	@Override
+	public SqlToyAsyncDao async() {
+		return sqlToyLazyDao.async();
+	}
 }
@@ -12,18 +12,15 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
 
 import javax.sql.DataSource;
 
-import org.sagacity.sqltoy.SqlToyConstants;
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.callback.AbstractDataSourceCallbackHandler;
 import org.sagacity.sqltoy.callback.InsertRowCallbackHandler;
 import org.sagacity.sqltoy.callback.AbstractReflectPropertyHandler;
+import org.sagacity.sqltoy.callback.StreamResultHandler;
 import org.sagacity.sqltoy.callback.UpdateRowHandler;
 import org.sagacity.sqltoy.config.SqlConfigParseUtils;
 import org.sagacity.sqltoy.config.model.EntityMeta;
@@ -59,7 +56,9 @@ import org.sagacity.sqltoy.plugins.IUnifyFieldsHandler;
 import org.sagacity.sqltoy.plugins.datasource.DataSourceSelector;
 import org.sagacity.sqltoy.plugins.id.IdGenerator;
 import org.sagacity.sqltoy.plugins.id.impl.RedisIdGenerator;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolManager;
 import org.sagacity.sqltoy.translate.AbstractTranslateHandler;
+import org.sagacity.sqltoy.translate.cache.TranslateDictionary;
 import org.sagacity.sqltoy.utils.BeanUtil;
 import org.sagacity.sqltoy.utils.BeanWrapper;
 import org.sagacity.sqltoy.utils.CollectionUtil;
@@ -92,6 +91,9 @@ import org.springframework.beans.factory.annotation.Qualifier;
  * @modify Date:2020-4-5 {分页PaginationModel中设置skipQueryCount=true跳过查总记录,默认false}
  * @modify Date:2020-8-25 {增加并行查询功能,为极端场景下提升查询效率,为开发者拆解复杂sql做多次查询影响性能提供了解决之道}
  * @modify Date:2020-10-20 {findByQuery 增加lockMode,便于查询并锁定记录}
+ * @modify Date:2021-05-17 {并行查询改为使用SqlToyContext共享的有界线程池}
+ * @modify Date:2021-05-19 {分页增加keyset(seek)模式}
+ * @modify Date:2021-05-20 {cacheMatchKeys通过缓存字典的模糊检索索引匹配,不再全量遍历缓存}
  */
 //新的模式不鼓励自己继承DaoSupport,一般情况下使用SqlToyLazyDao即可
 @SuppressWarnings("rawtypes")
@@ -659,6 +661,22 @@ public class SqlToyDaoSupport {
 				this.getDataSource(queryExecutor.getInnerModel().dataSource, sqlToyConfig));
 	}
 
+	/**
+	 * @TODO 以queryExecutor 封装sql、条件等进行流式查询,每行结果映射成resultType后交给streamResultHandler,
+	 *       结果不在内存中累积(postgresql等需在事务中即autoCommit=false时fetchSize才生效)
+	 * @param <T>
+	 * @param queryExecutor
+	 * @param streamResultHandler
+	 * @return 处理的记录数量
+	 */
+	protected <T> Long streamByQuery(final QueryExecutor queryExecutor,
+			final StreamResultHandler<T> streamResultHandler) {
+		SqlToyConfig sqlToyConfig = sqlToyContext.getSqlToyConfig(queryExecutor, SqlType.search,
+				getDialect(queryExecutor.getInnerModel().dataSource));
+		return dialectFactory.streamByQuery(sqlToyContext, queryExecutor, sqlToyConfig, streamResultHandler,
+				this.getDataSource(queryExecutor.getInnerModel().dataSource, sqlToyConfig));
+	}
+
 	/**
 	 * @todo 以QueryExecutor 封装sql、参数等条件，实现分页查询
 	 * @param paginationModel
@@ -668,6 +686,11 @@ public class SqlToyDaoSupport {
 	protected QueryResult findPageByQuery(final PaginationModel paginationModel, final QueryExecutor queryExecutor) {
 		SqlToyConfig sqlToyConfig = sqlToyContext.getSqlToyConfig(queryExecutor, SqlType.search,
 				getDialect(queryExecutor.getInnerModel().dataSource));
+		// keyset(seek)分页
+		if (paginationModel.isKeyset() || queryExecutor.getInnerModel().keysetColumns != null) {
+			return dialectFactory.findKeysetPage(sqlToyContext, queryExecutor, sqlToyConfig, paginationModel,
+					this.getDataSource(queryExecutor.getInnerModel().dataSource, sqlToyConfig));
+		}
 		// 跳过查询总记录数量
 		if (paginationModel.getSkipQueryCount() != null && paginationModel.getSkipQueryCount()) {
 			return dialectFactory.findSkipTotalCountPage(sqlToyContext, queryExecutor, sqlToyConfig,
@@ -1263,22 +1286,19 @@ public class SqlToyDaoSupport {
 		}
 		CacheMatchExtend extendArgs = cacheMatchFilter.getCacheFilterArgs();
 		int[] nameIndexes = extendArgs.matchIndexs;
-		HashMap<String, Object[]> cacheDatas = this.sqlToyContext.getTranslateManager()
-				.getCacheData(extendArgs.cacheName, extendArgs.cacheType);
-		Collection<Object[]> values = cacheDatas.values();
+		TranslateDictionary cacheDatas = this.sqlToyContext.getTranslateManager()
+				.getCacheDictionary(extendArgs.cacheName, extendArgs.cacheType);
 		List<String> keySet = new ArrayList<String>();
+		if (cacheDatas == null || cacheDatas.isEmpty()) {
+			return new String[0];
+		}
 		String[] lowName = matchRegex.trim().toLowerCase().split("\\s+");
 		int meter = 0;
 		int cacheKeyIndex = extendArgs.cacheKeyIndex;
-		for (Object[] row : values) {
-			for (int index : nameIndexes) {
-				// 字符包含
-				if (row[index] != null && StringUtil.like(row[index].toString().toLowerCase(), lowName)) {
-					meter++;
-					keySet.add(row[cacheKeyIndex].toString());
-					break;
-				}
-			}
+		// 通过缓存的模糊检索索引取得名称字符包含的行
+		for (int row : cacheDatas.like(nameIndexes, lowName)) {
+			meter++;
+			keySet.add(cacheDatas.getValue(row, cacheKeyIndex).toString());
 			// 不超过1000个(作为in条件值有限制)
 			if (meter == extendArgs.matchSize) {
 				break;
@@ -1310,7 +1330,8 @@ public class SqlToyDaoSupport {
 			throw new IllegalArgumentException("缓存翻译行取key和设置name的反调函数不能为null!");
 		}
 		// 获取缓存,框架会自动判断null并实现缓存数据的加载和更新检测
-		final HashMap<String, Object[]> cache = getTranslateCache(cacheName, cacheType);
+		final TranslateDictionary cache = this.sqlToyContext.getTranslateManager().getCacheDictionary(cacheName,
+				cacheType);
 		if (cache == null || cache.isEmpty()) {
 			return;
 		}
@@ -1320,7 +1341,7 @@ public class SqlToyDaoSupport {
 		Object name;
 		// 默认名称字段列为1
 		int cacheIndex = (cacheNameIndex == null) ? 1 : cacheNameIndex.intValue();
-		Object[] keyRow;
+		int keyRow;
 		// 循环获取行数据
 		while (iter.hasNext()) {
 			row = iter.next();
@@ -1328,9 +1349,9 @@ public class SqlToyDaoSupport {
 				// 反调获取需要翻译的key
 				key = handler.getKey(row);
 				if (key != null) {
-					keyRow = cache.get(key.toString());
+					keyRow = cache.indexOf(key);
 					// 从缓存中获取对应的名称
-					name = (keyRow == null) ? null : keyRow[cacheIndex];
+					name = (keyRow < 0) ? null : cache.getValue(keyRow, cacheIndex);
 					// 反调设置行数据中具体列或属性翻译后的名称
 					handler.setName(row, (name == null) ? "" : name.toString());
 				}
@@ -1558,6 +1579,11 @@ public class SqlToyDaoSupport {
 						.getRows();
 			}
 		}
+		// keyset(seek)分页
+		if (paginationModel.isKeyset()) {
+			return dialectFactory.findKeysetPage(sqlToyContext, queryExecutor, sqlToyConfig, paginationModel,
+					realDataSource).getPageResult();
+		}
 		// 跳过总记录数形式的分页
 		if (paginationModel.getSkipQueryCount()) {
 			return dialectFactory.findSkipTotalCountPage(sqlToyContext, queryExecutor, sqlToyConfig,
@@ -1776,52 +1802,39 @@ public class SqlToyDaoSupport {
 			thread = parallQueryList.size();
 		}
 		List<QueryResult<T>> results = new ArrayList<QueryResult<T>>();
-		ExecutorService pool = null;
 		try {
-			pool = Executors.newFixedThreadPool(thread);
-			List<Future<ParallQueryResult>> futureResult = new ArrayList<Future<ParallQueryResult>>();
+			List<Callable<ParallQueryResult>> tasks = new ArrayList<Callable<ParallQueryResult>>();
 			SqlToyConfig sqlToyConfig;
-			Future<ParallQueryResult> future;
 			for (ParallQuery query : parallQueryList) {
 				sqlToyConfig = sqlToyContext.getSqlToyConfig(
 						new QueryExecutor(query.getExtend().sql).resultType(query.getExtend().resultType),
 						SqlType.search, getDialect(query.getExtend().dataSource));
 				// 自定义条件参数
 				if (query.getExtend().selfCondition) {
-					future = pool.submit(new ParallQueryExecutor(sqlToyContext, dialectFactory, sqlToyConfig, query,
+					tasks.add(new ParallQueryExecutor(sqlToyContext, dialectFactory, sqlToyConfig, query,
 							query.getExtend().names, query.getExtend().values,
 							getDataSource(query.getExtend().dataSource, sqlToyConfig)));
 				} else {
-					future = pool.submit(new ParallQueryExecutor(sqlToyContext, dialectFactory, sqlToyConfig, query,
-							paramNames, paramValues, getDataSource(query.getExtend().dataSource, sqlToyConfig)));
+					tasks.add(new ParallQueryExecutor(sqlToyContext, dialectFactory, sqlToyConfig, query, paramNames,
+							paramValues, getDataSource(query.getExtend().dataSource, sqlToyConfig)));
 				}
-				futureResult.add(future);
-			}
-			pool.shutdown();
-			// 设置最大等待时长
-			if (parallConfig.getMaxWaitSeconds() != null) {
-				pool.awaitTermination(parallConfig.getMaxWaitSeconds(), TimeUnit.SECONDS);
-			} else {
-				pool.awaitTermination(SqlToyConstants.PARALLEL_MAXWAIT_SECONDS, TimeUnit.SECONDS);
 			}
+			// 在共享线程池中执行,超过最大等待时长则取消未完成的查询
+			List<ParallQueryResult> queryResults = sqlToyContext.getThreadPoolManager().invokeAll(
+					ThreadPoolManager.PARALL_QUERY, tasks, thread,
+					(parallConfig.getMaxWaitSeconds() == null) ? -1 : parallConfig.getMaxWaitSeconds());
 			ParallQueryResult item;
-			int index = 0;
-			for (Future<ParallQueryResult> result : futureResult) {
-				index++;
-				item = result.get();
+			for (int index = 0; index < queryResults.size(); index++) {
+				item = queryResults.get(index);
 				// 存在执行异常则整体抛出
 				if (item != null && !item.isSuccess()) {
-					throw new DataAccessException("第:{} 个sql执行异常:{}!", index, item.getMessage());
+					throw new DataAccessException("第:{} 个sql执行异常:{}!", index + 1, item.getMessage());
 				}
 				results.add(item.getResult());
 			}
 		} catch (Exception e) {
 			e.printStackTrace();
 			throw new DataAccessException("并行查询执行错误:" + e.getMessage(), e);
-		} finally {
-			if (pool != null) {
-				pool.shutdownNow();
-			}
 		}
 		return results;
 	}
@@ -2,11 +2,14 @@ package org.sagacity.sqltoy.translate;
 
 import java.time.LocalDateTime;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.translate.cache.AbstractTranslateCacheManager;
+import org.sagacity.sqltoy.translate.cache.TranslateDictionary;
 import org.sagacity.sqltoy.translate.model.CacheCheckResult;
 import org.sagacity.sqltoy.translate.model.CheckerConfigModel;
 import org.sagacity.sqltoy.translate.model.TimeSection;
@@ -22,6 +25,8 @@ import org.slf4j.LoggerFactory;
  * @modify {Date:2019-1-22,修改检测时间格式为yyyy-MM-dd HH:mm:ss 避免时间对比精度差异}
  * @modify {Date:2019-10-14,增加集群节点的时间差异参数,便于包容性检测缓存更新}
  * @modify {Date:2020-3-26,增加缓存增量更新机制,而不是清除缓存}
+ * @modify {Date:2021-05-14,缓存改为不可变字典,增量更新构造新字典后整体替换}
+ * @modify {Date:2021-05-15,增量更新支持删除、数据版本水位,变更以叠加层方式一次性发布;非增量检测改为重新加载后整体替换}
  */
 public class CacheUpdateWatcher extends Thread {
 	/**
@@ -34,6 +39,16 @@ public class CacheUpdateWatcher extends Thread {
 	 */
 	private ConcurrentHashMap<String, Long> lastCheckTime = new ConcurrentHashMap<String, Long>();
 
+	/**
+	 * 增量缓存已经应用的数据版本水位(最大的记录最后修改时间)
+	 */
+	private ConcurrentHashMap<String, Long> versionWatermark = new ConcurrentHashMap<String, Long>();
+
+	/**
+	 * 增量缓存在检测重叠窗口内已经应用的记录版本(避免重复应用旧版本)
+	 */
+	private HashMap<String, HashMap<String, Long>> appliedVersions = new HashMap<String, HashMap<String, Long>>();
+
 	/**
 	 * 更新检测任务前缀
 	 */
@@ -101,6 +116,7 @@ public class CacheUpdateWatcher extends Thread {
 		}
 		boolean isRun = true;
 		Long preCheck;
+		Long watermark;
 		CheckerConfigModel checkerConfig;
 		long interval;
 		long nowInterval;
@@ -127,8 +143,13 @@ public class CacheUpdateWatcher extends Thread {
 				if (nowInterval >= interval) {
 					// 更新最后检测时间
 					lastCheckTime.put(checker, Long.valueOf(DateUtil.parse(nowMillis, dateFmt).getTime()));
+					// 存在数据版本水位则以数据自身时间为基准,避免集群节点时间差异导致遗漏
+					watermark = checkerConfig.isIncrement() && checkerConfig.getVersionIndex() >= 0
+							? versionWatermark.get(checkerConfig.getCache())
+							: null;
 					// 执行检测(检测时间扣减集群节点时间偏离)
-					doCheck(sqlToyContext, checkerConfig, DateUtil.addSecond(preCheck, deviationSeconds).getTime());
+					doCheck(sqlToyContext, checkerConfig,
+							DateUtil.addSecond((watermark == null) ? preCheck : watermark, deviationSeconds).getTime());
 				}
 			}
 			try {
@@ -173,56 +194,100 @@ public class CacheUpdateWatcher extends Thread {
 		if (results == null || results.isEmpty()) {
 			return;
 		}
-		// 非增量更新检测(发生变更即清空缓存)
+		TranslateManager translateManager = sqlToyContext.getTranslateManager();
+		// 非增量更新检测(发生变更即重新加载后整体替换,加载失败则清空缓存)
 		if (!checkerConfig.isIncrement()) {
 			try {
 				for (CacheCheckResult result : results) {
 					logger.debug("检测到缓存发生更新: cacheName:{} cacheType:{}!", result.getCacheName(),
 							(result.getCacheType() == null) ? "无" : result.getCacheType());
-					translateCacheManager.clear(result.getCacheName(), result.getCacheType());
+					if (!translateManager.reload(result.getCacheName(), result.getCacheType())) {
+						translateCacheManager.clear(result.getCacheName(), result.getCacheType());
+					}
 				}
 			} catch (Exception e) {
 				e.printStackTrace();
 				logger.error("缓存变更检测检测到更新后,清除缓存发生异常:{}", e.getMessage());
 			}
-		} // 增量直接更新缓存
+		} // 增量更新:基于当前版本构造新版本字典(更新+删除一次性应用)后整体发布
 		else {
 			String cacheName = checkerConfig.getCache();
 			try {
 				logger.debug("检测到缓存cacheName:{} 发生:{} 条记录更新!", cacheName, results.size());
-				HashMap<String, Object[]> cacheData;
-				int count = 0;
-				// 内部不存在分组的缓存
-				if (!checkerConfig.isHasInsideGroup()) {
-					cacheData = translateCacheManager.getCache(cacheName, null);
-					// 缓存为null,等待首次调用进行加载
-					if (cacheData == null) {
-						return;
+				boolean useVersion = checkerConfig.getVersionIndex() >= 0;
+				HashMap<String, Long> applied = null;
+				if (useVersion) {
+					applied = appliedVersions.get(cacheName);
+					if (applied == null) {
+						applied = new HashMap<String, Long>();
+						appliedVersions.put(cacheName, applied);
 					}
-					for (CacheCheckResult result : results) {
-						// key不能为null
-						if (result.getItem()[0] != null) {
-							cacheData.put(result.getItem()[0].toString(), result.getItem());
-							count++;
+				}
+				Long watermark = versionWatermark.get(cacheName);
+				long maxVersion = (watermark == null) ? Long.MIN_VALUE : watermark.longValue();
+				// 按缓存分类归集变更记录(非分组缓存分类为null),同一key后者为准
+				LinkedHashMap<String, LinkedHashMap<String, Object[]>> typeChanges = new LinkedHashMap<String, LinkedHashMap<String, Object[]>>();
+				LinkedHashMap<String, Object[]> changes;
+				String cacheType;
+				String key;
+				String appliedKey;
+				Long appliedVersion;
+				int skipCount = 0;
+				for (CacheCheckResult result : results) {
+					// key不能为null
+					if (result.getItem() == null || result.getItem()[0] == null) {
+						continue;
+					}
+					cacheType = checkerConfig.isHasInsideGroup() ? result.getCacheType() : null;
+					key = result.getItem()[0].toString();
+					// 存在版本:检测时间窗口有重叠,已经应用过同版本或更新版本的记录跳过
+					if (useVersion && result.getVersion() != null) {
+						appliedKey = (cacheType == null) ? key : cacheType.concat(":").concat(key);
+						appliedVersion = applied.get(appliedKey);
+						if (appliedVersion != null && appliedVersion.longValue() >= result.getVersion().longValue()) {
+							skipCount++;
+							continue;
+						}
+						applied.put(appliedKey, result.getVersion());
+						if (result.getVersion().longValue() > maxVersion) {
+							maxVersion = result.getVersion().longValue();
 						}
 					}
-				} // 内部存在分组的缓存(如数据字典)
-				else {
-					for (CacheCheckResult result : results) {
-						if (result.getItem()[0] != null) {
-							cacheData = translateCacheManager.getCache(cacheName, result.getCacheType());
-							// 为null则等待首次调用加载
-							if (cacheData != null) {
-								cacheData.put(result.getItem()[0].toString(), result.getItem());
-								count++;
-							} else {
-								logger.warn("增量缓存更新:cacheName={},cacheType={},未取到对应缓存数据,请检查数据结构是否正确(或缓存未必调用并初始化过)!",
-										cacheName, result.getCacheType());
-							}
+					changes = typeChanges.get(cacheType);
+					if (changes == null) {
+						changes = new LinkedHashMap<String, Object[]>();
+						typeChanges.put(cacheType, changes);
+					}
+					// 删除以null作为墓碑
+					changes.put(key, result.isDeleted() ? null : result.getItem());
+				}
+				TranslateDictionary dictionary;
+				int count = 0;
+				for (Map.Entry<String, LinkedHashMap<String, Object[]>> entry : typeChanges.entrySet()) {
+					dictionary = translateCacheManager.getDictionary(cacheName, entry.getKey());
+					// 缓存为null,等待首次调用进行加载
+					if (dictionary == null) {
+						if (entry.getKey() != null) {
+							logger.warn("增量缓存更新:cacheName={},cacheType={},未取到对应缓存数据,请检查数据结构是否正确(或缓存未必调用并初始化过)!",
+									cacheName, entry.getKey());
 						}
+						continue;
 					}
+					// 新版本共用原字典,仅构造变更层,变更层过大时合并成单层字典
+					dictionary = dictionary.apply(entry.getValue());
+					if (dictionary.needCompact()) {
+						dictionary = dictionary.compact();
+					}
+					translateManager.publish(cacheName, entry.getKey(), dictionary);
+					count += entry.getValue().size();
+				}
+				if (useVersion && maxVersion != Long.MIN_VALUE) {
+					versionWatermark.put(cacheName, maxVersion);
+					// 清理已经在检测窗口之外的记录版本
+					final long windowStart = maxVersion + deviationSeconds * 1000L;
+					applied.values().removeIf(version -> version.longValue() < windowStart);
 				}
-				logger.debug("缓存实际完成:{} 条记录更新!", count);
+				logger.debug("缓存实际完成:{} 条记录更新,跳过已应用:{} 条!", count, skipCount);
 			} catch (Exception e) {
 				e.printStackTrace();
 				logger.error("缓存增量更新检测,更新缓存:{} 发生异常:{}", cacheName, e.getMessage());
@@ -210,6 +210,9 @@ public class TranslateFactory {
 			return null;
 		}
 		if (result.get(0) instanceof CacheCheckResult) {
+			for (Object item : result) {
+				markIncrement((CacheCheckResult) item, checkerConfig);
+			}
 			return result;
 		}
 		List<Object[]> cacheSet = null;
@@ -243,11 +246,43 @@ public class TranslateFactory {
 			} else {
 				item.setItem(row);
 			}
+			markIncrement(item, checkerConfig);
 			checkResult.add(item);
 		}
 		return checkResult;
 	}
 
+	/**
+	 * @todo 根据检测器配置的删除标记列、版本列设置增量记录的删除状态和版本
+	 * @param item
+	 * @param checkerConfig
+	 */
+	private static void markIncrement(CacheCheckResult item, CheckerConfigModel checkerConfig) {
+		Object[] row = item.getItem();
+		if (row == null) {
+			return;
+		}
+		int deleteIndex = checkerConfig.getDeleteIndex();
+		if (deleteIndex >= 0 && deleteIndex < row.length && row[deleteIndex] != null
+				&& row[deleteIndex].toString().equals(checkerConfig.getDeleteValue())) {
+			item.setDeleted(true);
+		}
+		int versionIndex = checkerConfig.getVersionIndex();
+		if (item.getVersion() == null && versionIndex >= 0 && versionIndex < row.length
+				&& row[versionIndex] != null) {
+			try {
+				if (row[versionIndex] instanceof Number) {
+					item.setVersion(((Number) row[versionIndex]).longValue());
+				} else {
+					item.setVersion(DateUtil.convertDateObject(row[versionIndex]).getTime());
+				}
+			} catch (Exception e) {
+				logger.warn("缓存:{} 增量记录版本列:{} 值:{} 无法转换为时间!", checkerConfig.getCache(), versionIndex,
+						row[versionIndex]);
+			}
+		}
+	}
+
 	/**
 	 * @todo 重新查询获取缓存数据
 	 * @param sqlToyContext
@@ -11,6 +11,7 @@ import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.config.model.Translate;
 import org.sagacity.sqltoy.model.TranslateExtend;
 import org.sagacity.sqltoy.translate.cache.AbstractTranslateCacheManager;
+import org.sagacity.sqltoy.translate.cache.TranslateDictionary;
 import org.sagacity.sqltoy.translate.cache.impl.TranslateEhcacheManager;
 import org.sagacity.sqltoy.translate.model.CheckerConfigModel;
 import org.sagacity.sqltoy.translate.model.DefaultConfig;
@@ -26,6 +27,9 @@ import org.slf4j.LoggerFactory;
  * @version v1.0,Date:2013年4月8日
  * @modify {Date:2017-12-8,提取缓存时增加分库策略判断,如果存在分库策略dataSource则按照分库逻辑提取}
  * @modify {Date:2018-1-5,增强缓存更新检测机制}
+ * @modify {Date:2021-05-14,翻译改为使用不可变的TranslateDictionary,整数key直接按数值匹配}
+ * @modify {Date:2021-05-15,增加publish、reload供缓存更新检测整体替换字典版本}
+ * @modify {Date:2021-05-20,getCacheData保持返回副本,只读访问使用getCacheDictionary}
  */
 public class TranslateManager {
 	/**
@@ -135,21 +139,20 @@ public class TranslateManager {
 	 * @return
 	 * @throws Exception
 	 */
-	public HashMap<String, HashMap<String, Object[]>> getTranslates(Connection conn,
-			HashMap<String, Translate> translates) {
-		HashMap<String, HashMap<String, Object[]>> result = new HashMap<String, HashMap<String, Object[]>>();
-		HashMap<String, Object[]> cache;
+	public HashMap<String, TranslateDictionary> getTranslates(Connection conn, HashMap<String, Translate> translates) {
+		HashMap<String, TranslateDictionary> result = new HashMap<String, TranslateDictionary>();
+		TranslateDictionary cache;
 		TranslateConfigModel cacheModel;
 		TranslateExtend extend;
 		for (Map.Entry<String, Translate> entry : translates.entrySet()) {
 			extend = entry.getValue().getExtend();
 			if (translateMap.containsKey(extend.cache)) {
 				cacheModel = translateMap.get(extend.cache);
-				cache = getCacheData(cacheModel, extend.cacheType);
+				cache = getCacheDictionary(cacheModel, extend.cacheType);
 				if (cache != null) {
 					result.put(extend.column, cache);
 				} else {
-					result.put(extend.column, new HashMap<String, Object[]>());
+					result.put(extend.column, TranslateDictionary.EMPTY);
 					if (logger.isWarnEnabled()) {
 						logger.warn("sqltoy translate:cacheName={},cache-type={},column={}配置不正确,未获取对应cache数据!",
 								cacheModel.getCache(), extend.cacheType, extend.column);
@@ -172,15 +175,16 @@ public class TranslateManager {
 	 * @return
 	 * @throws Exception
 	 */
-	private HashMap<String, Object[]> getCacheData(TranslateConfigModel cacheModel, String cacheType) {
+	private TranslateDictionary getCacheDictionary(TranslateConfigModel cacheModel, String cacheType) {
 		// 从缓存中提取数据
-		HashMap<String, Object[]> result = translateCacheManager.getCache(cacheModel.getCache(), cacheType);
+		TranslateDictionary result = translateCacheManager.getDictionary(cacheModel.getCache(), cacheType);
 		// 数据为空则执行调用逻辑提取数据放入缓存，否则直接返回
 		if (result == null || result.isEmpty()) {
-			result = TranslateFactory.getCacheData(sqlToyContext, cacheModel, cacheType);
+			HashMap<String, Object[]> cacheData = TranslateFactory.getCacheData(sqlToyContext, cacheModel, cacheType);
 			// 放入缓存
-			if (result != null && !result.isEmpty()) {
-				translateCacheManager.put(cacheModel, cacheModel.getCache(), cacheType, result);
+			if (cacheData != null && !cacheData.isEmpty()) {
+				result = TranslateDictionary.of(cacheData);
+				translateCacheManager.putDictionary(cacheModel, cacheModel.getCache(), cacheType, result);
 			}
 		}
 		return result;
@@ -199,19 +203,30 @@ public class TranslateManager {
 	}
 
 	/**
-	 * @todo 提供对外的访问(如要做增量更新可以对这里的数据进行修改即可达到缓存的更新作用)
+	 * @todo 提供对外的访问(返回缓存数据的副本,如要做增量更新需修改后通过put写回缓存;只读访问请使用getCacheDictionary避免复制)
 	 * @param cacheName
 	 * @param cacheType (一般为null,不为空时一般用于数据字典等同于dictType)
 	 * @return
 	 * @throws Exception
 	 */
 	public HashMap<String, Object[]> getCacheData(String cacheName, String cacheType) {
+		TranslateDictionary dictionary = getCacheDictionary(cacheName, cacheType);
+		return (dictionary == null) ? null : dictionary.toMap();
+	}
+
+	/**
+	 * @todo 获取缓存对应的不可变字典(无需复制数据,适合频繁访问的场景)
+	 * @param cacheName
+	 * @param cacheType (一般为null,不为空时一般用于数据字典等同于dictType)
+	 * @return
+	 */
+	public TranslateDictionary getCacheDictionary(String cacheName, String cacheType) {
 		TranslateConfigModel cacheModel = translateMap.get(cacheName);
 		if (cacheModel == null) {
 			logger.error("cacheName:{} 没有配置,请检查sqltoy-translate.xml文件!", cacheName);
 			return null;
 		}
-		return getCacheData(cacheModel, cacheType);
+		return getCacheDictionary(cacheModel, cacheType);
 	}
 
 	/**
@@ -228,7 +243,41 @@ public class TranslateManager {
 				return;
 			}
 			translateCacheManager.put(cacheModel, cacheName, cacheType, cacheValue);
+			translateCacheManager.removeDictionary(cacheName, cacheType);
+		}
+	}
+
+	/**
+	 * @todo 发布新版本的字典(整体替换,供缓存更新检测使用)
+	 * @param cacheName
+	 * @param cacheType
+	 * @param dictionary
+	 */
+	void publish(String cacheName, String cacheType, TranslateDictionary dictionary) {
+		TranslateConfigModel cacheModel = translateMap.get(cacheName);
+		if (translateCacheManager != null && cacheModel != null) {
+			translateCacheManager.putDictionary(cacheModel, cacheName, cacheType, dictionary);
+		}
+	}
+
+	/**
+	 * @todo 重新加载缓存数据并整体替换(加载期间查询继续使用原有版本),未加载过或重新加载无数据返回false
+	 * @param cacheName
+	 * @param cacheType
+	 * @return
+	 */
+	boolean reload(String cacheName, String cacheType) {
+		TranslateConfigModel cacheModel = translateMap.get(cacheName);
+		if (translateCacheManager == null || cacheModel == null
+				|| translateCacheManager.getDictionary(cacheName, cacheType) == null) {
+			return false;
+		}
+		HashMap<String, Object[]> cacheData = TranslateFactory.getCacheData(sqlToyContext, cacheModel, cacheType);
+		if (cacheData == null || cacheData.isEmpty()) {
+			return false;
 		}
+		translateCacheManager.putDictionary(cacheModel, cacheName, cacheType, TranslateDictionary.of(cacheData));
+		return true;
 	}
 
 	/**
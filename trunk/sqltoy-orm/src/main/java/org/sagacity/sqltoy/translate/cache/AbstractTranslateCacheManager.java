@@ -1,6 +1,8 @@
 package org.sagacity.sqltoy.translate.cache;
 
+import java.lang.ref.WeakReference;
 import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.sagacity.sqltoy.translate.model.TranslateConfigModel;
 
@@ -9,10 +11,17 @@ import org.sagacity.sqltoy.translate.model.TranslateConfigModel;
  * @description translate 翻译缓存管理接口定义，为基于其他缓存框架的实现提供接口规范
  * @author zhongxuchen
  * @version v1.0,Date:2013-4-14
+ * @modify {Date:2021-05-14,增加getDictionary/putDictionary,翻译统一使用不可变的TranslateDictionary}
+ * @modify {Date:2021-05-20,putDictionary时即登记字典,通过put更新缓存时清除已构造的字典}
  */
 public abstract class AbstractTranslateCacheManager {
 	protected HashMap<String, TranslateConfigModel> translateMap = new HashMap<String, TranslateConfigModel>();
 
+	/**
+	 * 基于getCache结果构造的字典(仅用于未直接存储字典的自定义缓存管理器)
+	 */
+	private ConcurrentHashMap<String, DictionaryHolder> dictionaries = new ConcurrentHashMap<String, DictionaryHolder>();
+
 	/**
 	 * 缓存管理器名称
 	 */
@@ -50,6 +59,64 @@ public abstract class AbstractTranslateCacheManager {
 	public abstract void put(TranslateConfigModel cacheModel, String cacheName, String cacheType,
 			HashMap<String, Object[]> cacheValue);
 
+	/**
+	 * @todo 获取翻译字典,默认基于getCache的结果构造并按HashMap实例复用,直接存储字典的缓存管理器应覆盖此方法
+	 * @param cacheName
+	 * @param cacheType (默认为null，针对诸如数据字典类型的，对应字典类型)
+	 * @return
+	 */
+	public TranslateDictionary getDictionary(String cacheName, String cacheType) {
+		HashMap<String, Object[]> cacheValue = getCache(cacheName, cacheType);
+		if (cacheValue == null) {
+			return null;
+		}
+		// 字典的只读视图
+		if (cacheValue instanceof TranslateDictionaryMap) {
+			return ((TranslateDictionaryMap) cacheValue).getDictionary();
+		}
+		String key = getDictionaryKey(cacheName, cacheType);
+		DictionaryHolder holder = dictionaries.get(key);
+		// 同一个HashMap实例且数量未变化则直接复用(缓存数据需通过put整体更新,put时会清除已构造的字典)
+		if (holder != null && holder.source.get() == cacheValue && holder.size == cacheValue.size()) {
+			return holder.dictionary;
+		}
+		TranslateDictionary dictionary = TranslateDictionary.of(cacheValue);
+		dictionaries.put(key, new DictionaryHolder(cacheValue, dictionary));
+		return dictionary;
+	}
+
+	/**
+	 * @todo 清除基于缓存数据构造的字典(通过put更新缓存数据后调用,下次获取时重新构造)
+	 * @param cacheName
+	 * @param cacheType (默认为null，针对诸如数据字典类型的，对应字典类型)
+	 */
+	public void removeDictionary(String cacheName, String cacheType) {
+		dictionaries.remove(getDictionaryKey(cacheName, cacheType));
+	}
+
+	private static String getDictionaryKey(String cacheName, String cacheType) {
+		return (cacheType == null) ? cacheName : cacheName.concat(":").concat(cacheType);
+	}
+
+	/**
+	 * @todo 将字典整体放入缓存(替换原有数据)
+	 * @param cacheModel
+	 * @param cacheName
+	 * @param cacheType  (默认为null，针对诸如数据字典类型的，对应字典类型)
+	 * @param dictionary
+	 */
+	public void putDictionary(TranslateConfigModel cacheModel, String cacheName, String cacheType,
+			TranslateDictionary dictionary) {
+		HashMap<String, Object[]> cacheValue = (dictionary == null) ? null : dictionary.toMap();
+		put(cacheModel, cacheName, cacheType, cacheValue);
+		// 直接登记字典,getCache返回同一实例时无需重新构造
+		if (cacheValue == null) {
+			removeDictionary(cacheName, cacheType);
+		} else {
+			dictionaries.put(getDictionaryKey(cacheName, cacheType), new DictionaryHolder(cacheValue, dictionary));
+		}
+	}
+
 	/**
 	 * @todo 清空缓存
 	 * @param cacheName
@@ -71,4 +138,15 @@ public abstract class AbstractTranslateCacheManager {
 		this.translateMap = translateMap;
 	}
 
+	private static class DictionaryHolder {
+		private final WeakReference<HashMap<String, Object[]>> source;
+		private final int size;
+		private final TranslateDictionary dictionary;
+
+		private DictionaryHolder(HashMap<String, Object[]> source, TranslateDictionary dictionary) {
+			this.source = new WeakReference<HashMap<String, Object[]>>(source);
+			this.size = source.size();
+			this.dictionary = dictionary;
+		}
+	}
 }
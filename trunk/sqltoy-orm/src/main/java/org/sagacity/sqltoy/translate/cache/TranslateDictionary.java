@@ -0,0 +1,588 @@
+package org.sagacity.sqltoy.translate.cache;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.sagacity.sqltoy.utils.StringUtil;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 不可变的缓存翻译字典:key全部为整数时以long原生数组存储(开放寻址),否则以String存储;
+ *              值按列存储(每列一个数组,整列为null则不占空间,相同字符串值复用同一实例),
+ *              替代每条记录一个Object[]的HashMap结构,刷新时整体构建新实例再替换
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-14
+ * @modify Date:2021-05-15 {增加增量叠加层:apply变更(含删除)生成基于原字典+变更层的新版本,变更层过大时compact合并}
+ * @modify Date:2021-05-20 {增加按列的模糊检索倒排索引,cache-arg和cacheMatchKeys不再全量遍历缓存}
+ * @modify Date:2021-05-20 {增加asMap只读视图,替代每次toMap复制全部数据}
+ */
+public final class TranslateDictionary implements Serializable {
+
+	private static final long serialVersionUID = 2940263157410836542L;
+
+	/**
+	 * 空字典
+	 */
+	public static final TranslateDictionary EMPTY = of(null);
+
+	/**
+	 * 整数key最大位数(超过则按字符串key处理,避免溢出)
+	 */
+	private static final int MAX_LONG_DIGITS = 18;
+
+	/**
+	 * 变更层记录数超过此值或超过基础字典1/8时需要合并
+	 */
+	private static final int MAX_OVERLAY_ROWS = 10000;
+
+	/**
+	 * 记录数达到此值才建立模糊检索索引(数据量小时直接遍历)
+	 */
+	private static final int MIN_SEARCH_INDEX_ROWS = 1000;
+
+	/**
+	 * 有效记录数
+	 */
+	private final int size;
+
+	/**
+	 * 列数(取最长的一行)
+	 */
+	private final int width;
+
+	/**
+	 * 整数key(按行顺序),非整数key时为null
+	 */
+	private final long[] longKeys;
+
+	/**
+	 * 字符串key(按行顺序),整数key时为null
+	 */
+	private final String[] stringKeys;
+
+	/**
+	 * 开放寻址表:存放行号+1,0表示空位
+	 */
+	private final int[] slots;
+
+	private final int mask;
+
+	/**
+	 * 按列存储的值:columns[列][行],整列为null时该列为null
+	 */
+	private final Object[][] columns;
+
+	/**
+	 * 叠加模式下的基础字典(行号0~base.size-1),非叠加模式为null
+	 */
+	private final TranslateDictionary base;
+
+	/**
+	 * 叠加模式下的变更层(行号接在基础字典之后)
+	 */
+	private final TranslateDictionary delta;
+
+	/**
+	 * 叠加模式下基础字典中被更新或删除的行
+	 */
+	private final BitSet shadowed;
+
+	private final int shadowedCount;
+
+	/**
+	 * 按列的模糊检索索引(首次检索时构建,字典刷新即生成新实例,索引随之重建)
+	 */
+	private transient volatile TranslateSearchIndex[] searchIndexes;
+
+	private TranslateDictionary(TranslateDictionary base, TranslateDictionary delta, BitSet shadowed) {
+		this.base = base;
+		this.delta = delta;
+		this.shadowed = shadowed;
+		this.shadowedCount = shadowed.cardinality();
+		this.size = base.size - shadowedCount + delta.size;
+		this.width = Math.max(base.width, delta.width);
+		this.longKeys = null;
+		this.stringKeys = null;
+		this.columns = null;
+		this.slots = null;
+		this.mask = 0;
+	}
+
+	private TranslateDictionary(int size, int width, long[] longKeys, String[] stringKeys, Object[][] columns) {
+		this.base = null;
+		this.delta = null;
+		this.shadowed = null;
+		this.shadowedCount = 0;
+		this.size = size;
+		this.width = width;
+		this.longKeys = longKeys;
+		this.stringKeys = stringKeys;
+		this.columns = columns;
+		// 装载因子0.5
+		int capacity = 2;
+		while (capacity < size * 2) {
+			capacity <<= 1;
+		}
+		this.slots = new int[capacity];
+		this.mask = capacity - 1;
+		int slot;
+		for (int row = 0; row < size; row++) {
+			slot = (longKeys != null) ? hash(longKeys[row]) & mask : hash(stringKeys[row].hashCode()) & mask;
+			while (slots[slot] != 0) {
+				slot = (slot + 1) & mask;
+			}
+			slots[slot] = row + 1;
+		}
+	}
+
+	/**
+	 * @TODO 将HashMap<String, Object[]>结构的缓存数据构造成字典(key为null或值为空数组的记录忽略)
+	 * @param cacheData
+	 * @return
+	 */
+	public static TranslateDictionary of(Map<String, Object[]> cacheData) {
+		// 只读视图直接取其字典
+		if (cacheData instanceof TranslateDictionaryMap
+				&& ((TranslateDictionaryMap) cacheData).getDictionary() != null) {
+			return ((TranslateDictionaryMap) cacheData).getDictionary();
+		}
+		int count = 0;
+		String[] keys = new String[(cacheData == null) ? 0 : cacheData.size()];
+		Object[][] rows = new Object[keys.length][];
+		int width = 0;
+		boolean allLong = true;
+		if (cacheData != null) {
+			for (Map.Entry<String, Object[]> entry : cacheData.entrySet()) {
+				if (entry.getKey() == null || entry.getValue() == null || entry.getValue().length == 0) {
+					continue;
+				}
+				keys[count] = entry.getKey();
+				rows[count] = entry.getValue();
+				if (allLong && !isLong(keys[count])) {
+					allLong = false;
+				}
+				if (rows[count].length > width) {
+					width = rows[count].length;
+				}
+				count++;
+			}
+		}
+		long[] longKeys = null;
+		String[] stringKeys = null;
+		if (allLong) {
+			longKeys = new long[count];
+			for (int i = 0; i < count; i++) {
+				longKeys[i] = Long.parseLong(keys[i]);
+			}
+		} else {
+			stringKeys = new String[count];
+			System.arraycopy(keys, 0, stringKeys, 0, count);
+		}
+		// 相同的字符串值共用一个实例(如机构名称、状态名称等大量重复)
+		HashMap<String, String> stringPool = new HashMap<String, String>();
+		Object[][] columns = new Object[width][];
+		Object[] column;
+		Object value;
+		String pooled;
+		boolean allNull;
+		for (int col = 0; col < width; col++) {
+			column = new Object[count];
+			allNull = true;
+			for (int row = 0; row < count; row++) {
+				value = (col < rows[row].length) ? rows[row][col] : null;
+				if (value instanceof String) {
+					pooled = stringPool.putIfAbsent((String) value, (String) value);
+					if (pooled != null) {
+						value = pooled;
+					}
+				}
+				if (value != null) {
+					allNull = false;
+				}
+				column[row] = value;
+			}
+			columns[col] = allNull ? null : column;
+		}
+		return new TranslateDictionary(count, width, longKeys, stringKeys, columns);
+	}
+
+	/**
+	 * @TODO 根据key获取所在行,不存在返回-1(整数key字典中Long/Integer/Short/Byte 类型直接按数值查找,无需toString)
+	 * @param key
+	 * @return
+	 */
+	public int indexOf(Object key) {
+		if (key == null || size == 0) {
+			return -1;
+		}
+		if (base != null) {
+			int row = delta.indexOf(key);
+			if (row >= 0) {
+				return base.size + row;
+			}
+			row = base.indexOf(key);
+			return (row < 0 || shadowed.get(row)) ? -1 : row;
+		}
+		if (longKeys != null) {
+			if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+				return indexOf(((Number) key).longValue());
+			}
+			String keyStr = key.toString();
+			if (!isLong(keyStr)) {
+				return -1;
+			}
+			return indexOf(Long.parseLong(keyStr));
+		}
+		String keyStr = key.toString();
+		int slot = hash(keyStr.hashCode()) & mask;
+		int row;
+		while ((row = slots[slot]) != 0) {
+			if (stringKeys[row - 1].equals(keyStr)) {
+				return row - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	/**
+	 * @TODO 根据整数key获取所在行,不存在返回-1
+	 * @param key
+	 * @return
+	 */
+	public int indexOf(long key) {
+		if (size == 0) {
+			return -1;
+		}
+		if (base != null) {
+			int row = delta.indexOf(key);
+			if (row >= 0) {
+				return base.size + row;
+			}
+			row = base.indexOf(key);
+			return (row < 0 || shadowed.get(row)) ? -1 : row;
+		}
+		if (longKeys == null) {
+			return indexOf(Long.toString(key));
+		}
+		int slot = hash(key) & mask;
+		int row;
+		while ((row = slots[slot]) != 0) {
+			if (longKeys[row - 1] == key) {
+				return row - 1;
+			}
+			slot = (slot + 1) & mask;
+		}
+		return -1;
+	}
+
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * @TODO 获取某行某列的值(等同于原HashMap结构中的cacheValues[column])
+	 * @param row
+	 * @param column
+	 * @return
+	 */
+	public Object getValue(int row, int column) {
+		if (column >= width) {
+			throw new ArrayIndexOutOfBoundsException(column);
+		}
+		if (base != null) {
+			if (row < base.size) {
+				return (column < base.width) ? base.getValue(row, column) : null;
+			}
+			return (column < delta.width) ? delta.getValue(row - base.size, column) : null;
+		}
+		Object[] values = columns[column];
+		return (values == null) ? null : values[row];
+	}
+
+	/**
+	 * @TODO 获取key对应的整行数据(每次返回新数组,翻译场景请使用indexOf+getValue)
+	 * @param key
+	 * @return
+	 */
+	public Object[] get(Object key) {
+		int row = indexOf(key);
+		return (row < 0) ? null : getRow(row);
+	}
+
+	public Object[] getRow(int row) {
+		if (base != null) {
+			Object[] values = (row < base.size) ? base.getRow(row) : delta.getRow(row - base.size);
+			if (values.length == width) {
+				return values;
+			}
+			Object[] result = new Object[width];
+			System.arraycopy(values, 0, result, 0, values.length);
+			return result;
+		}
+		Object[] result = new Object[width];
+		for (int col = 0; col < width; col++) {
+			if (columns[col] != null) {
+				result[col] = columns[col][row];
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 模糊检索:返回任一指定列的值(转小写)按顺序包含全部关键词的行号(同StringUtil.like,升序,已排除删除行)
+	 * @param matchColumns 检索的列
+	 * @param keywords     已转小写的关键词
+	 * @return
+	 */
+	public int[] like(int[] matchColumns, String[] keywords) {
+		if (base != null) {
+			int[] baseRows = base.like(matchColumns, keywords);
+			int[] deltaRows = delta.like(matchColumns, keywords);
+			int[] result = new int[baseRows.length + deltaRows.length];
+			int count = 0;
+			for (int row : baseRows) {
+				if (!shadowed.get(row)) {
+					result[count++] = row;
+				}
+			}
+			for (int row : deltaRows) {
+				result[count++] = base.size + row;
+			}
+			return (count == result.length) ? result : Arrays.copyOf(result, count);
+		}
+		BitSet matched = new BitSet(size);
+		Object[] values;
+		Object value;
+		int[] rows;
+		for (int column : matchColumns) {
+			if (column >= width || columns[column] == null) {
+				continue;
+			}
+			values = columns[column];
+			rows = (size < MIN_SEARCH_INDEX_ROWS) ? null : getSearchIndex(column).candidates(keywords);
+			if (rows == null) {
+				for (int row = 0; row < size; row++) {
+					value = values[row];
+					if (value != null && !matched.get(row) && StringUtil.like(value.toString().toLowerCase(), keywords)) {
+						matched.set(row);
+					}
+				}
+			} else {
+				for (int row : rows) {
+					value = values[row];
+					if (!matched.get(row) && StringUtil.like(value.toString().toLowerCase(), keywords)) {
+						matched.set(row);
+					}
+				}
+			}
+		}
+		int[] result = new int[matched.cardinality()];
+		int count = 0;
+		for (int row = matched.nextSetBit(0); row >= 0; row = matched.nextSetBit(row + 1)) {
+			result[count++] = row;
+		}
+		return result;
+	}
+
+	private TranslateSearchIndex getSearchIndex(int column) {
+		TranslateSearchIndex[] indexes = searchIndexes;
+		if (indexes == null) {
+			synchronized (this) {
+				if (searchIndexes == null) {
+					searchIndexes = new TranslateSearchIndex[width];
+				}
+				indexes = searchIndexes;
+			}
+		}
+		TranslateSearchIndex index = indexes[column];
+		if (index == null) {
+			synchronized (indexes) {
+				index = indexes[column];
+				if (index == null) {
+					index = TranslateSearchIndex.build(columns[column], size);
+					indexes[column] = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	public String getKey(int row) {
+		if (base != null) {
+			return (row < base.size) ? base.getKey(row) : delta.getKey(row - base.size);
+		}
+		return (longKeys != null) ? Long.toString(longKeys[row]) : stringKeys[row];
+	}
+
+	/**
+	 * @TODO 行号范围(遍历时用0~getRowCount()-1,并通过isDeleted排除叠加模式下已被更新或删除的行)
+	 * @return
+	 */
+	public int getRowCount() {
+		return (base == null) ? size : base.size + delta.size;
+	}
+
+	/**
+	 * @TODO 行是否已被更新或删除(仅叠加模式下基础字典中的行可能为true)
+	 * @param row
+	 * @return
+	 */
+	public boolean isDeleted(int row) {
+		return base != null && row < base.size && shadowed.get(row);
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	/**
+	 * @TODO 是否为整数key字典
+	 * @return
+	 */
+	public boolean isLongKey() {
+		if (base != null) {
+			return base.isLongKey() && delta.isLongKey();
+		}
+		return longKeys != null;
+	}
+
+	/**
+	 * @TODO 是否为基础字典+变更层的叠加模式
+	 * @return
+	 */
+	public boolean isOverlay() {
+		return base != null;
+	}
+
+	/**
+	 * @TODO 应用一批变更生成新版本字典(自身不变),value为null或空数组表示删除该key;
+	 *       新版本共用基础字典,仅重建变更层,变更按Map顺序执行,同一key后者为准
+	 * @param changes
+	 * @return
+	 */
+	public TranslateDictionary apply(Map<String, Object[]> changes) {
+		if (changes == null || changes.isEmpty()) {
+			return this;
+		}
+		TranslateDictionary flatBase = (base == null) ? this : base;
+		BitSet newShadowed = (base == null) ? new BitSet(size) : (BitSet) shadowed.clone();
+		LinkedHashMap<String, Object[]> deltaData = new LinkedHashMap<String, Object[]>();
+		if (delta != null) {
+			for (int row = 0; row < delta.size; row++) {
+				deltaData.put(delta.getKey(row), delta.getRow(row));
+			}
+		}
+		String key;
+		Object[] value;
+		int row;
+		for (Map.Entry<String, Object[]> entry : changes.entrySet()) {
+			key = entry.getKey();
+			if (key == null) {
+				continue;
+			}
+			value = entry.getValue();
+			row = flatBase.indexOf(key);
+			if (row >= 0) {
+				newShadowed.set(row);
+			}
+			// 墓碑:删除
+			if (value == null || value.length == 0) {
+				deltaData.remove(key);
+			} else {
+				deltaData.put(key, value);
+			}
+		}
+		return new TranslateDictionary(flatBase, of(deltaData), newShadowed);
+	}
+
+	/**
+	 * @TODO 变更层是否已经过大需要合并
+	 * @return
+	 */
+	public boolean needCompact() {
+		if (base == null) {
+			return false;
+		}
+		int overlayRows = delta.size + shadowedCount;
+		return overlayRows >= MAX_OVERLAY_ROWS || overlayRows * 8 > base.size;
+	}
+
+	/**
+	 * @TODO 将基础字典与变更层合并成新的单层字典
+	 * @return
+	 */
+	public TranslateDictionary compact() {
+		return (base == null) ? this : of(toMap());
+	}
+
+	/**
+	 * @TODO 获取HashMap<String, Object[]>结构的只读视图(不复制数据)
+	 * @return
+	 */
+	public TranslateDictionaryMap asMap() {
+		return new TranslateDictionaryMap(this);
+	}
+
+	/**
+	 * @TODO 转成HashMap<String, Object[]>结构(新的副本,修改不影响字典本身)
+	 * @return
+	 */
+	public HashMap<String, Object[]> toMap() {
+		HashMap<String, Object[]> result = new HashMap<String, Object[]>((int) (size / 0.75f) + 1);
+		int rowCount = getRowCount();
+		for (int row = 0; row < rowCount; row++) {
+			if (!isDeleted(row)) {
+				result.put(getKey(row), getRow(row));
+			}
+		}
+		return result;
+	}
+
+	/**
+	 * @TODO 判断是否为规范的整数(无前导0、无空格,如"007"、"+1"按字符串处理,保证与原字符串匹配语义一致)
+	 * @param key
+	 * @return
+	 */
+	private static boolean isLong(String key) {
+		int length = key.length();
+		int start = (length > 0 && key.charAt(0) == '-') ? 1 : 0;
+		int digits = length - start;
+		if (digits < 1 || digits > MAX_LONG_DIGITS) {
+			return false;
+		}
+		char c = key.charAt(start);
+		// 0 只能单独出现(且不能为-0)
+		if (c == '0') {
+			return digits == 1 && start == 0;
+		}
+		for (int i = start; i < length; i++) {
+			c = key.charAt(i);
+			if (c < '0' || c > '9') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private static int hash(long key) {
+		long h = key * 0x9E3779B97F4A7C15L;
+		return (int) (h ^ (h >>> 32));
+	}
+
+	private static int hash(int hashCode) {
+		return hashCode ^ (hashCode >>> 16);
+	}
+}
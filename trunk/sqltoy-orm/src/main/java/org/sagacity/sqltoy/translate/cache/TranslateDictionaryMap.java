@@ -0,0 +1,287 @@
+package org.sagacity.sqltoy.translate.cache;
+
+import java.io.InvalidObjectException;
+import java.io.ObjectInputStream;
+import java.util.AbstractCollection;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * @project sagacity-sqltoy
+ * @description TranslateDictionary的只读HashMap视图:供值类型为HashMap的缓存(如ehcache)直接存放字典,
+ *              不复制字典数据,读取直接访问字典(get返回新的行数组),任何修改操作抛出UnsupportedOperationException,
+ *              需要变更缓存请修改toMap()副本后通过put写回;序列化时写出普通HashMap副本(反序列化得到HashMap而非视图)
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public final class TranslateDictionaryMap extends HashMap<String, Object[]> {
+
+	private static final long serialVersionUID = -4826130593201760416L;
+
+	private final transient TranslateDictionary dictionary;
+
+	public TranslateDictionaryMap(TranslateDictionary dictionary) {
+		super(0);
+		this.dictionary = dictionary;
+	}
+
+	/**
+	 * @TODO 获取视图对应的字典
+	 * @return
+	 */
+	public TranslateDictionary getDictionary() {
+		return dictionary;
+	}
+
+	@Override
+	public int size() {
+		return dictionary.size();
+	}
+
+	@Override
+	public boolean isEmpty() {
+		return dictionary.isEmpty();
+	}
+
+	@Override
+	public Object[] get(Object key) {
+		return (key == null) ? null : dictionary.get(key);
+	}
+
+	@Override
+	public Object[] getOrDefault(Object key, Object[] defaultValue) {
+		Object[] result = get(key);
+		return (result == null) ? defaultValue : result;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return key != null && dictionary.containsKey(key);
+	}
+
+	@Override
+	public boolean containsValue(Object value) {
+		if (!(value instanceof Object[])) {
+			return false;
+		}
+		for (Object[] row : values()) {
+			if (Arrays.equals(row, (Object[]) value)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	@Override
+	public void forEach(BiConsumer<? super String, ? super Object[]> action) {
+		int rowCount = dictionary.getRowCount();
+		for (int row = 0; row < rowCount; row++) {
+			if (!dictionary.isDeleted(row)) {
+				action.accept(dictionary.getKey(row), dictionary.getRow(row));
+			}
+		}
+	}
+
+	@Override
+	public Set<Map.Entry<String, Object[]>> entrySet() {
+		return new AbstractSet<Map.Entry<String, Object[]>>() {
+			@Override
+			public Iterator<Map.Entry<String, Object[]>> iterator() {
+				return new RowIterator<Map.Entry<String, Object[]>>() {
+					@Override
+					protected Map.Entry<String, Object[]> get(int row) {
+						return new AbstractMap.SimpleImmutableEntry<String, Object[]>(dictionary.getKey(row),
+								dictionary.getRow(row));
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return dictionary.size();
+			}
+		};
+	}
+
+	@Override
+	public Set<String> keySet() {
+		return new AbstractSet<String>() {
+			@Override
+			public Iterator<String> iterator() {
+				return new RowIterator<String>() {
+					@Override
+					protected String get(int row) {
+						return dictionary.getKey(row);
+					}
+				};
+			}
+
+			@Override
+			public boolean contains(Object key) {
+				return containsKey(key);
+			}
+
+			@Override
+			public int size() {
+				return dictionary.size();
+			}
+		};
+	}
+
+	@Override
+	public Collection<Object[]> values() {
+		return new AbstractCollection<Object[]>() {
+			@Override
+			public Iterator<Object[]> iterator() {
+				return new RowIterator<Object[]>() {
+					@Override
+					protected Object[] get(int row) {
+						return dictionary.getRow(row);
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return dictionary.size();
+			}
+		};
+	}
+
+	@Override
+	public Object[] put(String key, Object[] value) {
+		throw readOnly();
+	}
+
+	@Override
+	public void putAll(Map<? extends String, ? extends Object[]> map) {
+		throw readOnly();
+	}
+
+	@Override
+	public Object[] remove(Object key) {
+		throw readOnly();
+	}
+
+	@Override
+	public boolean remove(Object key, Object value) {
+		throw readOnly();
+	}
+
+	@Override
+	public void clear() {
+		throw readOnly();
+	}
+
+	@Override
+	public Object[] putIfAbsent(String key, Object[] value) {
+		throw readOnly();
+	}
+
+	@Override
+	public boolean replace(String key, Object[] oldValue, Object[] newValue) {
+		throw readOnly();
+	}
+
+	@Override
+	public Object[] replace(String key, Object[] value) {
+		throw readOnly();
+	}
+
+	@Override
+	public void replaceAll(BiFunction<? super String, ? super Object[], ? extends Object[]> function) {
+		throw readOnly();
+	}
+
+	@Override
+	public Object[] computeIfAbsent(String key, Function<? super String, ? extends Object[]> mappingFunction) {
+		throw readOnly();
+	}
+
+	@Override
+	public Object[] computeIfPresent(String key,
+			BiFunction<? super String, ? super Object[], ? extends Object[]> remappingFunction) {
+		throw readOnly();
+	}
+
+	@Override
+	public Object[] compute(String key,
+			BiFunction<? super String, ? super Object[], ? extends Object[]> remappingFunction) {
+		throw readOnly();
+	}
+
+	@Override
+	public Object[] merge(String key, Object[] value,
+			BiFunction<? super Object[], ? super Object[], ? extends Object[]> remappingFunction) {
+		throw readOnly();
+	}
+
+	/**
+	 * 复制出可修改的HashMap
+	 */
+	@Override
+	public Object clone() {
+		return dictionary.toMap();
+	}
+
+	/**
+	 * 序列化时以普通HashMap副本写出
+	 */
+	private Object writeReplace() {
+		return dictionary.toMap();
+	}
+
+	/**
+	 * 视图总是以HashMap副本序列化,不接受直接反序列化为视图
+	 */
+	private void readObject(ObjectInputStream stream) throws InvalidObjectException {
+		throw new InvalidObjectException("TranslateDictionaryMap序列化为HashMap副本,不能直接反序列化!");
+	}
+
+	private UnsupportedOperationException readOnly() {
+		return new UnsupportedOperationException("缓存翻译数据为只读视图,请修改toMap()副本后通过put写回缓存!");
+	}
+
+	/**
+	 * @description 遍历未删除的行
+	 */
+	private abstract class RowIterator<T> implements Iterator<T> {
+		private final int rowCount = dictionary.getRowCount();
+
+		private int next = advance(0);
+
+		private int advance(int row) {
+			while (row < rowCount && dictionary.isDeleted(row)) {
+				row++;
+			}
+			return row;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < rowCount;
+		}
+
+		@Override
+		public T next() {
+			if (next >= rowCount) {
+				throw new NoSuchElementException();
+			}
+			T result = get(next);
+			next = advance(next + 1);
+			return result;
+		}
+
+		protected abstract T get(int row);
+	}
+}
@@ -0,0 +1,149 @@
+package org.sagacity.sqltoy.translate.cache;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 缓存字典单列的模糊检索倒排索引:值转小写后按相邻2个字符(bigram)以及单个非ascii字符(如中文)建立行号列表,
+ *              检索时对关键词的各个gram行号列表求交集得到候选行,再由调用方按StringUtil.like精确校验
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+final class TranslateSearchIndex {
+	private static final int[] EMPTY_ROWS = new int[0];
+
+	/**
+	 * gram-->升序行号
+	 */
+	private final HashMap<String, int[]> postings;
+
+	private TranslateSearchIndex(HashMap<String, int[]> postings) {
+		this.postings = postings;
+	}
+
+	/**
+	 * @TODO 对单列值构建索引
+	 * @param values 列值(按行)
+	 * @param size   行数
+	 * @return
+	 */
+	static TranslateSearchIndex build(Object[] values, int size) {
+		HashMap<String, RowList> rowLists = new HashMap<String, RowList>();
+		Set<String> rowGrams = new HashSet<String>();
+		Object value;
+		RowList rowList;
+		for (int row = 0; row < size; row++) {
+			value = (values == null) ? null : values[row];
+			if (value == null) {
+				continue;
+			}
+			rowGrams.clear();
+			addGrams(value.toString().toLowerCase(), rowGrams);
+			for (String gram : rowGrams) {
+				rowList = rowLists.get(gram);
+				if (rowList == null) {
+					rowList = new RowList();
+					rowLists.put(gram, rowList);
+				}
+				rowList.add(row);
+			}
+		}
+		HashMap<String, int[]> postings = new HashMap<String, int[]>((int) (rowLists.size() / 0.75f) + 1);
+		for (Map.Entry<String, RowList> entry : rowLists.entrySet()) {
+			postings.put(entry.getKey(), entry.getValue().toArray());
+		}
+		return new TranslateSearchIndex(postings);
+	}
+
+	/**
+	 * @TODO 获取可能包含全部关键词的候选行(升序),关键词都无法利用索引(如单个英文字母)时返回null
+	 * @param keywords 已转小写
+	 * @return
+	 */
+	int[] candidates(String[] keywords) {
+		Set<String> grams = new HashSet<String>();
+		for (String keyword : keywords) {
+			if (keyword.length() >= 2) {
+				for (int i = 0; i < keyword.length() - 1; i++) {
+					grams.add(keyword.substring(i, i + 2));
+				}
+			} else if (keyword.length() == 1 && keyword.charAt(0) > 0x7f) {
+				grams.add(keyword);
+			}
+		}
+		if (grams.isEmpty()) {
+			return null;
+		}
+		int[][] rowsArray = new int[grams.size()][];
+		int index = 0;
+		int[] rows;
+		for (String gram : grams) {
+			rows = postings.get(gram);
+			if (rows == null) {
+				return EMPTY_ROWS;
+			}
+			rowsArray[index++] = rows;
+		}
+		// 从最短的行号列表开始求交集
+		Arrays.sort(rowsArray, (a, b) -> a.length - b.length);
+		int[] result = rowsArray[0];
+		for (int i = 1; i < rowsArray.length && result.length > 0; i++) {
+			result = intersect(result, rowsArray[i]);
+		}
+		return result;
+	}
+
+	private static void addGrams(String value, Set<String> grams) {
+		int length = value.length();
+		for (int i = 0; i < length; i++) {
+			if (value.charAt(i) > 0x7f) {
+				grams.add(value.substring(i, i + 1));
+			}
+			if (i < length - 1) {
+				grams.add(value.substring(i, i + 2));
+			}
+		}
+	}
+
+	private static int[] intersect(int[] first, int[] second) {
+		int[] result = new int[first.length];
+		int size = 0;
+		int i = 0;
+		int j = 0;
+		while (i < first.length && j < second.length) {
+			if (first[i] == second[j]) {
+				result[size++] = first[i];
+				i++;
+				j++;
+			} else if (first[i] < second[j]) {
+				i++;
+			} else {
+				j++;
+			}
+		}
+		return (size == result.length) ? result : Arrays.copyOf(result, size);
+	}
+
+	/**
+	 * 构建期间的行号列表
+	 */
+	private static class RowList {
+		private int[] rows = new int[4];
+		private int size = 0;
+
+		private void add(int row) {
+			if (size == rows.length) {
+				rows = Arrays.copyOf(rows, size * 2);
+			}
+			rows[size++] = row;
+		}
+
+		private int[] toArray() {
+			return Arrays.copyOf(rows, size);
+		}
+	}
+}
@@ -5,6 +5,7 @@ import java.util.HashMap;
 import java.util.HashSet;
 
 import org.sagacity.sqltoy.translate.cache.AbstractTranslateCacheManager;
+import org.sagacity.sqltoy.translate.cache.TranslateDictionary;
 import org.sagacity.sqltoy.translate.model.TranslateConfigModel;
 import org.sagacity.sqltoy.utils.StringUtil;
 import org.slf4j.Logger;
@@ -20,6 +21,8 @@ import com.github.benmanes.caffeine.cache.Caffeine;
  * @author 740202157@qq.com
  * @version v1.0, Date:2021-1-25
  * @modify 2021-1-25,修改说明
+ * @modify 2021-05-14,缓存中直接存放不可变的TranslateDictionary,刷新时整体替换
+ * @modify 2021-05-20,getCache返回字典的只读视图,不再每次复制
  */
 public class TranslateCaffeineManager extends AbstractTranslateCacheManager {
 	/**
@@ -34,6 +37,12 @@ public class TranslateCaffeineManager extends AbstractTranslateCacheManager {
 
 	@Override
 	public HashMap<String, Object[]> getCache(String cacheName, String cacheType) {
+		TranslateDictionary dictionary = getDictionary(cacheName, cacheType);
+		return (dictionary == null) ? null : dictionary.asMap();
+	}
+
+	@Override
+	public TranslateDictionary getDictionary(String cacheName, String cacheType) {
 		if (cacheManager == null) {
 			return null;
 		}
@@ -43,7 +52,7 @@ public class TranslateCaffeineManager extends AbstractTranslateCacheManager {
 		}
 		Cache.ValueWrapper wrapper = cache.get(StringUtil.isNotBlank(cacheType) ? cacheType : cacheName);
 		if (wrapper != null) {
-			return (HashMap<String, Object[]>) wrapper.get();
+			return (TranslateDictionary) wrapper.get();
 		}
 		return null;
 	}
@@ -51,6 +60,13 @@ public class TranslateCaffeineManager extends AbstractTranslateCacheManager {
 	@Override
 	public void put(TranslateConfigModel cacheConfig, String cacheName, String cacheType,
 			HashMap<String, Object[]> cacheValue) {
+		putDictionary(cacheConfig, cacheName, cacheType,
+				(cacheValue == null) ? null : TranslateDictionary.of(cacheValue));
+	}
+
+	@Override
+	public void putDictionary(TranslateConfigModel cacheConfig, String cacheName, String cacheType,
+			TranslateDictionary cacheValue) {
 		if (cacheManager == null) {
 			return;
 		}
@@ -12,6 +12,7 @@ import org.ehcache.config.builders.ResourcePoolsBuilder;
 import org.ehcache.config.units.EntryUnit;
 import org.ehcache.config.units.MemoryUnit;
 import org.sagacity.sqltoy.translate.cache.AbstractTranslateCacheManager;
+import org.sagacity.sqltoy.translate.cache.TranslateDictionary;
 import org.sagacity.sqltoy.translate.model.TranslateConfigModel;
 import org.sagacity.sqltoy.utils.IdUtil;
 import org.sagacity.sqltoy.utils.StringUtil;
@@ -23,8 +24,9 @@ import org.slf4j.LoggerFactory;
  * @description 基于ehcache缓存实现translate 提取缓存数据和存放缓存
  * @author zhongxuchen
  * @version v1.0,Date:2013-4-14
+ * @modify {Date:2021-05-14,缓存中直接存放不可变的TranslateDictionary,刷新时整体替换}
+ * @modify {Date:2021-05-20,缓存值类型保持HashMap(兼容已有ehcache.xml配置),存放字典的只读视图TranslateDictionaryMap}
  */
-@SuppressWarnings("unchecked")
 public class TranslateEhcacheManager extends AbstractTranslateCacheManager {
 	/**
 	 * 定义全局日志
@@ -45,6 +47,9 @@ public class TranslateEhcacheManager extends AbstractTranslateCacheManager {
 
 	protected static CacheManager cacheManager;
 
+	/**
+	 * 缓存中存放字典的只读视图(TranslateDictionaryMap),堆外或磁盘存储反序列化后为普通HashMap,由getDictionary重新构造字典
+	 */
 	@Override
 	public HashMap<String, Object[]> getCache(String cacheName, String cacheType) {
 		if (cacheManager == null) {
@@ -54,16 +59,19 @@ public class TranslateEhcacheManager extends AbstractTranslateCacheManager {
 		if (cache == null) {
 			return null;
 		}
-		Object cacheValue = cache.get(StringUtil.isNotBlank(cacheType) ? cacheType : cacheName);
-		if (cacheValue != null) {
-			return (HashMap<String, Object[]>) cacheValue;
-		}
-		return null;
+		return cache.get(StringUtil.isNotBlank(cacheType) ? cacheType : cacheName);
 	}
 
 	@Override
 	public void put(TranslateConfigModel cacheConfig, String cacheName, String cacheKey,
 			HashMap<String, Object[]> cacheValue) {
+		putDictionary(cacheConfig, cacheName, cacheKey,
+				(cacheValue == null) ? null : TranslateDictionary.of(cacheValue));
+	}
+
+	@Override
+	public void putDictionary(TranslateConfigModel cacheConfig, String cacheName, String cacheKey,
+			TranslateDictionary cacheValue) {
 		if (cacheManager == null) {
 			return;
 		}
@@ -81,13 +89,12 @@ public class TranslateEhcacheManager extends AbstractTranslateCacheManager {
 				if (cacheConfig.getDiskSize() > 0) {
 					resBuilder = resBuilder.disk(cacheConfig.getDiskSize(), MemoryUnit.MB, true);
 				}
-				cache = cacheManager.createCache(cacheName,
-						CacheConfigurationBuilder.newCacheConfigurationBuilder(String.class, HashMap.class, resBuilder)
-								.withExpiry(cacheConfig.getKeepAlive() > 0
-										? ExpiryPolicyBuilder
-												.timeToLiveExpiration(Duration.ofSeconds(cacheConfig.getKeepAlive()))
-										: ExpiryPolicyBuilder.noExpiration())
-								.build());
+				cache = cacheManager.createCache(cacheName, CacheConfigurationBuilder
+						.newCacheConfigurationBuilder(String.class, HashMap.class, resBuilder)
+						.withExpiry(cacheConfig.getKeepAlive() > 0
+								? ExpiryPolicyBuilder.timeToLiveExpiration(Duration.ofSeconds(cacheConfig.getKeepAlive()))
+								: ExpiryPolicyBuilder.noExpiration())
+						.build());
 			}
 			// 清除缓存(一般不会执行,即缓存值被设置为null表示清除缓存)
 			if (cacheValue == null) {
@@ -99,7 +106,7 @@ public class TranslateEhcacheManager extends AbstractTranslateCacheManager {
 			}
 			// 更新缓存
 			else {
-				cache.put(StringUtil.isBlank(cacheKey) ? cacheName : cacheKey, cacheValue);
+				cache.put(StringUtil.isBlank(cacheKey) ? cacheName : cacheKey, cacheValue.asMap());
 			}
 		}
 	}
@@ -33,6 +33,16 @@ public class CacheCheckResult implements Serializable {
 	 */
 	private Object[] item;
 
+	/**
+	 * 增量更新:记录是否已删除
+	 */
+	private boolean deleted = false;
+
+	/**
+	 * 增量更新:记录的版本(最后修改时间毫秒数)
+	 */
+	private Long version;
+
 	/**
 	 * @return the cacheName
 	 */
@@ -69,4 +79,20 @@ public class CacheCheckResult implements Serializable {
 		this.item = item;
 	}
 
+	public boolean isDeleted() {
+		return deleted;
+	}
+
+	public void setDeleted(boolean deleted) {
+		this.deleted = deleted;
+	}
+
+	public Long getVersion() {
+		return version;
+	}
+
+	public void setVersion(Long version) {
+		this.version = version;
+	}
+
 }
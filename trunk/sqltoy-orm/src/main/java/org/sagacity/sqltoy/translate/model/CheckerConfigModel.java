@@ -44,6 +44,21 @@ public class CheckerConfigModel implements Serializable {
 	 */
 	private boolean increment = false;
 
+	/**
+	 * 增量更新时,记录中表示删除标记的列(-1表示无删除标记)
+	 */
+	private int deleteIndex = -1;
+
+	/**
+	 * 删除标记列等于此值表示记录已删除
+	 */
+	private String deleteValue = "1";
+
+	/**
+	 * 增量更新时,记录中表示最后修改时间(版本)的列,用于缓存版本水位(-1表示不启用)
+	 */
+	private int versionIndex = -1;
+
 	/**
 	 * 数据源
 	 */
@@ -261,4 +276,28 @@ public class CheckerConfigModel implements Serializable {
 		this.hasInsideGroup = hasInsideGroup;
 	}
 
+	public int getDeleteIndex() {
+		return deleteIndex;
+	}
+
+	public void setDeleteIndex(int deleteIndex) {
+		this.deleteIndex = deleteIndex;
+	}
+
+	public String getDeleteValue() {
+		return deleteValue;
+	}
+
+	public void setDeleteValue(String deleteValue) {
+		this.deleteValue = deleteValue;
+	}
+
+	public int getVersionIndex() {
+		return versionIndex;
+	}
+
+	public void setVersionIndex(int versionIndex) {
+		this.versionIndex = versionIndex;
+	}
+
 }
@@ -0,0 +1,482 @@
+/**
+ *
+ */
+package org.sagacity.sqltoy.utils;
+
+import java.lang.invoke.CallSite;
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.ParameterizedType;
+import java.lang.reflect.Type;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import org.sagacity.sqltoy.plugins.AbstractTypeHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 针对(类,属性集合)预先编译好的对象存取器:构造方法、set、get方法通过LambdaMetafactory生成直接调用,
+ *              无法生成时(非public类、跨classloader等)退化为MethodHandle,替代逐行逐列的Method.invoke反射
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-12
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class BeanAccessor {
+	/**
+	 * 定义日志
+	 */
+	protected final static Logger logger = LoggerFactory.getLogger(BeanAccessor.class);
+
+	/**
+	 * 单个类缓存的最大数量,超出后不再缓存(label组合来自sql,正常情况下远达不到)
+	 */
+	private final static int MAX_CACHE_SIZE = 1000;
+
+	/**
+	 * 存取器缓存:按Class本身挂载(不同classloader加载的同名类互不影响,类卸载时随之回收),key为属性组合
+	 */
+	private final static ClassValue<ConcurrentHashMap<String, BeanAccessor>> accessors = new ClassValue<ConcurrentHashMap<String, BeanAccessor>>() {
+		@Override
+		protected ConcurrentHashMap<String, BeanAccessor> computeValue(Class<?> type) {
+			return new ConcurrentHashMap<String, BeanAccessor>();
+		}
+	};
+
+	private final static MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+	private final static MethodType SUPPLIER_TYPE = MethodType.methodType(Supplier.class);
+
+	private final static MethodType BICONSUMER_TYPE = MethodType.methodType(BiConsumer.class);
+
+	private final static MethodType FUNCTION_TYPE = MethodType.methodType(Function.class);
+
+	/**
+	 * 对象类型
+	 */
+	private final Class beanClass;
+
+	/**
+	 * 属性名称
+	 */
+	private final String[] properties;
+
+	/**
+	 * 无参构造器
+	 */
+	private volatile Supplier creator;
+
+	/**
+	 * set方法
+	 */
+	private volatile BiConsumer[] setters;
+
+	/**
+	 * get方法
+	 */
+	private volatile Function[] getters;
+
+	/**
+	 * set方法参数类型(基本类型转为包装类型,用于类型一致时直接赋值)
+	 */
+	private Class[] setTypes;
+
+	/**
+	 * set方法参数类型名称(用于convertType)
+	 */
+	private String[] setTypeNames;
+
+	/**
+	 * set方法参数的泛型类型
+	 */
+	private Class[] genericTypes;
+
+	private BeanAccessor(Class beanClass, String[] properties) {
+		this.beanClass = beanClass;
+		this.properties = properties;
+	}
+
+	/**
+	 * @TODO 获取类和属性对应的存取器(set和get方法第一次使用时才编译)
+	 * @param beanClass
+	 * @param properties
+	 * @return
+	 */
+	public static BeanAccessor getInstance(Class beanClass, String... properties) {
+		StringBuilder keyBuilder = new StringBuilder();
+		for (String prop : properties) {
+			keyBuilder.append(",").append(prop);
+		}
+		String key = keyBuilder.toString();
+		ConcurrentHashMap<String, BeanAccessor> classAccessors = accessors.get(beanClass);
+		BeanAccessor accessor = classAccessors.get(key);
+		if (accessor == null) {
+			accessor = new BeanAccessor(beanClass, properties.clone());
+			if (classAccessors.size() < MAX_CACHE_SIZE) {
+				BeanAccessor old = classAccessors.putIfAbsent(key, accessor);
+				if (old != null) {
+					accessor = old;
+				}
+			}
+		}
+		return accessor;
+	}
+
+	public Class getBeanClass() {
+		return beanClass;
+	}
+
+	public String[] getProperties() {
+		return properties;
+	}
+
+	/**
+	 * @TODO 构造对象实例
+	 * @return
+	 * @throws Exception
+	 */
+	public Object newInstance() throws Exception {
+		if (creator == null) {
+			if (Modifier.isAbstract(beanClass.getModifiers()) || Modifier.isInterface(beanClass.getModifiers())) {
+				throw new IllegalArgumentException("toClassType:" + beanClass.getName() + " 是抽象类或接口,非法参数!");
+			}
+			creator = compileCreator(beanClass);
+		}
+		return creator.get();
+	}
+
+	/**
+	 * @TODO 第index个属性是否存在set方法
+	 * @param index
+	 * @return
+	 */
+	public boolean hasSetter(int index) {
+		return getSetters()[index] != null;
+	}
+
+	/**
+	 * @TODO 第index个属性是否存在get方法
+	 * @param index
+	 * @return
+	 */
+	public boolean hasGetter(int index) {
+		return getGetters()[index] != null;
+	}
+
+	/**
+	 * @TODO set方法参数类型
+	 * @param index
+	 * @return
+	 */
+	public Class getSetType(int index) {
+		getSetters();
+		return setTypes[index];
+	}
+
+	/**
+	 * @TODO 给第index个属性赋值,值的类型跟属性类型不一致时通过convertType进行转换,null值忽略
+	 * @param typeHandler
+	 * @param bean
+	 * @param index
+	 * @param value
+	 * @throws Exception
+	 */
+	public void setValue(AbstractTypeHandler typeHandler, Object bean, int index, Object value) throws Exception {
+		BiConsumer setter = getSetters()[index];
+		if (setter == null || value == null) {
+			return;
+		}
+		if (value.getClass() == setTypes[index]) {
+			setter.accept(bean, value);
+		} else {
+			setter.accept(bean, BeanUtil.convertType(typeHandler, value, setTypeNames[index], genericTypes[index]));
+		}
+	}
+
+	/**
+	 * @TODO 直接给属性赋值(值类型已经跟属性一致)
+	 * @param bean
+	 * @param index
+	 * @param value
+	 */
+	public void setDirect(Object bean, int index, Object value) {
+		getSetters()[index].accept(bean, value);
+	}
+
+	/**
+	 * @TODO 获取第index个属性的值
+	 * @param bean
+	 * @param index
+	 * @return
+	 */
+	public Object getValue(Object bean, int index) {
+		Function getter = getGetters()[index];
+		if (getter == null) {
+			return null;
+		}
+		return getter.apply(bean);
+	}
+
+	private BiConsumer[] getSetters() {
+		if (setters == null) {
+			int size = properties.length;
+			Method[] methods = fillRepeat(BeanUtil.matchSetMethods(beanClass, properties));
+			Class[] types = new Class[size];
+			String[] typeNames = new String[size];
+			Class[] generics = new Class[size];
+			BiConsumer[] result = new BiConsumer[size];
+			Type[] genericParamTypes;
+			for (int i = 0; i < size; i++) {
+				if (methods[i] != null) {
+					types[i] = wrapPrimitive(methods[i].getParameterTypes()[0]);
+					typeNames[i] = methods[i].getParameterTypes()[0].getTypeName();
+					genericParamTypes = methods[i].getGenericParameterTypes();
+					if (genericParamTypes.length > 0 && genericParamTypes[0] instanceof ParameterizedType) {
+						generics[i] = (Class) ((ParameterizedType) genericParamTypes[0]).getActualTypeArguments()[0];
+					}
+					result[i] = compileSetter(methods[i]);
+				}
+			}
+			this.setTypes = types;
+			this.setTypeNames = typeNames;
+			this.genericTypes = generics;
+			this.setters = result;
+		}
+		return setters;
+	}
+
+	private Function[] getGetters() {
+		if (getters == null) {
+			int size = properties.length;
+			Method[] methods = fillRepeat(BeanUtil.matchGetMethods(beanClass, properties));
+			Function[] result = new Function[size];
+			for (int i = 0; i < size; i++) {
+				if (methods[i] != null) {
+					result[i] = compileGetter(methods[i]);
+				}
+			}
+			this.getters = result;
+		}
+		return getters;
+	}
+
+	/**
+	 * @TODO 方法匹配时已匹配的方法不再参与后续匹配,属性重复出现时沿用前面的匹配结果
+	 * @param methods
+	 * @return
+	 */
+	private Method[] fillRepeat(Method[] methods) {
+		for (int i = 1; i < methods.length; i++) {
+			if (methods[i] == null && properties[i] != null) {
+				for (int j = 0; j < i; j++) {
+					if (properties[i].equalsIgnoreCase(properties[j])) {
+						methods[i] = methods[j];
+						break;
+					}
+				}
+			}
+		}
+		return methods;
+	}
+
+	/**
+	 * @TODO 编译无参构造器
+	 * @param beanClass
+	 * @return
+	 * @throws Exception
+	 */
+	private static Supplier compileCreator(Class beanClass) throws Exception {
+		final Constructor constructor = beanClass.getDeclaredConstructor();
+		if (canLink(beanClass, null) && Modifier.isPublic(constructor.getModifiers())) {
+			try {
+				MethodHandle handle = LOOKUP.unreflectConstructor(constructor);
+				CallSite site = LambdaMetafactory.metafactory(LOOKUP, "get", SUPPLIER_TYPE,
+						MethodType.methodType(Object.class), handle, MethodType.methodType(beanClass));
+				return (Supplier) site.getTarget().invoke();
+			} catch (Throwable e) {
+				logger.debug("类:{} 构造器无法通过LambdaMetafactory编译,采用MethodHandle方式:{}", beanClass.getName(),
+						e.getMessage());
+			}
+		}
+		constructor.setAccessible(true);
+		final MethodHandle handle = LOOKUP.unreflectConstructor(constructor)
+				.asType(MethodType.methodType(Object.class));
+		return new Supplier() {
+			@Override
+			public Object get() {
+				try {
+					return (Object) handle.invokeExact();
+				} catch (Throwable e) {
+					throw wrapException(e);
+				}
+			}
+		};
+	}
+
+	/**
+	 * @TODO 编译set方法
+	 * @param method
+	 * @return
+	 */
+	private BiConsumer compileSetter(Method method) {
+		Class paramType = method.getParameterTypes()[0];
+		try {
+			if (canLink(method.getDeclaringClass(), paramType) && Modifier.isPublic(method.getModifiers())) {
+				try {
+					MethodHandle handle = LOOKUP.unreflect(method);
+					CallSite site = LambdaMetafactory.metafactory(LOOKUP, "accept", BICONSUMER_TYPE,
+							MethodType.methodType(void.class, Object.class, Object.class), handle,
+							MethodType.methodType(void.class, method.getDeclaringClass(), wrapPrimitive(paramType)));
+					return (BiConsumer) site.getTarget().invoke();
+				} catch (Throwable e) {
+					logger.debug("方法:{}.{} 无法通过LambdaMetafactory编译,采用MethodHandle方式:{}", beanClass.getName(),
+							method.getName(), e.getMessage());
+				}
+			}
+			method.setAccessible(true);
+			final MethodHandle handle = LOOKUP.unreflect(method)
+					.asType(MethodType.methodType(void.class, Object.class, Object.class));
+			return new BiConsumer() {
+				@Override
+				public void accept(Object bean, Object value) {
+					try {
+						handle.invokeExact(bean, value);
+					} catch (Throwable e) {
+						throw wrapException(e);
+					}
+				}
+			};
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @TODO 编译get方法
+	 * @param method
+	 * @return
+	 */
+	private Function compileGetter(Method method) {
+		Class returnType = method.getReturnType();
+		try {
+			if (canLink(method.getDeclaringClass(), returnType) && Modifier.isPublic(method.getModifiers())) {
+				try {
+					MethodHandle handle = LOOKUP.unreflect(method);
+					CallSite site = LambdaMetafactory.metafactory(LOOKUP, "apply", FUNCTION_TYPE,
+							MethodType.methodType(Object.class, Object.class), handle,
+							MethodType.methodType(wrapPrimitive(returnType), method.getDeclaringClass()));
+					return (Function) site.getTarget().invoke();
+				} catch (Throwable e) {
+					logger.debug("方法:{}.{} 无法通过LambdaMetafactory编译,采用MethodHandle方式:{}", beanClass.getName(),
+							method.getName(), e.getMessage());
+				}
+			}
+			method.setAccessible(true);
+			final MethodHandle handle = LOOKUP.unreflect(method)
+					.asType(MethodType.methodType(Object.class, Object.class));
+			return new Function() {
+				@Override
+				public Object apply(Object bean) {
+					try {
+						return (Object) handle.invokeExact(bean);
+					} catch (Throwable e) {
+						throw wrapException(e);
+					}
+				}
+			};
+		} catch (IllegalAccessException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * @TODO 判断能否通过LambdaMetafactory生成调用:生成的类由sqltoy的classloader加载,因此涉及的类必须是public且可见
+	 * @param ownerClass
+	 * @param valueType
+	 * @return
+	 */
+	private static boolean canLink(Class ownerClass, Class valueType) {
+		if (!isPublicVisible(ownerClass)) {
+			return false;
+		}
+		if (valueType == null || valueType.isPrimitive()) {
+			return true;
+		}
+		Class realType = valueType;
+		while (realType.isArray()) {
+			realType = realType.getComponentType();
+		}
+		return realType.isPrimitive() || isPublicVisible(realType);
+	}
+
+	private static boolean isPublicVisible(Class clazz) {
+		Class outer = clazz;
+		while (outer != null) {
+			if (!Modifier.isPublic(outer.getModifiers())) {
+				return false;
+			}
+			outer = outer.getDeclaringClass();
+		}
+		ClassLoader loader = clazz.getClassLoader();
+		// jdk自身的类
+		if (loader == null) {
+			return true;
+		}
+		try {
+			return Class.forName(clazz.getName(), false, BeanAccessor.class.getClassLoader()) == clazz;
+		} catch (Throwable e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @TODO 基本类型转为包装类型
+	 * @param type
+	 * @return
+	 */
+	public static Class wrapPrimitive(Class type) {
+		if (!type.isPrimitive()) {
+			return type;
+		}
+		if (type == int.class) {
+			return Integer.class;
+		}
+		if (type == long.class) {
+			return Long.class;
+		}
+		if (type == double.class) {
+			return Double.class;
+		}
+		if (type == boolean.class) {
+			return Boolean.class;
+		}
+		if (type == float.class) {
+			return Float.class;
+		}
+		if (type == short.class) {
+			return Short.class;
+		}
+		if (type == byte.class) {
+			return Byte.class;
+		}
+		if (type == char.class) {
+			return Character.class;
+		}
+		return Void.class;
+	}
+
+	private static RuntimeException wrapException(Throwable e) {
+		if (e instanceof RuntimeException) {
+			return (RuntimeException) e;
+		}
+		return new RuntimeException(e);
+	}
+}
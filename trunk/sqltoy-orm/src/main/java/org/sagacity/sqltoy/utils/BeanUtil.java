@@ -45,6 +45,7 @@ import org.slf4j.LoggerFactory;
  * @modify data:2020-06-23 优化convertType(Object, String) 方法
  * @modify data:2020-07-08 修复convertType(Object, String) 转Long类型时精度丢失问题
  * @modify data:2021-03-12 支持property中含下划线跟对象方法进行匹配
+ * @modify data:2021-05-12 对象属性存取改为预先编译的BeanAccessor,替代逐行Method.invoke
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class BeanUtil {
@@ -731,10 +732,8 @@ public class BeanUtil {
 		List resultList = new ArrayList();
 		try {
 			int methodLength = properties.length;
-			Method[] realMethods = null;
-			boolean inited = false;
+			BeanAccessor accessor = null;
 			Object rowObject = null;
-			Object[] params = new Object[] {};
 			// 判断是否存在属性值处理反调
 			boolean hasHandler = (reflectPropertyHandler != null) ? true : false;
 			// 存在反调，则将对象的属性和属性所在的顺序放入hashMap中，便于后面反调中通过属性调用
@@ -749,17 +748,12 @@ public class BeanUtil {
 				rowObject = datas.get(i);
 				if (null != rowObject) {
 					// 第一行数据
-					if (!inited) {
-						realMethods = matchGetMethods(rowObject.getClass(), properties);
-						inited = true;
+					if (accessor == null) {
+						accessor = BeanAccessor.getInstance(rowObject.getClass(), properties);
 					}
 					List dataList = new ArrayList();
 					for (int j = 0; j < methodLength; j++) {
-						if (realMethods[j] != null) {
-							dataList.add(realMethods[j].invoke(rowObject, params));
-						} else {
-							dataList.add(null);
-						}
+						dataList.add(accessor.getValue(rowObject, j));
 					}
 					// 反调对数据值进行加工处理
 					if (hasHandler) {
@@ -825,10 +819,17 @@ public class BeanUtil {
 		boolean isMap = false;
 		String fieldLow;
 		Object fieldValue;
+		// 非map对象通过预先编译的get方法提取属性值
+		BeanAccessor accessor = (serializable instanceof Map) ? null
+				: BeanAccessor.getInstance(serializable.getClass(), properties);
 		try {
 			// 通过反射提取属性getMethod返回的数据值
 			for (int i = 0; i < methodLength; i++) {
 				if (properties[i] != null) {
+					if (accessor != null && properties[i].indexOf(".") == -1) {
+						result[i] = accessor.getValue(serializable, i);
+						continue;
+					}
 					// 支持xxxx.xxx 子对象属性提取
 					fields = properties[i].split("\\.");
 					fieldValue = serializable;
@@ -903,10 +904,9 @@ public class BeanUtil {
 		try {
 			int methodLength = properties.length;
 			int defaultValueLength = (defaultValues == null) ? 0 : defaultValues.length;
-			Method[] realMethods = null;
-			boolean inited = false;
+			BeanAccessor accessor = null;
+			boolean[] hasGetters = null;
 			Object rowObject = null;
-			Object[] params = new Object[] {};
 			// 判断是否存在属性值处理反调
 			boolean hasHandler = (reflectPropertyHandler != null) ? true : false;
 			// 存在反调，则将对象的属性和属性所在的顺序放入hashMap中，便于后面反调中通过属性调用
@@ -921,16 +921,19 @@ public class BeanUtil {
 			for (int i = 0, n = dataSet.size(); i < n; i++) {
 				rowObject = dataSet.get(i);
 				if (null != rowObject) {
-					// 初始化属性对应getMethod的位置,提升反射的效率
-					if (!inited) {
-						realMethods = matchGetMethods(rowObject.getClass(), properties);
-						inited = true;
+					// 初始化属性对应的get方法存取器,提升提取的效率
+					if (accessor == null) {
+						accessor = BeanAccessor.getInstance(rowObject.getClass(), properties);
+						hasGetters = new boolean[methodLength];
+						for (int j = 0; j < methodLength; j++) {
+							hasGetters[j] = accessor.hasGetter(j);
+						}
 					}
 					Object[] dataAry = new Object[methodLength];
-					// 通过反射提取属性getMethod返回的数据值
+					// 通过预先编译的get方法提取属性值
 					for (int j = 0; j < methodLength; j++) {
-						if (null != realMethods[j]) {
-							dataAry[j] = realMethods[j].invoke(rowObject, params);
+						if (hasGetters[j]) {
+							dataAry[j] = accessor.getValue(rowObject, j);
 							if (null == dataAry[j] && null != defaultValues) {
 								dataAry[j] = (j >= defaultValueLength) ? null : defaultValues[j];
 							}
@@ -1027,32 +1030,19 @@ public class BeanUtil {
 			Object[] rowArray;
 			List rowList;
 			int indexSize = indexs.length;
-			Method[] realMethods = matchSetMethods(voClass, properties);
-			String[] methodTypes = new String[indexSize];
-			Class[] genericTypes = new Class[indexSize];
-			Type[] types;
-			// 自动适配属性的数据类型
-			if (autoConvertType) {
-				for (int i = 0; i < indexSize; i++) {
-					if (null != realMethods[i]) {
-						methodTypes[i] = realMethods[i].getParameterTypes()[0].getTypeName();
-						types = realMethods[i].getGenericParameterTypes();
-						if (types.length > 0) {
-							if (types[0] instanceof ParameterizedType) {
-								genericTypes[i] = (Class) ((ParameterizedType) types[0]).getActualTypeArguments()[0];
-							}
-						}
-					}
-				}
+			// 预先编译好的构造器和set方法
+			BeanAccessor accessor = BeanAccessor.getInstance(voClass, properties);
+			boolean[] hasSetters = new boolean[indexSize];
+			for (int i = 0; i < indexSize; i++) {
+				hasSetters[i] = accessor.hasSetter(i);
 			}
-
 			Iterator iter = datas.iterator();
 			int index = 0;
 			int size;
 			while (iter.hasNext()) {
 				rowObject = iter.next();
 				if (rowObject != null) {
-					bean = voClass.getDeclaredConstructor().newInstance();
+					bean = accessor.newInstance();
 					if (meter == 0) {
 						if (rowObject instanceof Object[]) {
 							isArray = true;
@@ -1062,19 +1052,14 @@ public class BeanUtil {
 						rowArray = (Object[]) rowObject;
 						size = rowArray.length;
 						for (int i = 0; i < indexSize; i++) {
-							if (indexs[i] < size) {
+							if (indexs[i] < size && hasSetters[i]) {
 								cellData = rowArray[indexs[i]];
-								if (realMethods[i] != null && cellData != null) {
-									propertyName = realMethods[i].getName();
-									// 类型相同
-									if (cellData.getClass().getTypeName().equals(methodTypes[i])) {
-										realMethods[i].invoke(bean, cellData);
+								if (cellData != null) {
+									propertyName = properties[i];
+									if (autoConvertType) {
+										accessor.setValue(typeHandler, bean, i, cellData);
 									} else {
-										realMethods[i].invoke(bean,
-												autoConvertType
-														? convertType(typeHandler, cellData, methodTypes[i],
-																genericTypes[i])
-														: cellData);
+										accessor.setDirect(bean, i, cellData);
 									}
 								}
 							}
@@ -1083,18 +1068,14 @@ public class BeanUtil {
 						rowList = (List) rowObject;
 						size = rowList.size();
 						for (int i = 0; i < indexSize; i++) {
-							if (indexs[i] < size) {
+							if (indexs[i] < size && hasSetters[i]) {
 								cellData = rowList.get(indexs[i]);
-								if (realMethods[i] != null && cellData != null) {
-									propertyName = realMethods[i].getName();
-									if (cellData.getClass().getTypeName().equals(methodTypes[i])) {
-										realMethods[i].invoke(bean, cellData);
+								if (cellData != null) {
+									propertyName = properties[i];
+									if (autoConvertType) {
+										accessor.setValue(typeHandler, bean, i, cellData);
 									} else {
-										realMethods[i].invoke(bean,
-												autoConvertType
-														? convertType(typeHandler, cellData, methodTypes[i],
-																genericTypes[i])
-														: cellData);
+										accessor.setDirect(bean, i, cellData);
 									}
 								}
 							}
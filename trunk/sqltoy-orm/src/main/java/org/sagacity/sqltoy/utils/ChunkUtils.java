@@ -0,0 +1,152 @@
+/**
+ * 
+ */
+package org.sagacity.sqltoy.utils;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Function;
+
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.callback.ChunkProgressHandler;
+import org.sagacity.sqltoy.exception.DataAccessException;
+import org.sagacity.sqltoy.plugins.sharding.ShardingUtils;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 将Iterable/Stream数据源按块(chunk)流水线执行:数据源只在调用线程中读取,当前块在数据库连接上执行的同时,
+ *              由独立的预取线程池为下一块预先分配主键,内存中最多保留正在执行和预取的两块数据
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class ChunkUtils {
+	/**
+	 * 定义日志
+	 */
+	protected final static Logger logger = LoggerFactory.getLogger(ChunkUtils.class);
+
+	private ChunkUtils() {
+	}
+
+	/**
+	 * @todo 按块执行
+	 * @param sqlToyContext
+	 * @param source          数据源(仅在调用线程中顺序读取)
+	 * @param chunkSize
+	 * @param assignPK        是否在预取时提前分配主键(save类操作)
+	 * @param chunkExecutor   单块执行(在调用线程中执行,从而保持当前事务连接)
+	 * @param progressHandler 可以为null
+	 * @return 累计影响记录数
+	 */
+	public static Long execute(final SqlToyContext sqlToyContext, final Iterator<?> source, final int chunkSize,
+			final boolean assignPK, final Function<List, Long> chunkExecutor,
+			final ChunkProgressHandler progressHandler) {
+		if (source == null) {
+			return 0L;
+		}
+		final int realChunkSize = (chunkSize > 0) ? chunkSize : sqlToyContext.getBatchSize();
+		ExecutorService executor = assignPK
+				? sqlToyContext.getThreadPoolManager().getExecutor(ThreadPoolManager.CHUNK_PREFETCH)
+				: null;
+		long totalRows = 0;
+		long affectRows = 0;
+		int chunkNo = 0;
+		// 首块同步提取
+		List chunk = nextChunk(source, realChunkSize);
+		if (assignPK) {
+			assignPKs(sqlToyContext, chunk);
+		}
+		List nextRows;
+		CompletableFuture<List> next;
+		Long updateCnt;
+		while (!chunk.isEmpty()) {
+			// 下一块在调用线程中读取,仅主键分配交由预取线程与当前块执行重叠
+			nextRows = nextChunk(source, realChunkSize);
+			next = null;
+			if (assignPK && !nextRows.isEmpty()) {
+				final List prefetchRows = nextRows;
+				try {
+					next = CompletableFuture.supplyAsync(() -> assignPKs(sqlToyContext, prefetchRows), executor);
+				} catch (RejectedExecutionException e) {
+					// 预取线程池饱和,执行完当前块后在调用线程中分配
+					next = null;
+				}
+			}
+			try {
+				updateCnt = chunkExecutor.apply(chunk);
+			} catch (RuntimeException e) {
+				if (next != null) {
+					next.cancel(false);
+				}
+				throw e;
+			}
+			chunkNo++;
+			totalRows = totalRows + chunk.size();
+			affectRows = affectRows + ((updateCnt == null) ? 0 : updateCnt.longValue());
+			if (progressHandler != null) {
+				progressHandler.process(chunkNo, chunk.size(), totalRows, affectRows);
+			}
+			if (next == null) {
+				chunk = assignPK ? assignPKs(sqlToyContext, nextRows) : nextRows;
+				continue;
+			}
+			try {
+				chunk = next.join();
+			} catch (CompletionException e) {
+				if (e.getCause() instanceof RuntimeException) {
+					throw (RuntimeException) e.getCause();
+				}
+				throw new DataAccessException(e.getCause());
+			}
+		}
+		logger.debug("分块执行完成,共:{}块,{}条记录,影响记录数:{}", chunkNo, totalRows, affectRows);
+		return affectRows;
+	}
+
+	/**
+	 * @todo 提取下一块数据
+	 * @param source
+	 * @param chunkSize
+	 * @return
+	 */
+	private static List nextChunk(Iterator<?> source, int chunkSize) {
+		List chunk = new ArrayList(chunkSize);
+		Object row;
+		while (chunk.size() < chunkSize && source.hasNext()) {
+			row = source.next();
+			if (row != null) {
+				chunk.add(row);
+			}
+		}
+		return chunk;
+	}
+
+	/**
+	 * @todo 按主键策略预先赋予主键值
+	 * @param sqlToyContext
+	 * @param chunk
+	 * @return
+	 */
+	private static List assignPKs(SqlToyContext sqlToyContext, List chunk) {
+		if (chunk.isEmpty()) {
+			return chunk;
+		}
+		try {
+			ShardingUtils.assignPKs(sqlToyContext, sqlToyContext.getEntityMeta(chunk.get(0).getClass()), chunk);
+		} catch (RuntimeException e) {
+			throw e;
+		} catch (Exception e) {
+			throw new DataAccessException(e);
+		}
+		return chunk;
+	}
+}
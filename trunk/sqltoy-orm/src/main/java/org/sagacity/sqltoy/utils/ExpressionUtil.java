@@ -1,6 +1,7 @@
 package org.sagacity.sqltoy.utils;
 
 import java.util.Stack;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -12,6 +13,7 @@ import org.slf4j.LoggerFactory;
  * @description 科学表达式运算（来源于网络）
  * @author zhongxuchen
  * @version v1.0,Date:2009-5-20
+ * @modify {Date:2021-05-20 表达式为常量运算,计算结果按表达式缓存,避免汇总等场景每次重复解析}
  */
 @SuppressWarnings("rawtypes")
 public class ExpressionUtil {
@@ -22,11 +24,40 @@ public class ExpressionUtil {
 
 	public static final String OPTS = "+-*/%><][!|&=#";
 
+	/**
+	 * 计算结果缓存上限
+	 */
+	private static final int RESULT_CACHE_SIZE = 2000;
+
+	/**
+	 * key:表达式,value:计算结果
+	 */
+	private static final ConcurrentHashMap<String, Object> results = new ConcurrentHashMap<String, Object>();
+
 	private ExpressionUtil() {
 	}
 
-	@SuppressWarnings("unchecked")
+	/**
+	 * @TODO 计算表达式(不含变量,相同表达式结果不变,直接取缓存)
+	 * @param expression
+	 * @return
+	 */
 	public static Object calculate(String expression) {
+		if (expression == null) {
+			return evaluate(expression);
+		}
+		Object result = results.get(expression);
+		if (result == null) {
+			result = evaluate(expression);
+			if (results.size() < RESULT_CACHE_SIZE) {
+				results.put(expression, result);
+			}
+		}
+		return result;
+	}
+
+	@SuppressWarnings("unchecked")
+	private static Object evaluate(String expression) {
 		try {
 			Stack Opts = new Stack();
 			Stack Values = new Stack();
@@ -1,19 +1,26 @@
 package org.sagacity.sqltoy.utils;
 
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.http.HttpEntity;
-import org.apache.http.HttpResponse;
 import org.apache.http.NameValuePair;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.impl.client.CloseableHttpClient;
@@ -22,11 +29,12 @@ import org.apache.http.message.BasicNameValuePair;
 import org.apache.http.util.EntityUtils;
 import org.elasticsearch.client.Request;
 import org.elasticsearch.client.Response;
-import org.elasticsearch.client.RestClient;
+import org.elasticsearch.client.ResponseListener;
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.config.model.ElasticEndpoint;
 import org.sagacity.sqltoy.config.model.NoSqlConfigModel;
 import org.sagacity.sqltoy.exception.DataAccessException;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -38,6 +46,7 @@ import com.alibaba.fastjson.JSONObject;
  * @description 提供基于http请求的工具类
  * @author zhongxuchen
  * @version v1.0,Date:2018年1月7日
+ * @modify Date:2021-05-16 {改为长连接池化调用,去除restClient每次调用后被关闭的问题,增加异步和流式读取结果的调用方式}
  */
 public class HttpClientUtils {
 	/**
@@ -59,46 +68,44 @@ public class HttpClientUtils {
 
 	private final static String POST = "POST";
 
+	/**
+	 * 未配置连接池的场景(缓存更新检测、未初始化的es节点等)共用的长连接池
+	 */
+	private static volatile CloseableHttpClient defaultClient;
+
+	/**
+	 * @description 流式读取http返回结果
+	 */
+	@FunctionalInterface
+	public interface ResponseReader<T> {
+		public T read(Reader reader) throws Exception;
+	}
+
 	private HttpClientUtils() {
 	}
 
 	public static String doPost(SqlToyContext sqltoyContext, final String url, String username, String password,
 			String[] paramName, String[] paramValue) throws Exception {
 		HttpPost httpPost = new HttpPost(url);
-		// 设置connection是否自动关闭
-		httpPost.setHeader("Connection", "close");
 		httpPost.setConfig(requestConfig);
-		CloseableHttpClient client = null;
-		try {
-			if (StringUtil.isNotBlank(username) && StringUtil.isNotBlank(password)) {
-				// 凭据提供器
-				CredentialsProvider credsProvider = new BasicCredentialsProvider();
-				credsProvider.setCredentials(AuthScope.ANY,
-						// 认证用户名和密码
-						new UsernamePasswordCredentials(username, password));
-				client = HttpClients.custom().setDefaultCredentialsProvider(credsProvider).build();
-			} else {
-				client = HttpClients.createDefault();
-			}
-			if (paramValue != null && paramValue.length > 0) {
-				List<NameValuePair> nvps = new ArrayList<NameValuePair>();
-				for (int i = 0; i < paramValue.length; i++) {
-					if (paramValue[i] != null) {
-						nvps.add(new BasicNameValuePair(paramName[i], paramValue[i]));
-					}
+		if (paramValue != null && paramValue.length > 0) {
+			List<NameValuePair> nvps = new ArrayList<NameValuePair>();
+			for (int i = 0; i < paramValue.length; i++) {
+				if (paramValue[i] != null) {
+					nvps.add(new BasicNameValuePair(paramName[i], paramValue[i]));
 				}
-				HttpEntity httpEntity = new UrlEncodedFormEntity(nvps, CHARSET);
-				((UrlEncodedFormEntity) httpEntity).setContentType(CONTENT_TYPE);
-				httpPost.setEntity(httpEntity);
 			}
-			HttpResponse response = client.execute(httpPost);
+			HttpEntity httpEntity = new UrlEncodedFormEntity(nvps, CHARSET);
+			((UrlEncodedFormEntity) httpEntity).setContentType(CONTENT_TYPE);
+			httpPost.setEntity(httpEntity);
+		}
+		try (CloseableHttpResponse response = getDefaultClient().execute(httpPost,
+				createContext(username, password))) {
 			// 返回结果
 			HttpEntity reponseEntity = response.getEntity();
 			if (reponseEntity != null) {
 				return EntityUtils.toString(reponseEntity, CHARSET);
 			}
-		} catch (Exception e) {
-			throw e;
 		}
 		return null;
 	}
@@ -114,11 +121,165 @@ public class HttpClientUtils {
 	 */
 	public static JSONObject doPost(SqlToyContext sqltoyContext, NoSqlConfigModel nosqlConfig, ElasticEndpoint esConfig,
 			Object postValue) throws Exception {
+		return doPost(sqltoyContext, nosqlConfig, esConfig, postValue, (reader) -> {
+			return parseResult(sqltoyContext, nosqlConfig, readString(reader));
+		});
+	}
+
+	/**
+	 * @todo 执行post请求,将结果以流的形式交由reader逐步解析,避免先构造完整的结果字符串和JSON对象
+	 * @param sqltoyContext
+	 * @param nosqlConfig
+	 * @param esConfig
+	 * @param postValue
+	 * @param responseReader
+	 * @return
+	 * @throws Exception
+	 */
+	public static <T> T doPost(SqlToyContext sqltoyContext, NoSqlConfigModel nosqlConfig, ElasticEndpoint esConfig,
+			Object postValue, ResponseReader<T> responseReader) throws Exception {
+		HttpEntity httpEntity = createEntity(nosqlConfig, esConfig, postValue);
+		String charset = (nosqlConfig.getCharset() == null) ? CHARSET : nosqlConfig.getCharset();
+		// 使用elastic rest client(默认)
+		if (esConfig.getRestClient() != null) {
+			Request request = createRequest(sqltoyContext, nosqlConfig, esConfig, postValue, httpEntity);
+			Response response = esConfig.getRestClient().performRequest(request);
+			return readEntity(response.getEntity(), charset, responseReader);
+		}
+		// 组织httpclient模式调用
+		HttpPost httpPost = createHttpPost(sqltoyContext, nosqlConfig, esConfig, postValue, httpEntity);
+		CloseableHttpClient client = esConfig.getHttpClient();
+		// 连接池化的client已经设置了用户凭据
+		HttpClientContext context = (client == null) ? createContext(esConfig.getUsername(), esConfig.getPassword())
+				: HttpClientContext.create();
+		if (client == null) {
+			client = getDefaultClient();
+		}
+		// 关闭response即将连接归还连接池
+		try (CloseableHttpResponse response = client.execute(httpPost, context)) {
+			return readEntity(response.getEntity(), charset, responseReader);
+		}
+	}
+
+	/**
+	 * @todo 异步执行post请求,restClient模式使用其自带的异步io,httpclient模式在sqltoy共享的async线程池中执行
+	 * @param sqltoyContext
+	 * @param nosqlConfig
+	 * @param esConfig
+	 * @param postValue
+	 * @return
+	 */
+	public static CompletableFuture<JSONObject> doPostAsync(SqlToyContext sqltoyContext, NoSqlConfigModel nosqlConfig,
+			ElasticEndpoint esConfig, Object postValue) {
+		if (esConfig.getRestClient() == null) {
+			return CompletableFuture.supplyAsync(() -> {
+				try {
+					return doPost(sqltoyContext, nosqlConfig, esConfig, postValue);
+				} catch (RuntimeException e) {
+					throw e;
+				} catch (Exception e) {
+					throw new CompletionException(e);
+				}
+			}, sqltoyContext.getThreadPoolManager().getExecutor(ThreadPoolManager.ASYNC));
+		}
+		final CompletableFuture<JSONObject> result = new CompletableFuture<JSONObject>();
+		try {
+			HttpEntity httpEntity = createEntity(nosqlConfig, esConfig, postValue);
+			final String charset = (nosqlConfig.getCharset() == null) ? CHARSET : nosqlConfig.getCharset();
+			Request request = createRequest(sqltoyContext, nosqlConfig, esConfig, postValue, httpEntity);
+			esConfig.getRestClient().performRequestAsync(request, new ResponseListener() {
+				@Override
+				public void onSuccess(Response response) {
+					try {
+						result.complete(readEntity(response.getEntity(), charset, (reader) -> {
+							return parseResult(sqltoyContext, nosqlConfig, readString(reader));
+						}));
+					} catch (Exception e) {
+						result.completeExceptionally(e);
+					}
+				}
+
+				@Override
+				public void onFailure(Exception exception) {
+					result.completeExceptionally(exception);
+				}
+			});
+		} catch (Exception e) {
+			result.completeExceptionally(e);
+		}
+		return result;
+	}
+
+	/**
+	 * @todo 校验es返回结果是否包含错误信息
+	 * @param nosqlConfig
+	 * @param json
+	 */
+	public static void checkError(NoSqlConfigModel nosqlConfig, JSONObject json) {
+		// 存在错误
+		if (json != null && json.containsKey("error")) {
+			String errorMessage = JSON.toJSONString(json.getJSONObject("error").getJSONArray("root_cause").get(0));
+			logger.error("elastic查询失败,endpoint:[{}],错误信息:[{}]", nosqlConfig.getEndpoint(), errorMessage);
+			throw new DataAccessException("ElasticSearch查询失败,错误信息:" + errorMessage);
+		}
+	}
+
+	/**
+	 * @todo 关闭共用的连接池
+	 */
+	public static synchronized void destroy() {
+		if (defaultClient != null) {
+			try {
+				defaultClient.close();
+			} catch (Exception e) {
+				e.printStackTrace();
+			}
+			defaultClient = null;
+		}
+	}
+
+	private static JSONObject parseResult(SqlToyContext sqltoyContext, NoSqlConfigModel nosqlConfig, String result) {
+		if (sqltoyContext.isDebug()) {
+			logger.debug("result={}", result);
+		}
+		if (StringUtil.isBlank(result)) {
+			return null;
+		}
+		// 将结果转换为JSON对象
+		JSONObject json = JSON.parseObject(result);
+		checkError(nosqlConfig, json);
+		return json;
+	}
+
+	private static String readString(Reader reader) throws Exception {
+		if (reader == null) {
+			return null;
+		}
+		StringBuilder result = new StringBuilder();
+		char[] buffer = new char[4096];
+		int length;
+		while ((length = reader.read(buffer)) != -1) {
+			result.append(buffer, 0, length);
+		}
+		return result.toString();
+	}
+
+	private static <T> T readEntity(HttpEntity reponseEntity, String charset, ResponseReader<T> responseReader)
+			throws Exception {
+		if (reponseEntity == null) {
+			return responseReader.read(null);
+		}
+		try (Reader reader = new InputStreamReader(reponseEntity.getContent(), Charset.forName(charset))) {
+			return responseReader.read(reader);
+		}
+	}
+
+	private static HttpEntity createEntity(NoSqlConfigModel nosqlConfig, ElasticEndpoint esConfig, Object postValue) {
 		if (esConfig.getUrl() == null) {
 			throw new IllegalArgumentException("请正确配置sqltoyContext elasticConfigs 指定es的服务地址!");
 		}
 		String charset = (nosqlConfig.getCharset() == null) ? CHARSET : nosqlConfig.getCharset();
-		HttpEntity httpEntity = null;
+		StringEntity httpEntity = null;
 		// sql 模式
 		if (nosqlConfig.isSqlMode()) {
 			// 6.3.x 版本支持xpack sql查询
@@ -132,101 +293,86 @@ public class HttpClientUtils {
 		} else {
 			httpEntity = new StringEntity(JSON.toJSONString(postValue), charset);
 		}
-		((StringEntity) httpEntity).setContentEncoding(charset);
-		((StringEntity) httpEntity).setContentType(CONTENT_TYPE);
-		String realUrl;
-		// 返回结果
-		HttpEntity reponseEntity = null;
-		// 使用elastic rest client(默认)
-		if (esConfig.getRestClient() != null) {
-			realUrl = wrapUrl(esConfig, nosqlConfig);
-			if (sqltoyContext.isDebug()) {
-				logger.debug("esRestClient执行:URL=[{}],Path={},执行的JSON=[{}]", esConfig.getUrl(), realUrl,
-						JSON.toJSONString(postValue));
-			}
-			// 默认采用post请求
-			RestClient restClient = null;
-			try {
-				restClient = esConfig.getRestClient();
-				Request request = new Request(POST, realUrl);
-				request.setEntity(httpEntity);
-				Response response = restClient.performRequest(request);
-				reponseEntity = response.getEntity();
-			} catch (Exception e) {
-				throw e;
-			} finally {
-				if (restClient != null) {
-					restClient.close();
-				}
-			}
-		} // 组织httpclient模式调用(此种模式不推荐使用)
-		else {
-			realUrl = wrapUrl(esConfig, nosqlConfig);
-			HttpPost httpPost = new HttpPost(realUrl);
-			if (sqltoyContext.isDebug()) {
-				logger.debug("httpClient执行URL=[{}],执行的JSON=[{}]", realUrl, JSON.toJSONString(postValue));
-			}
-			httpPost.setEntity(httpEntity);
+		httpEntity.setContentEncoding(charset);
+		httpEntity.setContentType(CONTENT_TYPE);
+		return httpEntity;
+	}
 
-			// 设置connection是否自动关闭
-			httpPost.setHeader("Connection", "close");
-			// 自定义超时
-			if (nosqlConfig.getRequestTimeout() != 30000 || nosqlConfig.getConnectTimeout() != 10000
-					|| nosqlConfig.getSocketTimeout() != 180000) {
-				httpPost.setConfig(RequestConfig.custom().setConnectionRequestTimeout(nosqlConfig.getRequestTimeout())
-						.setConnectTimeout(nosqlConfig.getConnectTimeout())
-						.setSocketTimeout(nosqlConfig.getSocketTimeout()).build());
-			} else {
-				httpPost.setConfig(requestConfig);
-			}
-			CloseableHttpClient client = null;
-			try {
-				if (StringUtil.isNotBlank(esConfig.getUsername()) && StringUtil.isNotBlank(esConfig.getPassword())) {
-					// 凭据提供器
-					CredentialsProvider credsProvider = new BasicCredentialsProvider();
-					credsProvider.setCredentials(AuthScope.ANY,
-							// 认证用户名和密码
-							new UsernamePasswordCredentials(esConfig.getUsername(), esConfig.getPassword()));
-					client = HttpClients.custom().setDefaultCredentialsProvider(credsProvider).build();
-				} else {
-					client = HttpClients.createDefault();
-				}
-				HttpResponse response = client.execute(httpPost);
-				reponseEntity = response.getEntity();
-			} catch (Exception e) {
-				throw e;
-			}
+	private static Request createRequest(SqlToyContext sqltoyContext, NoSqlConfigModel nosqlConfig,
+			ElasticEndpoint esConfig, Object postValue, HttpEntity httpEntity) {
+		// restClient已经包含了节点地址,只需提供路径
+		String realPath = wrapUrl("/", nosqlConfig, esConfig.getSqlPath());
+		if (sqltoyContext.isDebug()) {
+			logger.debug("esRestClient执行:URL=[{}],Path={},执行的JSON=[{}]", esConfig.getUrl(), realPath,
+					JSON.toJSONString(postValue));
 		}
-		String result = null;
-		if (reponseEntity != null) {
-			result = EntityUtils.toString(reponseEntity, nosqlConfig.getCharset());
-			if (sqltoyContext.isDebug()) {
-				logger.debug("result={}", result);
-			}
+		// 默认采用post请求
+		Request request = new Request(POST, realPath);
+		request.setEntity(httpEntity);
+		return request;
+	}
+
+	private static HttpPost createHttpPost(SqlToyContext sqltoyContext, NoSqlConfigModel nosqlConfig,
+			ElasticEndpoint esConfig, Object postValue, HttpEntity httpEntity) {
+		String realUrl = wrapUrl(esConfig.getUrl(), nosqlConfig, esConfig.getSqlPath());
+		HttpPost httpPost = new HttpPost(realUrl);
+		if (sqltoyContext.isDebug()) {
+			logger.debug("httpClient执行URL=[{}],执行的JSON=[{}]", realUrl, JSON.toJSONString(postValue));
 		}
-		if (StringUtil.isBlank(result)) {
-			return null;
+		httpPost.setEntity(httpEntity);
+		// 自定义超时
+		if (nosqlConfig.getRequestTimeout() != 30000 || nosqlConfig.getConnectTimeout() != 10000
+				|| nosqlConfig.getSocketTimeout() != 180000) {
+			httpPost.setConfig(RequestConfig.custom().setConnectionRequestTimeout(nosqlConfig.getRequestTimeout())
+					.setConnectTimeout(nosqlConfig.getConnectTimeout()).setSocketTimeout(nosqlConfig.getSocketTimeout())
+					.build());
+		} else if (esConfig.getHttpClient() == null) {
+			httpPost.setConfig(requestConfig);
 		}
-		// 将结果转换为JSON对象
-		JSONObject json = JSON.parseObject(result);
-		// 存在错误
-		if (json.containsKey("error")) {
-			String errorMessage = JSON.toJSONString(json.getJSONObject("error").getJSONArray("root_cause").get(0));
-			logger.error("elastic查询失败,endpoint:[{}],错误信息:[{}]", nosqlConfig.getEndpoint(), errorMessage);
-			throw new DataAccessException("ElasticSearch查询失败,错误信息:" + errorMessage);
+		return httpPost;
+	}
+
+	/**
+	 * @todo 按请求提供用户凭据,共用连接池时不同地址可使用不同的用户
+	 * @param username
+	 * @param password
+	 * @return
+	 */
+	private static HttpClientContext createContext(String username, String password) {
+		HttpClientContext context = HttpClientContext.create();
+		if (StringUtil.isNotBlank(username) && StringUtil.isNotBlank(password)) {
+			// 凭据提供器
+			CredentialsProvider credsProvider = new BasicCredentialsProvider();
+			credsProvider.setCredentials(AuthScope.ANY,
+					// 认证用户名和密码
+					new UsernamePasswordCredentials(username, password));
+			context.setCredentialsProvider(credsProvider);
 		}
-		return json;
+		return context;
+	}
+
+	private static CloseableHttpClient getDefaultClient() {
+		if (defaultClient == null) {
+			synchronized (HttpClientUtils.class) {
+				if (defaultClient == null) {
+					defaultClient = HttpClients.custom().setMaxConnTotal(50).setMaxConnPerRoute(10)
+							.setDefaultRequestConfig(requestConfig).evictExpiredConnections()
+							.evictIdleConnections(60, TimeUnit.SECONDS).build();
+				}
+			}
+		}
+		return defaultClient;
 	}
 
 	/**
 	 * @todo 重新组织url
-	 * @param esConfig
+	 * @param baseUrl
 	 * @param nosqlConfig
+	 * @param sqlPath
 	 * @return
 	 */
-	private static String wrapUrl(ElasticEndpoint esConfig, NoSqlConfigModel nosqlConfig) {
-		String url = esConfig.getUrl();
-		String sqlPath = esConfig.getSqlPath();
+	private static String wrapUrl(String baseUrl, NoSqlConfigModel nosqlConfig, String sqlPath) {
+		String url = baseUrl;
 		if (StringUtil.isBlank(sqlPath)) {
 			sqlPath = "_sql";
 		}
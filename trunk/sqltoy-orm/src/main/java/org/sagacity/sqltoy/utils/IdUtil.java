@@ -9,6 +9,7 @@ import java.util.Date;
 import java.util.Enumeration;
 import java.util.List;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @project sagacity-sqltoy
@@ -25,6 +26,16 @@ public class IdUtil {
 	 */
 	private static String secureServerId = getLastIp(NANOTIME_IP_SUBSIZE);
 
+	/**
+	 * 22位有序ID的纳秒位进制
+	 */
+	private static final long NANO_UNIT = 1000000L;
+
+	/**
+	 * 最后一次分配的(毫秒*10^6+纳秒后6位)值,保证进程内单个和批量ID单调递增不重复
+	 */
+	private static final AtomicLong LAST_NANO_TIME = new AtomicLong(0);
+
 	private IdUtil() {
 
 	}
@@ -37,20 +48,42 @@ public class IdUtil {
 	}
 
 	/**
-	 * @todo 获取22位有序安全ID,格式:13位当前毫秒+6位纳秒+3位主机ID 目前情况下任何一次提取纳秒时间都不会一样
+	 * @todo 获取22位有序安全ID,格式:13位当前毫秒+6位纳秒+3位主机ID
 	 * @param workerId
 	 * @return
 	 */
 	public static BigDecimal getShortNanoTimeId(String workerId) {
-		// 13位当前时间(毫秒)
-		String nowTime = StringUtil.addLeftZero2Len("" + System.currentTimeMillis(), 13);
-		// 6位纳秒间隔
-		String nanoTime = "" + System.nanoTime();
-		nanoTime = nanoTime.substring(nanoTime.length() - 6);
-		// 3位主机ID
+		return getShortNanoTimeIds(workerId, 1)[0];
+	}
+
+	/**
+	 * @TODO 批量获取22位有序ID:与单个ID共用进程内同一个单调递增序列,一次性预留count个(毫秒+6位纳秒)值,
+	 *       并发的单个取值与批量取值不会落入同一区间
+	 * @param workerId
+	 * @param count
+	 * @return
+	 */
+	public static BigDecimal[] getShortNanoTimeIds(String workerId, int count) {
+		BigDecimal[] result = new BigDecimal[count];
+		if (count < 1) {
+			return result;
+		}
 		String serverId = (workerId == null) ? secureServerId : workerId;
-		String id = nowTime.concat(nanoTime).concat(serverId);
-		return new BigDecimal(id);
+		long last;
+		long start;
+		do {
+			last = LAST_NANO_TIME.get();
+			// 毫秒*10^6+纳秒后6位
+			start = Math.max(System.currentTimeMillis() * NANO_UNIT + Math.floorMod(System.nanoTime(), NANO_UNIT),
+					last + 1);
+		} while (!LAST_NANO_TIME.compareAndSet(last, start + count - 1));
+		long value;
+		for (int i = 0; i < count; i++) {
+			value = start + i;
+			result[i] = new BigDecimal(StringUtil.addLeftZero2Len("" + (value / NANO_UNIT), 13)
+					.concat(StringUtil.addLeftZero2Len("" + (value % NANO_UNIT), 6)).concat(serverId));
+		}
+		return result;
 	}
 
 	/**
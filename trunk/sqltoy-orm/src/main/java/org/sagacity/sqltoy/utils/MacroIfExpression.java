@@ -0,0 +1,497 @@
+package org.sagacity.sqltoy.utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * @project sagacity-sqltoy
+ * @description @if()逻辑表达式预编译:sql加载时一次性解析成由与、或、非和比较节点组成的语法树,比较值的去引号、小写、数字、
+ *              in数组等在编译期完成,执行时直接按参数位置取值判断;支持&&优先于||以及括号嵌套,如:@if((:a>=1 ||
+ *              :b==2) && :c!=null)
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public final class MacroIfExpression implements Serializable {
+	private static final long serialVersionUID = 4360734621871236585L;
+
+	/**
+	 * 比较类型
+	 */
+	private static final int EQ = 0;
+	private static final int NE = 1;
+	private static final int GE = 2;
+	private static final int LE = 3;
+	private static final int GT = 4;
+	private static final int LT = 5;
+	private static final int INCLUDE = 6;
+	private static final int IN = 7;
+	private static final int OUT = 8;
+
+	/**
+	 * 对应比较类型在MacroIfLogic中的符号(日期类比较委托MacroIfLogic处理)
+	 */
+	private static final String[] COMPARE_TYPES = { "==", "!=", ">=", "<=", ">", "<", "include", "in", "out" };
+
+	private final Node root;
+
+	/**
+	 * 比较表达式数量(即参数数量,第i个比较对应第i个参数)
+	 */
+	private final int compareCount;
+
+	private MacroIfExpression(Node root, int compareCount) {
+		this.root = root;
+		this.compareCount = compareCount;
+	}
+
+	public int getCompareCount() {
+		return compareCount;
+	}
+
+	/**
+	 * @TODO 编译@if()中的表达式,无法解析时返回null(由调用方走原有的逐次解析逻辑)
+	 * @param express
+	 * @return
+	 */
+	public static MacroIfExpression compile(String express) {
+		if (express == null || express.trim().equals("")) {
+			return null;
+		}
+		Parser parser = new Parser(express);
+		try {
+			Node root = parser.parseOr();
+			parser.skipBlank();
+			if (root == null || parser.pos != express.length()) {
+				return null;
+			}
+			return new MacroIfExpression(root, parser.ordinal);
+		} catch (IllegalArgumentException e) {
+			return null;
+		}
+	}
+
+	/**
+	 * @TODO 计算表达式,第i个比较的参数值为values[indexes[offset+i]](indexes为null时为values[offset+i])
+	 * @param values
+	 * @param indexes
+	 * @param offset
+	 * @return
+	 */
+	public boolean evaluate(Object[] values, int[] indexes, int offset) {
+		return root.eval(values, indexes, offset);
+	}
+
+	/**
+	 * 语法树节点
+	 */
+	private static abstract class Node implements Serializable {
+		private static final long serialVersionUID = 4921837542871643015L;
+
+		abstract boolean eval(Object[] values, int[] indexes, int offset);
+	}
+
+	private static final class AndNode extends Node {
+		private static final long serialVersionUID = -1629378415906221752L;
+		private final Node[] items;
+
+		private AndNode(Node[] items) {
+			this.items = items;
+		}
+
+		@Override
+		boolean eval(Object[] values, int[] indexes, int offset) {
+			for (Node item : items) {
+				if (!item.eval(values, indexes, offset)) {
+					return false;
+				}
+			}
+			return true;
+		}
+	}
+
+	private static final class OrNode extends Node {
+		private static final long serialVersionUID = 3189542607613280495L;
+		private final Node[] items;
+
+		private OrNode(Node[] items) {
+			this.items = items;
+		}
+
+		@Override
+		boolean eval(Object[] values, int[] indexes, int offset) {
+			for (Node item : items) {
+				if (item.eval(values, indexes, offset)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	private static final class NotNode extends Node {
+		private static final long serialVersionUID = -5582962461542839204L;
+		private final Node item;
+
+		private NotNode(Node item) {
+			this.item = item;
+		}
+
+		@Override
+		boolean eval(Object[] values, int[] indexes, int offset) {
+			return !item.eval(values, indexes, offset);
+		}
+	}
+
+	/**
+	 * 单个比较:(size|length)?(:param) 比较符 值
+	 */
+	private static final class CompareNode extends Node {
+		private static final long serialVersionUID = 6734081292539014517L;
+
+		/**
+		 * 参数序号
+		 */
+		private final int ordinal;
+
+		/**
+		 * 是否提取数组长度进行比较
+		 */
+		private final boolean length;
+
+		private final int type;
+
+		/**
+		 * 比较值原始文本,日期类比较(now()、day()等)依赖执行时刻,委托MacroIfLogic处理
+		 */
+		private final String rawValue;
+
+		private final boolean dateCompare;
+
+		/**
+		 * 已去除引号的比较值以及其小写
+		 */
+		private final String compareValue;
+		private final String compareLow;
+
+		/**
+		 * 比较值为数字时的数值
+		 */
+		private final boolean numeric;
+		private final double number;
+
+		/**
+		 * in/out的候选值
+		 */
+		private final String[] inValues;
+
+		private CompareNode(int ordinal, boolean length, int type, String rawValue) {
+			this.ordinal = ordinal;
+			this.length = length;
+			this.type = type;
+			this.rawValue = rawValue;
+			// 与MacroIfLogic.compare保持一致的比较值规整
+			String value = rawValue;
+			if ((value.startsWith("'") && value.endsWith("'")) || (value.startsWith("\"") && value.endsWith("\""))) {
+				value = value.substring(1, value.length() - 1);
+			}
+			if (value.trim().indexOf("+") > 0) {
+				value = value.split("\\+")[0].trim();
+			} else if (value.trim().indexOf("-") > 0) {
+				value = value.split("\\-")[0].trim();
+			}
+			String low = value.toLowerCase();
+			this.dateCompare = "now()".equals(low) || ".now".equals(low) || "${.now}".equals(low)
+					|| "nowtime()".equals(low) || "day()".equals(low) || "sysdate()".equals(low) || ".day".equals(low)
+					|| ".day()".equals(low) || "${.day}".equals(low);
+			this.compareValue = value.replaceAll("\'", "").replaceAll("\"", "");
+			this.compareLow = this.compareValue.toLowerCase();
+			this.numeric = NumberUtil.isNumber(this.compareValue);
+			this.number = this.numeric ? Double.parseDouble(this.compareValue) : 0;
+			String[] compareAry = this.compareLow.split("\\,");
+			if (compareAry.length > 1) {
+				for (int i = 0; i < compareAry.length; i++) {
+					compareAry[i] = compareAry[i].trim();
+				}
+			}
+			this.inValues = compareAry;
+		}
+
+		@Override
+		boolean eval(Object[] values, int[] indexes, int offset) {
+			Object value = values[(indexes == null) ? offset + ordinal : indexes[offset + ordinal]];
+			if (length) {
+				value = (value == null) ? 0 : CollectionUtil.convertArray(value).length;
+			}
+			if (dateCompare) {
+				return MacroIfLogic.compare(value, COMPARE_TYPES[type], rawValue);
+			}
+			String realValue = (value == null) ? "null" : value.toString();
+			if (type == EQ) {
+				return realValue.equalsIgnoreCase(compareValue);
+			}
+			if (type == NE) {
+				return !realValue.equalsIgnoreCase(compareValue);
+			}
+			// 为null时只参与等于或不等于逻辑判断
+			if (value == null) {
+				return false;
+			}
+			switch (type) {
+			case GE:
+				return compareTo(value, realValue) >= 0;
+			case LE:
+				return compareTo(value, realValue) <= 0;
+			case GT:
+				return compareTo(value, realValue) > 0;
+			case LT:
+				return compareTo(value, realValue) < 0;
+			case INCLUDE:
+				return include(value, realValue);
+			case IN:
+				return in(realValue.toLowerCase());
+			default:
+				return !in(realValue.toLowerCase());
+			}
+		}
+
+		private int compareTo(Object value, String realValue) {
+			if (numeric) {
+				double realNumber;
+				boolean isNumber = true;
+				if (value instanceof Integer || value instanceof Long || value instanceof Short
+						|| value instanceof Byte) {
+					realNumber = ((Number) value).longValue();
+				} else if (NumberUtil.isNumber(realValue)) {
+					realNumber = Double.parseDouble(realValue);
+				} else {
+					realNumber = 0;
+					isNumber = false;
+				}
+				if (isNumber) {
+					return (realNumber < number) ? -1 : ((realNumber > number) ? 1 : 0);
+				}
+			}
+			return realValue.compareTo(compareValue);
+		}
+
+		private boolean include(Object value, String realValue) {
+			if (value instanceof String) {
+				return realValue.toLowerCase().contains(compareLow);
+			}
+			if (value.getClass().isArray()) {
+				for (Object var : CollectionUtil.convertArray(value)) {
+					if (var != null && compareLow.equals(var.toString().toLowerCase())) {
+						return true;
+					}
+				}
+			}
+			if (value instanceof Collection) {
+				Iterator iter = ((Collection) value).iterator();
+				Object var;
+				while (iter.hasNext()) {
+					var = iter.next();
+					if (var != null && compareLow.equals(var.toString().toLowerCase())) {
+						return true;
+					}
+				}
+			}
+			return false;
+		}
+
+		private boolean in(String valueLow) {
+			if (inValues.length == 1) {
+				return inValues[0].contains(valueLow);
+			}
+			for (String inValue : inValues) {
+				if (valueLow.equals(inValue)) {
+					return true;
+				}
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * 递归下降解析: or := and ('||' and)*; and := unary ('&&' unary)*; unary := '!' unary |
+	 * '(' or ')' | compare
+	 */
+	private static final class Parser {
+		private final String express;
+		private int pos = 0;
+		private int ordinal = 0;
+
+		private Parser(String express) {
+			this.express = express;
+		}
+
+		private Node parseOr() {
+			List<Node> items = new ArrayList<Node>();
+			items.add(parseAnd());
+			while (skipBlank() && express.startsWith("||", pos)) {
+				pos += 2;
+				items.add(parseAnd());
+			}
+			return (items.size() == 1) ? items.get(0) : new OrNode(items.toArray(new Node[items.size()]));
+		}
+
+		private Node parseAnd() {
+			List<Node> items = new ArrayList<Node>();
+			items.add(parseUnary());
+			while (skipBlank() && express.startsWith("&&", pos)) {
+				pos += 2;
+				items.add(parseUnary());
+			}
+			return (items.size() == 1) ? items.get(0) : new AndNode(items.toArray(new Node[items.size()]));
+		}
+
+		private Node parseUnary() {
+			if (!skipBlank()) {
+				throw new IllegalArgumentException(express);
+			}
+			char c = express.charAt(pos);
+			if (c == '!' && !express.startsWith("!=", pos)) {
+				pos++;
+				return new NotNode(parseUnary());
+			}
+			if (c == '(') {
+				pos++;
+				Node node = parseOr();
+				if (!skipBlank() || express.charAt(pos) != ')') {
+					throw new IllegalArgumentException(express);
+				}
+				pos++;
+				return node;
+			}
+			return parseCompare();
+		}
+
+		private Node parseCompare() {
+			int start = pos;
+			int depth = 0;
+			int type = -1;
+			int opEnd = -1;
+			char c;
+			// 定位比较符号,size(:param)等括号内不参与
+			for (int i = pos; i < express.length() && type == -1; i++) {
+				c = express.charAt(i);
+				if (c == '(') {
+					depth++;
+				} else if (c == ')') {
+					if (depth == 0) {
+						throw new IllegalArgumentException(express);
+					}
+					depth--;
+				} else if (depth == 0) {
+					if (express.startsWith("&&", i) || express.startsWith("||", i)) {
+						throw new IllegalArgumentException(express);
+					}
+					if (express.startsWith("!=", i) || express.startsWith("<>", i)) {
+						type = NE;
+						opEnd = i + 2;
+					} else if (express.startsWith("==", i)) {
+						type = EQ;
+						opEnd = i + 2;
+					} else if (express.startsWith(">=", i)) {
+						type = GE;
+						opEnd = i + 2;
+					} else if (express.startsWith("<=", i)) {
+						type = LE;
+						opEnd = i + 2;
+					} else if (c == '>') {
+						type = GT;
+						opEnd = i + 1;
+					} else if (c == '<') {
+						type = LT;
+						opEnd = i + 1;
+					} else if (c == '=') {
+						type = EQ;
+						opEnd = i + 1;
+					} else if (Character.isWhitespace(c) && i > start) {
+						opEnd = wordOperator(i, "include");
+						type = INCLUDE;
+						if (opEnd == -1) {
+							opEnd = wordOperator(i, "in");
+							type = IN;
+						}
+						if (opEnd == -1) {
+							opEnd = wordOperator(i, "out");
+							type = OUT;
+						}
+						if (opEnd == -1) {
+							type = -1;
+						}
+					}
+					if (type != -1) {
+						pos = i;
+					}
+				}
+			}
+			if (type == -1) {
+				throw new IllegalArgumentException(express);
+			}
+			String param = express.substring(start, pos).trim().toLowerCase();
+			if (param.equals("")) {
+				throw new IllegalArgumentException(express);
+			}
+			// 比较值:到同层级的&&、||或未匹配的)为止,引号内容不参与判断
+			pos = opEnd;
+			int valueStart = pos;
+			char quote = 0;
+			depth = 0;
+			while (pos < express.length()) {
+				c = express.charAt(pos);
+				if (quote != 0) {
+					if (c == quote) {
+						quote = 0;
+					}
+				} else if (c == '\'' || c == '"') {
+					quote = c;
+				} else if (c == '(') {
+					depth++;
+				} else if (c == ')') {
+					if (depth == 0) {
+						break;
+					}
+					depth--;
+				} else if (depth == 0 && (express.startsWith("&&", pos) || express.startsWith("||", pos))) {
+					break;
+				}
+				pos++;
+			}
+			String value = express.substring(valueStart, pos).trim();
+			if (quote != 0 || value.equals("")) {
+				throw new IllegalArgumentException(express);
+			}
+			return new CompareNode(ordinal++, param.startsWith("size(") || param.startsWith("length("), type, value);
+		}
+
+		/**
+		 * @TODO 判断index处(空白)开始是否为\s+word\s+形式的比较符,是则返回比较符结束位置
+		 */
+		private int wordOperator(int index, String word) {
+			int i = index;
+			while (i < express.length() && Character.isWhitespace(express.charAt(i))) {
+				i++;
+			}
+			int end = i + word.length();
+			if (end < express.length() && express.regionMatches(true, i, word, 0, word.length())
+					&& Character.isWhitespace(express.charAt(end))) {
+				return end;
+			}
+			return -1;
+		}
+
+		/**
+		 * @TODO 跳过空白,返回是否还有内容
+		 */
+		private boolean skipBlank() {
+			while (pos < express.length() && Character.isWhitespace(express.charAt(pos))) {
+				pos++;
+			}
+			return pos < express.length();
+		}
+	}
+}
@@ -4,6 +4,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * @project sagacity-sqltoy4.0
@@ -14,12 +15,47 @@ import java.util.List;
  * @modify {Date:2017-12-4 剔除freemarker复杂逻辑判断,减少框架依赖性}
  * @modify {Date:2020-08-25 增加include场景,数组类型或字符串类型包含某个特定值 }
  * @modify {Date:2020-09-24 增加数组长度的提取 length(:paramName)>10 模式}
+ * @modify {Date:2021-05-20 表达式预编译为MacroIfExpression并缓存,支持&&、||混合以及括号,无法编译的沿用原逻辑}
  */
 public class MacroIfLogic {
+	/**
+	 * 编译后的表达式缓存上限
+	 */
+	private static final int COMPILED_CACHE_SIZE = 5000;
+
+	/**
+	 * 无法编译的表达式标记
+	 */
+	private static final Object UNCOMPILABLE = new Object();
+
+	/**
+	 * key:表达式,value:MacroIfExpression或UNCOMPILABLE
+	 */
+	private static final ConcurrentHashMap<String, Object> compiledExpressions = new ConcurrentHashMap<String, Object>();
 
 	private MacroIfLogic() {
 	}
 
+	/**
+	 * @TODO 基于预编译的表达式进行逻辑判断(sql执行计划模式,第i个参数为values[indexes[i]])
+	 * @param express       预编译的表达式
+	 * @param values
+	 * @param indexes
+	 * @param logicParamCnt
+	 * @return
+	 */
+	public static boolean evalLogic(MacroIfExpression express, Object[] values, int[] indexes, int logicParamCnt) {
+		if (logicParamCnt == 0) {
+			return true;
+		}
+		for (int i = 0; i < logicParamCnt; i++) {
+			if (isEmptyArray(values[indexes[i]])) {
+				return false;
+			}
+		}
+		return evalCompiled(express, values, indexes, 0);
+	}
+
 	/**
 	 * @todo 简单逻辑判断,只支持2个逻辑,update 2017-12-4 剔除freemarker复杂逻辑判断,减少框架依赖性
 	 * @param sql
@@ -32,17 +68,16 @@ public class MacroIfLogic {
 		if (logicParamCnt == 0) {
 			return true;
 		}
-		Object value;
 		for (int i = 0; i < logicParamCnt; i++) {
-			value = paramValues.get(preCount + i);
 			// 参数为null会参与后面等于和不等于逻辑判断,数组不参与判断
-			if (value != null) {
-				if ((value.getClass().isArray() && CollectionUtil.convertArray(value).length == 0)
-						|| ((value instanceof Collection) && ((Collection) value).isEmpty())) {
-					return false;
-				}
+			if (isEmptyArray(paramValues.get(preCount + i))) {
+				return false;
 			}
 		}
+		MacroIfExpression express = getCompiled(sql);
+		if (express != null && express.getCompareCount() == logicParamCnt) {
+			return evalCompiled(express, paramValues.toArray(), null, preCount);
+		}
 		// 规范判断符号标准(<>转为!=)
 		sql = sql.replaceAll("\\<\\>", "!=").replaceAll("\r|\t|\n", " ").trim();
 		// 先通过简单表达式进行计算,格式如:@if(:name>=xxx || :name<=xxx)
@@ -54,6 +89,43 @@ public class MacroIfLogic {
 		return true;
 	}
 
+	/**
+	 * @TODO 获取(缓存的)编译表达式,无法编译返回null
+	 * @param express
+	 * @return
+	 */
+	private static MacroIfExpression getCompiled(String express) {
+		Object compiled = compiledExpressions.get(express);
+		if (compiled == null) {
+			compiled = MacroIfExpression.compile(express);
+			if (compiled == null) {
+				compiled = UNCOMPILABLE;
+			}
+			if (compiledExpressions.size() < COMPILED_CACHE_SIZE) {
+				compiledExpressions.put(express, compiled);
+			}
+		}
+		return (compiled == UNCOMPILABLE) ? null : (MacroIfExpression) compiled;
+	}
+
+	private static boolean evalCompiled(MacroIfExpression express, Object[] values, int[] indexes, int offset) {
+		try {
+			return express.evaluate(values, indexes, offset);
+		} catch (Exception e) {
+			e.printStackTrace();
+		}
+		// 与原逻辑一致,计算异常时@if()不起作用
+		return true;
+	}
+
+	private static boolean isEmptyArray(Object value) {
+		if (value == null) {
+			return false;
+		}
+		return (value.getClass().isArray() && CollectionUtil.convertArray(value).length == 0)
+				|| ((value instanceof Collection) && ((Collection) value).isEmpty());
+	}
+
 	/**
 	 * @todo 简单表达式(单独列出来便于做容错性处理)
 	 * @param sql
@@ -143,7 +215,7 @@ public class MacroIfLogic {
 	 * @param compareValue
 	 * @return
 	 */
-	private static boolean compare(Object value, String compareType, String compareValue) {
+	static boolean compare(Object value, String compareType, String compareValue) {
 		// 剔除首尾字符串标志符号
 		if (compareValue.startsWith("'") && compareValue.endsWith("'")) {
 			compareValue = compareValue.substring(1, compareValue.length() - 1);
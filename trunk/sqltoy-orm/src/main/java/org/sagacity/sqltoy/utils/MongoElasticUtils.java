@@ -19,6 +19,7 @@ import org.sagacity.sqltoy.config.model.SqlToyConfig;
 import org.sagacity.sqltoy.config.model.SqlToyResult;
 import org.sagacity.sqltoy.config.model.Translate;
 import org.sagacity.sqltoy.model.TranslateExtend;
+import org.sagacity.sqltoy.translate.cache.TranslateDictionary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -423,7 +424,7 @@ public class MongoElasticUtils {
 			String[] fields) {
 		// 判断是否有缓存翻译器定义
 		HashMap<String, Translate> translateMap = sqlToyConfig.getTranslateMap();
-		HashMap<String, HashMap<String, Object[]>> translateCache = null;
+		HashMap<String, TranslateDictionary> translateCache = null;
 		// 存在缓存翻译,获取缓存数据
 		if (!sqlToyConfig.getTranslateMap().isEmpty()) {
 			translateCache = sqlToyContext.getTranslateManager().getTranslates(null, translateMap);
@@ -443,7 +444,7 @@ public class MongoElasticUtils {
 	 * @param dataMap
 	 * @param fields
 	 */
-	private static void translate(HashMap<String, HashMap<String, Object[]>> translateCache,
+	private static void translate(HashMap<String, TranslateDictionary> translateCache,
 			HashMap<String, Translate> translateMap, List<List> dataSet, Map dataMap, String[] fields) {
 		if (translateMap == null || translateMap.isEmpty()) {
 			return;
@@ -475,9 +476,9 @@ public class MongoElasticUtils {
 			}
 		}
 		Object value;
-		HashMap<String, Object[]> keyValues;
+		TranslateDictionary keyValues;
 		int cacheIndex;
-		Object[] translateAry;
+		int cacheRow;
 		if (dataSet != null) {
 			int size = dataSet.size();
 			int colIndex;
@@ -489,9 +490,9 @@ public class MongoElasticUtils {
 				for (int j = 0; j < size; j++) {
 					value = dataSet.get(j).get(realIndex[i]);
 					if (value != null) {
-						translateAry = keyValues.get(value.toString());
-						if (null != translateAry) {
-							dataSet.get(j).set(colIndex, keyValues.get(value.toString())[cacheIndex]);
+						cacheRow = keyValues.indexOf(value);
+						if (cacheRow >= 0) {
+							dataSet.get(j).set(colIndex, keyValues.getValue(cacheRow, cacheIndex));
 						}
 					}
 				}
@@ -504,9 +505,9 @@ public class MongoElasticUtils {
 				// 实际列
 				value = dataMap.get(extend.alias);
 				if (value != null) {
-					translateAry = keyValues.get(value.toString());
-					if (null != translateAry) {
-						dataMap.put(lables[i], keyValues.get(value.toString())[cacheIndex]);
+					cacheRow = keyValues.indexOf(value);
+					if (cacheRow >= 0) {
+						dataMap.put(lables[i], keyValues.getValue(cacheRow, cacheIndex));
 					}
 				}
 			}
@@ -6,14 +6,12 @@ package org.sagacity.sqltoy.utils;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 
-import org.sagacity.sqltoy.SqlToyConstants;
+import org.sagacity.sqltoy.SqlExecuteStat;
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.callback.ParallelCallbackHandler;
 import org.sagacity.sqltoy.config.model.EntityMeta;
@@ -22,12 +20,15 @@ import org.sagacity.sqltoy.executor.DialectExecutor;
 import org.sagacity.sqltoy.model.ShardingGroupModel;
 import org.sagacity.sqltoy.model.ShardingResult;
 import org.sagacity.sqltoy.plugins.sharding.ShardingUtils;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolManager;
 
 /**
  * @project sagacity-sqltoy4.0
  * @description sqltoy对象集合相关操作、sharding策略分组以及并行提交相关数据库进行执行
  * @author zhongxuchen
  * @version v1.0,Date:2017年11月3日
+ * @modify Date:2021-05-17 {改为使用SqlToyContext共享的有界线程池,不再每批次创建线程池}
+ * @modify Date:2021-05-20 {并行线程绑定调用者的写操作范围}
  */
 @SuppressWarnings("rawtypes")
 public class ParallelUtils {
@@ -71,38 +72,32 @@ public class ParallelUtils {
 		if (threads > shardingConfig.getMaxConcurrents() && shardingConfig.getMaxConcurrents() > 1) {
 			threads = shardingConfig.getMaxConcurrents();
 		}
-		ExecutorService pool = Executors.newFixedThreadPool(threads);
-		List<Future<ShardingResult>> futureResults = new ArrayList<Future<ShardingResult>>();
-		Future<ShardingResult> future;
+		List<Callable<ShardingResult>> tasks = new ArrayList<Callable<ShardingResult>>();
+		// 并行线程中的写操作同样登记到调用者的写操作范围
+		final AtomicLong writeScope = SqlExecuteStat.getWriteScope(true);
 		for (ShardingGroupModel group : shardingGroups) {
-			future = pool.submit(new DialectExecutor(sqlToyContext, group, handler));
-			futureResults.add(future);
-		}
-		pool.shutdown();
-		// 设置最大等待时长
-		if (shardingConfig.getMaxWaitSeconds() > 0) {
-			pool.awaitTermination(shardingConfig.getMaxWaitSeconds(), TimeUnit.SECONDS);
-		} else {
-			pool.awaitTermination(SqlToyConstants.PARALLEL_MAXWAIT_SECONDS, TimeUnit.SECONDS);
+			final DialectExecutor executor = new DialectExecutor(sqlToyContext, group, handler);
+			tasks.add(() -> {
+				AtomicLong origScope = SqlExecuteStat.bindWriteScope(writeScope);
+				try {
+					return executor.call();
+				} finally {
+					SqlExecuteStat.bindWriteScope(origScope);
+				}
+			});
 		}
+		// 在共享线程池中执行,超时则取消未完成的任务
+		List<ShardingResult> shardingResults = sqlToyContext.getThreadPoolManager().invokeAll(
+				ThreadPoolManager.SHARDING, tasks, threads, shardingConfig.getMaxWaitSeconds());
 		// 提取各个线程返回的结果进行合并
-		try {
-			ShardingResult item;
-			for (Future<ShardingResult> futureResult : futureResults) {
-				item = futureResult.get();
-				// 全局异常则抛出,让事务进行全部回滚。
-				if (item != null && !item.isSuccess() && globalRollback) {
-					throw new RuntimeException(item.getMessage());
-				}
-				if (item != null && item.getRows() != null && !item.getRows().isEmpty()) {
-					results.addAll(item.getRows());
-				}
+		for (ShardingResult item : shardingResults) {
+			// 全局异常则抛出,让事务进行全部回滚。
+			if (item != null && !item.isSuccess() && globalRollback) {
+				throw new RuntimeException(item.getMessage());
+			}
+			if (item != null && item.getRows() != null && !item.getRows().isEmpty()) {
+				results.addAll(item.getRows());
 			}
-		} catch (Exception e) {
-			e.printStackTrace();
-			throw e;
-		} finally {
-			pool.shutdownNow();
 		}
 		return results;
 	}
@@ -18,6 +18,7 @@ import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.config.model.CacheFilterModel;
 import org.sagacity.sqltoy.config.model.ParamFilterModel;
 import org.sagacity.sqltoy.model.ParamsFilter;
+import org.sagacity.sqltoy.translate.cache.TranslateDictionary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -27,6 +28,7 @@ import org.slf4j.LoggerFactory;
  * @author zhongxuchen
  * @version v1.0,Date:2013-3-23
  * @modify Date:2020-7-15 {增加l-like,r-like为参数单边补充%从而不破坏索引,默认是两边}
+ * @modify Date:2021-05-20 {cache-arg通过缓存字典的模糊检索索引匹配名称,不再全量遍历缓存}
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class ParamFilterUtils {
@@ -150,8 +152,8 @@ public class ParamFilterUtils {
 				return;
 			}
 			// 获取缓存数据
-			HashMap<String, Object[]> cacheDataMap = sqlToyContext.getTranslateManager()
-					.getCacheData(paramFilterModel.getCacheName(), paramFilterModel.getCacheType());
+			TranslateDictionary cacheDataMap = sqlToyContext.getTranslateManager()
+					.getCacheDictionary(paramFilterModel.getCacheName(), paramFilterModel.getCacheType());
 			if (cacheDataMap == null || cacheDataMap.isEmpty()) {
 				logger.warn("缓存:{} 可能不存在,在通过缓存获取查询条件key值时异常,请检查!", paramFilterModel.getCacheName());
 				return;
@@ -206,27 +208,25 @@ public class ParamFilterUtils {
 			// 匹配的缓存key结果集合
 			List<Object> matchKeys = new ArrayList<Object>();
 
-			// 循环缓存进行匹配,匹配上将key值放入数组
-			Iterator<Object[]> iter = cacheDataMap.values().iterator();
-			Object[] cacheRow;
+			// 通过缓存的模糊检索索引取得名称匹配的行,再进行过滤,匹配上将key值放入数组
+			Object cacheValue;
 			int cacheKeyIndex = paramFilterModel.getCacheKeyIndex();
 			boolean skip = false;
 			// 将条件参数值转小写进行统一比较
 			String[] lowMatchStr = paramValue.trim().toLowerCase().split("\\s+");
 			boolean hasEqual = false;
-			while (iter.hasNext()) {
-				cacheRow = iter.next();
+			for (int cacheRow : cacheDataMap.like(matchIndexes, lowMatchStr)) {
 				skip = false;
 				// 对缓存进行过滤(比如过滤本人授权访问机构下面的员工或当期状态为生效的员工)
 				if (hasFilter) {
 					for (int i = 0; i < cacheFilters.length; i++) {
 						cacheFilter = cacheFilters[i];
 						// 过滤条件是否相等
-						if (cacheRow[cacheFilter.getCacheIndex()] == null) {
+						cacheValue = cacheDataMap.getValue(cacheRow, cacheFilter.getCacheIndex());
+						if (cacheValue == null) {
 							hasEqual = false;
 						} else {
-							hasEqual = filterValues.get(i)
-									.containsKey(cacheRow[cacheFilter.getCacheIndex()].toString());
+							hasEqual = filterValues.get(i).containsKey(cacheValue.toString());
 						}
 						// 条件成立则过滤掉
 						if (("eq".equals(cacheFilter.getCompareType()) && hasEqual)
@@ -237,16 +237,9 @@ public class ParamFilterUtils {
 					}
 				}
 				if (!skip) {
-					for (int matchIndex : matchIndexes) {
-						// 匹配检索,全部转成小写比较
-						if (cacheRow[matchIndex] != null
-								&& StringUtil.like(cacheRow[matchIndex].toString().toLowerCase(), lowMatchStr)) {
-							// 第0列为key
-							matchKeys.add(cacheRow[cacheKeyIndex]);
-							matchCnt++;
-							break;
-						}
-					}
+					// 第0列为key
+					matchKeys.add(cacheDataMap.getValue(cacheRow, cacheKeyIndex));
+					matchCnt++;
 				}
 				// 超出阈值跳出
 				if (matchCnt == maxLimit) {
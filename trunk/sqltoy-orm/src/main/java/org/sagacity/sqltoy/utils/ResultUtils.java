@@ -1,8 +1,13 @@
 package org.sagacity.sqltoy.utils;
 
 import java.lang.reflect.Array;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
 import java.sql.Connection;
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
@@ -17,6 +22,7 @@ import org.sagacity.sqltoy.SqlExecuteStat;
 import org.sagacity.sqltoy.SqlToyConstants;
 import org.sagacity.sqltoy.SqlToyContext;
 import org.sagacity.sqltoy.callback.AbstractRowCallbackHandler;
+import org.sagacity.sqltoy.callback.StreamResultHandler;
 import org.sagacity.sqltoy.callback.UpdateRowHandler;
 import org.sagacity.sqltoy.config.SqlConfigParseUtils;
 import org.sagacity.sqltoy.config.model.ColsChainRelativeModel;
@@ -40,11 +46,15 @@ import org.sagacity.sqltoy.model.LabelIndexModel;
 import org.sagacity.sqltoy.model.QueryExecutorExtend;
 import org.sagacity.sqltoy.model.QueryResult;
 import org.sagacity.sqltoy.model.TranslateExtend;
+import org.sagacity.sqltoy.plugins.AbstractTypeHandler;
 import org.sagacity.sqltoy.plugins.calculator.ColsChainRelative;
 import org.sagacity.sqltoy.plugins.calculator.GroupSummary;
 import org.sagacity.sqltoy.plugins.calculator.ReverseList;
 import org.sagacity.sqltoy.plugins.calculator.RowsChainRelative;
 import org.sagacity.sqltoy.plugins.calculator.UnpivotList;
+import org.sagacity.sqltoy.plugins.metrics.CacheMetric;
+import org.sagacity.sqltoy.plugins.metrics.SqlMetricsRegistry;
+import org.sagacity.sqltoy.translate.cache.TranslateDictionary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -55,6 +65,11 @@ import org.slf4j.LoggerFactory;
  * @version v1.0,Date:2013-4-18
  * @modify Date:2016-12-13 {对行转列分类参照集合进行了排序}
  * @modify Date:2020-05-29 {将脱敏和格式化转到calculate中,便于elastic和mongo查询提供同样的功能}
+ * @modify Date:2021-05-10 {增加流式查询结果处理,逐行翻译、脱敏、格式化并映射,不在内存中累积结果}
+ * @modify Date:2021-05-13 {结果类型为VO且无旋转、汇总等计算时直接将ResultSet映射成VO}
+ * @modify Date:2021-05-14 {缓存翻译改为不可变的TranslateDictionary,整数key直接按数值匹配,无需toString}
+ * @modify Date:2021-05-18 {登记查询记录数与缓存翻译命中指标}
+ * @modify Date:2021-05-20 {直接映射VO同样执行提取数据警告和最大阀值控制,空结果集同样返回列名}
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class ResultUtils {
@@ -85,9 +100,19 @@ public class ResultUtils {
 		// 记录行记数器
 		int index = 0;
 		if (rowCallbackHandler != null) {
+			DirectBeanRowHandler directHandler = (rowCallbackHandler instanceof DirectBeanRowHandler)
+					? (DirectBeanRowHandler) rowCallbackHandler
+					: null;
 			while (rs.next()) {
 				rowCallbackHandler.processRow(rs, index);
 				index++;
+				// 直接映射VO同样受最大提取阀值限制
+				if (directHandler != null && directHandler.isMaxLimit()) {
+					break;
+				}
+			}
+			if (directHandler != null) {
+				directHandler.complete(rs);
 			}
 			result.setRows(rowCallbackHandler.getResult());
 		} else {
@@ -121,10 +146,159 @@ public class ResultUtils {
 		// 填充记录数
 		if (result.getRows() != null) {
 			result.setRecordCount(Long.valueOf(result.getRows().size()));
+			SqlExecuteStat.fetchRows(result.getRows().size());
 		}
 		return result;
 	}
 
+	/**
+	 * @todo 流式处理sql查询结果集:逐行完成缓存翻译、脱敏、格式化并直接映射成结果类型交给handler,不构造整体结果集合
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param conn
+	 * @param rs
+	 * @param extend
+	 * @param streamResultHandler
+	 * @param startColIndex
+	 * @return 处理的记录数量
+	 * @throws Exception
+	 */
+	public static long processResultSetByStream(final SqlToyContext sqlToyContext, final SqlToyConfig sqlToyConfig,
+			Connection conn, ResultSet rs, QueryExecutorExtend extend, StreamResultHandler streamResultHandler,
+			int startColIndex) throws Exception {
+		// link、旋转、汇总、环比等都依赖全部结果,流式模式下无法逐行完成
+		if (sqlToyConfig.getLinkModel() != null
+				|| (sqlToyConfig.getResultProcessor() != null && !sqlToyConfig.getResultProcessor().isEmpty())) {
+			throw new DataAccessException("流式查询不支持link、数据旋转、汇总合计、同比环比等需要全部结果参与的计算,sqlId="
+					+ sqlToyConfig.getId());
+		}
+		int rowCnt = rs.getMetaData().getColumnCount();
+		int columnSize = rowCnt - startColIndex;
+		String[] labelNames = new String[columnSize];
+		for (int i = startColIndex; i < rowCnt; i++) {
+			labelNames[i - startColIndex] = rs.getMetaData().getColumnLabel(i + 1);
+		}
+		// 判断是否有缓存翻译器定义
+		boolean hasTranslate = !sqlToyConfig.getTranslateMap().isEmpty();
+		HashMap<String, Translate> translateMap = sqlToyConfig.getTranslateMap();
+		HashMap<String, TranslateDictionary> translateCache = null;
+		if (hasTranslate) {
+			translateCache = sqlToyContext.getTranslateManager().getTranslates(conn, translateMap);
+			if (translateCache == null || translateCache.isEmpty()) {
+				hasTranslate = false;
+				logger.debug("通过缓存配置未获取到缓存数据,请正确配置TranslateManager!");
+			}
+		}
+		// 按照calculate中的顺序:sql配置的脱敏、格式化,然后是查询时扩展的脱敏和格式化,提前确定好列
+		LabelIndexModel labelIndexMap = wrapLabelIndexMap(labelNames);
+		List<Object[]> columnProcessors = new ArrayList<Object[]>();
+		addColumnProcessors(columnProcessors, sqlToyConfig.getSecureMasks(), labelIndexMap);
+		addColumnProcessors(columnProcessors, sqlToyConfig.getFormatModels(), labelIndexMap);
+		if (extend != null) {
+			addColumnProcessors(columnProcessors, extend.secureMask.values(), labelIndexMap);
+			addColumnProcessors(columnProcessors, extend.colsFormat.values(), labelIndexMap);
+		}
+		int processorSize = columnProcessors.size();
+		int[] processCols = new int[processorSize];
+		Object[] processors = new Object[processorSize];
+		for (int i = 0; i < processorSize; i++) {
+			processCols[i] = (Integer) columnProcessors.get(i)[0];
+			processors[i] = columnProcessors.get(i)[1];
+		}
+		StreamRowMapper rowMapper = new StreamRowMapper(sqlToyContext, labelNames,
+				(extend == null) ? null : (Class) extend.resultType, (extend == null) ? true : extend.humpMapLabel);
+		boolean ignoreAllEmpty = sqlToyConfig.isIgnoreEmpty();
+		int index = 0;
+		List rowData;
+		Object value;
+		try {
+			while (rs.next()) {
+				if (hasTranslate) {
+					rowData = processResultRowWithTranslate(translateMap, translateCache, labelNames, rs, columnSize,
+							ignoreAllEmpty);
+				} else {
+					rowData = processResultRow(rs, startColIndex, rowCnt, ignoreAllEmpty);
+				}
+				if (rowData != null) {
+					for (int i = 0; i < processorSize; i++) {
+						value = rowData.get(processCols[i]);
+						if (value != null) {
+							if (processors[i] instanceof SecureMask) {
+								rowData.set(processCols[i], maskStr((SecureMask) processors[i], value));
+							} else {
+								rowData.set(processCols[i], formatValue((FormatModel) processors[i], value));
+							}
+						}
+					}
+					streamResultHandler.consume(rowMapper.map(rowData), index);
+					index++;
+				}
+			}
+		} catch (ArrayIndexOutOfBoundsException oie) {
+			logger.error("sql={} 的缓存翻译数组越界:{},请检查其<translate cache-indexs 配置是否正确,index值必须跟缓存数据的列对应!",
+					sqlToyConfig.getId(), oie.getMessage());
+			throw oie;
+		}
+		SqlExecuteStat.fetchRows(index);
+		return index;
+	}
+
+	/**
+	 * @todo 判断查询能否直接将ResultSet映射成VO(无link、旋转、汇总等计算,且结果类型为VO),可以则返回直接映射的行处理器,否则返回null
+	 * @param sqlToyContext
+	 * @param sqlToyConfig
+	 * @param extend
+	 * @param conn
+	 * @return
+	 */
+	public static DirectBeanRowHandler getDirectBeanHandler(SqlToyContext sqlToyContext, SqlToyConfig sqlToyConfig,
+			QueryExecutorExtend extend, Connection conn) {
+		if (extend == null || extend.rowCallbackHandler != null || !(extend.resultType instanceof Class)
+				|| sqlToyConfig.getLinkModel() != null
+				|| (sqlToyConfig.getResultProcessor() != null && !sqlToyConfig.getResultProcessor().isEmpty())) {
+			return null;
+		}
+		Class resultType = (Class) extend.resultType;
+		if (resultType.isInterface() || resultType.isArray() || resultType.isPrimitive()
+				|| Modifier.isAbstract(resultType.getModifiers()) || Array.class.equals(resultType)
+				|| Collection.class.isAssignableFrom(resultType) || Map.class.isAssignableFrom(resultType)
+				|| resultType.getName().startsWith("java.")) {
+			return null;
+		}
+		HashMap<String, TranslateDictionary> translateCache = null;
+		if (!sqlToyConfig.getTranslateMap().isEmpty()) {
+			translateCache = sqlToyContext.getTranslateManager().getTranslates(conn, sqlToyConfig.getTranslateMap());
+			if (translateCache == null || translateCache.isEmpty()) {
+				translateCache = null;
+				logger.debug("通过缓存配置未获取到缓存数据,请正确配置TranslateManager!");
+			}
+		}
+		return new DirectBeanRowHandler(sqlToyContext, sqlToyConfig, extend, resultType, translateCache);
+	}
+
+	/**
+	 * @todo 整理脱敏、格式化对应的列
+	 * @param columnProcessors
+	 * @param processors
+	 * @param labelIndexMap
+	 */
+	private static void addColumnProcessors(List<Object[]> columnProcessors, Collection processors,
+			LabelIndexModel labelIndexMap) {
+		if (processors == null) {
+			return;
+		}
+		Integer index;
+		String column;
+		for (Object processor : processors) {
+			column = (processor instanceof SecureMask) ? ((SecureMask) processor).getColumn()
+					: ((FormatModel) processor).getColumn();
+			index = labelIndexMap.get(column);
+			if (index != null) {
+				columnProcessors.add(new Object[] { index, processor });
+			}
+		}
+	}
+
 	/**
 	 * @todo 对字段进行安全脱敏
 	 * @param rows
@@ -170,20 +344,28 @@ public class ResultUtils {
 				for (List row : rows) {
 					value = row.get(columnIndex);
 					if (value != null) {
-						// 日期格式
-						if (fmt.getType() == 1) {
-							row.set(columnIndex, DateUtil.formatDate(value, fmt.getFormat()));
-						}
-						// 数字格式化
-						else {
-							row.set(columnIndex, NumberUtil.format(value, fmt.getFormat()));
-						}
+						row.set(columnIndex, formatValue(fmt, value));
 					}
 				}
 			}
 		}
 	}
 
+	/**
+	 * @todo 对单个值进行格式化
+	 * @param fmt
+	 * @param value
+	 * @return
+	 */
+	private static Object formatValue(FormatModel fmt, Object value) {
+		// 日期格式
+		if (fmt.getType() == 1) {
+			return DateUtil.formatDate(value, fmt.getFormat());
+		}
+		// 数字格式化
+		return NumberUtil.format(value, fmt.getFormat());
+	}
+
 	/**
 	 * @todo 对字符串脱敏
 	 * @param mask
@@ -287,7 +469,7 @@ public class ResultUtils {
 		// 判断是否有缓存翻译器定义
 		Boolean hasTranslate = (sqlToyConfig.getTranslateMap().isEmpty()) ? false : true;
 		HashMap<String, Translate> translateMap = sqlToyConfig.getTranslateMap();
-		HashMap<String, HashMap<String, Object[]>> translateCache = null;
+		HashMap<String, TranslateDictionary> translateCache = null;
 		if (hasTranslate) {
 			translateCache = sqlToyContext.getTranslateManager().getTranslates(conn, translateMap);
 			if (translateCache == null || translateCache.isEmpty()) {
@@ -330,7 +512,7 @@ public class ResultUtils {
 			Object linkValue;
 			String linkStr;
 			boolean translateLink = hasTranslate ? translateMap.containsKey(linkColumn.toLowerCase()) : false;
-			HashMap<String, Object[]> linkTranslateMap = null;
+			TranslateDictionary linkTranslateMap = null;
 			int linkTranslateIndex = 1;
 			TranslateExtend extend = null;
 			if (translateLink) {
@@ -338,7 +520,8 @@ public class ResultUtils {
 				linkTranslateIndex = extend.index;
 				linkTranslateMap = translateCache.get(extend.column);
 			}
-			Object[] cacheValues;
+			int cacheRow;
+			Object cacheValue;
 			// 判断link拼接是否重新开始
 			boolean isLastProcess = false;
 			while (rs.next()) {
@@ -348,14 +531,14 @@ public class ResultUtils {
 					linkStr = "";
 				} else {
 					if (translateLink) {
-						cacheValues = linkTranslateMap.get(linkValue.toString());
-						if (cacheValues == null) {
+						cacheRow = linkTranslateMap.indexOf(linkValue);
+						if (cacheRow < 0) {
 							linkStr = "[" + linkValue + "]未匹配";
 							logger.debug("translate cache:{},cacheType:{}, 对应的key:{} 没有设置相应的value!", extend.cache,
 									extend.cacheType, linkValue);
 						} else {
-							linkStr = (cacheValues[linkTranslateIndex] == null) ? ""
-									: cacheValues[linkTranslateIndex].toString();
+							cacheValue = linkTranslateMap.getValue(cacheRow, linkTranslateIndex);
+							linkStr = (cacheValue == null) ? "" : cacheValue.toString();
 						}
 					} else {
 						linkStr = linkValue.toString();
@@ -492,7 +675,7 @@ public class ResultUtils {
 		// 判断是否有缓存翻译器定义
 		Boolean hasTranslate = (sqlToyConfig.getTranslateMap().isEmpty()) ? false : true;
 		HashMap<String, Translate> translateMap = sqlToyConfig.getTranslateMap();
-		HashMap<String, HashMap<String, Object[]>> translateCache = null;
+		HashMap<String, TranslateDictionary> translateCache = null;
 		if (hasTranslate) {
 			translateCache = sqlToyContext.getTranslateManager().getTranslates(conn, translateMap);
 			if (translateCache == null || translateCache.isEmpty()) {
@@ -546,7 +729,9 @@ public class ResultUtils {
 		Object[] linkValues = new Object[linkCols];
 		String[] linkStrs = new String[linkCols];
 		TranslateExtend extend = null;
-		Object[] cacheValues;
+		TranslateDictionary cacheDictionary;
+		int cacheRow;
+		Object cacheValue;
 		List rowTemp;
 		Object identity = null;
 		// 判断link拼接是否重新开始
@@ -561,14 +746,15 @@ public class ResultUtils {
 				} else {
 					if (translateLinks[i]) {
 						extend = transExtends[i];
-						cacheValues = translateCache.get(extend.column).get(linkValues[i].toString());
-						if (cacheValues == null) {
+						cacheDictionary = translateCache.get(extend.column);
+						cacheRow = cacheDictionary.indexOf(linkValues[i]);
+						if (cacheRow < 0) {
 							linkStrs[i] = "[" + linkValues[i] + "]未匹配";
 							logger.debug("translate cache:{},cacheType:{}, 对应的key:{} 没有设置相应的value!", extend.cache,
 									extend.cacheType, linkValues[i]);
 						} else {
-							linkStrs[i] = (cacheValues[extend.index] == null) ? ""
-									: cacheValues[extend.index].toString();
+							cacheValue = cacheDictionary.getValue(cacheRow, extend.index);
+							linkStrs[i] = (cacheValue == null) ? "" : cacheValue.toString();
 						}
 					} else {
 						linkStrs[i] = linkValues[i].toString();
@@ -843,7 +1029,7 @@ public class ResultUtils {
 	 * @throws Exception
 	 */
 	private static List processResultRowWithTranslate(HashMap<String, Translate> translateMap,
-			HashMap<String, HashMap<String, Object[]>> translateCaches, String[] labelNames, ResultSet rs, int size,
+			HashMap<String, TranslateDictionary> translateCaches, String[] labelNames, ResultSet rs, int size,
 			boolean ignoreAllEmptySet) throws Exception {
 		List rowData = new ArrayList();
 		Object fieldValue;
@@ -885,31 +1071,45 @@ public class ResultUtils {
 	 * @param fieldValue
 	 * @return
 	 */
-	private static Object translateKey(TranslateExtend extend, HashMap<String, Object[]> translateKeyMap,
+	private static Object translateKey(TranslateExtend extend, TranslateDictionary translateKeyMap,
 			Object fieldValue) {
-		String fieldStr = fieldValue.toString();
+		CacheMetric metric = getTranslateMetric(extend);
 		// 单值翻译
 		if (extend.splitRegex == null) {
+			String fieldStr = null;
+			int cacheRow;
 			if (extend.keyTemplate != null) {
 				// keyTemplate已经提前做了规整,将${key},${},${0} 统一成了{}
-				fieldStr = extend.keyTemplate.replace("{}", fieldStr);
+				fieldStr = extend.keyTemplate.replace("{}", fieldValue.toString());
+				cacheRow = translateKeyMap.indexOf(fieldStr);
+			} else {
+				// 整数类型的key直接按数值匹配,无需toString
+				cacheRow = translateKeyMap.indexOf(fieldValue);
 			}
-			// 根据key获取缓存值
-			Object[] cacheValues = translateKeyMap.get(fieldStr);
 			// 未匹配到
-			if (cacheValues == null || cacheValues.length == 0) {
+			if (cacheRow < 0) {
+				if (metric != null) {
+					metric.miss();
+				}
+				if (fieldStr == null) {
+					fieldStr = fieldValue.toString();
+				}
 				if (extend.uncached != null) {
 					fieldValue = extend.uncached.replace("${value}", fieldStr);
 				} else {
-					fieldValue = fieldValue.toString();
+					fieldValue = fieldStr;
 				}
 				logger.warn("translate cache:{},cacheType:{}, 对应的key:{}没有设置相应的value!", extend.cache, extend.cacheType,
 						fieldValue);
 			} else {
-				fieldValue = cacheValues[extend.index];
+				if (metric != null) {
+					metric.hit();
+				}
+				fieldValue = translateKeyMap.getValue(cacheRow, extend.index);
 			}
 			return fieldValue;
 		}
+		String fieldStr = fieldValue.toString();
 		// 将字符串用分隔符切分开进行逐个翻译
 		String[] keys = null;
 		String splitReg = extend.splitRegex.trim();
@@ -928,13 +1128,16 @@ public class ResultUtils {
 		String linkSign = extend.linkSign;
 		StringBuilder result = new StringBuilder();
 		int index = 0;
-		Object[] cacheValues;
+		int cacheRow;
 		for (String key : keys) {
 			if (index > 0) {
 				result.append(linkSign);
 			}
-			cacheValues = translateKeyMap.get(key.trim());
-			if (cacheValues == null || cacheValues.length == 0) {
+			cacheRow = translateKeyMap.indexOf(key.trim());
+			if (cacheRow < 0) {
+				if (metric != null) {
+					metric.miss();
+				}
 				if (extend.uncached != null) {
 					result.append(extend.uncached.replace("${value}", key));
 				} else {
@@ -943,13 +1146,33 @@ public class ResultUtils {
 				logger.warn("translate cache:{},cacheType:{}, 对应的key:{}没有设置相应的value!", extend.cache, extend.cacheType,
 						key);
 			} else {
-				result.append(cacheValues[extend.index]);
+				if (metric != null) {
+					metric.hit();
+				}
+				result.append(translateKeyMap.getValue(cacheRow, extend.index));
 			}
 			index++;
 		}
 		return result.toString();
 	}
 
+	/**
+	 * @TODO 获取缓存翻译命中指标,首次获取后保存在TranslateExtend上,避免每次翻译查找
+	 * @param extend
+	 * @return
+	 */
+	private static CacheMetric getTranslateMetric(TranslateExtend extend) {
+		CacheMetric metric = extend.metric;
+		if (metric == null) {
+			SqlMetricsRegistry registry = SqlExecuteStat.getMetricsRegistry();
+			if (registry != null && extend.cache != null) {
+				metric = registry.getCacheMetric(SqlMetricsRegistry.TRANSLATE_CACHE, extend.cache);
+				extend.metric = metric;
+			}
+		}
+		return metric;
+	}
+
 	/**
 	 * @todo 提取数据旋转对应的sql查询结果
 	 * @param sqlToyContext
@@ -1207,4 +1430,421 @@ public class ResultUtils {
 		logger.warn("Large Result:totalCount={},sqlId={},sql={}", totalCount, sqlToyConfig.getId(),
 				sqlToyConfig.getSql(null));
 	}
+
+
+	/**
+	 * @description 直接将ResultSet映射成VO的行处理器:按照列的jdbc类型和属性类型预先选定getLong、getBigDecimal等类型化读取方式,
+	 *              缓存翻译、脱敏、格式化逐列处理后直接赋值到对象,省去中间的List行数据以及二次映射;
+	 *              日期时间类属性与反射映射一致以getObject读取并经BeanUtil.convertType转换,全空行按结果集的全部列判断
+	 */
+	public static class DirectBeanRowHandler extends AbstractRowCallbackHandler {
+		// 读取方式
+		private final static int GET_OBJECT = 0;
+		private final static int GET_STRING = 1;
+		private final static int GET_LONG = 2;
+		private final static int GET_INT = 3;
+		private final static int GET_DECIMAL = 4;
+		private final static int GET_DOUBLE = 5;
+		private final static int GET_BOOLEAN = 6;
+
+		private SqlToyContext sqlToyContext;
+
+		private SqlToyConfig sqlToyConfig;
+
+		private QueryExecutorExtend extend;
+
+		private Class resultType;
+
+		private HashMap<String, TranslateDictionary> translateCache;
+
+		private String[] labelNames;
+
+		private BeanAccessor accessor;
+
+		private AbstractTypeHandler typeHandler;
+
+		/**
+		 * 需要赋值的列
+		 */
+		private int[] columns;
+
+		/**
+		 * 列的读取方式
+		 */
+		private int[] readTypes;
+
+		/**
+		 * 无需赋值的列(全空行判断时读取)
+		 */
+		private int[] unsetColumns;
+
+		/**
+		 * 列对应的缓存翻译
+		 */
+		private TranslateExtend[] translates;
+
+		/**
+		 * 列对应的脱敏和格式化(按calculate中的顺序)
+		 */
+		private Object[][] processors;
+
+		private boolean ignoreAllEmpty;
+
+		/**
+		 * 已读取的记录数
+		 */
+		private int rowCount = 0;
+
+		// 警告阀值
+		private int warnThresholds = SqlToyConstants.getWarnThresholds();
+
+		// 最大阀值
+		private long maxThresholds = SqlToyConstants.getMaxThresholds();
+
+		private boolean warnLimit = false;
+
+		private boolean maxLimit = false;
+
+		public DirectBeanRowHandler(SqlToyContext sqlToyContext, SqlToyConfig sqlToyConfig, QueryExecutorExtend extend,
+				Class resultType, HashMap<String, TranslateDictionary> translateCache) {
+			this.sqlToyContext = sqlToyContext;
+			this.sqlToyConfig = sqlToyConfig;
+			this.extend = extend;
+			this.resultType = resultType;
+			this.translateCache = translateCache;
+			this.typeHandler = sqlToyContext.getTypeHandler();
+			this.ignoreAllEmpty = sqlToyConfig.isIgnoreEmpty();
+			// 最大值要大于等于警告阀值
+			if (maxThresholds > 1 && maxThresholds <= warnThresholds) {
+				maxThresholds = warnThresholds;
+			}
+		}
+
+		public String[] getLabelNames() {
+			return labelNames;
+		}
+
+		/**
+		 * @TODO 是否已达到最大提取阀值,达到后不再读取后续记录
+		 * @return
+		 */
+		public boolean isMaxLimit() {
+			return maxLimit;
+		}
+
+		/**
+		 * @TODO 结果集读取结束:空结果集同样提供列名,超出阀值输出日志
+		 * @param rs
+		 * @throws SQLException
+		 */
+		public void complete(ResultSet rs) throws SQLException {
+			if (labelNames == null) {
+				ResultSetMetaData metaData = rs.getMetaData();
+				labelNames = new String[metaData.getColumnCount()];
+				for (int i = 0; i < labelNames.length; i++) {
+					labelNames[i] = metaData.getColumnLabel(i + 1);
+				}
+			}
+			// 超出警告阀值
+			if (warnLimit) {
+				warnLog(sqlToyConfig, rowCount);
+			}
+			// 超过最大提取数据阀值
+			if (maxLimit) {
+				logger.error("MaxLargeResult:执行sql提取数据超出最大阀值限制{},sqlId={},具体语句={}", rowCount,
+						sqlToyConfig.getId(), sqlToyConfig.getSql(null));
+			}
+		}
+
+		@Override
+		public void processRow(ResultSet rs, int index) throws SQLException {
+			// 调用方未在达到最大阀值时终止循环,不再加入记录
+			if (maxLimit) {
+				return;
+			}
+			rowCount++;
+			// 存在超出警告规模级的数据查询
+			if (rowCount == warnThresholds) {
+				warnLimit = true;
+			}
+			// 提取数据超过上限(-1表示不限制)
+			if (rowCount == maxThresholds) {
+				maxLimit = true;
+			}
+			try {
+				if (index == 0 || accessor == null) {
+					init(rs);
+				}
+				Object bean = accessor.newInstance();
+				boolean allNull = true;
+				Object value;
+				int column;
+				for (int i = 0; i < columns.length; i++) {
+					column = columns[i];
+					value = readValue(rs, column, readTypes[i]);
+					if (value == null) {
+						continue;
+					}
+					allNull = false;
+					if (readTypes[i] != GET_OBJECT) {
+						accessor.setDirect(bean, column, value);
+						continue;
+					}
+					if (value instanceof java.sql.Clob) {
+						value = SqlUtil.clobToString((java.sql.Clob) value);
+					}
+					if (translates[i] != null) {
+						value = translateKey(translates[i], translateCache.get(translates[i].column), value);
+					}
+					if (processors[i] != null) {
+						for (Object processor : processors[i]) {
+							if (value != null) {
+								if (processor instanceof SecureMask) {
+									value = maskStr((SecureMask) processor, value);
+								} else {
+									value = formatValue((FormatModel) processor, value);
+								}
+							}
+						}
+					}
+					accessor.setValue(typeHandler, bean, column, value);
+				}
+				// 与processResultRow一致,全部列(含未映射到属性的列)为null才视为空行
+				if (allNull && ignoreAllEmpty) {
+					for (int unsetColumn : unsetColumns) {
+						if (rs.getObject(unsetColumn + 1) != null) {
+							allNull = false;
+							break;
+						}
+					}
+				}
+				// 全null则不加入结果集合
+				if (!(allNull && ignoreAllEmpty)) {
+					addRow(bean);
+				}
+			} catch (SQLException se) {
+				throw se;
+			} catch (RuntimeException re) {
+				throw re;
+			} catch (Exception e) {
+				throw new DataAccessException(e);
+			}
+		}
+
+		/**
+		 * @todo 根据结果集的列信息确定每列的读取方式、翻译、脱敏和格式化
+		 * @param rs
+		 * @throws Exception
+		 */
+		private void init(ResultSet rs) throws Exception {
+			ResultSetMetaData metaData = rs.getMetaData();
+			int columnCnt = metaData.getColumnCount();
+			labelNames = new String[columnCnt];
+			int[] sqlTypes = new int[columnCnt];
+			for (int i = 0; i < columnCnt; i++) {
+				labelNames[i] = metaData.getColumnLabel(i + 1);
+				sqlTypes[i] = metaData.getColumnType(i + 1);
+			}
+			HashMap<String, String> columnFieldMap = null;
+			if (sqlToyContext.isEntity(resultType)) {
+				columnFieldMap = sqlToyContext.getEntityMeta(resultType).getColumnFieldMap();
+			}
+			accessor = BeanAccessor.getInstance(resultType, convertRealProps(labelNames.clone(), columnFieldMap));
+			// 脱敏和格式化
+			LabelIndexModel labelIndexMap = wrapLabelIndexMap(labelNames);
+			List<Object[]> columnProcessors = new ArrayList<Object[]>();
+			addColumnProcessors(columnProcessors, sqlToyConfig.getSecureMasks(), labelIndexMap);
+			addColumnProcessors(columnProcessors, sqlToyConfig.getFormatModels(), labelIndexMap);
+			addColumnProcessors(columnProcessors, extend.secureMask.values(), labelIndexMap);
+			addColumnProcessors(columnProcessors, extend.colsFormat.values(), labelIndexMap);
+			HashMap<String, Translate> translateMap = sqlToyConfig.getTranslateMap();
+			List<Integer> setColumns = new ArrayList<Integer>();
+			List<Integer> otherColumns = new ArrayList<Integer>();
+			for (int i = 0; i < columnCnt; i++) {
+				if (accessor.hasSetter(i)) {
+					setColumns.add(i);
+				} else {
+					otherColumns.add(i);
+				}
+			}
+			unsetColumns = new int[otherColumns.size()];
+			for (int i = 0; i < unsetColumns.length; i++) {
+				unsetColumns[i] = otherColumns.get(i);
+			}
+			int size = setColumns.size();
+			columns = new int[size];
+			readTypes = new int[size];
+			translates = new TranslateExtend[size];
+			processors = new Object[size][];
+			int column;
+			Translate translate;
+			List<Object> columnProcessor = new ArrayList<Object>();
+			for (int i = 0; i < size; i++) {
+				column = setColumns.get(i);
+				columns[i] = column;
+				if (translateCache != null) {
+					translate = translateMap.get(labelNames[column].toLowerCase());
+					if (translate == null) {
+						translate = translateMap.get(Integer.toString(column));
+					}
+					if (translate != null) {
+						translates[i] = translate.getExtend();
+					}
+				}
+				columnProcessor.clear();
+				for (Object[] item : columnProcessors) {
+					if (((Integer) item[0]).intValue() == column) {
+						columnProcessor.add(item[1]);
+					}
+				}
+				if (!columnProcessor.isEmpty()) {
+					processors[i] = columnProcessor.toArray();
+				}
+				// 存在翻译、脱敏、格式化的列以getObject方式读取并经过类型转换
+				if (translates[i] != null || processors[i] != null) {
+					readTypes[i] = GET_OBJECT;
+				} else {
+					readTypes[i] = getReadType(accessor.getSetType(column), sqlTypes[column]);
+				}
+			}
+		}
+
+		/**
+		 * @todo 属性类型和jdbc类型自然对应时采用类型化的读取方式(日期时间类统一getObject后经BeanUtil.convertType转换)
+		 * @param setType
+		 * @param sqlType
+		 * @return
+		 */
+		private static int getReadType(Class setType, int sqlType) {
+			if (setType == String.class) {
+				if (sqlType == Types.VARCHAR || sqlType == Types.CHAR || sqlType == Types.NVARCHAR
+						|| sqlType == Types.NCHAR || sqlType == Types.LONGVARCHAR || sqlType == Types.LONGNVARCHAR) {
+					return GET_STRING;
+				}
+			} else if (setType == Long.class) {
+				if (sqlType == Types.BIGINT) {
+					return GET_LONG;
+				}
+			} else if (setType == Integer.class) {
+				if (sqlType == Types.INTEGER || sqlType == Types.SMALLINT || sqlType == Types.TINYINT) {
+					return GET_INT;
+				}
+			} else if (setType == BigDecimal.class) {
+				if (sqlType == Types.DECIMAL || sqlType == Types.NUMERIC) {
+					return GET_DECIMAL;
+				}
+			} else if (setType == Double.class) {
+				if (sqlType == Types.DOUBLE || sqlType == Types.FLOAT) {
+					return GET_DOUBLE;
+				}
+			} else if (setType == Boolean.class) {
+				if (sqlType == Types.BOOLEAN || sqlType == Types.BIT) {
+					return GET_BOOLEAN;
+				}
+			}
+			return GET_OBJECT;
+		}
+
+		private static Object readValue(ResultSet rs, int column, int readType) throws SQLException {
+			int colIndex = column + 1;
+			switch (readType) {
+			case GET_STRING:
+				return rs.getString(colIndex);
+			case GET_LONG: {
+				long value = rs.getLong(colIndex);
+				return rs.wasNull() ? null : Long.valueOf(value);
+			}
+			case GET_INT: {
+				int value = rs.getInt(colIndex);
+				return rs.wasNull() ? null : Integer.valueOf(value);
+			}
+			case GET_DECIMAL:
+				return rs.getBigDecimal(colIndex);
+			case GET_DOUBLE: {
+				double value = rs.getDouble(colIndex);
+				return rs.wasNull() ? null : Double.valueOf(value);
+			}
+			case GET_BOOLEAN: {
+				boolean value = rs.getBoolean(colIndex);
+				return rs.wasNull() ? null : Boolean.valueOf(value);
+			}
+			default:
+				return rs.getObject(colIndex);
+			}
+		}
+	}
+
+	/**
+	 * @description 流式查询单行数据到结果类型的映射,类型判断和set方法匹配只在构造时做一次
+	 */
+	private static class StreamRowMapper {
+		/**
+		 * 0:List;1:数组;2:Map;3:VO
+		 */
+		private int mapType = 0;
+
+		private Class resultType;
+
+		private String[] labels;
+
+		private BeanAccessor accessor;
+
+		private AbstractTypeHandler typeHandler;
+
+		public StreamRowMapper(SqlToyContext sqlToyContext, String[] labelNames, Class resultType,
+				boolean humpMapLabel) {
+			this.resultType = resultType;
+			if (resultType == null || resultType.equals(List.class) || resultType.equals(ArrayList.class)
+					|| resultType.equals(Collection.class)) {
+				mapType = 0;
+				return;
+			}
+			if (Array.class.equals(resultType)) {
+				mapType = 1;
+				return;
+			}
+			Class superClass = resultType.getSuperclass();
+			if (Map.class.isAssignableFrom(resultType) || (superClass != null && Map.class.isAssignableFrom(superClass))) {
+				mapType = 2;
+				labels = humpMapLabel ? humpFieldNames(labelNames, null) : labelNames;
+				return;
+			}
+			mapType = 3;
+			HashMap<String, String> columnFieldMap = null;
+			if (sqlToyContext.isEntity(resultType)) {
+				columnFieldMap = sqlToyContext.getEntityMeta(resultType).getColumnFieldMap();
+			}
+			typeHandler = sqlToyContext.getTypeHandler();
+			labels = convertRealProps(labelNames.clone(), columnFieldMap);
+			accessor = BeanAccessor.getInstance(resultType, labels);
+		}
+
+		public Object map(List rowData) throws Exception {
+			if (mapType == 0) {
+				return rowData;
+			}
+			if (mapType == 1) {
+				return rowData.toArray();
+			}
+			if (mapType == 2) {
+				Map rowMap;
+				if (resultType.equals(Map.class)) {
+					rowMap = new HashMap();
+				} else if (resultType.equals(ConcurrentMap.class)) {
+					rowMap = new ConcurrentHashMap();
+				} else {
+					rowMap = (Map) resultType.getDeclaredConstructor().newInstance();
+				}
+				for (int i = 0; i < labels.length; i++) {
+					rowMap.put(labels[i], rowData.get(i));
+				}
+				return rowMap;
+			}
+			Object bean = accessor.newInstance();
+			for (int i = 0; i < labels.length; i++) {
+				accessor.setValue(typeHandler, bean, i, rowData.get(i));
+			}
+			return bean;
+		}
+	}
 }
@@ -42,6 +42,7 @@ import org.sagacity.sqltoy.callback.AbstractRowCallbackHandler;
 import org.sagacity.sqltoy.config.SqlConfigParseUtils;
 import org.sagacity.sqltoy.config.model.EntityMeta;
 import org.sagacity.sqltoy.model.TreeTableModel;
+import org.sagacity.sqltoy.model.TreeWrapMode;
 import org.sagacity.sqltoy.plugins.AbstractTypeHandler;
 import org.sagacity.sqltoy.utils.DataSourceUtils.DBType;
 import org.slf4j.Logger;
@@ -62,6 +63,7 @@ import org.slf4j.LoggerFactory;
  * @modify Date:2017-6-14 {修复针对阿里的druid数据库datasource针对clob类型处理的错误}
  * @modify Date:2019-7-5 剔除对druid clob bug的支持(druid 1.1.10 已经修复)
  * @modify Date:2020-06-18 用BeanUtil代替BeanInfo中getWriteMethod,完成对象属性赋值
+ * @modify Date:2021-05-20 wrapTreeTableRoute按wrapMode支持内存一次计算和数据库递归计算
  */
 @SuppressWarnings({ "rawtypes", "unchecked" })
 public class SqlUtil {
@@ -929,6 +931,10 @@ public class SqlUtil {
 			logger.error("请设置树形表的table名称、id字段名称、pid字段名称!");
 			throw new IllegalArgumentException("没有对应的table名称、id字段名称、pid字段名称");
 		}
+		// 一次加载全部节点内存计算或数据库端递归计算
+		if (treeTableModel.getWrapMode() != TreeWrapMode.LEVEL) {
+			return TreeRouteUtils.wrapTreeTableRoute(typeHandler, treeTableModel, conn, dbType);
+		}
 		String flag = "";
 		// 判断是否字符串类型
 		if (treeTableModel.isChar()) {
@@ -992,7 +998,21 @@ public class SqlUtil {
 						treeTableModel, pidsMap, ids, nodeLevel + 1, conn, dbType);
 			}
 		}
-		// 设置节点是否为叶子节点，（mysql不支持update table where in 机制）
+		// 设置节点是否为叶子节点
+		wrapTreeLeaf(typeHandler, treeTableModel, conn, dbType);
+		return true;
+	}
+
+	/**
+	 * @TODO 先将全部节点设置为叶子节点,再将存在下级的节点设置为非叶子节点(mysql不支持update table where in 机制)
+	 * @param typeHandler
+	 * @param treeTableModel
+	 * @param conn
+	 * @param dbType
+	 * @throws Exception
+	 */
+	static void wrapTreeLeaf(AbstractTypeHandler typeHandler, final TreeTableModel treeTableModel, Connection conn,
+			final Integer dbType) throws Exception {
 		if (StringUtil.isNotBlank(treeTableModel.getLeafField())) {
 			// 将所有记录先全部设置为叶子节点(isLeaf=1)
 			StringBuilder updateLeafSql = new StringBuilder();
@@ -1048,7 +1068,6 @@ public class SqlUtil {
 			}
 			executeSql(typeHandler, updateTrunkLeafSql.toString(), null, null, conn, dbType, true);
 		}
-		return true;
 	}
 
 	/**
@@ -0,0 +1,375 @@
+package org.sagacity.sqltoy.utils;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+
+import org.sagacity.sqltoy.SqlExecuteStat;
+import org.sagacity.sqltoy.SqlToyConstants;
+import org.sagacity.sqltoy.callback.AbstractPreparedStatementResultHandler;
+import org.sagacity.sqltoy.model.TreeTableModel;
+import org.sagacity.sqltoy.model.TreeWrapMode;
+import org.sagacity.sqltoy.plugins.AbstractTypeHandler;
+import org.sagacity.sqltoy.utils.DataSourceUtils.DBType;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 树形表节点等级、路径、是否叶子节点的一次性计算:一次流式查询全部节点在内存中广度遍历计算,
+ *              只批量修改发生变化的记录;或在支持with recursive的数据库端用一条语句完成计算和修改
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class TreeRouteUtils {
+	/**
+	 * 递归计算的最大层次,防止数据存在循环引用
+	 */
+	private static final int MAX_DEPTH = 10000;
+
+	private TreeRouteUtils() {
+	}
+
+	/**
+	 * @TODO 按wrapMode计算并修改树形表的节点等级、节点路径和是否叶子节点
+	 * @param typeHandler
+	 * @param treeTableModel
+	 * @param conn
+	 * @param dbType
+	 * @return
+	 * @throws Exception
+	 */
+	public static boolean wrapTreeTableRoute(AbstractTypeHandler typeHandler, final TreeTableModel treeTableModel,
+			Connection conn, final Integer dbType) throws Exception {
+		boolean hasRoute = StringUtil.isNotBlank(treeTableModel.getNodeRouteField())
+				&& StringUtil.isNotBlank(treeTableModel.getNodeLevelField());
+		if (!hasRoute) {
+			SqlUtil.wrapTreeLeaf(typeHandler, treeTableModel, conn, dbType);
+			return true;
+		}
+		if (treeTableModel.getWrapMode() == TreeWrapMode.RECURSIVE && wrapByRecursive(typeHandler, treeTableModel,
+				conn, dbType)) {
+			SqlUtil.wrapTreeLeaf(typeHandler, treeTableModel, conn, dbType);
+			return true;
+		}
+		wrapByMemory(typeHandler, treeTableModel, conn, dbType);
+		return true;
+	}
+
+	/**
+	 * @TODO 一次查询全部节点,内存中计算后批量修改变化的记录
+	 */
+	private static void wrapByMemory(AbstractTypeHandler typeHandler, final TreeTableModel treeTableModel,
+			Connection conn, final Integer dbType) throws Exception {
+		String conditions = treeTableModel.getConditions();
+		boolean hasLeaf = StringUtil.isNotBlank(treeTableModel.getLeafField());
+		StringBuilder queryStr = new StringBuilder("select ").append(treeTableModel.getIdField()).append(",")
+				.append(treeTableModel.getPidField()).append(",").append(treeTableModel.getNodeLevelField())
+				.append(",").append(treeTableModel.getNodeRouteField());
+		if (hasLeaf) {
+			queryStr.append(",").append(treeTableModel.getLeafField());
+		}
+		queryStr.append(" from ").append(treeTableModel.getTableName());
+		if (StringUtil.isNotBlank(conditions)) {
+			queryStr.append(" where ").append(conditions);
+		}
+		final String querySql = queryStr.toString();
+		SqlExecuteStat.showSql("树形表加载全部节点", querySql, null);
+		PreparedStatement pst = conn.prepareStatement(querySql, ResultSet.TYPE_FORWARD_ONLY,
+				ResultSet.CONCUR_READ_ONLY);
+		// mysql 只有Integer.MIN_VALUE 才是逐行流式读取
+		pst.setFetchSize((dbType == DBType.MYSQL || dbType == DBType.MYSQL57) ? Integer.MIN_VALUE
+				: SqlToyConstants.getStreamFetchSize());
+		ResultSet rs = null;
+		List<Object[]> nodes = (List<Object[]>) SqlUtil.preparedStatementProcess(null, pst, rs,
+				new AbstractPreparedStatementResultHandler() {
+					@Override
+					public void execute(Object obj, PreparedStatement pst, ResultSet rs) throws Exception {
+						rs = pst.executeQuery();
+						List<Object[]> result = new ArrayList<Object[]>();
+						while (rs.next()) {
+							result.add(new Object[] { rs.getObject(1), rs.getObject(2), rs.getObject(3),
+									rs.getObject(4), hasLeaf ? rs.getObject(5) : null });
+						}
+						this.setResult(result);
+					}
+				});
+		List<List>[] updates = compute(treeTableModel, nodes);
+		SqlExecuteStat.debug("树形表计算", "共加载节点:{}个,节点路径变化:{}个,仅叶子标记变化:{}个", nodes.size(), updates[0].size(),
+				updates[1].size());
+		String where = " where ".concat(treeTableModel.getIdField()).concat("=?")
+				.concat(StringUtil.isNotBlank(conditions) ? " and ".concat(conditions) : "");
+		if (!updates[0].isEmpty()) {
+			StringBuilder updateSql = new StringBuilder("update ").append(treeTableModel.getTableName())
+					.append(" set ").append(treeTableModel.getNodeLevelField()).append("=?,")
+					.append(treeTableModel.getNodeRouteField()).append("=?");
+			if (hasLeaf) {
+				updateSql.append(",").append(treeTableModel.getLeafField()).append("=?");
+			}
+			updateSql.append(where);
+			SqlUtil.batchUpdateByJdbc(typeHandler, updateSql.toString(), updates[0], 500, null, null, null, conn,
+					dbType);
+		}
+		if (!updates[1].isEmpty()) {
+			SqlUtil.batchUpdateByJdbc(typeHandler, "update ".concat(treeTableModel.getTableName()).concat(" set ")
+					.concat(treeTableModel.getLeafField()).concat("=?").concat(where), updates[1], 500, null, null,
+					null, conn, dbType);
+		}
+	}
+
+	/**
+	 * @TODO 内存中广度遍历计算节点等级、路径以及是否叶子节点,规则与逐层计算保持一致
+	 * @param treeTableModel
+	 * @param nodes          {id,pid,nodeLevel,nodeRoute,isLeaf}
+	 * @return {[节点等级、路径(、叶子)、id]集合,[叶子、id]集合},只包含发生变化的记录
+	 */
+	static List<List>[] compute(TreeTableModel treeTableModel, List<Object[]> nodes) {
+		int size = nodes.size();
+		boolean hasLeaf = StringUtil.isNotBlank(treeTableModel.getLeafField());
+		HashMap<String, Integer> idIndexes = new HashMap<String, Integer>(size * 4 / 3 + 1);
+		// pid对应的下级节点
+		HashMap<String, List<Integer>> children = new HashMap<String, List<Integer>>();
+		String pid;
+		for (int i = 0; i < size; i++) {
+			idIndexes.put(nodes.get(i)[0].toString(), i);
+			if (nodes.get(i)[1] != null) {
+				pid = nodes.get(i)[1].toString();
+				List<Integer> items = children.get(pid);
+				if (items == null) {
+					items = new ArrayList<Integer>();
+					children.put(pid, items);
+				}
+				items.add(i);
+			}
+		}
+		String rootId = treeTableModel.getRootId().toString();
+		int rootLevel = 0;
+		String rootRoute = "";
+		Integer rootIndex = idIndexes.get(rootId);
+		if (rootIndex != null) {
+			Object[] root = nodes.get(rootIndex);
+			rootLevel = (root[2] == null) ? 0 : new BigDecimal(root[2].toString().trim()).intValue();
+			rootRoute = (root[3] == null) ? "" : root[3].toString();
+		}
+		// 第一层节点:指定了idValue则只处理该节点及其下级
+		List<Integer> firstLevel;
+		if (treeTableModel.getIdValue() != null) {
+			firstLevel = new ArrayList<Integer>();
+			Integer index = idIndexes.get(treeTableModel.getIdValue().toString());
+			if (index != null) {
+				firstLevel.add(index);
+			}
+		} else {
+			firstLevel = children.get(rootId);
+		}
+		// 计算后的节点路径(不含末尾补充的分割符)
+		String[] routes = new String[size];
+		int[] levels = new int[size];
+		boolean[] visited = new boolean[size];
+		ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+		if (firstLevel != null) {
+			for (Integer index : firstLevel) {
+				visited[index] = true;
+				levels[index] = rootLevel + 1;
+				queue.add(index);
+			}
+		}
+		Object[] node;
+		String parentRoute;
+		while (!queue.isEmpty()) {
+			int index = queue.poll();
+			node = nodes.get(index);
+			pid = (node[1] == null) ? "" : node[1].toString();
+			if (levels[index] == rootLevel + 1) {
+				parentRoute = pid.equals(rootId) ? rootRoute : null;
+			} else {
+				parentRoute = routes[idIndexes.get(pid)];
+			}
+			routes[index] = getNodeRoute(treeTableModel, parentRoute, pid, node[0].toString());
+			List<Integer> items = children.get(node[0].toString());
+			if (items != null) {
+				for (Integer child : items) {
+					// 规避循环引用
+					if (!visited[child]) {
+						visited[child] = true;
+						levels[child] = levels[index] + 1;
+						queue.add(child);
+					}
+				}
+			}
+		}
+		List<List> routeUpdates = new ArrayList<List>();
+		List<List> leafUpdates = new ArrayList<List>();
+		String splitSign = treeTableModel.getSplitSign();
+		boolean appendSign = treeTableModel.getIdLength() < 2;
+		String nodeRoute;
+		int isLeaf;
+		boolean leafChanged;
+		List row;
+		for (int i = 0; i < size; i++) {
+			node = nodes.get(i);
+			isLeaf = children.containsKey(node[0].toString()) ? 0 : 1;
+			leafChanged = hasLeaf && !isSameLeaf(node[4], isLeaf);
+			if (visited[i]) {
+				// 节点路径长度不做补充统一长度,则末尾自动加上一个分割符
+				nodeRoute = appendSign ? routes[i].concat(splitSign) : routes[i];
+				if (leafChanged || !isSameLevel(node[2], levels[i]) || !isSameRoute(node[3], nodeRoute)) {
+					row = new ArrayList();
+					row.add(levels[i]);
+					row.add(nodeRoute);
+					if (hasLeaf) {
+						row.add(isLeaf);
+					}
+					row.add(node[0]);
+					routeUpdates.add(row);
+				}
+			} else if (leafChanged) {
+				row = new ArrayList();
+				row.add(isLeaf);
+				row.add(node[0]);
+				leafUpdates.add(row);
+			}
+		}
+		return new List[] { routeUpdates, leafUpdates };
+	}
+
+	/**
+	 * @TODO 父节点路径+分割符+节点id(按idLength补齐)
+	 */
+	private static String getNodeRoute(TreeTableModel treeTableModel, String parentRoute, String pid, String id) {
+		int size = treeTableModel.getIdLength();
+		boolean zeroPad = !treeTableModel.isChar() || treeTableModel.isAppendZero();
+		String nodeRoute;
+		if (parentRoute == null || "".equals(parentRoute.trim())) {
+			if (zeroPad) {
+				// 负数
+				if (NumberUtil.isInteger(pid) && pid.indexOf("-") == 0) {
+					nodeRoute = "-".concat(StringUtil.addLeftZero2Len(pid.substring(1), size - 1));
+				} else {
+					nodeRoute = StringUtil.addLeftZero2Len(pid, size);
+				}
+			} else {
+				nodeRoute = StringUtil.addRightBlank2Len(pid, size);
+			}
+		} else {
+			nodeRoute = parentRoute.trim();
+		}
+		if (!nodeRoute.endsWith(treeTableModel.getSplitSign())) {
+			nodeRoute = nodeRoute.concat(treeTableModel.getSplitSign());
+		}
+		return nodeRoute.concat(zeroPad ? StringUtil.addLeftZero2Len(id, size) : StringUtil.addRightBlank2Len(id, size));
+	}
+
+	private static boolean isSameLevel(Object value, int level) {
+		if (value == null) {
+			return false;
+		}
+		try {
+			return new BigDecimal(value.toString().trim()).compareTo(BigDecimal.valueOf(level)) == 0;
+		} catch (NumberFormatException e) {
+			return false;
+		}
+	}
+
+	private static boolean isSameRoute(Object value, String route) {
+		// char类型字段会在末尾补空白
+		return value != null && rtrim(value.toString()).equals(rtrim(route));
+	}
+
+	private static String rtrim(String str) {
+		int end = str.length();
+		while (end > 0 && str.charAt(end - 1) <= ' ') {
+			end--;
+		}
+		return str.substring(0, end);
+	}
+
+	private static boolean isSameLeaf(Object value, int isLeaf) {
+		if (value == null) {
+			return false;
+		}
+		String leaf = value.toString().trim();
+		if ("true".equalsIgnoreCase(leaf)) {
+			leaf = "1";
+		} else if ("false".equalsIgnoreCase(leaf)) {
+			leaf = "0";
+		}
+		return leaf.equals(Integer.toString(isLeaf));
+	}
+
+	/**
+	 * @TODO 数据库端with recursive计算节点等级和路径并修改(仅修改变化的记录)
+	 * @return 数据库不支持或节点路径需要补齐长度等场景返回false,由内存计算处理
+	 */
+	private static boolean wrapByRecursive(AbstractTypeHandler typeHandler, final TreeTableModel treeTableModel,
+			Connection conn, final Integer dbType) throws Exception {
+		boolean isPostgres = (dbType == DBType.POSTGRESQL || dbType == DBType.GAUSSDB || dbType == DBType.KINGBASE);
+		boolean isMysql = (dbType == DBType.MYSQL);
+		// 节点路径补齐长度以及指定单个节点的场景在内存中计算
+		if ((!isPostgres && !isMysql) || treeTableModel.getIdLength() >= 2 || treeTableModel.getIdValue() != null) {
+			SqlExecuteStat.debug("过程提示", "树形表递归计算不适用当前数据库或配置,改为内存计算!");
+			return false;
+		}
+		String table = treeTableModel.getTableName();
+		String idField = treeTableModel.getIdField();
+		String levelField = treeTableModel.getNodeLevelField();
+		String routeField = treeTableModel.getNodeRouteField();
+		String conditions = StringUtil.isNotBlank(treeTableModel.getConditions())
+				? " and (".concat(treeTableModel.getConditions()).concat(")")
+				: "";
+		String splitSign = treeTableModel.getSplitSign();
+		// 根节点的等级和路径
+		String rootSql = "select ".concat(levelField).concat(",").concat(routeField).concat(" from ").concat(table)
+				.concat(" where ").concat(idField).concat("=?").concat(conditions);
+		List rootInfo = SqlUtil.findByJdbcQuery(typeHandler, rootSql, new Object[] { treeTableModel.getRootId() },
+				null, null, conn, dbType, false, null);
+		int rootLevel = 0;
+		String rootRoute = "";
+		if (rootInfo != null && !rootInfo.isEmpty()) {
+			List root = (List) rootInfo.get(0);
+			rootLevel = (root.get(0) == null) ? 0 : new BigDecimal(root.get(0).toString().trim()).intValue();
+			rootRoute = (root.get(1) == null) ? "" : root.get(1).toString();
+		}
+		String prefix = getNodeRoute(treeTableModel, rootRoute, treeTableModel.getRootId().toString(), "");
+		StringBuilder sql = new StringBuilder();
+		String cte = "sag_tree(sag_tree_id,sag_tree_level,sag_tree_route) as (select ";
+		if (isPostgres) {
+			sql.append("with recursive ").append(cte).append(idField).append(",cast(? as integer),cast(")
+					.append("cast(? as varchar)||cast(").append(idField).append(" as varchar)||cast(? as varchar)")
+					.append(" as varchar) from ").append(table).append(" where ")
+					.append(treeTableModel.getPidField()).append("=?").append(conditions);
+			sql.append(" union all select c.").append(idField).append(",t.sag_tree_level+1,cast(t.sag_tree_route||")
+					.append("cast(c.").append(idField).append(" as varchar)||cast(? as varchar) as varchar) from ")
+					.append(table).append(" c inner join sag_tree t on c.").append(treeTableModel.getPidField())
+					.append("=t.sag_tree_id where t.sag_tree_level<?").append(conditions).append(")");
+			sql.append(" update ").append(table).append(" set ").append(levelField)
+					.append("=sag_tree.sag_tree_level,").append(routeField).append("=sag_tree.sag_tree_route from sag_tree")
+					.append(" where ").append(table).append(".").append(idField).append("=sag_tree.sag_tree_id and (")
+					.append(table).append(".").append(levelField).append(" is distinct from sag_tree.sag_tree_level or ")
+					.append(table).append(".").append(routeField).append(" is distinct from sag_tree.sag_tree_route)")
+					.append(conditions);
+		} else {
+			sql.append("update ").append(table).append(" inner join (with recursive ").append(cte).append(idField)
+					.append(",cast(? as signed),cast(concat(?,").append(idField).append(",?) as char(4000)) from ")
+					.append(table).append(" where ").append(treeTableModel.getPidField()).append("=?")
+					.append(conditions);
+			sql.append(" union all select c.").append(idField).append(",t.sag_tree_level+1,concat(t.sag_tree_route,c.")
+					.append(idField).append(",?) from ").append(table).append(" c inner join sag_tree t on c.")
+					.append(treeTableModel.getPidField()).append("=t.sag_tree_id where t.sag_tree_level<?")
+					.append(conditions).append(") select * from sag_tree) sag_tree_t on ").append(table).append(".")
+					.append(idField).append("=sag_tree_t.sag_tree_id set ").append(table).append(".")
+					.append(levelField).append("=sag_tree_t.sag_tree_level,").append(table).append(".")
+					.append(routeField).append("=sag_tree_t.sag_tree_route where not (").append(table).append(".")
+					.append(levelField).append("<=>sag_tree_t.sag_tree_level and ").append(table).append(".")
+					.append(routeField).append("<=>sag_tree_t.sag_tree_route)").append(conditions);
+		}
+		Long updateCnt = SqlUtil.executeSql(typeHandler, sql.toString(), new Object[] { rootLevel + 1, prefix,
+				splitSign, treeTableModel.getRootId(), splitSign, rootLevel + MAX_DEPTH }, null, conn, dbType, null);
+		SqlExecuteStat.debug("树形表计算", "数据库递归计算修改节点:{}个", updateCnt);
+		return true;
+	}
+}
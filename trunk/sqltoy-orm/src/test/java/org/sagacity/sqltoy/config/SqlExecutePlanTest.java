@@ -0,0 +1,78 @@
+package org.sagacity.sqltoy.config;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.config.model.SqlToyResult;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证sql执行计划与逐步解析结果一致,并对比两者性能
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-06
+ */
+public class SqlExecutePlanTest {
+	private static String[] sqls = { "select * from table where 1=1 #[and id=:id and name like :name] #[and status=:status]",
+			"select * from (select * from table where #[id=:id] #[and name like :name] #[and status=:status]) t left join table2 on t.id=t2.id",
+			"select * from table t where #[t.status in (:status)] #[and t.type=:type] #[and t.name like :name] order by t.id",
+			"select * from table t where #[@if(:flag=='1') t.status=:status #[and t.name like :name]] #[or t.flag is not :bool] group by t.id",
+			"select * from table t where #[@blank(:flag) t.status=:status] #[and t.createTime>=:beginDate] #[and t.name like :name]",
+			"select * from table t where t.id=:id and t.name like :name #[and t.type=:type and t.code='a?b']",
+			"update table t set #[t.name=:name] #[,t.status=:status] where t.id=:id" };
+
+	private static String[] paramsName = { "id", "name", "status", "type", "flag", "bool", "beginDate" };
+
+	private static Object[][] paramsValues = { { null, null, null, null, null, null, null },
+			{ "1", "chen", "1", null, "1", Boolean.TRUE, null }, { "1", null, new Object[] { 1, 2 }, "a", "2", "x", "2021-01-01" },
+			{ null, "ch%", new Object[] {}, null, "1", null, null }, { "2", "li", "3", "b", null, Boolean.FALSE, "2021-05-06" } };
+
+	@Test
+	public void testPlanEqualsParse() {
+		SqlToyResult planResult;
+		SqlToyResult parseResult;
+		for (String sql : sqls) {
+			for (Object[] values : paramsValues) {
+				// 执行两次,第二次命中执行计划中已经缓存的sql组合
+				for (int i = 0; i < 2; i++) {
+					planResult = SqlConfigParseUtils.processSql(sql, paramsName, values.clone());
+					parseResult = SqlConfigParseUtils.processSqlByParse(sql, paramsName, values.clone());
+					assertEquals(parseResult.getSql(), planResult.getSql());
+					assertArrayEquals(parseResult.getParamsValue(), planResult.getParamsValue());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void testPerformance() {
+		StringBuilder sql = new StringBuilder("select * from table t where 1=1");
+		int size = 30;
+		String[] names = new String[size];
+		Object[] values = new Object[size];
+		for (int i = 0; i < size; i++) {
+			names[i] = "param" + i;
+			values[i] = (i % 3 == 0) ? null : "value" + i;
+			sql.append(" #[and t.field").append(i).append(i % 5 == 0 ? " like :" : "=:").append(names[i]).append("]");
+		}
+		String sqlStr = sql.toString();
+		assertEquals(SqlConfigParseUtils.processSqlByParse(sqlStr, names, values).getSql(),
+				SqlConfigParseUtils.processSql(sqlStr, names, values).getSql());
+		int loop = 2000;
+		for (int i = 0; i < loop; i++) {
+			SqlConfigParseUtils.processSql(sqlStr, names, values);
+			SqlConfigParseUtils.processSqlByParse(sqlStr, names, values);
+		}
+		long start = System.nanoTime();
+		for (int i = 0; i < loop; i++) {
+			SqlConfigParseUtils.processSqlByParse(sqlStr, names, values);
+		}
+		long parseTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (int i = 0; i < loop; i++) {
+			SqlConfigParseUtils.processSql(sqlStr, names, values);
+		}
+		long planTime = System.nanoTime() - start;
+		System.err.println("逐步解析:" + parseTime / loop + "ns/次,执行计划:" + planTime / loop + "ns/次");
+	}
+}
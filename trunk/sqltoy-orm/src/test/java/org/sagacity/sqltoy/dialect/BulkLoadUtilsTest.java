@@ -0,0 +1,70 @@
+package org.sagacity.sqltoy.dialect;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.dialect.utils.BulkLoadUtils;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证批量insert语句拆分为多行values改写的两部分,以及COPY/LOAD DATA的语句和行文本
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class BulkLoadUtilsTest {
+	@Test
+	public void testSplitInsertValues() {
+		assertArrayEquals(BulkLoadUtils.splitInsertValues("insert into sys_staff (id,name) values (?,?)"),
+				new String[] { "insert into sys_staff (id,name) values ", "(?,?)" });
+		assertArrayEquals(
+				BulkLoadUtils.splitInsertValues("/* id=saveStaff */ INSERT INTO sys_staff(id,name,amt) VALUES(?,?,nvl(?,0)) "),
+				new String[] { "/* id=saveStaff */ INSERT INTO sys_staff(id,name,amt) VALUES", "(?,?,nvl(?,0))" });
+		// 非insert values或后面有其他语句不做改写
+		assertNull(BulkLoadUtils.splitInsertValues("update sys_staff set name=? where id=?"));
+		assertNull(BulkLoadUtils.splitInsertValues("insert into sys_staff (id,name) values (?,?) on duplicate key update name=values(name)"));
+		assertNull(BulkLoadUtils.splitInsertValues("insert into sys_staff (id,name) select ?,? from dual"));
+		assertNull(BulkLoadUtils.splitInsertValues("insert into sys_staff (id,name) values (?,'a')"));
+	}
+
+	@Test
+	public void testBulkLoadSql() {
+		assertEquals("COPY sys_staff (id,name) FROM STDIN WITH CSV", BulkLoadUtils.getCopySql("sys_staff", "id,name"));
+		assertEquals("LOAD DATA LOCAL INFILE 'sqltoy_bulk_load' INTO TABLE sys_staff CHARACTER SET utf8mb4"
+				+ " FIELDS TERMINATED BY ',' OPTIONALLY ENCLOSED BY '\"' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (id,name)",
+				BulkLoadUtils.getLoadDataSql("sys_staff", "id,name"));
+	}
+
+	@Test
+	public void testLoadDataLine() {
+		Object[] row = { "a\"b,c", "x\\y\nz\r\0", null, true, new BigDecimal("1E+3"),
+				LocalDateTime.of(2021, 5, 20, 10, 30, 0) };
+		assertEquals("\"a\\\"b,c\",\"x\\\\y\\nz\\r\\0\",\\N,\"1\",\"1000\",\"2021-05-20 10:30:00\"\n",
+				BulkLoadUtils.toLoadDataLine(row, ZoneOffset.UTC));
+		// 时间按会话时区输出
+		Date time = Date.from(LocalDateTime.of(2021, 5, 20, 2, 30, 0).toInstant(ZoneOffset.UTC));
+		assertEquals("\"2021-05-20 10:30:00\"\n",
+				BulkLoadUtils.toLoadDataLine(new Object[] { time }, ZoneId.of("Asia/Shanghai")));
+		Timestamp timestamp = Timestamp.from(LocalDateTime.of(2021, 5, 20, 2, 30, 0, 120000000).toInstant(ZoneOffset.UTC));
+		assertEquals("\"2021-05-20 02:30:00.12\"\n", BulkLoadUtils.toLoadDataLine(new Object[] { timestamp }, ZoneOffset.UTC));
+	}
+
+	@Test
+	public void testCsvLine() {
+		Object[] row = { "a\"b,c", "x\\y\nz", null, true, new BigDecimal("1E+3") };
+		assertEquals("\"a\"\"b,c\",\"x\\y\nz\",,\"true\",\"1000\"\n", BulkLoadUtils.toCsvLine(row));
+		// 时间带上jvm时区的时差
+		Date time = new Date(0);
+		String expect = java.time.ZonedDateTime.ofInstant(time.toInstant(), ZoneId.systemDefault())
+				.format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ssxxx"));
+		assertEquals("\"" + expect + "\"\n", BulkLoadUtils.toCsvLine(new Object[] { time }));
+	}
+}
@@ -0,0 +1,59 @@
+package org.sagacity.sqltoy.dialect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.demo.domain.StaffInfo;
+import org.sagacity.sqltoy.dialect.utils.CountSqlUtils;
+import org.sagacity.sqltoy.dialect.utils.CountSqlUtils.CountSql;
+import org.sagacity.sqltoy.utils.DataSourceUtils.DBType;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证count语句剔除无效left join以及无条件单表判断
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class CountSqlUtilsTest {
+	@Test
+	public void testRemoveUselessLeftJoin() {
+		SqlToyContext sqlToyContext = new SqlToyContext();
+		sqlToyContext.getEntityManager().getEntityMeta(sqlToyContext, StaffInfo.class);
+		// 按主键关联且未被引用,剔除
+		assertEquals(" from sys_order t  where t.status=?", CountSqlUtils.removeUselessLeftJoin(sqlToyContext,
+				" from sys_order t left join sqltoy_staff_info s on s.staff_id=t.staff_id where t.status=?"));
+		// 关联表别名被条件引用,保留
+		String sql = " from sys_order t left join sqltoy_staff_info s on s.staff_id=t.staff_id where s.organ_id=?";
+		assertEquals(sql, CountSqlUtils.removeUselessLeftJoin(sqlToyContext, sql));
+		// 非主键关联(可能一对多),保留
+		sql = " from sys_order t left join sqltoy_staff_info s on s.organ_id=t.organ_id where t.status=?";
+		assertEquals(sql, CountSqlUtils.removeUselessLeftJoin(sqlToyContext, sql));
+		// 关联表字段以无别名方式引用,保留
+		sql = " from sys_order t left join sqltoy_staff_info s on s.staff_id=t.staff_id where staff_name like ?";
+		assertEquals(sql, CountSqlUtils.removeUselessLeftJoin(sqlToyContext, sql));
+	}
+
+	@Test
+	public void testApproximateTable() {
+		assertEquals("sys_order", CountSqlUtils.getApproximateTable("select  count(1)  from sys_order t "));
+		assertNull(CountSqlUtils.getApproximateTable("select count(1) from sys_order t where t.status=1"));
+	}
+
+	@Test
+	public void testCountSqlCache() {
+		SqlToyContext sqlToyContext = new SqlToyContext();
+		String sql = "select * from sys_order t where t.status=?";
+		CountSql countSql = new CountSql("select count(1) from sys_order t where t.status=?", 1, 0, null);
+		CountSqlUtils.putCountSql(sqlToyContext, sql, DBType.MYSQL, false, countSql);
+		assertSame(countSql, CountSqlUtils.getCountSql(sqlToyContext, sql, DBType.MYSQL, false));
+		// with解析与否、其他context(EntityManager不同)均不共用
+		assertNull(CountSqlUtils.getCountSql(sqlToyContext, sql, DBType.MYSQL, true));
+		assertNull(CountSqlUtils.getCountSql(new SqlToyContext(), sql, DBType.MYSQL, false));
+		assertNull(CountSqlUtils.getCountSql(null, sql, DBType.MYSQL, false));
+		CountSqlUtils.clear();
+		assertNull(CountSqlUtils.getCountSql(sqlToyContext, sql, DBType.MYSQL, false));
+	}
+}
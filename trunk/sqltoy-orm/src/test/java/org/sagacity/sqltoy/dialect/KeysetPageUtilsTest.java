@@ -0,0 +1,78 @@
+package org.sagacity.sqltoy.dialect;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.config.SqlConfigParseUtils;
+import org.sagacity.sqltoy.config.model.SqlToyResult;
+import org.sagacity.sqltoy.dialect.utils.KeysetPageUtils;
+import org.sagacity.sqltoy.model.NamedValuesModel;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证keyset分页sql改写、参数合并以及下一页键值提取
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-19
+ */
+public class KeysetPageUtilsTest {
+
+	@Test
+	public void testWrapSql() {
+		String[] keys = { "t.order_date desc", "t.order_id desc" };
+		String[] columns = KeysetPageUtils.getKeyColumns(keys);
+		boolean[] descs = KeysetPageUtils.getKeyDescs(keys);
+		String sql = "select t.order_id,t.order_date from orders t where #[t.status=:status] order by t.order_id";
+		// 行值比较
+		String rowSql = KeysetPageUtils.wrapKeysetSql(sql, false, columns, descs, true, true);
+		System.err.println(rowSql);
+		assertEquals(rowSql.contains("order by t.order_id"), false);
+		assertEquals(rowSql.contains(
+				"(SAG_Keysettable.order_date,SAG_Keysettable.order_id)<(:sagKeysetParam1,:sagKeysetParam2)"), true);
+		assertEquals(rowSql.endsWith("order by SAG_Keysettable.order_date desc,SAG_Keysettable.order_id desc"), true);
+		// or展开
+		String orSql = KeysetPageUtils.wrapKeysetSql(sql, false, columns, descs, true, false);
+		System.err.println(orSql);
+		assertEquals(orSql.contains("SAG_Keysettable.order_date<=:sagKeysetParam1 and ((SAG_Keysettable.order_date<:sagKeysetParam1) or (SAG_Keysettable.order_date=:sagKeysetParam1 and SAG_Keysettable.order_id<:sagKeysetParam2))"),
+				true);
+		// 第一页无条件
+		assertEquals(KeysetPageUtils.wrapKeysetSql(sql, false, columns, descs, false, true).contains(" where "
+				+ "SAG"), false);
+
+		NamedValuesModel params = KeysetPageUtils.mergeParams(new String[] { "status" }, new Object[] { "1" },
+				new Object[] { "2021-05-01", 100 });
+		SqlToyResult result = SqlConfigParseUtils.processSql(orSql, params.getNames(), params.getValues());
+		assertArrayEquals(result.getParamsValue(), new Object[] { "1", "2021-05-01", "2021-05-01", "2021-05-01", 100 });
+	}
+
+	@Test
+	public void testFastTailSql() {
+		String[] columns = { "order_date", "order_id" };
+		boolean[] descs = { true, false };
+		assertEquals(" t left join customer c on t.cust_id=c.id  order by t.order_date desc,t.order_id",
+				KeysetPageUtils.wrapFastTailSql(" t left join customer c on t.cust_id=c.id order by c.name", false,
+						columns, descs));
+		assertEquals(") as t order by t.order_date desc,t.order_id",
+				KeysetPageUtils.wrapFastTailSql(") as t", true, columns, descs));
+		// 无别名时无法在外层排序
+		assertThrows(IllegalArgumentException.class,
+				() -> KeysetPageUtils.wrapFastTailSql(" where 1=1", false, columns, descs));
+	}
+
+	@Test
+	public void testLastKeyValues() {
+		List rows = new ArrayList();
+		rows.add(Arrays.asList(1, "2021-05-01", "a"));
+		rows.add(Arrays.asList(2, "2021-05-02", "b"));
+		Object[] values = KeysetPageUtils.getLastKeyValues(rows, new String[] { "ORDER_ID", "orderDate", "name" },
+				new String[] { "t.order_date desc", "order_id" });
+		assertArrayEquals(values, new Object[] { "2021-05-02", 2 });
+		assertNull(KeysetPageUtils.getLastKeyValues(new ArrayList(), new String[] {}, new String[] { "id" }));
+	}
+}
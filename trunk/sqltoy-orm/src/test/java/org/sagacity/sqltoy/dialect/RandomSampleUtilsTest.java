@@ -0,0 +1,62 @@
+package org.sagacity.sqltoy.dialect;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.dialect.utils.RandomSampleUtils;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证随机行号产生、TABLESAMPLE单表语句判断以及顺序抽样的记录数量
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class RandomSampleUtilsTest {
+	@Test
+	public void testRandomPositions() {
+		long[] positions = RandomSampleUtils.randomPositions(100000, 1000);
+		assertEquals(positions.length, 1000);
+		for (int i = 0; i < positions.length; i++) {
+			assertTrue(positions[i] >= 1 && positions[i] <= 100000);
+			if (i > 0) {
+				assertTrue(positions[i] > positions[i - 1]);
+			}
+		}
+		assertEquals(RandomSampleUtils.randomPositions(10, 10).length, 10);
+	}
+
+	@Test
+	public void testTableSampleSql() {
+		assertTrue(RandomSampleUtils.isTableSampleSql("select id,name from sys_staff t where t.status=:status"));
+		assertTrue(RandomSampleUtils.isTableSampleSql("select * from sys_staff"));
+		assertFalse(RandomSampleUtils.isTableSampleSql("select * from sys_staff t left join sys_organ o on t.id=o.id"));
+		assertFalse(RandomSampleUtils.isTableSampleSql("select * from sys_staff t,sys_organ o where t.id=o.id"));
+		assertFalse(RandomSampleUtils.isTableSampleSql("select * from sys_staff order by id"));
+		assertFalse(RandomSampleUtils.isTableSampleSql("select distinct name from sys_staff"));
+		assertFalse(RandomSampleUtils.isTableSampleSql("select (select 1 from dual) from sys_staff"));
+	}
+
+	@Test
+	public void testStreamSampling() throws Exception {
+		final int total = 10000;
+		final int[] index = { 0 };
+		ResultSet rs = (ResultSet) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { ResultSet.class },
+				(proxy, method, args) -> {
+					if ("next".equals(method.getName())) {
+						return ++index[0] <= total;
+					}
+					return index[0];
+				});
+		ResultSet sampleRs = RandomSampleUtils.wrapSampling(rs, total, 100);
+		int count = 0;
+		while (sampleRs.next()) {
+			count++;
+		}
+		assertEquals(count, 100);
+	}
+}
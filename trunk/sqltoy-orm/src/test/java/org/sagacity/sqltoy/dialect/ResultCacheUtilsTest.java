@@ -0,0 +1,139 @@
+package org.sagacity.sqltoy.dialect;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.config.model.ResultCache;
+import org.sagacity.sqltoy.config.model.SqlToyConfig;
+import org.sagacity.sqltoy.dialect.utils.ResultCacheUtils;
+import org.sagacity.sqltoy.model.QueryExecutorExtend;
+import org.sagacity.sqltoy.model.QueryResult;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证查询结果缓存的表名解析、按表失效以及事务中的缓存处理
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+@SuppressWarnings({ "rawtypes", "unchecked" })
+public class ResultCacheUtilsTest {
+	@Test
+	public void testParseTables() {
+		assertArrayEquals(ResultCacheUtils.parseQueryTables(
+				"select t.id,nvl(t.name,'') from sagacity.sys_staff t left join \"sys_organ\" o on t.organ_id=o.id,sys_dict d where t.status in (select status from sys_status)"),
+				new String[] { "sys_staff", "sys_organ", "sys_dict", "sys_status" });
+		assertArrayEquals(ResultCacheUtils.parseUpdateTables("update sys_staff set status=0 where id=:id"),
+				new String[] { "sys_staff" });
+		assertArrayEquals(ResultCacheUtils.parseUpdateTables("delete from `sys_staff` where id=:id"),
+				new String[] { "sys_staff" });
+	}
+
+	@Test
+	public void testInvalidate() throws Exception {
+		SqlToyContext sqlToyContext = new SqlToyContext();
+		SqlToyConfig sqlToyConfig = new SqlToyConfig("sys_findStaff", "select * from sys_staff where status=:status");
+		ResultCache resultCache = new ResultCache().aliveSeconds(60).aliveMax(10);
+		QueryResult result = new QueryResult();
+		List rows = new ArrayList();
+		rows.add("1");
+		result.setRows(rows);
+		QueryExecutorExtend extend = new QueryExecutorExtend();
+		extend.resultCache = resultCache;
+		// 查询前登记sql涉及的表
+		assertNotNull(ResultCacheUtils.getResultCache(sqlToyContext, sqlToyConfig, extend, null));
+		ResultCacheUtils.put(sqlToyContext, sqlToyConfig, resultCache, "key1", result,
+				ResultCacheUtils.getVersion(sqlToyContext));
+		assertNotNull(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1"));
+		assertEquals(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1").getRows().size(), 1);
+		ResultCacheUtils.invalidateBySql(sqlToyContext, "insert into sys_organ (id) values (?)");
+		assertNotNull(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1"));
+		ResultCacheUtils.invalidateBySql(sqlToyContext, "update SYS_STAFF set status=1");
+		assertNull(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1"));
+		// 不同的context互不影响
+		SqlToyContext otherContext = new SqlToyContext();
+		ResultCacheUtils.put(otherContext, sqlToyConfig, resultCache, "key1", result,
+				ResultCacheUtils.getVersion(otherContext));
+		assertNull(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1"));
+		assertNotNull(ResultCacheUtils.get(otherContext, sqlToyConfig, "key1"));
+	}
+
+	@Test
+	public void testInvalidateDuringQuery() throws Exception {
+		SqlToyContext sqlToyContext = new SqlToyContext();
+		SqlToyConfig sqlToyConfig = new SqlToyConfig("sys_findOrgan", "select * from sys_organ where status=:status");
+		ResultCache resultCache = new ResultCache().aliveSeconds(60).aliveMax(10);
+		QueryExecutorExtend extend = new QueryExecutorExtend();
+		extend.resultCache = resultCache;
+		// 首次查询前即登记表,查询期间的失效不会因尚未登记而遗漏
+		assertNotNull(ResultCacheUtils.getResultCache(sqlToyContext, sqlToyConfig, extend, null));
+		long version = ResultCacheUtils.getVersion(sqlToyContext);
+		ResultCacheUtils.invalidateBySql(sqlToyContext, "update sys_organ set status=1");
+		QueryResult result = new QueryResult();
+		result.setRows(new ArrayList());
+		ResultCacheUtils.put(sqlToyContext, sqlToyConfig, resultCache, "key1", result, version);
+		assertNull(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1"));
+		// 登记后发生的失效在读取时判定
+		version = ResultCacheUtils.getVersion(sqlToyContext);
+		ResultCacheUtils.put(sqlToyContext, sqlToyConfig, resultCache, "key1", result, version);
+		assertNotNull(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1"));
+		ResultCacheUtils.invalidateBySql(sqlToyContext, "update sys_organ set status=2");
+		assertNull(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1"));
+	}
+
+	@Test
+	public void testTransaction() throws Exception {
+		SqlToyContext sqlToyContext = new SqlToyContext();
+		SqlToyConfig sqlToyConfig = new SqlToyConfig("sys_findDict", "select * from sys_dict where status=:status");
+		ResultCache resultCache = new ResultCache().aliveSeconds(60).aliveMax(10);
+		QueryResult result = new QueryResult();
+		List rows = new ArrayList();
+		rows.add(new ArrayList(Arrays.asList("1", "name")));
+		result.setRows(rows);
+		QueryExecutorExtend extend = new QueryExecutorExtend();
+		extend.resultCache = resultCache;
+		// 查询前登记sql涉及的表
+		assertNotNull(ResultCacheUtils.getResultCache(sqlToyContext, sqlToyConfig, extend, null));
+		ResultCacheUtils.put(sqlToyContext, sqlToyConfig, resultCache, "key1", result,
+				ResultCacheUtils.getVersion(sqlToyContext));
+		// 修改返回结果不影响缓存
+		((List) ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1").getRows().get(0)).set(1, "changed");
+		assertEquals(((List) ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1").getRows().get(0)).get(1), "name");
+		TransactionSynchronizationManager.initSynchronization();
+		TransactionSynchronizationManager.setActualTransactionActive(true);
+		try {
+			// 可写事务中不使用缓存
+			assertNull(ResultCacheUtils.getResultCache(sqlToyContext, sqlToyConfig, extend, null));
+			TransactionSynchronizationManager.setCurrentTransactionReadOnly(true);
+			assertNotNull(ResultCacheUtils.getResultCache(sqlToyContext, sqlToyConfig, extend, null));
+			TransactionSynchronizationManager.setCurrentTransactionReadOnly(false);
+			ResultCacheUtils.invalidateBySql(sqlToyContext, "delete from sys_dict");
+			assertNull(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1"));
+			// 事务中登记的结果不进入缓存
+			ResultCacheUtils.put(sqlToyContext, sqlToyConfig, resultCache, "key1", result,
+				ResultCacheUtils.getVersion(sqlToyContext));
+			assertNull(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1"));
+			assertEquals(TransactionSynchronizationManager.getSynchronizations().size(), 1);
+		} finally {
+			TransactionSynchronizationManager.setActualTransactionActive(false);
+		}
+		// 模拟提交前其他线程登记了旧数据,事务结束后再次失效
+		ResultCacheUtils.put(sqlToyContext, sqlToyConfig, resultCache, "key1", result,
+				ResultCacheUtils.getVersion(sqlToyContext));
+		assertNotNull(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1"));
+		for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+			synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED);
+		}
+		TransactionSynchronizationManager.clearSynchronization();
+		assertNull(ResultCacheUtils.get(sqlToyContext, sqlToyConfig, "key1"));
+	}
+}
@@ -0,0 +1,78 @@
+package org.sagacity.sqltoy.plugins;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.model.IgnoreCaseLinkedMap;
+import org.sagacity.sqltoy.model.ShardingDBModel;
+import org.sagacity.sqltoy.plugins.sharding.impl.ConsistentHashShardingStrategy;
+
+public class ConsistentHashShardingTest {
+
+	@Test
+	public void testMigrate() {
+		HashMap<String, String> dataSourceMap = new HashMap<String, String>();
+		HashMap<String, String> targetMap = new HashMap<String, String>();
+		for (int i = 0; i < 16; i++) {
+			if (i < 4) {
+				dataSourceMap.put(Integer.toString(i), "db" + i);
+			}
+			targetMap.put(Integer.toString(i), "db" + i);
+		}
+		ConsistentHashShardingStrategy strategy = new ConsistentHashShardingStrategy();
+		strategy.setDataSourceMap(dataSourceMap);
+		strategy.setTargetDataSourceMap(targetMap);
+		strategy.initialize();
+		int[] movingSlots = strategy.getMovingSlots();
+		// 16个节点均分,约3/4的槽需要迁移,且只会从旧节点迁往新增节点
+		assertTrue(movingSlots.length > 16384 * 0.65 && movingSlots.length < 16384 * 0.85);
+		for (int slot : movingSlots) {
+			assertTrue(Integer.parseInt(strategy.getMoving(slot)[1].substring(2)) >= 4);
+		}
+		IgnoreCaseLinkedMap<String, Object> params = new IgnoreCaseLinkedMap<String, Object>();
+		String key = null;
+		for (int i = 0; key == null; i++) {
+			if (strategy.getMoving(strategy.getSlot("S" + i)) != null) {
+				key = "S" + i;
+			}
+		}
+		params.put("staffId", key);
+		int slot = strategy.getSlot(key);
+		String from = strategy.getShardingDB(null, null, null, null, params).getDataSourceName();
+		assertEquals(from, strategy.getMoving(slot)[0]);
+		String to = strategy.getMoving(slot)[1];
+		// 冻结期间按sharding值读写被拒绝
+		strategy.freezeSlots(slot, slot);
+		assertEquals(strategy.getFrozenSlots(), Integer.toString(slot));
+		assertThrows(IllegalStateException.class,
+				() -> strategy.getShardingDB(null, null, null, null, params).getDataSourceName());
+		strategy.migrateSlots(slot, slot);
+		assertEquals(strategy.getFrozenSlots(), "");
+		assertEquals(strategy.getShardingDB(null, null, null, null, params).getDataSourceName(), to);
+		assertEquals(strategy.getShardingDBs(null, null, null, null, null).size(), 5);
+		// 迁移窗口中分散查询按槽归属过滤,同一记录只属于一个节点
+		for (ShardingDBModel dbModel : strategy.getShardingDBs(null, null, null, null, null)) {
+			assertEquals(dbModel.getOwnerFilter().test(key), dbModel.getDataSourceName().equals(to));
+		}
+		strategy.migrateSlots(0, 9);
+		String migratedSlots = strategy.getMigratedSlots();
+		assertEquals(migratedSlots, (slot < 10) ? "0-9" : ("0-9," + slot));
+
+		// 重启或其他实例按持久化的迁移进度恢复路由
+		ConsistentHashShardingStrategy restarted = new ConsistentHashShardingStrategy();
+		restarted.setDataSourceMap(dataSourceMap);
+		restarted.setTargetDataSourceMap(targetMap);
+		restarted.setMigratedSlots(migratedSlots);
+		restarted.initialize();
+		assertEquals(restarted.getShardingDB(null, null, null, null, params).getDataSourceName(), to);
+		assertEquals(restarted.getMovingSlots().length, strategy.getMovingSlots().length);
+		strategy.completeMigration();
+		assertEquals(strategy.getMovingSlots().length, 0);
+		assertNull(strategy.getShardingDBs(null, null, null, null, null).get(0).getOwnerFilter());
+	}
+}
@@ -1,5 +1,16 @@
 package org.sagacity.sqltoy.plugins;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.junit.jupiter.api.Test;
 import org.sagacity.sqltoy.utils.IdUtil;
 
@@ -9,4 +20,51 @@ public class IdGeneratorTest {
 		String id = IdUtil.getShortNanoTimeId(null).toPlainString();
 		System.out.println(id);
 	}
+
+	@Test
+	public void testBatchIds() {
+		int count = 100000;
+		BigDecimal[] ids = IdUtil.getShortNanoTimeIds(null, count);
+		HashSet<BigDecimal> idSet = new HashSet<BigDecimal>();
+		for (BigDecimal id : ids) {
+			idSet.add(id);
+			assertEquals(id.toPlainString().length(), ids[0].toPlainString().length());
+		}
+		assertEquals(idSet.size(), count);
+	}
+
+	@Test
+	public void testConcurrentIds() throws Exception {
+		int threads = 8;
+		int loops = 200;
+		Set<BigDecimal> idSet = ConcurrentHashMap.newKeySet();
+		AtomicInteger total = new AtomicInteger(0);
+		ExecutorService executor = Executors.newFixedThreadPool(threads);
+		CountDownLatch latch = new CountDownLatch(threads);
+		for (int t = 0; t < threads; t++) {
+			final boolean batch = (t % 2 == 0);
+			executor.execute(() -> {
+				try {
+					for (int i = 0; i < loops; i++) {
+						// 批量和单个交替并发获取
+						if (batch) {
+							for (BigDecimal id : IdUtil.getShortNanoTimeIds(null, 500)) {
+								idSet.add(id);
+								total.incrementAndGet();
+							}
+						} else {
+							idSet.add(IdUtil.getShortNanoTimeId(null));
+							total.incrementAndGet();
+						}
+					}
+				} finally {
+					latch.countDown();
+				}
+			});
+		}
+		latch.await();
+		executor.shutdown();
+		assertEquals(total.get(), threads / 2 * loops * 501);
+		assertEquals(idSet.size(), total.get());
+	}
 }
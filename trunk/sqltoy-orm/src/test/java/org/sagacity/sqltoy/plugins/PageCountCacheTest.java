@@ -0,0 +1,46 @@
+package org.sagacity.sqltoy.plugins;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.config.model.PageOptimize;
+import org.sagacity.sqltoy.plugins.cache.impl.DefaultPageCountCache;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 分页count缓存淘汰逻辑验证
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-08
+ */
+public class PageCountCacheTest {
+	@Test
+	public void testAliveMax() {
+		DefaultPageCountCache cache = new DefaultPageCountCache();
+		PageOptimize pageOptimize = new PageOptimize().aliveMax(100).aliveSeconds(60);
+		for (long i = 0; i < 150; i++) {
+			cache.put("sqltoy_showcase", i, i * 10, pageOptimize);
+		}
+		// 最早进入的50个被淘汰
+		assertNull(cache.get("sqltoy_showcase", 10L));
+		assertEquals(cache.get("sqltoy_showcase", 120L), Long.valueOf(1200));
+		assertEquals(cache.size(), 100);
+		// 重复登记不增加数量
+		cache.put("sqltoy_showcase", 120L, 1300L, pageOptimize);
+		assertEquals(cache.get("sqltoy_showcase", 120L), Long.valueOf(1300));
+		assertEquals(cache.size(), 100);
+		cache.remove("sqltoy_showcase");
+		assertEquals(cache.size(), 0);
+	}
+
+	@Test
+	public void testMaxEntries() {
+		DefaultPageCountCache cache = new DefaultPageCountCache();
+		cache.setMaxEntries(50);
+		PageOptimize pageOptimize = new PageOptimize().aliveMax(1000).aliveSeconds(60);
+		for (long i = 0; i < 80; i++) {
+			cache.put("sql_" + (i % 2), i, i, pageOptimize);
+		}
+		assertEquals(cache.size(), 50);
+	}
+}
@@ -0,0 +1,115 @@
+package org.sagacity.sqltoy.plugins;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import javax.sql.DataSource;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.SqlExecuteStat;
+import org.sagacity.sqltoy.config.model.SqlToyConfig;
+import org.sagacity.sqltoy.model.ShardingDBModel;
+import org.sagacity.sqltoy.plugins.sharding.ShardingUtils;
+import org.sagacity.sqltoy.plugins.sharding.impl.ReadWriteShardingStrategy;
+import org.springframework.context.support.StaticApplicationContext;
+
+@SuppressWarnings("rawtypes")
+public class ReadWriteShardingTest {
+
+	private DataSource mockDataSource(final AtomicBoolean fail) {
+		return (DataSource) Proxy.newProxyInstance(DataSource.class.getClassLoader(),
+				new Class[] { DataSource.class }, (proxy, method, args) -> {
+					if ("getConnection".equals(method.getName())) {
+						if (fail.get()) {
+							throw new SQLException("connection refused");
+						}
+						return mock(Connection.class);
+					}
+					return null;
+				});
+	}
+
+	// 模拟mysql8的连接、元数据、语句和结果集(结果集无记录)
+	private Object mock(Class type) {
+		return Proxy.newProxyInstance(type.getClassLoader(), new Class[] { type }, (proxy, method, args) -> {
+			Class returnType = method.getReturnType();
+			if (returnType.isInterface()) {
+				return mock(returnType);
+			}
+			if (returnType == String.class) {
+				return "MySQL";
+			}
+			if (returnType == int.class) {
+				return 8;
+			}
+			if (returnType == boolean.class) {
+				return false;
+			}
+			return null;
+		});
+	}
+
+	@Test
+	public void testFailover() throws Exception {
+		StaticApplicationContext context = new StaticApplicationContext();
+		AtomicBoolean replica1Fail = new AtomicBoolean(true);
+		context.getBeanFactory().registerSingleton("replica1", mockDataSource(replica1Fail));
+		AtomicBoolean replica2Fail = new AtomicBoolean(false);
+		context.getBeanFactory().registerSingleton("replica2", mockDataSource(replica2Fail));
+		ReadWriteShardingStrategy strategy = new ReadWriteShardingStrategy();
+		strategy.setApplicationContext(context);
+		strategy.setPrimary("primary");
+		strategy.setReplicas("replica1,replica2");
+		strategy.setCheckSeconds(0);
+		strategy.setRetrySeconds(1);
+		strategy.initialize();
+		assertEquals(strategy.getShardingDB(null, null, "sqlId", "write", null).getDataSourceName(), "primary");
+		// 非查询语句由ShardingUtils判定为写操作
+		assertTrue(ShardingUtils.isWriteSql(new SqlToyConfig("sqlId", "update sys_staff set status=1")));
+		assertTrue(ShardingUtils.isWriteSql(new SqlToyConfig("sqlId", "select * from sys_staff for update")));
+		assertFalse(ShardingUtils.isWriteSql(new SqlToyConfig("sqlId", "(select * from sys_staff)")));
+		// 故障从库获取连接失败后被剔除,后续读取全部落到另一个从库
+		boolean failed = false;
+		while (!failed) {
+			ShardingDBModel model = strategy.getShardingDB(null, null, "sqlId", null, null);
+			if ("replica1".equals(model.getDataSourceName())) {
+				assertThrows(SQLException.class, () -> model.getDataSource().getConnection());
+				failed = true;
+			} else {
+				model.getDataSource().getConnection().close();
+			}
+		}
+		for (int i = 0; i < 20; i++) {
+			assertEquals(strategy.getShardingDB(null, null, "sqlId", null, null).getDataSourceName(), "replica2");
+		}
+		// 从库恢复后,到达重试时间在读取时检测恢复
+		replica1Fail.set(false);
+		replica2Fail.set(true);
+		Thread.sleep(1100);
+		ShardingDBModel model = strategy.getShardingDB(null, null, "sqlId", null, null);
+		if ("replica2".equals(model.getDataSourceName())) {
+			assertThrows(SQLException.class, () -> model.getDataSource().getConnection());
+		}
+		assertEquals(strategy.getShardingDB(null, null, "sqlId", null, null).getDataSourceName(), "replica1");
+		// 无请求范围和事务的写操作不会使线程粘滞主库
+		SqlExecuteStat.affectRows(1L);
+		assertNotEquals(strategy.getShardingDB(null, null, "sqlId", null, null).getDataSourceName(), "primary");
+		// 请求范围内写操作之后短时间内读主库,范围结束后清除
+		SqlExecuteStat.openWriteScope();
+		try {
+			SqlExecuteStat.affectRows(1L);
+			assertEquals(strategy.getShardingDB(null, null, "sqlId", null, null).getDataSourceName(), "primary");
+		} finally {
+			SqlExecuteStat.closeWriteScope();
+		}
+		assertNotEquals(strategy.getShardingDB(null, null, "sqlId", null, null).getDataSourceName(), "primary");
+	}
+}
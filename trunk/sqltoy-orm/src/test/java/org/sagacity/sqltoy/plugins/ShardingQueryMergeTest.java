@@ -0,0 +1,75 @@
+package org.sagacity.sqltoy.plugins;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.plugins.sharding.ShardingQueryUtils;
+import org.sagacity.sqltoy.plugins.sharding.ShardingQueryUtils.MergeModel;
+
+public class ShardingQueryMergeTest {
+
+	@Test
+	public void testOrderMerge() {
+		MergeModel model = ShardingQueryUtils
+				.parseMerge("select id,name,amt from trans t where t.status=:status order by amt desc,id", false);
+		List<List> shardRows = new ArrayList<List>();
+		shardRows.add(Arrays.asList(Arrays.asList(1, "a", 90), Arrays.asList(4, "d", 50), Arrays.asList(5, "e", 10)));
+		shardRows.add(Arrays.asList(Arrays.asList(2, "b", 80), Arrays.asList(3, "c", 50)));
+		String[] labels = { "id", "name", "amt" };
+		List rows = ShardingQueryUtils.merge(model, shardRows, labels, false, false);
+		assertEquals(rows.size(), 5);
+		assertEquals(((List) rows.get(2)).get(0), 3);
+		// 第二页(每页2条),各分片取前4条
+		List page = ShardingQueryUtils.mergePage(model, shardRows, new long[] { 3, 2 }, labels, false, false, 2, 2);
+		assertEquals(((List) page.get(0)).get(0), 3);
+		assertEquals(((List) page.get(1)).get(0), 4);
+	}
+
+	@Test
+	public void testIgnoreCaseMerge() {
+		MergeModel model = ShardingQueryUtils
+				.parseMerge("select org_id,count(1) cnt,min(name) min_name from trans group by org_id order by org_id", false);
+		List<List> shardRows = new ArrayList<List>();
+		shardRows.add(Arrays.asList(Arrays.asList("a", 1L, "Tom"), Arrays.asList("C", 2L, "bob")));
+		shardRows.add(Arrays.asList(Arrays.asList("A", 3L, "Ann"), Arrays.asList("b", 1L, "Jim")));
+		String[] labels = { "org_id", "cnt", "min_name" };
+		// 不区分大小写的排序规则:a与A为同一分组,按字母顺序排序
+		List rows = ShardingQueryUtils.merge(model, shardRows, labels, false, true);
+		assertEquals(3, rows.size());
+		assertEquals(Arrays.asList("a", 4L, "Ann"), rows.get(0));
+		assertEquals("b", ((List) rows.get(1)).get(0));
+		assertEquals("C", ((List) rows.get(2)).get(0));
+		// 区分大小写:按二进制顺序,a与A为不同分组
+		rows = ShardingQueryUtils.merge(model, shardRows, labels, false, false);
+		assertEquals(4, rows.size());
+		assertEquals("A", ((List) rows.get(0)).get(0));
+		assertEquals("C", ((List) rows.get(1)).get(0));
+	}
+
+	@Test
+	public void testAggregateMerge() {
+		String sql = "select org_id,count(1) cnt,max(amt) max_amt,avg(amt) avg_amt from trans group by org_id order by cnt desc";
+		MergeModel model = ShardingQueryUtils.parseMerge(sql, false);
+		assertEquals(model.getRewriteSql(),
+				"select org_id,count(1) cnt,max(amt) max_amt,sum(amt) avg_amt,count(amt) sag_avg_cnt0 from trans group by org_id order by cnt desc");
+		List<List> shardRows = new ArrayList<List>();
+		shardRows.add(Arrays.asList(Arrays.asList("A", 2L, 30, new BigDecimal(40), 2L),
+				Arrays.asList("B", 1L, 5, new BigDecimal(5), 1L)));
+		shardRows.add(Arrays.asList(Arrays.asList("B", 3L, 20, new BigDecimal(25), 3L)));
+		String[] labels = { "org_id", "cnt", "max_amt", "avg_amt", "sag_avg_cnt0" };
+		List rows = ShardingQueryUtils.merge(model, shardRows, labels, false, false);
+		assertEquals(rows.size(), 2);
+		assertEquals(rows.get(0), Arrays.asList("B", 4L, 20, new BigDecimal("7.5")));
+		assertEquals(ShardingQueryUtils.trimLabels(model, labels).length, 4);
+		assertThrows(IllegalArgumentException.class,
+				() -> ShardingQueryUtils.parseMerge("select count(distinct staff_id) from trans", false));
+		assertThrows(IllegalArgumentException.class, () -> ShardingQueryUtils
+				.parseMerge("select org_id,sum(amt) from trans group by org_id having sum(amt)>10", false));
+	}
+}
@@ -0,0 +1,53 @@
+package org.sagacity.sqltoy.plugins;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.plugins.metrics.LatencyHistogram;
+import org.sagacity.sqltoy.plugins.metrics.SqlMetric;
+import org.sagacity.sqltoy.plugins.metrics.SqlMetricsRegistry;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证执行指标直方图分位值精度以及sql指标数量上限
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-18
+ */
+public class SqlMetricsTest {
+
+	@Test
+	public void testHistogram() {
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (long i = 1; i <= 10000; i++) {
+			histogram.record(i * 100);
+		}
+		assertEquals(histogram.getTotalCount(), 10000);
+		long p50 = histogram.getValueAtPercentile(50);
+		long p99 = histogram.getValueAtPercentile(99);
+		// 分桶相对误差不超过1/16
+		assertTrue(Math.abs(p50 - 500000) <= 500000 / 16, "p50=" + p50);
+		assertTrue(Math.abs(p99 - 990000) <= 990000 / 16, "p99=" + p99);
+		histogram.reset();
+		assertEquals(histogram.getValueAtPercentile(99), 0);
+	}
+
+	@Test
+	public void testRegistry() {
+		SqlMetricsRegistry registry = new SqlMetricsRegistry(2);
+		SqlMetric metric = registry.getSqlMetric("sqlA", "query");
+		metric.record(2000, false, false, 10, 0, 0);
+		metric.record(4000, true, true, 0, 0, 0);
+		assertTrue(metric == registry.getSqlMetric("sqlA", "query"));
+		assertEquals(metric.getCount(), 2);
+		assertEquals(metric.getErrorCount(), 1);
+		assertEquals(metric.getRowsFetched(), 10);
+		assertEquals(metric.getMeanMillis(), 3.0d);
+		registry.getSqlMetric("sqlB", "query");
+		// 超出上限归入@others
+		assertEquals(registry.getSqlMetric("sqlC", "query").getSqlId(), SqlMetricsRegistry.OTHERS);
+		registry.getCacheMetric(SqlMetricsRegistry.TRANSLATE_CACHE, "staffIdName").hit();
+		registry.getCacheMetric(SqlMetricsRegistry.TRANSLATE_CACHE, "staffIdName").miss();
+		assertEquals(registry.getCacheMetrics().get(0).getHitRate(), 0.5d);
+	}
+}
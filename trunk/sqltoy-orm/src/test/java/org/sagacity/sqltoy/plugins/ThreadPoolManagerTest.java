@@ -0,0 +1,80 @@
+package org.sagacity.sqltoy.plugins;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.exception.DataAccessException;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolManager;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolMetrics;
+import org.sagacity.sqltoy.plugins.threadpool.impl.DefaultThreadPoolManager;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证共享线程池按顺序返回结果、限制单批并行数量以及超时取消
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-17
+ */
+public class ThreadPoolManagerTest {
+
+	@Test
+	public void testInvokeAll() throws Exception {
+		ThreadPoolManager manager = new DefaultThreadPoolManager();
+		manager.initialize(null);
+		final AtomicInteger running = new AtomicInteger(0);
+		final AtomicInteger maxRunning = new AtomicInteger(0);
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		for (int i = 0; i < 12; i++) {
+			final int index = i;
+			tasks.add(() -> {
+				maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+				Thread.sleep(20 - index);
+				running.decrementAndGet();
+				return index;
+			});
+		}
+		List<Integer> result = manager.invokeAll(ThreadPoolManager.SHARDING, tasks, 3, 10);
+		for (int i = 0; i < 12; i++) {
+			assertEquals(i, result.get(i).intValue());
+		}
+		assertTrue(maxRunning.get() <= 3);
+		// 执行器在任务结果返回后才登记完成数量,关闭并等待线程池结束后再校验
+		ExecutorService executor = manager.getExecutor(ThreadPoolManager.SHARDING);
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(10, TimeUnit.SECONDS));
+		List<ThreadPoolMetrics> metrics = manager.getMetrics();
+		assertEquals(1, metrics.size());
+		assertEquals(12, metrics.get(0).getCompletedCount());
+		manager.destroy();
+	}
+
+	@Test
+	public void testTimeout() throws Exception {
+		ThreadPoolManager manager = new DefaultThreadPoolManager();
+		manager.initialize(null);
+		final AtomicInteger interrupted = new AtomicInteger(0);
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>();
+		tasks.add(() -> 1);
+		tasks.add(() -> {
+			try {
+				Thread.sleep(10000);
+			} catch (InterruptedException e) {
+				interrupted.incrementAndGet();
+			}
+			return 2;
+		});
+		assertThrows(DataAccessException.class, () -> manager.invokeAll(ThreadPoolManager.PARALL_QUERY, tasks, 0, 1));
+		// 超时的任务被取消(中断)
+		Thread.sleep(200);
+		assertEquals(1, interrupted.get());
+		manager.destroy();
+	}
+}
@@ -0,0 +1,236 @@
+package org.sagacity.sqltoy.translate;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.translate.cache.TranslateDictionary;
+import org.sagacity.sqltoy.translate.cache.TranslateDictionaryMap;
+import org.sagacity.sqltoy.utils.StringUtil;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证TranslateDictionary与HashMap<String,Object[]>匹配结果一致、增量变更叠加,并对比两者性能
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-14
+ */
+@SuppressWarnings("unchecked")
+public class TranslateDictionaryTest {
+
+	@Test
+	public void testAsMap() throws Exception {
+		HashMap<String, Object[]> cacheData = new HashMap<String, Object[]>();
+		cacheData.put("S001", new Object[] { "S001", "张三" });
+		cacheData.put("S002", new Object[] { "S002", "李四" });
+		TranslateDictionary dictionary = TranslateDictionary.of(cacheData)
+				.apply(Collections.singletonMap("S001", (Object[]) null));
+		TranslateDictionaryMap view = dictionary.asMap();
+		assertEquals(view.size(), 1);
+		assertNull(view.get("S001"));
+		assertEquals(view.get("S002")[1], "李四");
+		assertEquals(view.keySet().toString(), "[S002]");
+		assertEquals(view.entrySet().size(), 1);
+		// 只读视图,修改抛出异常而不是静默丢失
+		assertThrows(UnsupportedOperationException.class, () -> view.put("S003", new Object[] { "S003", "王五" }));
+		assertThrows(UnsupportedOperationException.class, () -> view.remove("S002"));
+		// 视图再次构造字典直接复用
+		assertSame(TranslateDictionary.of(view), dictionary);
+		HashMap<String, Object[]> copy = (HashMap<String, Object[]>) view.clone();
+		copy.put("S003", new Object[] { "S003", "王五" });
+		assertEquals(copy.size(), 2);
+		assertEquals(view.size(), 1);
+		// 序列化(如ehcache堆外、磁盘存储)写出普通HashMap副本
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(view);
+		}
+		Object restored;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			restored = in.readObject();
+		}
+		assertEquals(HashMap.class, restored.getClass());
+		assertEquals("李四", ((HashMap<String, Object[]>) restored).get("S002")[1]);
+	}
+
+	@Test
+	public void testLongKey() {
+		HashMap<String, Object[]> cacheData = new HashMap<String, Object[]>();
+		cacheData.put("1", new Object[] { "1", "机构1" });
+		cacheData.put("-20", new Object[] { "-20", "机构20", "扩展" });
+		cacheData.put("0", new Object[] { "0", null });
+		cacheData.put("30", new Object[] {});
+		TranslateDictionary dictionary = TranslateDictionary.of(cacheData);
+		assertTrue(dictionary.isLongKey());
+		// 空数组的记录忽略
+		assertEquals(dictionary.size(), 3);
+		assertEquals(dictionary.getValue(dictionary.indexOf(1), 1), "机构1");
+		assertEquals(dictionary.getValue(dictionary.indexOf(Integer.valueOf(-20)), 2), "扩展");
+		assertEquals(dictionary.getValue(dictionary.indexOf("-20"), 1), "机构20");
+		assertNull(dictionary.getValue(dictionary.indexOf(0L), 1));
+		// 与字符串匹配语义一致:"01"、"1.0"、BigDecimal(1.00) 均不匹配"1"
+		assertEquals(dictionary.indexOf("01"), -1);
+		assertEquals(dictionary.indexOf(1.0d), -1);
+		assertEquals(dictionary.indexOf(new BigDecimal("1.00")), -1);
+		assertEquals(dictionary.indexOf(new BigDecimal("1")), dictionary.indexOf(1));
+		assertEquals(dictionary.indexOf(30), -1);
+		assertArrayEquals(dictionary.get("0"), new Object[] { "0", null, null });
+		assertEquals(dictionary.toMap().size(), 3);
+	}
+
+	@Test
+	public void testStringKey() {
+		HashMap<String, Object[]> cacheData = new HashMap<String, Object[]>();
+		for (int i = 0; i < 1000; i++) {
+			cacheData.put("S" + i, new Object[] { "S" + i, "name" + i, (i % 2 == 0) ? "男" : "女" });
+		}
+		cacheData.put("007", new Object[] { "007", "bond" });
+		TranslateDictionary dictionary = TranslateDictionary.of(cacheData);
+		assertFalse(dictionary.isLongKey());
+		assertEquals(dictionary.getValue(dictionary.indexOf("007"), 1), "bond");
+		assertEquals(dictionary.indexOf(7), -1);
+		for (int i = 0; i < 1000; i++) {
+			assertEquals(dictionary.getValue(dictionary.indexOf("S" + i), 1), "name" + i);
+		}
+		// 相同字符串值共用一个实例
+		assertTrue(dictionary.getValue(dictionary.indexOf("S0"), 2) == dictionary.getValue(dictionary.indexOf("S2"), 2));
+		assertEquals(TranslateDictionary.EMPTY.indexOf("S0"), -1);
+	}
+
+	@Test
+	public void testApplyChanges() {
+		HashMap<String, Object[]> cacheData = new HashMap<String, Object[]>();
+		for (int i = 0; i < 100; i++) {
+			cacheData.put(Integer.toString(i), new Object[] { Integer.toString(i), "name" + i });
+		}
+		TranslateDictionary dictionary = TranslateDictionary.of(cacheData);
+		LinkedHashMap<String, Object[]> changes = new LinkedHashMap<String, Object[]>();
+		changes.put("1", new Object[] { "1", "new1", "扩展" });
+		changes.put("2", null);
+		changes.put("S100", new Object[] { "S100", "name100" });
+		TranslateDictionary next = dictionary.apply(changes);
+		assertTrue(next.isOverlay());
+		assertFalse(next.isLongKey());
+		// 原版本不变
+		assertEquals(dictionary.getValue(dictionary.indexOf(1), 1), "name1");
+		assertEquals(dictionary.getValue(dictionary.indexOf(2), 1), "name2");
+		assertEquals(next.size(), 100);
+		assertEquals(next.getValue(next.indexOf(1), 2), "扩展");
+		assertNull(next.getValue(next.indexOf(3), 2));
+		assertEquals(next.indexOf(2), -1);
+		assertEquals(next.getValue(next.indexOf("S100"), 1), "name100");
+		// 再次变更:删除变更层中的记录,恢复被删除的记录
+		changes.clear();
+		changes.put("S100", new Object[] {});
+		changes.put("2", new Object[] { "2", "back2" });
+		next = next.apply(changes);
+		assertEquals(next.indexOf("S100"), -1);
+		assertEquals(next.getValue(next.indexOf(2L), 1), "back2");
+		int live = 0;
+		for (int row = 0; row < next.getRowCount(); row++) {
+			if (!next.isDeleted(row)) {
+				live++;
+			}
+		}
+		assertEquals(live, next.size());
+		TranslateDictionary compacted = next.compact();
+		assertFalse(compacted.isOverlay());
+		assertTrue(compacted.isLongKey());
+		assertEquals(compacted.toMap().keySet(), next.toMap().keySet());
+		assertEquals(compacted.getValue(compacted.indexOf(1), 1), "new1");
+	}
+
+	@Test
+	public void testPerformance() {
+		int size = 300000;
+		HashMap<String, Object[]> cacheData = new HashMap<String, Object[]>();
+		for (int i = 0; i < size; i++) {
+			cacheData.put(Integer.toString(i), new Object[] { Integer.toString(i), "staff" + i, "organ" + (i % 100) });
+		}
+		TranslateDictionary dictionary = TranslateDictionary.of(cacheData);
+		Long[] keys = new Long[size];
+		for (int i = 0; i < size; i++) {
+			keys[i] = Long.valueOf((i * 7919L) % size);
+		}
+		Object value = null;
+		for (int loop = 0; loop < 3; loop++) {
+			for (Long key : keys) {
+				value = cacheData.get(key.toString())[1];
+				value = dictionary.getValue(dictionary.indexOf(key), 1);
+			}
+		}
+		long start = System.nanoTime();
+		for (Long key : keys) {
+			value = cacheData.get(key.toString())[1];
+		}
+		long mapTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		for (Long key : keys) {
+			value = dictionary.getValue(dictionary.indexOf(key), 1);
+		}
+		long dictTime = System.nanoTime() - start;
+		assertEquals(value, cacheData.get(keys[size - 1].toString())[1]);
+		System.err.println("HashMap:" + mapTime / 1000000 + "ms,TranslateDictionary:" + dictTime / 1000000 + "ms");
+	}
+
+	@Test
+	public void testLike() {
+		String[] surnames = { "张", "王", "李", "赵", "Zhang", "Wang" };
+		String[] names = { "三", "小明", "建国", "Wei", "Fang", "伟 峰" };
+		HashMap<String, Object[]> cacheData = new HashMap<String, Object[]>();
+		for (int i = 0; i < 5000; i++) {
+			cacheData.put("S" + i, new Object[] { "S" + i, surnames[i % surnames.length] + names[(i / 7) % names.length],
+					(i % 3 == 0) ? null : "dept" + (i % 10) });
+		}
+		TranslateDictionary dictionary = TranslateDictionary.of(cacheData);
+		String[][] queries = { { "张" }, { "王", "明" }, { "zhang" }, { "ngw" }, { "w" }, { "dept3" }, { "伟", "峰" },
+				{ "不存在" } };
+		int[] matchColumns = { 1, 2 };
+		for (String[] keywords : queries) {
+			assertArrayEquals(likeScan(dictionary, matchColumns, keywords), dictionary.like(matchColumns, keywords));
+		}
+		// 叠加模式:删除、修改后检索结果同步变化
+		LinkedHashMap<String, Object[]> changes = new LinkedHashMap<String, Object[]>();
+		changes.put("S0", null);
+		changes.put("S6", new Object[] { "S6", "李四", null });
+		changes.put("S9999", new Object[] { "S9999", "张小明", null });
+		TranslateDictionary overlay = dictionary.apply(changes);
+		for (String[] keywords : queries) {
+			assertArrayEquals(likeScan(overlay, matchColumns, keywords), overlay.like(matchColumns, keywords));
+		}
+		assertEquals(overlay.like(new int[] { 1 }, new String[] { "李四" }).length, 1);
+	}
+
+	private int[] likeScan(TranslateDictionary dictionary, int[] matchColumns, String[] keywords) {
+		List<Integer> rows = new ArrayList<Integer>();
+		Object value;
+		for (int row = 0; row < dictionary.getRowCount(); row++) {
+			if (dictionary.isDeleted(row)) {
+				continue;
+			}
+			for (int column : matchColumns) {
+				value = dictionary.getValue(row, column);
+				if (value != null && StringUtil.like(value.toString().toLowerCase(), keywords)) {
+					rows.add(row);
+					break;
+				}
+			}
+		}
+		return rows.stream().mapToInt(Integer::intValue).toArray();
+	}
+}
@@ -0,0 +1,127 @@
+package org.sagacity.sqltoy.utils;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.lang.reflect.Method;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.demo.vo.StaffInfoVO;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证BeanAccessor与反射方式结果一致,并对比两者性能
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-12
+ */
+public class BeanAccessorTest {
+
+	// 非public类走MethodHandle方式
+	static class InnerVO {
+		private long id;
+		private int count;
+		private BigDecimal amount;
+		private boolean enabled;
+
+		public long getId() {
+			return id;
+		}
+
+		public InnerVO setId(long id) {
+			this.id = id;
+			return this;
+		}
+
+		public int getCount() {
+			return count;
+		}
+
+		public void setCount(int count) {
+			this.count = count;
+		}
+
+		public BigDecimal getAmount() {
+			return amount;
+		}
+
+		public void setAmount(BigDecimal amount) {
+			this.amount = amount;
+		}
+
+		public boolean isEnabled() {
+			return enabled;
+		}
+
+		public void setEnabled(boolean enabled) {
+			this.enabled = enabled;
+		}
+	}
+
+	@Test
+	public void testListToBean() {
+		List rows = new ArrayList();
+		rows.add(Arrays.asList("S0001", "chen", "2021-05-12", 1L, "N001"));
+		rows.add(null);
+		rows.add(Arrays.asList("S0002", null, LocalDate.of(2020, 1, 1), new BigDecimal(2), "N002"));
+		String[] props = { "staff_id", "staffName", "birthday", "status", "noneExist" };
+		List<StaffInfoVO> result = BeanUtil.reflectListToBean(null, rows, props, StaffInfoVO.class);
+		assertEquals(result.size(), 3);
+		assertEquals(result.get(0).getStaffId(), "S0001");
+		assertEquals(result.get(0).getBirthday(), LocalDate.of(2021, 5, 12));
+		assertEquals(result.get(0).getStatus(), Integer.valueOf(1));
+		assertNull(result.get(1));
+		assertNull(result.get(2).getStaffName());
+		assertEquals(result.get(2).getStatus(), Integer.valueOf(2));
+
+		Object[] values = BeanUtil.reflectBeanToAry(result.get(0), new String[] { "staffId", "staffName", "staffId" });
+		assertArrayEquals(values, new Object[] { "S0001", "chen", "S0001" });
+	}
+
+	@Test
+	public void testNonPublicClass() {
+		List rows = new ArrayList();
+		rows.add(new Object[] { "12", 3L, "10.5", "1" });
+		List<InnerVO> result = BeanUtil.reflectListToBean(null, rows, new String[] { "id", "count", "amount", "enabled" },
+				InnerVO.class);
+		InnerVO vo = result.get(0);
+		assertEquals(vo.getId(), 12L);
+		assertEquals(vo.getCount(), 3);
+		assertEquals(vo.getAmount(), new BigDecimal("10.5"));
+		assertEquals(vo.isEnabled(), true);
+		List<Object[]> ary = BeanUtil.reflectBeansToInnerAry(result, new String[] { "id", "amount", "enabled", "none" },
+				new Object[] { null, null, null, "def" }, null);
+		assertArrayEquals(ary.get(0), new Object[] { 12L, new BigDecimal("10.5"), true, "def" });
+	}
+
+	@Test
+	public void testPerformance() throws Exception {
+		String[] props = { "staffId", "staffCode", "staffName", "organId", "sexType", "email", "telNo", "status" };
+		List rows = new ArrayList();
+		for (int i = 0; i < 100000; i++) {
+			rows.add(Arrays.asList("S" + i, "C" + i, "name" + i, "100001", "F", "a@b.com", "13800000000", i % 2));
+		}
+		BeanUtil.reflectListToBean(null, rows, props, StaffInfoVO.class);
+		Method[] methods = BeanUtil.matchSetMethods(StaffInfoVO.class, props);
+		long start = System.nanoTime();
+		List row;
+		Object bean;
+		for (int i = 0; i < rows.size(); i++) {
+			row = (List) rows.get(i);
+			bean = StaffInfoVO.class.getDeclaredConstructor().newInstance();
+			for (int j = 0; j < props.length; j++) {
+				methods[j].invoke(bean, row.get(j));
+			}
+		}
+		long reflectTime = System.nanoTime() - start;
+		start = System.nanoTime();
+		BeanUtil.reflectListToBean(null, rows, props, StaffInfoVO.class);
+		long accessorTime = System.nanoTime() - start;
+		System.err.println("反射:" + reflectTime / 1000000 + "ms,BeanAccessor:" + accessorTime / 1000000 + "ms");
+	}
+}
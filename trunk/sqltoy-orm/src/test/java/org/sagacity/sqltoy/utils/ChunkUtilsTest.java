@@ -0,0 +1,62 @@
+package org.sagacity.sqltoy.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.plugins.threadpool.impl.DefaultThreadPoolManager;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证分块流水线执行:块大小、顺序、进度反调以及数据源读取和单块执行都在调用线程
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+public class ChunkUtilsTest {
+	@Test
+	public void testExecute() {
+		SqlToyContext sqlToyContext = new SqlToyContext();
+		DefaultThreadPoolManager threadPoolManager = new DefaultThreadPoolManager();
+		threadPoolManager.initialize(sqlToyContext);
+		sqlToyContext.setThreadPoolManager(threadPoolManager);
+		List<Integer> executed = new ArrayList<Integer>();
+		List<Integer> chunkSizes = new ArrayList<Integer>();
+		Thread caller = Thread.currentThread();
+		Iterator<Integer> values = IntStream.range(0, 10).boxed().iterator();
+		// 数据源只在调用线程中读取
+		Iterator<Integer> source = new Iterator<Integer>() {
+			@Override
+			public boolean hasNext() {
+				assertTrue(Thread.currentThread() == caller);
+				return values.hasNext();
+			}
+
+			@Override
+			public Integer next() {
+				assertTrue(Thread.currentThread() == caller);
+				return values.next();
+			}
+		};
+		Long result = ChunkUtils.execute(sqlToyContext, source, 3, false, chunk -> {
+			// 单块在调用线程中执行(保持事务连接)
+			assertTrue(Thread.currentThread() == caller);
+			executed.addAll(chunk);
+			return Long.valueOf(chunk.size());
+		}, (chunkNo, chunkRows, totalRows, affectRows) -> {
+			chunkSizes.add(chunkRows);
+			assertEquals(totalRows, affectRows);
+		});
+		assertEquals(result.longValue(), 10L);
+		assertEquals(chunkSizes.toString(), "[3, 3, 3, 1]");
+		for (int i = 0; i < 10; i++) {
+			assertEquals(executed.get(i).intValue(), i);
+		}
+		threadPoolManager.destroy();
+	}
+}
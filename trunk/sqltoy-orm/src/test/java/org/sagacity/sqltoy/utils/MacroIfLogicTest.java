@@ -79,6 +79,29 @@ public class MacroIfLogicTest {
 		assertEquals(result, true);
 	}
 
+	// &&优先于||以及括号
+	@Test
+	public void testPrecedence() {
+		String sql = ":status=='1' || :type>=3 && :name include 'sql'";
+		List params = new ArrayList();
+		params.add(2);
+		params.add(5);
+		params.add("sqltoy");
+		assertEquals(MacroIfLogic.evalLogic(sql, params, 0, params.size()), true);
+		params.set(2, "orm");
+		assertEquals(MacroIfLogic.evalLogic(sql, params, 0, params.size()), false);
+		sql = "(:status=='1' || :type>=3) && !(length(:ids)>2)";
+		params.clear();
+		params.add(2);
+		params.add(5);
+		params.add(new Object[] { 1, 2 });
+		assertEquals(MacroIfLogic.evalLogic(sql, params, 0, params.size()), true);
+		MacroIfExpression express = MacroIfExpression.compile(sql);
+		assertEquals(express.getCompareCount(), 3);
+		assertEquals(express.evaluate(new Object[] { "1", 0, new Object[] { 1, 2, 3 } }, null, 0), false);
+		assertEquals(express.evaluate(new Object[] { null, 2, null, 0, null }, new int[] { 1, 3, 4 }, 0), false);
+	}
+
 	@Test
 	public void testSplit() {
 		String sql = ":status   '1,2,4'";
@@ -26,7 +26,7 @@ public class PageOptimizeThread extends Thread {
 	public void run() {
 		while (true) {
 			// 验证超量则需要随机记录>aliveMax,验证超时尽量将量控制在aliveMax边缘
-			String key = "key_" + NumberUtil.getRandomNum(1, 250);
+			long key = NumberUtil.getRandomNum(1, 250);
 			try {
 				// 每次操作间隔在3~50秒之间
 				Thread.sleep(NumberUtil.getRandomNum(3, 25) * 1000);
@@ -0,0 +1,64 @@
+package org.sagacity.sqltoy.utils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.sagacity.sqltoy.model.TreeTableModel;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 验证树形表节点等级、路径、叶子标记的内存计算以及只输出变化的记录
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-20
+ */
+@SuppressWarnings("rawtypes")
+public class TreeRouteUtilsTest {
+	@Test
+	public void testCompute() {
+		TreeTableModel treeModel = new TreeTableModel("sys_organ", "-1", "organ_id", "organ_pid", "node_route",
+				"node_level", "is_leaf", true, -1);
+		List<Object[]> nodes = new ArrayList<Object[]>();
+		nodes.add(new Object[] { "100", "-1", null, null, null });
+		nodes.add(new Object[] { "101", "100", null, null, null });
+		nodes.add(new Object[] { "102", "100", null, null, null });
+		nodes.add(new Object[] { "201", "101", null, null, null });
+		List<List>[] result = TreeRouteUtils.compute(treeModel, nodes);
+		assertEquals(result[0].size(), 4);
+		assertEquals(result[1].size(), 0);
+		assertEquals(result[0].get(0).toString(), "[1, -1,100,, 0, 100]");
+		assertEquals(result[0].get(3).toString(), "[3, -1,100,101,201,, 1, 201]");
+
+		// 再次计算结果一致,不需要修改
+		for (int i = 0; i < nodes.size(); i++) {
+			List row = result[0].get(i);
+			nodes.get(i)[2] = row.get(0);
+			nodes.get(i)[3] = row.get(1);
+			nodes.get(i)[4] = row.get(2);
+		}
+		assertEquals(TreeRouteUtils.compute(treeModel, nodes)[0].size(), 0);
+
+		// 仅修改一个节点的父节点,只有该节点路径发生变化,原父节点变成叶子
+		nodes.get(3)[1] = "102";
+		result = TreeRouteUtils.compute(treeModel, nodes);
+		assertEquals(result[0].size(), 3);
+		assertEquals(result[0].get(2).toString(), "[3, -1,100,102,201,, 1, 201]");
+	}
+
+	@Test
+	public void testComputeWithIdLength() {
+		TreeTableModel treeModel = new TreeTableModel("sys_organ", 0, "organ_id", "organ_pid", "node_route",
+				"node_level", null, false, 4);
+		List<Object[]> nodes = new ArrayList<Object[]>();
+		nodes.add(new Object[] { 1, 0, 1, "0000,0001", null });
+		nodes.add(new Object[] { 2, 1, null, null, null });
+		// 循环引用的数据不参与计算
+		nodes.add(new Object[] { 8, 9, null, null, null });
+		nodes.add(new Object[] { 9, 8, null, null, null });
+		List<List>[] result = TreeRouteUtils.compute(treeModel, nodes);
+		assertEquals(result[0].size(), 1);
+		assertEquals(result[0].get(0).toString(), "[2, 0000,0001,0002, 2]");
+	}
+}
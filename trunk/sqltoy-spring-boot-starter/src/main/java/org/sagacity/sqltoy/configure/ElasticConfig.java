@@ -72,6 +72,21 @@ public class ElasticConfig implements Serializable {
 
 	private Integer socketTimeout;
 
+	/**
+	 * 连接池最大连接数
+	 */
+	private Integer maxConnTotal;
+
+	/**
+	 * 每个节点最大连接数
+	 */
+	private Integer maxConnPerRoute;
+
+	/**
+	 * 空闲连接保持时长(秒)
+	 */
+	private Integer keepAliveSeconds;
+
 	/**
 	 * 字符集,默认UTF-8
 	 */
@@ -197,6 +212,30 @@ public class ElasticConfig implements Serializable {
 		this.socketTimeout = socketTimeout;
 	}
 
+	public Integer getMaxConnTotal() {
+		return maxConnTotal;
+	}
+
+	public void setMaxConnTotal(Integer maxConnTotal) {
+		this.maxConnTotal = maxConnTotal;
+	}
+
+	public Integer getMaxConnPerRoute() {
+		return maxConnPerRoute;
+	}
+
+	public void setMaxConnPerRoute(Integer maxConnPerRoute) {
+		this.maxConnPerRoute = maxConnPerRoute;
+	}
+
+	public Integer getKeepAliveSeconds() {
+		return keepAliveSeconds;
+	}
+
+	public void setKeepAliveSeconds(Integer keepAliveSeconds) {
+		this.keepAliveSeconds = keepAliveSeconds;
+	}
+
 	public String getCharset() {
 		return charset;
 	}
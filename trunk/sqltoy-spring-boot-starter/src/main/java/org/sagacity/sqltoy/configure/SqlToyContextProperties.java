@@ -138,6 +138,16 @@ public class SqlToyContextProperties implements Serializable {
 	 */
 	private String cacheType = "ehcache";
 
+	/**
+	 * 分页优化总记录数缓存实现(bean名称或类名,如org.sagacity.sqltoy.plugins.cache.impl.RedisPageCountCache)
+	 */
+	private String pageCountCache;
+
+	/**
+	 * 线程池管理实现(bean名称或类名,默认org.sagacity.sqltoy.plugins.threadpool.impl.DefaultThreadPoolManager)
+	 */
+	private String threadPoolManager;
+
 	/**
 	 * @return the sqlResourcesDir
 	 */
@@ -411,4 +421,31 @@ public class SqlToyContextProperties implements Serializable {
 		this.dataSourceSelector = dataSourceSelector;
 	}
 
+	/**
+	 * @return the pageCountCache
+	 */
+	public String getPageCountCache() {
+		return pageCountCache;
+	}
+
+	/**
+	 * @param pageCountCache the pageCountCache to set
+	 */
+	public void setPageCountCache(String pageCountCache) {
+		this.pageCountCache = pageCountCache;
+	}
+
+	/**
+	 * @return the threadPoolManager
+	 */
+	public String getThreadPoolManager() {
+		return threadPoolManager;
+	}
+
+	/**
+	 * @param threadPoolManager the threadPoolManager to set
+	 */
+	public void setThreadPoolManager(String threadPoolManager) {
+		this.threadPoolManager = threadPoolManager;
+	}
 }
@@ -0,0 +1,71 @@
+package org.sagacity.sqltoy.configure;
+
+import org.sagacity.sqltoy.SqlToyContext;
+import org.sagacity.sqltoy.plugins.metrics.CacheMetric;
+import org.sagacity.sqltoy.plugins.metrics.SqlMetric;
+import org.sagacity.sqltoy.plugins.metrics.SqlMetricsListener;
+import org.sagacity.sqltoy.plugins.metrics.SqlMetricsRegistry;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+
+/**
+ * @project sagacity-sqltoy
+ * @description 将sqltoy执行指标注册到micrometer,指标值直接引用SqlMetric、CacheMetric中的计数器,不做二次统计
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-18
+ */
+public class SqlToyMetricsBinder implements MeterBinder {
+	private final SqlToyContext sqlToyContext;
+
+	public SqlToyMetricsBinder(SqlToyContext sqlToyContext) {
+		this.sqlToyContext = sqlToyContext;
+	}
+
+	@Override
+	public void bindTo(MeterRegistry registry) {
+		SqlMetricsRegistry metricsRegistry = sqlToyContext.getMetricsRegistry();
+		// 关闭了指标统计
+		if (metricsRegistry == null) {
+			return;
+		}
+		metricsRegistry.addListener(new SqlMetricsListener() {
+			@Override
+			public void onSqlMetric(SqlMetric sqlMetric) {
+				Tags tags = Tags.of("sqlId", sqlMetric.getSqlId(), "type", sqlMetric.getType());
+				FunctionCounter.builder("sqltoy.sql.executions", sqlMetric, SqlMetric::getCount).tags(tags)
+						.register(registry);
+				FunctionCounter.builder("sqltoy.sql.errors", sqlMetric, SqlMetric::getErrorCount).tags(tags)
+						.register(registry);
+				FunctionCounter.builder("sqltoy.sql.slow", sqlMetric, SqlMetric::getSlowCount).tags(tags)
+						.register(registry);
+				FunctionCounter.builder("sqltoy.sql.rows.fetched", sqlMetric, SqlMetric::getRowsFetched).tags(tags)
+						.register(registry);
+				FunctionCounter.builder("sqltoy.sql.rows.affected", sqlMetric, SqlMetric::getRowsAffected).tags(tags)
+						.register(registry);
+				Gauge.builder("sqltoy.sql.time.mean", sqlMetric, SqlMetric::getMeanMillis).tags(tags)
+						.baseUnit("milliseconds").register(registry);
+				Gauge.builder("sqltoy.sql.time.max", sqlMetric, SqlMetric::getMaxMillis).tags(tags)
+						.baseUnit("milliseconds").register(registry);
+				Gauge.builder("sqltoy.sql.time", sqlMetric, metric -> metric.getPercentileMillis(50))
+						.tags(tags.and("quantile", "0.5")).baseUnit("milliseconds").register(registry);
+				Gauge.builder("sqltoy.sql.time", sqlMetric, metric -> metric.getPercentileMillis(99))
+						.tags(tags.and("quantile", "0.99")).baseUnit("milliseconds").register(registry);
+				Gauge.builder("sqltoy.sql.batch.size.mean", sqlMetric, SqlMetric::getMeanBatchSize).tags(tags)
+						.register(registry);
+			}
+
+			@Override
+			public void onCacheMetric(CacheMetric cacheMetric) {
+				Tags tags = Tags.of("cache", cacheMetric.getType(), "name", cacheMetric.getName());
+				FunctionCounter.builder("sqltoy.cache.hits", cacheMetric, CacheMetric::getHits).tags(tags)
+						.register(registry);
+				FunctionCounter.builder("sqltoy.cache.misses", cacheMetric, CacheMetric::getMisses).tags(tags)
+						.register(registry);
+			}
+		});
+	}
+}
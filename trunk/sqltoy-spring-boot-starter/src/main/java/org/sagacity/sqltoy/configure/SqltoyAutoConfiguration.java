@@ -13,8 +13,10 @@ import org.sagacity.sqltoy.dao.SqlToyLazyDao;
 import org.sagacity.sqltoy.dao.impl.SqlToyLazyDaoImpl;
 import org.sagacity.sqltoy.plugins.IUnifyFieldsHandler;
 import org.sagacity.sqltoy.plugins.TypeHandler;
+import org.sagacity.sqltoy.plugins.cache.PageCountCache;
 import org.sagacity.sqltoy.plugins.datasource.DataSourceSelector;
 import org.sagacity.sqltoy.plugins.datasource.ObtainDataSource;
+import org.sagacity.sqltoy.plugins.threadpool.ThreadPoolManager;
 import org.sagacity.sqltoy.service.SqlToyCRUDService;
 import org.sagacity.sqltoy.service.impl.SqlToyCRUDServiceImpl;
 import org.sagacity.sqltoy.translate.cache.TranslateCacheManager;
@@ -187,6 +189,15 @@ public class SqltoyAutoConfiguration {
 				if (esconfig.getSocketTimeout() != null) {
 					ep.setSocketTimeout(esconfig.getSocketTimeout());
 				}
+				if (esconfig.getMaxConnTotal() != null) {
+					ep.setMaxConnTotal(esconfig.getMaxConnTotal());
+				}
+				if (esconfig.getMaxConnPerRoute() != null) {
+					ep.setMaxConnPerRoute(esconfig.getMaxConnPerRoute());
+				}
+				if (esconfig.getKeepAliveSeconds() != null) {
+					ep.setKeepAliveSeconds(esconfig.getKeepAliveSeconds());
+				}
 				ep.setAuthCaching(esconfig.isAuthCaching());
 				ep.setUsername(esconfig.getUsername());
 				ep.setPassword(esconfig.getPassword());
@@ -257,6 +268,30 @@ public class SqltoyAutoConfiguration {
 						(DataSourceSelector) Class.forName(dataSourceSelector).getDeclaredConstructor().newInstance());
 			}
 		}
+
+		// 自定义分页优化总记录数缓存
+		String pageCountCache = properties.getPageCountCache();
+		if (StringUtil.isNotBlank(pageCountCache)) {
+			if (applicationContext.containsBean(pageCountCache)) {
+				sqlToyContext.setPageCountCache((PageCountCache) applicationContext.getBean(pageCountCache));
+			} // 包名和类名称
+			else if (pageCountCache.contains(".")) {
+				sqlToyContext.setPageCountCache(
+						(PageCountCache) Class.forName(pageCountCache).getDeclaredConstructor().newInstance());
+			}
+		}
+
+		// 自定义线程池管理
+		String threadPoolManager = properties.getThreadPoolManager();
+		if (StringUtil.isNotBlank(threadPoolManager)) {
+			if (applicationContext.containsBean(threadPoolManager)) {
+				sqlToyContext.setThreadPoolManager((ThreadPoolManager) applicationContext.getBean(threadPoolManager));
+			} // 包名和类名称
+			else if (threadPoolManager.contains(".")) {
+				sqlToyContext.setThreadPoolManager(
+						(ThreadPoolManager) Class.forName(threadPoolManager).getDeclaredConstructor().newInstance());
+			}
+		}
 		return sqlToyContext;
 	}
 
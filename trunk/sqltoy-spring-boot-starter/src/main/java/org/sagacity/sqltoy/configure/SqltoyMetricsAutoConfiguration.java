@@ -0,0 +1,27 @@
+package org.sagacity.sqltoy.configure;
+
+import org.sagacity.sqltoy.SqlToyContext;
+import org.springframework.boot.autoconfigure.AutoConfigureAfter;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnClass;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * @description 类路径中存在micrometer时,自动将sqltoy执行指标注册到MeterRegistry
+ * @author zhongxuchen
+ * @version v1.0,Date:2021-05-18
+ */
+@Configuration
+@ConditionalOnClass(name = "io.micrometer.core.instrument.MeterRegistry")
+@AutoConfigureAfter(SqltoyAutoConfiguration.class)
+public class SqltoyMetricsAutoConfiguration {
+
+	@Bean
+	@ConditionalOnBean(SqlToyContext.class)
+	@ConditionalOnMissingBean
+	SqlToyMetricsBinder sqlToyMetricsBinder(SqlToyContext sqlToyContext) {
+		return new SqlToyMetricsBinder(sqlToyContext);
+	}
+}